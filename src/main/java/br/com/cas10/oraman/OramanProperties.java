@@ -1,9 +1,15 @@
 package br.com.cas10.oraman;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -16,14 +22,32 @@ public class OramanProperties {
 
   @NotNull
   private String home;
-  @Valid
+  /**
+   * Data source of the monitored database, if {@link #targets} is empty.
+   */
   private DataSource dataSource = new DataSource();
+  /** Monitored databases. */
+  @NotNull
+  @Valid
+  private List<Target> targets = new ArrayList<>();
+  @Valid
+  private Scheduler scheduler = new Scheduler();
   @Valid
   private Archive archive = new Archive();
   @NotNull
   private List<ObjectMapping> objectMappings = new ArrayList<>();
   @NotNull
   private AccessLog accessLog = new AccessLog();
+  @Valid
+  private Throughput throughput = new Throughput();
+  @Valid
+  private Ash ash = new Ash();
+  /**
+   * Whether the sessions of all the instances of a RAC database should be sampled (through
+   * {@code gv$session}).
+   */
+  @NotNull
+  private Boolean cluster = false;
 
   public String getHome() {
     return home;
@@ -41,6 +65,22 @@ public class OramanProperties {
     this.dataSource = dataSource;
   }
 
+  public List<Target> getTargets() {
+    return targets;
+  }
+
+  public void setTargets(List<Target> targets) {
+    this.targets = targets;
+  }
+
+  public Scheduler getScheduler() {
+    return scheduler;
+  }
+
+  public void setScheduler(Scheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
   public Archive getArchive() {
     return archive;
   }
@@ -65,6 +105,30 @@ public class OramanProperties {
     this.accessLog = accessLog;
   }
 
+  public Throughput getThroughput() {
+    return throughput;
+  }
+
+  public void setThroughput(Throughput throughput) {
+    this.throughput = throughput;
+  }
+
+  public Ash getAsh() {
+    return ash;
+  }
+
+  public void setAsh(Ash ash) {
+    this.ash = ash;
+  }
+
+  public Boolean getCluster() {
+    return cluster;
+  }
+
+  public void setCluster(Boolean cluster) {
+    this.cluster = cluster;
+  }
+
   public static class AccessLog {
 
     @NotNull
@@ -86,6 +150,24 @@ public class OramanProperties {
     @NotNull
     @PositiveOrZero
     private Integer maxDays = 7;
+    /** Retention of the SQL statistics deltas. */
+    @NotNull
+    @PositiveOrZero
+    private Integer sqlStatsMaxDays = 31;
+    /** Retention of the event wait time histograms. */
+    @NotNull
+    @PositiveOrZero
+    private Integer eventHistogramsMaxDays = 31;
+    /** Retention of the ASH burst captures. */
+    @NotNull
+    @PositiveOrZero
+    private Integer ashBurstsMaxDays = 31;
+    @Valid
+    private Approximation approximation = new Approximation();
+    @Valid
+    private SeriesRetention waits = new SeriesRetention();
+    @Valid
+    private SeriesRetention throughput = new SeriesRetention();
 
     public String getDir() {
       return dir;
@@ -102,6 +184,308 @@ public class OramanProperties {
     public void setMaxDays(Integer maxDays) {
       this.maxDays = maxDays;
     }
+
+    public Integer getSqlStatsMaxDays() {
+      return sqlStatsMaxDays;
+    }
+
+    public void setSqlStatsMaxDays(Integer sqlStatsMaxDays) {
+      this.sqlStatsMaxDays = sqlStatsMaxDays;
+    }
+
+    public Integer getEventHistogramsMaxDays() {
+      return eventHistogramsMaxDays;
+    }
+
+    public void setEventHistogramsMaxDays(Integer eventHistogramsMaxDays) {
+      this.eventHistogramsMaxDays = eventHistogramsMaxDays;
+    }
+
+    public Integer getAshBurstsMaxDays() {
+      return ashBurstsMaxDays;
+    }
+
+    public void setAshBurstsMaxDays(Integer ashBurstsMaxDays) {
+      this.ashBurstsMaxDays = ashBurstsMaxDays;
+    }
+
+    public Approximation getApproximation() {
+      return approximation;
+    }
+
+    public void setApproximation(Approximation approximation) {
+      this.approximation = approximation;
+    }
+
+    public SeriesRetention getWaits() {
+      return waits;
+    }
+
+    public void setWaits(SeriesRetention waits) {
+      this.waits = waits;
+    }
+
+    public SeriesRetention getThroughput() {
+      return throughput;
+    }
+
+    public void setThroughput(SeriesRetention throughput) {
+      this.throughput = throughput;
+    }
+  }
+
+  /**
+   * Retention (in days) of each resolution of an archived series (e.g., the average active
+   * sessions by wait class).
+   */
+  public static class SeriesRetention {
+
+    @NotNull
+    @PositiveOrZero
+    private Integer rawMaxDays = 7;
+    @NotNull
+    @PositiveOrZero
+    private Integer fiveMinutesMaxDays = 90;
+    @NotNull
+    @PositiveOrZero
+    private Integer hourlyMaxDays = 730;
+
+    public Integer getRawMaxDays() {
+      return rawMaxDays;
+    }
+
+    public void setRawMaxDays(Integer rawMaxDays) {
+      this.rawMaxDays = rawMaxDays;
+    }
+
+    public Integer getFiveMinutesMaxDays() {
+      return fiveMinutesMaxDays;
+    }
+
+    public void setFiveMinutesMaxDays(Integer fiveMinutesMaxDays) {
+      this.fiveMinutesMaxDays = fiveMinutesMaxDays;
+    }
+
+    public Integer getHourlyMaxDays() {
+      return hourlyMaxDays;
+    }
+
+    public void setHourlyMaxDays(Integer hourlyMaxDays) {
+      this.hourlyMaxDays = hourlyMaxDays;
+    }
+  }
+
+  public static class Throughput {
+
+    /**
+     * Statistics of {@code v$sysstat} sampled by the throughput agent.
+     */
+    @NotEmpty
+    private List<String> statistics = new ArrayList<>(Arrays.asList("session logical reads",
+        "physical reads", "execute count", "parse count (hard)", "user calls", "user commits",
+        "redo size"));
+
+    public List<String> getStatistics() {
+      return statistics;
+    }
+
+    public void setStatistics(List<String> statistics) {
+      this.statistics = statistics;
+    }
+  }
+
+  public static class Ash {
+
+    /**
+     * Interval (milliseconds) between the samples of {@code v$session}. The activity is always
+     * summarized in snapshots of 15 seconds, whatever the interval.
+     */
+    @NotNull
+    @Min(100)
+    @Max(15000)
+    private Integer samplingInterval = 1000;
+    /**
+     * Stretches the sampling interval while the database is saturated. Disabled by default, so the
+     * samples are taken at a constant rate unless this is enabled.
+     */
+    @NotNull
+    private Boolean adaptiveSampling = false;
+    /**
+     * Longest interval (milliseconds) to which the sampling interval is stretched while the
+     * database is saturated. Adaptive sampling is disabled if it is not longer than the sampling
+     * interval.
+     */
+    @NotNull
+    @Min(100)
+    @Max(15000)
+    private Integer adaptiveMaxInterval = 4000;
+    /**
+     * CPU utilization (percentage, from {@code v$osstat}) of a saturated host.
+     */
+    @NotNull
+    @Positive
+    @Max(100)
+    private Integer saturationCpu = 90;
+    /** Average latency (milliseconds) of the sampling query of a saturated database. */
+    @NotNull
+    @Positive
+    private Integer saturationLatency = 500;
+    /** Rows fetched per round trip by the sampling query. */
+    @NotNull
+    @Positive
+    private Integer fetchSize = 200;
+    /**
+     * Largest number of distinct values (events, programs, SQL ids, etc.) shared by the sampled
+     * sessions.
+     */
+    @NotNull
+    @Positive
+    private Integer dictionarySize = 100_000;
+    /**
+     * Memory (megabytes, outside of the heap) for the snapshots older than the last hour, which
+     * are kept compressed. The memory is shared by all the targets, each one taking an equal part.
+     * Zero disables it.
+     */
+    @NotNull
+    @PositiveOrZero
+    private Integer coldStorageSize = 256;
+    /** Shortest sampling interval (milliseconds) of a burst capture. */
+    @NotNull
+    @Min(50)
+    @Max(1000)
+    private Integer burstMinInterval = 100;
+    /** Longest duration (minutes) of a burst capture. */
+    @NotNull
+    @Positive
+    private Integer burstMaxDuration = 15;
+    /**
+     * Percentage of the elapsed time of a burst capture spent running the sampling query above
+     * which the capture is stopped.
+     */
+    @NotNull
+    @Positive
+    @Max(100)
+    private Integer burstMaxOverhead = 25;
+
+    public Integer getSamplingInterval() {
+      return samplingInterval;
+    }
+
+    public void setSamplingInterval(Integer samplingInterval) {
+      this.samplingInterval = samplingInterval;
+    }
+
+    public Boolean getAdaptiveSampling() {
+      return adaptiveSampling;
+    }
+
+    public void setAdaptiveSampling(Boolean adaptiveSampling) {
+      this.adaptiveSampling = adaptiveSampling;
+    }
+
+    public Integer getAdaptiveMaxInterval() {
+      return adaptiveMaxInterval;
+    }
+
+    public void setAdaptiveMaxInterval(Integer adaptiveMaxInterval) {
+      this.adaptiveMaxInterval = adaptiveMaxInterval;
+    }
+
+    public Integer getSaturationCpu() {
+      return saturationCpu;
+    }
+
+    public void setSaturationCpu(Integer saturationCpu) {
+      this.saturationCpu = saturationCpu;
+    }
+
+    public Integer getSaturationLatency() {
+      return saturationLatency;
+    }
+
+    public void setSaturationLatency(Integer saturationLatency) {
+      this.saturationLatency = saturationLatency;
+    }
+
+    public Integer getFetchSize() {
+      return fetchSize;
+    }
+
+    public void setFetchSize(Integer fetchSize) {
+      this.fetchSize = fetchSize;
+    }
+
+    public Integer getDictionarySize() {
+      return dictionarySize;
+    }
+
+    public void setDictionarySize(Integer dictionarySize) {
+      this.dictionarySize = dictionarySize;
+    }
+
+    public Integer getColdStorageSize() {
+      return coldStorageSize;
+    }
+
+    public void setColdStorageSize(Integer coldStorageSize) {
+      this.coldStorageSize = coldStorageSize;
+    }
+
+    public Integer getBurstMinInterval() {
+      return burstMinInterval;
+    }
+
+    public void setBurstMinInterval(Integer burstMinInterval) {
+      this.burstMinInterval = burstMinInterval;
+    }
+
+    public Integer getBurstMaxDuration() {
+      return burstMaxDuration;
+    }
+
+    public void setBurstMaxDuration(Integer burstMaxDuration) {
+      this.burstMaxDuration = burstMaxDuration;
+    }
+
+    public Integer getBurstMaxOverhead() {
+      return burstMaxOverhead;
+    }
+
+    public void setBurstMaxOverhead(Integer burstMaxOverhead) {
+      this.burstMaxOverhead = burstMaxOverhead;
+    }
+  }
+
+  /**
+   * Error bounds of the approximate (fixed memory) aggregation of archived activity.
+   */
+  public static class Approximation {
+
+    /** Number of SQL statements and sessions monitored by the top-K counters. */
+    @NotNull
+    @Positive
+    private Integer topCapacity = 1000;
+    /** Precision of the distinct counters. The relative error is 1.04 / sqrt(2^precision). */
+    @NotNull
+    @Min(4)
+    @Max(16)
+    private Integer distinctPrecision = 12;
+
+    public Integer getTopCapacity() {
+      return topCapacity;
+    }
+
+    public void setTopCapacity(Integer topCapacity) {
+      this.topCapacity = topCapacity;
+    }
+
+    public Integer getDistinctPrecision() {
+      return distinctPrecision;
+    }
+
+    public void setDistinctPrecision(Integer distinctPrecision) {
+      this.distinctPrecision = distinctPrecision;
+    }
   }
 
   public static class DataSource {
@@ -138,6 +522,98 @@ public class OramanProperties {
     }
   }
 
+  /**
+   * A monitored database. The archive of each target is stored in a subdirectory (named after the
+   * target) of the archive directory.
+   */
+  public static class Target {
+
+    @NotNull
+    @Pattern(regexp = "[A-Za-z0-9_-]+")
+    private String name;
+    @NotNull
+    @Valid
+    private DataSource dataSource = new DataSource();
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public DataSource getDataSource() {
+      return dataSource;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+  }
+
+  /**
+   * Sizes of the thread pools shared by the collectors of all the targets.
+   */
+  public static class Scheduler {
+
+    /**
+     * Threads that run the housekeeping tasks (e.g., the clean-up of the archives) of all the
+     * targets. The collectors do not run in this pool.
+     */
+    @NotNull
+    @Positive
+    private Integer poolSize = 2;
+    /**
+     * Threads that run the sampling queries of all the collectors of all the targets. The threads
+     * spend most of their time waiting for the database, so this is sized by the number of targets
+     * and the latency of the queries, not by the number of cores.
+     */
+    @NotNull
+    @Positive
+    private Integer samplingPoolSize = 32;
+    /** Maximum offset (milliseconds) of the sampling ticks of each target. */
+    @NotNull
+    @PositiveOrZero
+    private Integer samplingJitter = 500;
+    /** Threads that run the ingest pipelines (encoding, archiving) of all the targets. */
+    @NotNull
+    @Positive
+    private Integer ingestPoolSize = 4;
+
+    public Integer getPoolSize() {
+      return poolSize;
+    }
+
+    public void setPoolSize(Integer poolSize) {
+      this.poolSize = poolSize;
+    }
+
+    public Integer getSamplingPoolSize() {
+      return samplingPoolSize;
+    }
+
+    public void setSamplingPoolSize(Integer samplingPoolSize) {
+      this.samplingPoolSize = samplingPoolSize;
+    }
+
+    public Integer getSamplingJitter() {
+      return samplingJitter;
+    }
+
+    public void setSamplingJitter(Integer samplingJitter) {
+      this.samplingJitter = samplingJitter;
+    }
+
+    public Integer getIngestPoolSize() {
+      return ingestPoolSize;
+    }
+
+    public void setIngestPoolSize(Integer ingestPoolSize) {
+      this.ingestPoolSize = ingestPoolSize;
+    }
+  }
+
   public static class ObjectMapping {
 
     @NotNull
@@ -1,5 +1,10 @@
 package br.com.cas10.oraman;
 
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.TargetContext;
+import br.com.cas10.oraman.target.TargetRoutingDataSource;
+import br.com.cas10.oraman.target.TargetTaskScheduler;
+import br.com.cas10.oraman.target.Targets;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import javax.sql.DataSource;
@@ -8,8 +13,10 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @Configuration
@@ -17,34 +24,65 @@ class RootConfig {
 
   @Autowired
   private OramanProperties properties;
+  @Autowired
+  private Targets targets;
 
+  /**
+   * One connection pool per target. Connections are requested from the pool of the current target.
+   */
   @Bean
   DataSource oramanDataSource() {
-    HikariConfig config = new HikariConfig();
-    config.setPoolName("oraman");
-    config.setJdbcUrl(properties.getDataSource().getUrl());
-    config.setUsername(properties.getDataSource().getUsername());
-    config.setPassword(properties.getDataSource().getPassword());
-    config.setMinimumIdle(1);
-    config.setMaximumPoolSize(5);
-    config.setReadOnly(true);
-    config.addDataSourceProperty("v$session.program", "OraManager");
-    return new TransactionAwareDataSourceProxy(new HikariDataSource(config));
+    boolean single = targets.getTargets().size() == 1;
+    return new TransactionAwareDataSourceProxy(new TargetRoutingDataSource(targets, target -> {
+      HikariConfig config = new HikariConfig();
+      config.setPoolName(single ? "oraman" : "oraman-" + target.getName());
+      config.setJdbcUrl(target.getDataSource().getUrl());
+      config.setUsername(target.getDataSource().getUsername());
+      config.setPassword(target.getDataSource().getPassword());
+      config.setMinimumIdle(1);
+      // 5 for the queries, plus the connection held for good by SessionSampler
+      config.setMaximumPoolSize(6);
+      config.setReadOnly(true);
+      config.addDataSourceProperty("v$session.program", "OraManager");
+      return new HikariDataSource(config);
+    }));
   }
 
   @Bean
   @Primary
   TaskScheduler defaultTaskScheduler() {
-    ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
-    taskScheduler.setPoolSize(2);
+    ThreadPoolTaskScheduler taskScheduler = new TargetTaskScheduler();
+    taskScheduler.setPoolSize(properties.getScheduler().getPoolSize());
     return taskScheduler;
   }
 
   @Bean
-  @Qualifier("ash")
-  TaskScheduler ashTaskScheduler() {
-    ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
-    taskScheduler.setPoolSize(1);
-    return taskScheduler;
+  SamplingExecutor samplingExecutor() {
+    return new SamplingExecutor(properties.getScheduler().getSamplingPoolSize(),
+        properties.getScheduler().getSamplingJitter());
+  }
+
+  @Bean
+  @Qualifier("push")
+  TaskExecutor pushTaskExecutor() {
+    ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(2);
+    taskExecutor.setThreadNamePrefix("push-");
+    taskExecutor.setTaskDecorator(TargetContext::wrap);
+    return taskExecutor;
+  }
+
+  /**
+   * Runs the stages of the ingest pipelines of all the targets (e.g., the encoding and archiving of
+   * the ASH samples), off the sampling threads.
+   */
+  @Bean
+  @Qualifier("ingest")
+  TaskExecutor ingestTaskExecutor() {
+    ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(properties.getScheduler().getIngestPoolSize());
+    taskExecutor.setThreadNamePrefix("ingest-");
+    taskExecutor.setTaskDecorator(TargetContext::wrap);
+    return taskExecutor;
   }
 }
@@ -0,0 +1,27 @@
+package br.com.cas10.oraman.agent;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Waits of an event in an interval.
+ */
+public class EventActivity {
+
+  public final String event;
+  public final String waitClass;
+  public final long waits;
+  public final long timeWaitedMicros;
+  public final double averageWaitMicros;
+  public final double averageActiveSessions;
+
+  EventActivity(String event, String waitClass, long waits, long timeWaitedMicros,
+      long intervalMicros) {
+    this.event = checkNotNull(event);
+    this.waitClass = waitClass;
+    this.waits = waits;
+    this.timeWaitedMicros = timeWaitedMicros;
+    this.averageWaitMicros = waits == 0 ? 0 : (double) timeWaitedMicros / waits;
+    this.averageActiveSessions =
+        intervalMicros == 0 ? 0 : (double) timeWaitedMicros / intervalMicros;
+  }
+}
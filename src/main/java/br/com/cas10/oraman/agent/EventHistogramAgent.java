@@ -0,0 +1,156 @@
+package br.com.cas10.oraman.agent;
+
+import static br.com.cas10.oraman.oracle.OracleObject.V_EVENT_HISTOGRAM;
+import static br.com.cas10.oraman.oracle.OracleObject.V_EVENT_NAME;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import br.com.cas10.oraman.oracle.AccessChecker;
+import br.com.cas10.oraman.oracle.Waits;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.LatencyHistogram;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Ordering;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Samples the wait time histograms of the events and archives their deltas.
+ *
+ * <p>The cumulative bucket counts are read into arrays indexed by an event dictionary (see
+ * {@link EventsAgent}) and {@link LatencyHistogram} bucket, which are reused between samples. An
+ * event seen for the first time after the first sample had all its waits since the previous
+ * sample, since events without waits are not read.
+ */
+@Component
+@TargetScoped
+public class EventHistogramAgent {
+
+  @VisibleForTesting
+  static final long SAMPLING_INTERVAL_MILLIS = MINUTES.toMillis(1);
+
+  private static final int INITIAL_CAPACITY = 256;
+  private static final Ordering<EventLatency> WAITS_ORDERING =
+      Ordering.from((a, b) -> Long.compare(a.waits, b.waits));
+
+  @Autowired
+  private AccessChecker accessChecker;
+  @Autowired
+  private EventHistogramArchive archive;
+  @Autowired
+  private SamplingExecutor sampler;
+  @Autowired
+  private Waits waits;
+
+  @VisibleForTesting
+  Clock clock = Clock.systemDefaultZone();
+
+  @PostConstruct
+  private void init() {
+    if (accessChecker.isQueryable(V_EVENT_HISTOGRAM) && accessChecker.isQueryable(V_EVENT_NAME)) {
+      sampler.schedule("event-histogram", this::run, SAMPLING_INTERVAL_MILLIS);
+    }
+  }
+
+  // only accessed by the sampling thread
+  private final Map<String, Integer> eventIndexes = new HashMap<>();
+  private final List<String> events = new ArrayList<>();
+  private final Waits.EventHistogramHandler handler = this::readBucket;
+  private long[][] previous = new long[INITIAL_CAPACITY][];
+  private long[][] current = new long[INITIAL_CAPACITY][];
+  private final long[] delta = new long[LatencyHistogram.BUCKETS];
+  private boolean initialized = false;
+
+  @VisibleForTesting
+  void run() {
+    long timestamp = clock.millis();
+    for (int i = 0; i < events.size(); i++) {
+      Arrays.fill(current[i], 0);
+    }
+    waits.readEventHistograms(handler);
+
+    if (initialized) {
+      Map<String, long[]> deltas = new LinkedHashMap<>();
+      for (int i = 0; i < events.size(); i++) {
+        if (delta(previous[i], current[i])) {
+          deltas.put(events.get(i), delta.clone());
+        }
+      }
+      if (!deltas.isEmpty()) {
+        archive.archive(timestamp, deltas);
+      }
+    }
+    initialized = true;
+
+    long[][] swap = previous;
+    previous = current;
+    current = swap;
+  }
+
+  /**
+   * Calculates the delta between two histograms. If any count decreased, the counters were reset
+   * (instance restart), so the current counts are the delta.
+   *
+   * @return {@code true} if the delta is not zero.
+   */
+  private boolean delta(long[] prev, long[] curr) {
+    boolean changed = false;
+    for (int i = 0; i < delta.length; i++) {
+      delta[i] = curr[i] - prev[i];
+      if (delta[i] < 0) {
+        System.arraycopy(curr, 0, delta, 0, delta.length);
+        return true;
+      }
+      changed |= delta[i] != 0;
+    }
+    return changed;
+  }
+
+  private void readBucket(String event, long upperBoundMicros, long waits) {
+    Integer index = eventIndexes.get(event);
+    if (index == null) {
+      index = events.size();
+      eventIndexes.put(event, index);
+      events.add(event);
+      if (index >= current.length) {
+        previous = Arrays.copyOf(previous, current.length * 2);
+        current = Arrays.copyOf(current, current.length * 2);
+      }
+      previous[index] = new long[LatencyHistogram.BUCKETS];
+      current[index] = new long[LatencyHistogram.BUCKETS];
+    }
+    current[index][LatencyHistogram.bucketOf(upperBoundMicros)] += waits;
+  }
+
+  /**
+   * Returns the wait time distribution of each event in the closed interval {@code [start, end]},
+   * ordered by number of waits (descending).
+   */
+  public List<EventLatency> getLatencies(long start, long end) throws IOException {
+    List<EventLatency> latencies = new ArrayList<>();
+    archive.getHistograms(start, end)
+        .forEach((event, histogram) -> latencies.add(new EventLatency(event, start, histogram)));
+    return WAITS_ORDERING.reverse().sortedCopy(latencies);
+  }
+
+  /**
+   * Returns the wait time distribution of an event in the closed interval {@code [start, end]},
+   * in intervals of {@code intervalMillis}, in chronological order.
+   */
+  public List<EventLatency> getLatencyHistory(String event, long start, long end,
+      long intervalMillis) throws IOException {
+    List<EventLatency> history = new ArrayList<>();
+    archive.getHistograms(event, start, end, intervalMillis).forEach((intervalStart,
+        histogram) -> history.add(new EventLatency(event, intervalStart, histogram)));
+    return history;
+  }
+}
@@ -0,0 +1,145 @@
+package br.com.cas10.oraman.agent;
+
+import static br.com.cas10.oraman.util.BatchArchive.readVarLong;
+import static br.com.cas10.oraman.util.BatchArchive.writeVarLong;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.target.TargetContext;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.BatchArchive;
+import br.com.cas10.oraman.util.LatencyHistogram;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Archive of the wait time histogram deltas calculated by {@link EventHistogramAgent}.
+ *
+ * <p>Each sample is stored as a batch with the events whose histogram changed: the event name and
+ * the non-zero buckets (bucket index and count).
+ */
+@Component
+@TargetScoped
+class EventHistogramArchive {
+
+  private static final Logger logger = LoggerFactory.getLogger(EventHistogramArchive.class);
+
+  @Autowired
+  private TaskScheduler scheduler;
+
+  @VisibleForTesting
+  Clock clock = Clock.systemDefaultZone();
+
+  private final BatchArchive batches;
+  private final int archiveMaxDays;
+
+  @Autowired
+  EventHistogramArchive(OramanProperties properties) {
+    this.batches = new BatchArchive(
+        TargetContext.archiveDir(properties).resolve("event-histograms"));
+    this.archiveMaxDays = properties.getArchive().getEventHistogramsMaxDays();
+  }
+
+  @PostConstruct
+  private void init() {
+    scheduler.schedule(this::cleanUpArchive, new CronTrigger("0 55 * * * *"));
+  }
+
+  /**
+   * Archives the histogram deltas of a sample.
+   *
+   * @param deltas the bucket counts of each event (see {@link LatencyHistogram}).
+   */
+  void archive(long timestamp, Map<String, long[]> deltas) {
+    try {
+      ByteArrayOutputStream batch = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(batch);
+      out.writeInt(deltas.size());
+      for (Map.Entry<String, long[]> e : deltas.entrySet()) {
+        long[] counts = e.getValue();
+        out.writeUTF(e.getKey());
+        out.writeByte((int) Arrays.stream(counts).filter(c -> c != 0).count());
+        for (int i = 0; i < counts.length; i++) {
+          if (counts[i] != 0) {
+            out.writeByte(i);
+            writeVarLong(out, counts[i]);
+          }
+        }
+      }
+      batches.append(timestamp, batch.toByteArray());
+    } catch (IOException e) {
+      logger.error("Error while archiving event histograms", e);
+    }
+  }
+
+  /**
+   * Returns the histogram of each event in the closed interval {@code [start, end]}.
+   */
+  Map<String, LatencyHistogram> getHistograms(long start, long end) throws IOException {
+    Map<String, LatencyHistogram> histograms = new HashMap<>();
+    read(start, end, (timestamp, event, histogram) -> histograms
+        .computeIfAbsent(event, k -> new LatencyHistogram()).merge(histogram));
+    return histograms;
+  }
+
+  /**
+   * Returns the histograms of an event in the closed interval {@code [start, end]}, merged in
+   * intervals of {@code intervalMillis} (by interval start).
+   */
+  SortedMap<Long, LatencyHistogram> getHistograms(String event, long start, long end,
+      long intervalMillis) throws IOException {
+    SortedMap<Long, LatencyHistogram> histograms = new TreeMap<>();
+    read(start, end, (timestamp, e, histogram) -> {
+      if (e.equals(event)) {
+        long intervalStart = timestamp - Math.floorMod(timestamp - start, intervalMillis);
+        histograms.computeIfAbsent(intervalStart, k -> new LatencyHistogram()).merge(histogram);
+      }
+    });
+    return histograms;
+  }
+
+  private void read(long start, long end, HistogramConsumer consumer) throws IOException {
+    batches.read(start, end, (timestamp, in) -> {
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String event = in.readUTF();
+        LatencyHistogram histogram = new LatencyHistogram();
+        int buckets = in.readUnsignedByte();
+        for (int j = 0; j < buckets; j++) {
+          histogram.add(in.readUnsignedByte(), readVarLong(in));
+        }
+        consumer.accept(timestamp, event, histogram);
+      }
+    });
+  }
+
+  @VisibleForTesting
+  void cleanUpArchive() {
+    try {
+      batches.cleanUp(LocalDate.now(clock).minusDays(archiveMaxDays));
+    } catch (IOException e) {
+      logger.error("Error while cleaning up the archive", e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface HistogramConsumer {
+
+    void accept(long timestamp, String event, LatencyHistogram histogram);
+  }
+}
@@ -0,0 +1,29 @@
+package br.com.cas10.oraman.agent;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import br.com.cas10.oraman.util.LatencyHistogram;
+
+/**
+ * Wait time distribution of an event in an interval. The percentiles are approximations
+ * calculated from the power of two buckets of the histogram.
+ */
+public class EventLatency {
+
+  public final String event;
+  /** Start of the interval. */
+  public final long timestamp;
+  public final long waits;
+  public final double p50Micros;
+  public final double p95Micros;
+  public final double p99Micros;
+
+  EventLatency(String event, long timestamp, LatencyHistogram histogram) {
+    this.event = checkNotNull(event);
+    this.timestamp = timestamp;
+    this.waits = histogram.getCount();
+    this.p50Micros = histogram.quantile(0.5);
+    this.p95Micros = histogram.quantile(0.95);
+    this.p99Micros = histogram.quantile(0.99);
+  }
+}
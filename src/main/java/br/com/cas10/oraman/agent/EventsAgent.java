@@ -0,0 +1,207 @@
+package br.com.cas10.oraman.agent;
+
+import static br.com.cas10.oraman.oracle.OracleObject.V_SYSTEM_EVENT;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import br.com.cas10.oraman.oracle.AccessChecker;
+import br.com.cas10.oraman.oracle.Waits;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.SeriesPoint;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Samples the waits of each event from {@code v$system_event}.
+ *
+ * <p>Events are indexed by a dictionary that grows as new events are seen, so the index of an
+ * event never changes. The cumulative values are read into preallocated arrays and the deltas are
+ * stored in a ring of arrays indexed by the dictionary, which are reused once the ring is full.
+ * Sampling allocates only when the dictionary grows.
+ */
+@Component
+@TargetScoped
+public class EventsAgent {
+
+  @VisibleForTesting
+  static final long SAMPLING_INTERVAL_MILLIS = SECONDS.toMillis(15);
+
+  private static final int INITIAL_CAPACITY = 512;
+  private static final List<String> SERIES_KEYS =
+      ImmutableList.of("Waits per second", "Average wait (us)");
+
+  @Autowired
+  private AccessChecker accessChecker;
+  @Autowired
+  private SamplingExecutor sampler;
+  @Autowired
+  private Waits waits;
+
+  @PostConstruct
+  private void init() {
+    if (accessChecker.isQueryable(V_SYSTEM_EVENT)) {
+      sampler.schedule("events", this::run, SAMPLING_INTERVAL_MILLIS);
+    }
+  }
+
+  private final Map<String, Integer> eventIndexes = new HashMap<>();
+  private final List<String> events = new ArrayList<>();
+  private final List<String> eventsWaitClasses = new ArrayList<>();
+  private final Waits.SystemEventHandler handler = this::readEvent;
+
+  // cumulative values, only accessed by the sampling thread
+  private long[] previousWaits = new long[INITIAL_CAPACITY];
+  private long[] previousTime = new long[INITIAL_CAPACITY];
+  private long[] currentWaits = new long[INITIAL_CAPACITY];
+  private long[] currentTime = new long[INITIAL_CAPACITY];
+  /**
+   * Number of events known when the previous sample was taken ({@code -1} before the first).
+   */
+  private int previousEvents = -1;
+
+  private final long[] timestamps;
+  private final long[][] waitsDeltas;
+  private final long[][] timeDeltas;
+  private int next = 0;
+  private int size = 0;
+
+  @VisibleForTesting
+  EventsAgent() {
+    int storageSize = (int) (HOURS.toMillis(1) / SAMPLING_INTERVAL_MILLIS);
+    timestamps = new long[storageSize];
+    waitsDeltas = new long[storageSize][];
+    timeDeltas = new long[storageSize][];
+  }
+
+  @VisibleForTesting
+  void run() {
+    long timestamp = System.currentTimeMillis();
+    Arrays.fill(currentWaits, 0);
+    Arrays.fill(currentTime, 0);
+    waits.readSystemEvents(handler);
+
+    synchronized (this) {
+      int eventsCount = events.size();
+      if (previousEvents >= 0) {
+        long[] waitsDelta = ensureLength(waitsDeltas[next], eventsCount);
+        long[] timeDelta = ensureLength(timeDeltas[next], eventsCount);
+        for (int i = 0; i < eventsCount; i++) {
+          // events seen for the first time have no delta
+          boolean known = i < previousEvents;
+          waitsDelta[i] = known ? Math.max(0, currentWaits[i] - previousWaits[i]) : 0;
+          timeDelta[i] = known ? Math.max(0, currentTime[i] - previousTime[i]) : 0;
+        }
+        Arrays.fill(waitsDelta, eventsCount, waitsDelta.length, 0);
+        Arrays.fill(timeDelta, eventsCount, timeDelta.length, 0);
+        waitsDeltas[next] = waitsDelta;
+        timeDeltas[next] = timeDelta;
+        timestamps[next] = timestamp;
+        next = (next + 1) % timestamps.length;
+        size = Math.min(size + 1, timestamps.length);
+      }
+      previousEvents = eventsCount;
+    }
+
+    long[] swap = previousWaits;
+    previousWaits = currentWaits;
+    currentWaits = swap;
+    swap = previousTime;
+    previousTime = currentTime;
+    currentTime = swap;
+  }
+
+  private void readEvent(String event, String waitClass, long totalWaits, long timeWaitedMicros) {
+    Integer index = eventIndexes.get(event);
+    if (index == null) {
+      synchronized (this) {
+        index = events.size();
+        eventIndexes.put(event, index);
+        events.add(event);
+        eventsWaitClasses.add(waitClass);
+      }
+      if (index >= currentWaits.length) {
+        int capacity = currentWaits.length * 2;
+        previousWaits = Arrays.copyOf(previousWaits, capacity);
+        previousTime = Arrays.copyOf(previousTime, capacity);
+        currentWaits = Arrays.copyOf(currentWaits, capacity);
+        currentTime = Arrays.copyOf(currentTime, capacity);
+      }
+    }
+    currentWaits[index] = totalWaits;
+    currentTime[index] = timeWaitedMicros;
+  }
+
+  private long[] ensureLength(long[] array, int length) {
+    if (array == null || array.length < length) {
+      return new long[Math.max(length, currentWaits.length)];
+    }
+    return array;
+  }
+
+  /**
+   * Returns the events with the largest time waited in the samples in memory (the last hour).
+   */
+  public synchronized List<EventActivity> getTopEvents(int count) {
+    long[] waitsTotals = new long[events.size()];
+    long[] timeTotals = new long[events.size()];
+    for (int s = 0; s < size; s++) {
+      long[] waitsDelta = waitsDeltas[s];
+      long[] timeDelta = timeDeltas[s];
+      for (int i = 0; i < Math.min(waitsTotals.length, waitsDelta.length); i++) {
+        waitsTotals[i] += waitsDelta[i];
+        timeTotals[i] += timeDelta[i];
+      }
+    }
+
+    long intervalMicros = MILLISECONDS.toMicros(size * SAMPLING_INTERVAL_MILLIS);
+    List<EventActivity> activity = new ArrayList<>();
+    for (int i = 0; i < waitsTotals.length; i++) {
+      if (timeTotals[i] > 0) {
+        activity.add(new EventActivity(events.get(i), eventsWaitClasses.get(i), waitsTotals[i],
+            timeTotals[i], intervalMicros));
+      }
+    }
+    return Ordering.from((EventActivity a, EventActivity b) -> Long.compare(a.timeWaitedMicros,
+        b.timeWaitedMicros)).greatestOf(activity, count);
+  }
+
+  /**
+   * Returns the names of the values of the points returned by {@link #getEventSeries(String)}.
+   */
+  public List<String> getEventSeriesKeys() {
+    return SERIES_KEYS;
+  }
+
+  /**
+   * Returns the waits per second and the average wait time (microseconds) of an event in each
+   * sample in memory, in chronological order. Returns an empty list if the event is unknown.
+   */
+  public synchronized List<SeriesPoint> getEventSeries(String event) {
+    Integer index = eventIndexes.get(event);
+    if (index == null) {
+      return ImmutableList.of();
+    }
+    double intervalSeconds = MILLISECONDS.toSeconds(SAMPLING_INTERVAL_MILLIS);
+    List<SeriesPoint> series = new ArrayList<>(size);
+    for (int s = 0; s < size; s++) {
+      int slot = (next - size + s + timestamps.length) % timestamps.length;
+      long eventWaits = index < waitsDeltas[slot].length ? waitsDeltas[slot][index] : 0;
+      long eventTime = index < timeDeltas[slot].length ? timeDeltas[slot][index] : 0;
+      double averageWait = eventWaits == 0 ? 0 : (double) eventTime / eventWaits;
+      series.add(new SeriesPoint(timestamps[slot],
+          new double[] {eventWaits / intervalSeconds, averageWait}));
+    }
+    return series;
+  }
+}
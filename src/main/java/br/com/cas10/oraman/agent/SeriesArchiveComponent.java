@@ -0,0 +1,101 @@
+package br.com.cas10.oraman.agent;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.util.SeriesArchive;
+import br.com.cas10.oraman.util.SeriesPoint;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+
+/**
+ * Archive of the snapshots of an agent.
+ *
+ * <p>The snapshots are stored as fixed width records (one value per key) at their own resolution
+ * and rolled up to five minutes and one hour averages.
+ */
+abstract class SeriesArchiveComponent {
+
+  private static final Logger logger = LoggerFactory.getLogger(SeriesArchiveComponent.class);
+
+  /** Maximum number of points returned by a query. */
+  private static final int MAX_POINTS = 1500;
+
+  @Autowired
+  private TaskScheduler scheduler;
+
+  @VisibleForTesting
+  Clock clock = Clock.systemDefaultZone();
+
+  private final Path archivePath;
+  private final OramanProperties.SeriesRetention retention;
+  private final String cleanUpCron;
+
+  /**
+   * {@code null} until the archive is opened.
+   */
+  private volatile SeriesArchive series;
+
+  SeriesArchiveComponent(Path archivePath, OramanProperties.SeriesRetention retention,
+      String cleanUpCron) {
+    this.archivePath = archivePath;
+    this.retention = retention;
+    this.cleanUpCron = cleanUpCron;
+  }
+
+  /**
+   * Opens the archive. The snapshots are stored with one value per key, in the specified order.
+   */
+  void open(List<String> keys, long samplingIntervalMillis) {
+    this.series = new SeriesArchive(archivePath, keys.size(), ImmutableList.of(
+        new SeriesArchive.Tier("raw", samplingIntervalMillis, retention.getRawMaxDays()),
+        new SeriesArchive.Tier("5m", MINUTES.toMillis(5), retention.getFiveMinutesMaxDays()),
+        new SeriesArchive.Tier("1h", HOURS.toMillis(1), retention.getHourlyMaxDays())));
+    scheduler.schedule(this::cleanUpArchive, new CronTrigger(cleanUpCron));
+  }
+
+  /**
+   * Archives a snapshot with one value per key, in the order specified when the archive was
+   * opened.
+   */
+  void archiveSnapshot(SeriesPoint snapshot) {
+    try {
+      series.append(snapshot.getTimestamp(), snapshot.getValues());
+    } catch (IOException e) {
+      logger.error("Error while archiving snapshot", e);
+    }
+  }
+
+  /**
+   * Returns the archived snapshots of the closed interval {@code [start, end]}, at the finest
+   * resolution that keeps the number of points reasonable for a chart. Returns an empty list if the
+   * archive was never opened (the agent is not running).
+   */
+  List<SeriesPoint> getArchivedSnapshots(long start, long end) throws IOException {
+    SeriesArchive series = this.series;
+    if (series == null) {
+      return ImmutableList.of();
+    }
+    return series.query(start, end, MAX_POINTS, LocalDate.now(clock));
+  }
+
+  @VisibleForTesting
+  void cleanUpArchive() {
+    try {
+      series.cleanUp(LocalDate.now(clock));
+    } catch (IOException e) {
+      logger.error("Error while cleaning up the archive", e);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package br.com.cas10.oraman.agent;
+
+import static br.com.cas10.oraman.oracle.OracleObject.V_SYSSTAT;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.oracle.AccessChecker;
+import br.com.cas10.oraman.oracle.SystemStatistics;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.BufferSlice;
+import br.com.cas10.oraman.util.DeltaBuffer;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Samples the {@code v$sysstat} statistics selected in the configuration (e.g., executions and
+ * logical reads) and calculates their rates per second.
+ */
+@Component
+@TargetScoped
+public class ThroughputAgent {
+
+  @VisibleForTesting
+  static final long SAMPLING_INTERVAL_MILLIS = SECONDS.toMillis(15);
+
+  @Autowired
+  private AccessChecker accessChecker;
+  @Autowired
+  private ThroughputArchive archive;
+  @Autowired
+  private OramanProperties properties;
+  @Autowired
+  private SamplingExecutor sampler;
+  @Autowired
+  private SystemStatistics systemStatistics;
+
+  @VisibleForTesting
+  Clock clock = Clock.systemDefaultZone();
+
+  private SeriesSchema statistics;
+
+  @PostConstruct
+  private void init() {
+    statistics = new SeriesSchema(
+        ImmutableSet.copyOf(properties.getThroughput().getStatistics()).asList());
+
+    if (accessChecker.isQueryable(V_SYSSTAT)) {
+      archive.open(statistics.getKeys(), SAMPLING_INTERVAL_MILLIS);
+      sampler.schedule("throughput", this::run, SAMPLING_INTERVAL_MILLIS);
+    }
+  }
+
+  /** Cumulative values of the statistics, in the order of the schema. */
+  private final DeltaBuffer<SeriesPoint, SeriesPoint> snapshots;
+
+  @VisibleForTesting
+  ThroughputAgent() {
+    int storageSize = (int) (HOURS.toMillis(1) / SAMPLING_INTERVAL_MILLIS);
+    snapshots = new DeltaBuffer<>(storageSize, ThroughputAgent::rates);
+  }
+
+  /**
+   * Calculates the rates per second between two samples. A value smaller than the previous one
+   * means that the counter was reset (instance restart), so the value itself is the delta.
+   */
+  private static SeriesPoint rates(SeriesPoint prev, SeriesPoint curr) {
+    double seconds = (curr.getTimestamp() - prev.getTimestamp()) / 1000d;
+    double[] values = new double[curr.getValues().length];
+    for (int i = 0; i < values.length; i++) {
+      double delta = curr.getValues()[i] - prev.getValues()[i];
+      if (delta < 0) {
+        delta = curr.getValues()[i];
+      }
+      values[i] = seconds > 0 ? delta / seconds : 0;
+    }
+    return new SeriesPoint(curr.getTimestamp(), values);
+  }
+
+  @VisibleForTesting
+  void run() {
+    long timestamp = clock.millis();
+    Map<String, Long> current = systemStatistics.getStatistics(statistics.getKeys());
+    double[] values = new double[statistics.size()];
+    for (Map.Entry<String, Long> e : current.entrySet()) {
+      int index = statistics.indexOf(e.getKey());
+      if (index >= 0) {
+        values[index] = e.getValue();
+      }
+    }
+    SeriesPoint snapshot = snapshots.add(new SeriesPoint(timestamp, values));
+
+    if (snapshot != null) {
+      archive.archiveSnapshot(snapshot);
+    }
+  }
+
+  /**
+   * Returns the archived rates of the closed interval {@code [start, end]}, in the order of
+   * {@link #getStatistics()}. Long intervals are returned at a coarser resolution.
+   */
+  public List<SeriesPoint> getArchivedSnapshots(long start, long end) throws IOException {
+    return archive.getArchivedSnapshots(start, end);
+  }
+
+  public List<String> getStatistics() {
+    return statistics.getKeys();
+  }
+
+  /**
+   * Returns the snapshots in memory, with the rate per second of each statistic in the order of
+   * {@link #getStatistics()}.
+   */
+  public List<SeriesPoint> getSnapshots() {
+    return snapshots.toList();
+  }
+
+  /**
+   * Returns the snapshots taken after the specified generation.
+   *
+   * @see BufferSlice
+   */
+  public BufferSlice<SeriesPoint> getSnapshots(long since) {
+    return snapshots.since(since);
+  }
+}
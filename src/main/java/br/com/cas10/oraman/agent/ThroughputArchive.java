@@ -0,0 +1,21 @@
+package br.com.cas10.oraman.agent;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.target.TargetContext;
+import br.com.cas10.oraman.target.TargetScoped;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Archive of the rates of the statistics sampled by {@link ThroughputAgent}.
+ */
+@Component
+@TargetScoped
+class ThroughputArchive extends SeriesArchiveComponent {
+
+  @Autowired
+  ThroughputArchive(OramanProperties properties) {
+    super(TargetContext.archiveDir(properties).resolve("throughput"),
+        properties.getArchive().getThroughput(), "0 45 * * * *");
+  }
+}
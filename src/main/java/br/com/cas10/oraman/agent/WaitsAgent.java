@@ -8,20 +8,25 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 
 import br.com.cas10.oraman.oracle.AccessChecker;
 import br.com.cas10.oraman.oracle.Waits;
+import br.com.cas10.oraman.oracle.data.Wait;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.BufferSlice;
 import br.com.cas10.oraman.util.DeltaBuffer;
-import br.com.cas10.oraman.util.Snapshot;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
 
 @Component
+@TargetScoped
 public class WaitsAgent {
 
   @VisibleForTesting
@@ -32,23 +37,28 @@ public class WaitsAgent {
   @Autowired
   private AccessChecker accessChecker;
   @Autowired
-  private TaskScheduler scheduler;
+  private WaitsArchive archive;
+  @Autowired
+  private SamplingExecutor sampler;
   @Autowired
   private Waits waits;
 
-  private List<String> waitClasses;
+  private SeriesSchema waitClasses;
 
   @PostConstruct
   private void init() {
     ImmutableList.Builder<String> builder = ImmutableList.builder();
-    waitClasses = builder.add(CPU_CLASS).addAll(waits.getWaitClasses()).build();
+    waitClasses = new SeriesSchema(builder.add(CPU_CLASS).addAll(waits.getWaitClasses()).build());
 
     if (accessChecker.isQueryable(V_SYS_TIME_MODEL) && accessChecker.isQueryable(V_SYSTEM_EVENT)) {
-      scheduler.scheduleAtFixedRate(this::run, SAMPLING_INTERVAL_MILLIS);
+      archive.open(waitClasses.getKeys(), SAMPLING_INTERVAL_MILLIS);
+      sampler.schedule("waits", this::run, SAMPLING_INTERVAL_MILLIS);
     }
   }
 
-  private final DeltaBuffer<Snapshot<Long>, Snapshot<Double>> snapshots;
+  /** Time waited (microseconds) by wait class, in the order of the schema. */
+  private final DeltaBuffer<SeriesPoint, SeriesPoint> snapshots;
+  private final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
 
   @VisibleForTesting
   WaitsAgent() {
@@ -57,28 +67,72 @@ public class WaitsAgent {
 
     snapshots = new DeltaBuffer<>(storageSize, (prev, curr) -> {
 
-      ImmutableMap.Builder<String, Double> values = ImmutableMap.builder();
-      for (Map.Entry<String, Long> entry : curr.getValues().entrySet()) {
-        double delta = entry.getValue() - prev.getValues().getOrDefault(entry.getKey(), 0L);
-        values.put(entry.getKey(), delta / samplingIntervalMicros);
+      double[] values = new double[curr.getValues().length];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = (curr.getValues()[i] - prev.getValues()[i]) / samplingIntervalMicros;
       }
-      return new Snapshot<>(curr.getTimestamp(), values.build());
+      return new SeriesPoint(curr.getTimestamp(), values);
     });
   }
 
   @VisibleForTesting
   void run() {
     long timestamp = System.currentTimeMillis();
-    Map<String, Long> values = new HashMap<>();
-    waits.getWaits().forEach(wait -> values.put(wait.waitClass, wait.timeWaitedMicros));
-    snapshots.add(new Snapshot<>(timestamp, values));
+    double[] values = new double[waitClasses.size()];
+    for (Wait wait : waits.getWaits()) {
+      int index = waitClasses.indexOf(wait.waitClass);
+      if (index >= 0) {
+        values[index] = wait.timeWaitedMicros;
+      }
+    }
+    SeriesPoint snapshot = snapshots.add(new SeriesPoint(timestamp, values));
+
+    if (snapshot != null) {
+      archive.archiveSnapshot(snapshot);
+      long generation = snapshots.getGeneration();
+      listeners.forEach(l -> l.accept(generation));
+    }
+  }
+
+  /**
+   * Returns the archived snapshots of the closed interval {@code [start, end]}, with one value per
+   * wait class (in the order of {@link #getWaitClasses()}). Long intervals are returned at a
+   * coarser resolution.
+   */
+  public List<SeriesPoint> getArchivedSnapshots(long start, long end) throws IOException {
+    return archive.getArchivedSnapshots(start, end);
+  }
+
+  public long getGeneration() {
+    return snapshots.getGeneration();
+  }
+
+  /**
+   * Registers a listener that receives the generation of each snapshot added to the buffer. The
+   * listener is invoked by the sampling thread, so it must not block.
+   */
+  public void addSnapshotListener(LongConsumer listener) {
+    listeners.add(listener);
   }
 
   public List<String> getWaitClasses() {
-    return waitClasses;
+    return waitClasses.getKeys();
   }
 
-  public List<Snapshot<Double>> getSnapshots() {
+  /**
+   * Returns the snapshots in memory, with the average active sessions of each wait class in the
+   * order of {@link #getWaitClasses()}.
+   */
+  public List<SeriesPoint> getSnapshots() {
     return snapshots.toList();
   }
+
+  /**
+   * Returns the snapshots taken after the specified generation.
+   *
+   * @see BufferSlice
+   */
+  public BufferSlice<SeriesPoint> getSnapshots(long since) {
+    return snapshots.since(since);
+  }
 }
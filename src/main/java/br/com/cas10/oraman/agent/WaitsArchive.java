@@ -0,0 +1,21 @@
+package br.com.cas10.oraman.agent;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.target.TargetContext;
+import br.com.cas10.oraman.target.TargetScoped;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Archive of the average active sessions by wait class calculated by {@link WaitsAgent}.
+ */
+@Component
+@TargetScoped
+class WaitsArchive extends SeriesArchiveComponent {
+
+  @Autowired
+  WaitsArchive(OramanProperties properties) {
+    super(TargetContext.archiveDir(properties).resolve("waits"),
+        properties.getArchive().getWaits(), "0 40 * * * *");
+  }
+}
@@ -0,0 +1,24 @@
+package br.com.cas10.oraman.agent.ash;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+
+/**
+ * Peaks of the average active sessions of each wait class in the snapshots of a group, which the
+ * average of the group hides: the maximum and the 95th percentile of the average active sessions
+ * of the snapshots.
+ */
+class AasEnvelope {
+
+  static final double PERCENTILE = 0.95;
+
+  /** Maximum by wait class (wait classes not active in the group are omitted). */
+  final Map<String, Double> max;
+  /** 95th percentile by wait class (wait classes not active in the group are omitted). */
+  final Map<String, Double> p95;
+
+  AasEnvelope(Map<String, Double> max, Map<String, Double> p95) {
+    this.max = ImmutableMap.copyOf(max);
+    this.p95 = ImmutableMap.copyOf(p95);
+  }
+}
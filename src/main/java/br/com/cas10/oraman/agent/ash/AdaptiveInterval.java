@@ -0,0 +1,79 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Sampling interval that backs off while the monitored database is saturated.
+ *
+ * <p>The database is saturated if the CPU utilization of its host or the average latency of the
+ * sampling query crosses its threshold. On each adjustment the interval doubles (up to the maximum)
+ * while the database is saturated, and halves (down to the minimum) once both measures are well
+ * below their thresholds. In between, it is kept.
+ */
+class AdaptiveInterval {
+
+  /** Fraction of the thresholds below which the database is considered recovered. */
+  private static final double RECOVERY = 0.75;
+  /** Weight of the last latency in the moving average. */
+  private static final double LATENCY_WEIGHT = 0.25;
+
+  private final long minInterval;
+  private final long maxInterval;
+  private final double cpuThreshold;
+  private final double latencyThreshold;
+
+  private long interval;
+  private double latency = -1;
+  private Double cpuUtilization;
+
+  /**
+   * Creates an interval that starts at the minimum.
+   *
+   * @param cpuThreshold CPU utilization (fraction) of a saturated host.
+   * @param latencyThreshold average query latency (milliseconds) of a saturated database.
+   */
+  AdaptiveInterval(long minInterval, long maxInterval, double cpuThreshold,
+      double latencyThreshold) {
+    checkArgument(minInterval > 0 && maxInterval >= minInterval);
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.cpuThreshold = cpuThreshold;
+    this.latencyThreshold = latencyThreshold;
+    this.interval = minInterval;
+  }
+
+  void addLatency(long latencyMillis) {
+    latency = latency < 0 ? latencyMillis
+        : LATENCY_WEIGHT * latencyMillis + (1 - LATENCY_WEIGHT) * latency;
+  }
+
+  /**
+   * Sets the CPU utilization of the host, used by the next adjustment.
+   *
+   * @param cpuUtilization CPU utilization (fraction) since the last update, or {@code null} if
+   *        unknown.
+   */
+  void setCpuUtilization(Double cpuUtilization) {
+    this.cpuUtilization = cpuUtilization;
+  }
+
+  /**
+   * Adjusts the interval to the last measures.
+   *
+   * @return the new interval.
+   */
+  long adjust() {
+    boolean cpuKnown = cpuUtilization != null;
+    if ((cpuKnown && cpuUtilization >= cpuThreshold) || latency >= latencyThreshold) {
+      interval = Math.min(maxInterval, interval * 2);
+    } else if ((!cpuKnown || cpuUtilization < cpuThreshold * RECOVERY)
+        && latency < latencyThreshold * RECOVERY) {
+      interval = Math.max(minInterval, interval / 2);
+    }
+    return interval;
+  }
+
+  long getInterval() {
+    return interval;
+  }
+}
@@ -1,44 +1,88 @@
 package br.com.cas10.oraman.agent.ash;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toList;
 
+import br.com.cas10.oraman.OramanProperties;
 import br.com.cas10.oraman.agent.ash.AshArchive.ArchivedSnapshotsIterator;
+import br.com.cas10.oraman.agent.ash.AshArchive.SnapshotGroupsIterator;
+import br.com.cas10.oraman.agent.ash.IntervalComparison.ActivityDelta;
 import br.com.cas10.oraman.oracle.Cursors;
 import br.com.cas10.oraman.oracle.data.ActiveSession;
 import br.com.cas10.oraman.oracle.data.Cursor;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.BufferSlice;
+import br.com.cas10.oraman.util.PipelineStage;
+import br.com.cas10.oraman.util.SeriesPoint;
 import br.com.cas10.oraman.util.Snapshot;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Ordering;
-import com.google.common.collect.Table;
+import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.function.Predicate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
+@TargetScoped
 public class Ash {
 
   private static final Predicate<ActiveSession> ALL_ACTIVE_SESSIONS = s -> true;
+  private static final String UNKNOWN_SQL_ID = "Unknown";
 
   @Autowired
   private AshAgent agent;
   @Autowired
   private AshArchive archive;
   @Autowired
+  private AshBursts bursts;
+  @Autowired
   private Cursors cursors;
+  @Autowired
+  private OramanProperties properties;
 
   public List<String> getWaitClasses() {
-    return agent.getWaitClasses();
+    return agent.getWaitClasses().getKeys();
+  }
+
+  /**
+   * Returns the instances with activity in the snapshots in memory, in ascending order. Only the
+   * local instance is sampled unless cluster mode is enabled.
+   */
+  public List<Integer> getInstances() {
+    return agent.getSnapshots().stream().flatMap(s -> s.runs.stream())
+        .map(r -> r.session.instanceNumber).distinct().sorted().collect(toList());
+  }
+
+  /**
+   * Returns snapshots with the average active sessions by instance, calculated from the ASH
+   * snapshots in memory. The keys of the values are the instance numbers.
+   */
+  public List<Snapshot<Double>> getInstancesSnapshots() {
+    List<AshSnapshot> snapshots = agent.getSnapshots();
+    List<Snapshot<Double>> result = new ArrayList<>(snapshots.size());
+    for (AshSnapshot snapshot : snapshots) {
+      Multiset<Integer> activity = HashMultiset.create();
+      snapshot.runs.forEach(r -> activity.add(r.session.instanceNumber, r.count));
+      Map<String, Double> values = new HashMap<>();
+      for (Multiset.Entry<Integer> e : activity.entrySet()) {
+        values.put(e.getElement().toString(), (double) e.getCount() / snapshot.samples);
+      }
+      result.add(new Snapshot<>(snapshot.timestamp, values));
+    }
+    return result;
   }
 
   /**
@@ -46,11 +90,41 @@ public class Ash {
    * snapshots in memory.
    */
   @Transactional(readOnly = true)
-  public List<Snapshot<Double>> getWaitClassesSnapshots() {
-    List<AshSnapshot> snapshots = agent.getSnapshots();
-    List<Snapshot<Double>> waitClassesSnapshots = new ArrayList<>(snapshots.size());
-    snapshots.forEach(s -> waitClassesSnapshots.add(s.waitClassesSnapshot));
-    return waitClassesSnapshots;
+  public List<SeriesPoint> getWaitClassesSnapshots() {
+    return agent.getWaitClassesPoints();
+  }
+
+  /**
+   * Returns the snapshots with the average active sessions by wait class added after the
+   * specified generation.
+   *
+   * @see BufferSlice
+   */
+  public BufferSlice<SeriesPoint> getWaitClassesSnapshots(long since) {
+    return agent.getWaitClassesPoints(since);
+  }
+
+  /**
+   * Returns the number of snapshots taken so far.
+   */
+  public long getGeneration() {
+    return agent.getGeneration();
+  }
+
+  /**
+   * Registers a listener that receives the generation of each snapshot taken. The listener is
+   * invoked by the ingest pipeline, so it must not block.
+   */
+  public void addSnapshotListener(LongConsumer listener) {
+    agent.addSnapshotListener(listener);
+  }
+
+  /**
+   * Returns the execution statistics of the stages of the ingest pipeline (encoding, memory and
+   * archive).
+   */
+  public List<PipelineStage.Stats> getPipelineStats() {
+    return agent.getPipelineStats();
   }
 
   /**
@@ -70,7 +144,8 @@ public class Ash {
     long start = snapshots.isEmpty() ? 0 : snapshots.get(0).timestamp;
     long end = snapshots.isEmpty() ? 0 : Iterables.getLast(snapshots).timestamp;
 
-    return intervalActivity(snapshots.iterator(), start, end, activeSessionFilter, topQueriesCount);
+    return intervalActivity(snapshots.iterator(), start, end, activeSessionFilter, topQueriesCount,
+        false);
   }
 
   /**
@@ -91,8 +166,21 @@ public class Ash {
    */
   @Transactional(readOnly = true)
   public IntervalActivity getIntervalActivity(long start, long end, int topQueriesCount) {
+    return getIntervalActivity(start, end, topQueriesCount, null);
+  }
+
+  /**
+   * Returns the activity data of an instance for the specified interval.
+   *
+   * @param instanceNumber the instance, or {@code null} for the activity of the whole cluster.
+   * @see #getIntervalActivity(long, long, int)
+   */
+  @Transactional(readOnly = true)
+  public IntervalActivity getIntervalActivity(long start, long end, int topQueriesCount,
+      Integer instanceNumber) {
     List<AshSnapshot> snapshots = agent.getSnapshots();
-    return intervalActivity(snapshots.iterator(), start, end, ALL_ACTIVE_SESSIONS, topQueriesCount);
+    return intervalActivity(snapshots.iterator(), start, end, instanceFilter(instanceNumber),
+        topQueriesCount, false);
   }
 
   /**
@@ -108,90 +196,198 @@ public class Ash {
    * <p>The {@code groupInterval} parameter can be used to control the number of points returned.
    * Snapshots are merged into groups that span {@code groupInterval} milliseconds.
    *
+   * <p>If {@code approximate} is {@code true} the top lists and the distinct counts are computed
+   * by fixed memory counters (Space-Saving and HyperLogLog), whose error bounds are set by
+   * {@link OramanProperties.Approximation}. Intended for long intervals.
+   *
    * @param start interval start.
    * @param end interval end.
    * @param groupInterval the span of snapshot groups in milliseconds.
    * @param topQueriesCount number of statements to return
+   * @param approximate whether the fixed memory approximations should be used.
    * @return the activity data for the specified interval.
    */
   @Transactional(readOnly = true)
   public IntervalActivity getArchivedIntervalActivity(long start, long end, long groupInterval,
-      int topQueriesCount) {
-    try (ArchivedSnapshotsIterator it = archive.getArchivedSnapshots(start, end, groupInterval)) {
-      return intervalActivity(it, start, end, ALL_ACTIVE_SESSIONS, topQueriesCount);
+      int topQueriesCount, boolean approximate) {
+    return getArchivedIntervalActivity(start, end, groupInterval, topQueriesCount, approximate,
+        null);
+  }
+
+  /**
+   * Loads and returns from the disk archive the activity data of an instance for the specified
+   * interval. The snapshots are read from memory instead if the snapshots kept in memory cover the
+   * interval.
+   *
+   * @param instanceNumber the instance, or {@code null} for the activity of the whole cluster.
+   * @see #getArchivedIntervalActivity(long, long, long, int, boolean)
+   */
+  @Transactional(readOnly = true)
+  public IntervalActivity getArchivedIntervalActivity(long start, long end, long groupInterval,
+      int topQueriesCount, boolean approximate, Integer instanceNumber) {
+    Predicate<ActiveSession> filter = instanceFilter(instanceNumber);
+    ArchivedSnapshotsIterator memory = agent.getSnapshots(start, end);
+    try (ArchivedSnapshotsIterator it = memory == null
+        ? archive.getArchivedSnapshots(start, end, groupInterval, filter)
+        : new SnapshotGroupsIterator(memory, start, end, groupInterval, filter)) {
+      return intervalActivity(it, start, end, filter, topQueriesCount, approximate);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private IntervalActivity intervalActivity(Iterator<AshSnapshot> snapshots, long start, long end,
-      Predicate<ActiveSession> activeSessionFilter, int topQueriesCount) {
-    if (topQueriesCount <= 0) {
-      topQueriesCount = 10;
+  /**
+   * Loads and returns the activity data of an archived burst capture for the specified interval.
+   *
+   * @param burst the start of the capture.
+   * @see #getArchivedIntervalActivity(long, long, long, int, boolean, Integer)
+   */
+  @Transactional(readOnly = true)
+  public IntervalActivity getBurstActivity(long burst, long start, long end, long groupInterval,
+      int topQueriesCount, Integer instanceNumber) {
+    Predicate<ActiveSession> filter = instanceFilter(instanceNumber);
+    try (ArchivedSnapshotsIterator it =
+        bursts.getArchivedSnapshots(burst, start, end, groupInterval, filter)) {
+      return intervalActivity(it, start, end, filter, topQueriesCount, false);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
-    int totalSamples = 0;
-    int totalActivity = 0;
-    List<Snapshot<Double>> eventsSnapshots = new ArrayList<>();
-    List<Snapshot<Double>> waitClassesSnapshots = new ArrayList<>();
-    Map<String, SqlActivity.Builder> sqlMap = new HashMap<>();
-    Table<String, String, SessionActivity.Builder> sessionsTable = HashBasedTable.create();
+  }
 
-    while (snapshots.hasNext()) {
-      AshSnapshot snapshot = snapshots.next();
-      if (snapshot.timestamp < start || snapshot.timestamp > end) {
-        continue;
-      }
-      totalSamples += snapshot.samples;
+  private static Predicate<ActiveSession> instanceFilter(Integer instanceNumber) {
+    if (instanceNumber == null) {
+      return ALL_ACTIVE_SESSIONS;
+    }
+    int instance = instanceNumber;
+    return s -> s.instanceNumber == instance;
+  }
 
-      Multiset<String> activityByEvent = HashMultiset.create();
-      Multiset<String> activityByWaitClass = HashMultiset.create();
+  /**
+   * Compares the archived activity of an interval to the archived activity of a baseline interval
+   * (e.g., the same time on the previous day).
+   *
+   * <p>Both intervals are aggregated in a single pass over the archive. The returned lists contain
+   * the wait classes, events, SQL statements and sessions with the largest absolute changes in
+   * average active sessions, including those that were active in only one of the intervals.
+   *
+   * @param topCount number of items per list.
+   */
+  @Transactional(readOnly = true)
+  public IntervalComparison compareArchivedIntervals(long baselineStart, long baselineEnd,
+      long start, long end, int topCount) {
+    if (topCount <= 0) {
+      topCount = 10;
+    }
+    Range<Long> baselineInterval = Range.closed(baselineStart, baselineEnd);
+    Range<Long> interval = Range.closed(start, end);
+    IntervalAggregator baseline = IntervalAggregator.exact(ALL_ACTIVE_SESSIONS, null);
+    IntervalAggregator current = IntervalAggregator.exact(ALL_ACTIVE_SESSIONS, null);
 
-      for (ActiveSession s : snapshot.activeSessions) {
-        if (!activeSessionFilter.test(s)) {
-          continue;
+    try (ArchivedSnapshotsIterator it =
+        archive.getArchivedSnapshots(ImmutableList.of(baselineInterval, interval))) {
+      while (it.hasNext()) {
+        AshSnapshot snapshot = it.next();
+        if (baselineInterval.contains(snapshot.timestamp)) {
+          baseline.add(snapshot);
         }
-        totalActivity++;
-        activityByEvent.add(s.event);
-        activityByWaitClass.add(s.waitClass);
-
-        sqlMap.computeIfAbsent(s.sqlId, SqlActivity.Builder::new).add(s);
-
-        SessionActivity.Builder sessBuilder = sessionsTable.get(s.sid, s.serialNumber);
-        if (sessBuilder == null) {
-          sessBuilder = new SessionActivity.Builder(s.sid, s.serialNumber, s.username, s.program);
-          sessionsTable.put(s.sid, s.serialNumber, sessBuilder);
+        if (interval.contains(snapshot.timestamp)) {
+          current.add(snapshot);
         }
-        sessBuilder.add(s);
       }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
 
-      Map<String, Double> eventsValues = activityByEvent.entrySet().stream()
-          .collect(toMap(e -> e.getElement(), e -> (double) e.getCount() / snapshot.samples));
-      eventsSnapshots.add(new Snapshot<>(snapshot.timestamp, eventsValues));
+    double baselineSamples = Math.max(1, baseline.getTotalSamples());
+    double samples = Math.max(1, current.getTotalSamples());
 
-      Map<String, Double> waitClassesValues = activityByWaitClass.entrySet().stream()
-          .collect(toMap(e -> e.getElement(), e -> (double) e.getCount() / snapshot.samples));
-      waitClassesSnapshots.add(new Snapshot<>(snapshot.timestamp, waitClassesValues));
-    }
+    Map<String, String> eventsWaitClasses = new HashMap<>(baseline.getEventsWaitClasses());
+    eventsWaitClasses.putAll(current.getEventsWaitClasses());
 
-    Ordering<SqlActivity.Builder> sqlOrdering =
-        Ordering.from((a, b) -> Integer.compare(a.getActivity(), b.getActivity()));
-    List<SqlActivity> topSql = new ArrayList<>();
-    for (SqlActivity.Builder builder : sqlOrdering.greatestOf(sqlMap.values(), topQueriesCount)) {
-      Cursor cursor = builder.getSqlId() == null ? null : cursors.getCursor(builder.getSqlId());
-      String sqlText = cursor == null ? null : cursor.sqlText;
-      String command = cursor == null ? null : cursor.command;
-      topSql.add(builder.build(sqlText, command, totalActivity, totalSamples));
-    }
+    List<ActivityDelta> waitClasses =
+        deltas(baseline.getActivityByWaitClass(), baselineSamples,
+            current.getActivityByWaitClass(), samples, wc -> null, topCount);
+    List<ActivityDelta> events = deltas(baseline.getActivityByEvent(), baselineSamples,
+        current.getActivityByEvent(), samples, eventsWaitClasses::get, topCount);
+
+    List<ActivityDelta> sql = sqlDeltas(baseline, baselineSamples, current, samples, topCount);
+    List<ActivityDelta> sessions =
+        sessionDeltas(baseline, baselineSamples, current, samples, topCount);
+
+    return new IntervalComparison(baselineStart, baselineEnd, start, end,
+        baseline.getTotalActivity() / baselineSamples, current.getTotalActivity() / samples,
+        waitClasses, events, sql, sessions);
+  }
+
+  private List<ActivityDelta> sqlDeltas(IntervalAggregator baseline, double baselineSamples,
+      IntervalAggregator current, double samples, int topCount) {
+    Multiset<String> baselineSql = HashMultiset.create();
+    baseline.getSqlActivity().forEach(b -> baselineSql.add(sqlKey(b), b.getActivity()));
+    Multiset<String> currentSql = HashMultiset.create();
+    current.getSqlActivity().forEach(b -> currentSql.add(sqlKey(b), b.getActivity()));
+    return deltas(baselineSql, baselineSamples, currentSql, samples, sqlId -> {
+      Cursor cursor = UNKNOWN_SQL_ID.equals(sqlId) ? null : cursors.getCursor(sqlId);
+      return cursor == null ? null : cursor.sqlText;
+    }, topCount);
+  }
 
-    Ordering<SessionActivity.Builder> sessionsOrdering =
-        Ordering.from((a, b) -> Integer.compare(a.getActivity(), b.getActivity()));
-    List<SessionActivity> topSessions = new ArrayList<>();
-    for (SessionActivity.Builder builder : sessionsOrdering.greatestOf(sessionsTable.values(),
-            10)) {
-      topSessions.add(builder.build(totalActivity));
+  private static List<ActivityDelta> sessionDeltas(IntervalAggregator baseline,
+      double baselineSamples, IntervalAggregator current, double samples, int topCount) {
+    Map<String, String> sessionsDescriptions = new HashMap<>();
+    Multiset<String> baselineSessions = HashMultiset.create();
+    Multiset<String> currentSessions = HashMultiset.create();
+    for (SessionActivity.Builder b : baseline.getSessionsActivity()) {
+      baselineSessions.add(sessionKey(b), b.getActivity());
+      sessionsDescriptions.put(sessionKey(b), b.getUsername() + " - " + b.getProgram());
     }
+    for (SessionActivity.Builder b : current.getSessionsActivity()) {
+      currentSessions.add(sessionKey(b), b.getActivity());
+      sessionsDescriptions.put(sessionKey(b), b.getUsername() + " - " + b.getProgram());
+    }
+    return deltas(baselineSessions, baselineSamples, currentSessions, samples,
+        sessionsDescriptions::get, topCount);
+  }
+
+  private static String sqlKey(SqlActivity.Builder builder) {
+    return builder.getSqlId() == null ? UNKNOWN_SQL_ID : builder.getSqlId();
+  }
+
+  private static String sessionKey(SessionActivity.Builder builder) {
+    String key = builder.getSessionId() + ',' + builder.getSerialNumber();
+    return builder.getInstanceNumber() > 0 ? key + '@' + builder.getInstanceNumber() : key;
+  }
 
-    return new IntervalActivity(start, end, eventsSnapshots, waitClassesSnapshots, topSql,
-        topSessions);
+  private static List<ActivityDelta> deltas(Multiset<String> baseline, double baselineSamples,
+      Multiset<String> current, double samples, Function<String, String> description,
+      int topCount) {
+    Ordering<ActivityDelta> ordering =
+        Ordering.from((a, b) -> Double.compare(Math.abs(a.delta), Math.abs(b.delta)));
+    List<ActivityDelta> deltas = Sets.union(baseline.elementSet(), current.elementSet()).stream()
+        .map(key -> new ActivityDelta(key, null, baseline.count(key) / baselineSamples,
+            current.count(key) / samples))
+        .collect(toList());
+    return ordering.greatestOf(deltas, topCount).stream()
+        .map(d -> new ActivityDelta(d.key, description.apply(d.key),
+            d.baselineAverageActiveSessions, d.averageActiveSessions))
+        .collect(toList());
+  }
+
+  private IntervalActivity intervalActivity(Iterator<AshSnapshot> snapshots, long start, long end,
+      Predicate<ActiveSession> activeSessionFilter, int topQueriesCount, boolean approximate) {
+    if (topQueriesCount <= 0) {
+      topQueriesCount = 10;
+    }
+    IntervalAggregator aggregator = approximate
+        ? IntervalAggregator.approximate(activeSessionFilter, agent.getWaitClasses(),
+            properties.getArchive().getApproximation())
+        : IntervalAggregator.exact(activeSessionFilter, agent.getWaitClasses());
+    while (snapshots.hasNext()) {
+      AshSnapshot snapshot = snapshots.next();
+      if (snapshot.timestamp < start || snapshot.timestamp > end) {
+        continue;
+      }
+      aggregator.add(snapshot);
+    }
+    return aggregator.build(start, end, topQueriesCount, cursors::getCursor);
   }
 }
@@ -3,92 +3,304 @@ package br.com.cas10.oraman.agent.ash;
 import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
-import br.com.cas10.oraman.oracle.Sessions;
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.agent.ash.AshArchive.ArchivedSnapshotsIterator;
+import br.com.cas10.oraman.oracle.DatabaseSystem;
+import br.com.cas10.oraman.oracle.SessionSampler;
 import br.com.cas10.oraman.oracle.Waits;
 import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.oracle.data.CpuTimes;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.target.Targets;
 import br.com.cas10.oraman.util.Buffer;
+import br.com.cas10.oraman.util.BufferSlice;
+import br.com.cas10.oraman.util.PipelineStage;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
-import java.util.ArrayList;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.LongConsumer;
 import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
 
+/**
+ * Samples the active sessions and summarizes the samples in snapshots.
+ *
+ * <p>The snapshots cover fixed intervals of the wall clock ({@link #SNAPSHOT_INTERVAL}), whatever
+ * the sampling interval. The samples are taken by {@link SamplingExecutor}, which skips the ticks
+ * that fire while a sample is still being taken, so a snapshot may have fewer samples than the
+ * interval fits. The average active sessions of a snapshot is the activity divided by the samples
+ * actually taken, whose times are recorded in the snapshot.
+ *
+ * <p>If adaptive sampling is enabled, the samples are taken less often while the monitored
+ * database is saturated (see {@link AdaptiveInterval}): the ticks of the sampler that come before
+ * the stretched interval has elapsed are ignored.
+ *
+ * <p>The snapshots of the last hour are kept in the heap. The older ones are moved to a
+ * {@link ColdSnapshotStore}, outside of the heap, until its budget is exhausted. Together, they
+ * serve the queries of the archived activity whose intervals they cover.
+ *
+ * <p>Only the query runs on the sampling tick. The samples go through a pipeline of
+ * {@link PipelineStage}s run by the ingest executor: the samples are encoded in snapshots, which
+ * are fanned out to the memory (with the average active sessions by wait class) and to the
+ * archive.
+ */
 @Component
+@TargetScoped
 class AshAgent {
 
   private static final Logger logger = LoggerFactory.getLogger(AshAgent.class);
 
   @VisibleForTesting
-  static final int SNAPSHOT_SAMPLES = 15;
+  static final long SNAPSHOT_INTERVAL = SECONDS.toMillis(15);
 
-  private static final long SAMPLING_INTERVAL = SECONDS.toMillis(1);
   private static final String CPU_CLASS = "CPU + CPU Wait";
 
+  /** Samples waiting to be encoded (about a minute at the default interval). */
+  private static final int SAMPLES_QUEUE_SIZE = 64;
+  private static final int SNAPSHOTS_QUEUE_SIZE = 16;
+  /**
+   * An hour of snapshots, which the memory buffer holds anyway, so a stalled archive costs only the
+   * entries of the queue before snapshots are lost.
+   */
+  private static final int ARCHIVE_QUEUE_SIZE = (int) (HOURS.toMillis(1) / SNAPSHOT_INTERVAL);
+
   @Autowired
   private AshArchive archive;
   @Autowired
-  private Sessions sessions;
+  private DatabaseSystem databaseSystem;
+  @Autowired
+  @Qualifier("ingest")
+  private Executor ingestExecutor = MoreExecutors.directExecutor();
+  @Autowired
+  private OramanProperties properties;
+  @Autowired
+  private Targets targets;
   @Autowired
-  @Qualifier("ash")
-  private TaskScheduler scheduler;
+  private SamplingExecutor sampler;
+  @Autowired
+  private SessionSampler sessionSampler;
   @Autowired
   private Waits waits;
 
-  private List<String> waitClasses;
+  private SeriesSchema waitClasses;
 
   @PostConstruct
   private void init() {
     ImmutableList.Builder<String> builder = ImmutableList.builder();
-    waitClasses = builder.add(CPU_CLASS).addAll(waits.getWaitClasses()).build();
+    waitClasses = new SeriesSchema(builder.add(CPU_CLASS).addAll(waits.getWaitClasses()).build());
 
-    scheduler.scheduleAtFixedRate(this::run, SAMPLING_INTERVAL);
+    OramanProperties.Ash ash = properties.getAsh();
+    samplingInterval = ash.getSamplingInterval();
+    if (ash.getAdaptiveSampling() && ash.getAdaptiveMaxInterval() > samplingInterval) {
+      adaptiveInterval = new AdaptiveInterval(samplingInterval, ash.getAdaptiveMaxInterval(),
+          ash.getSaturationCpu() / 100d, ash.getSaturationLatency());
+    }
+    if (ash.getColdStorageSize() > 0) {
+      // the budget is shared by all the targets
+      long maxBytes = ash.getColdStorageSize() * 1024L * 1024L / targets.getTargets().size();
+      coldSnapshots = new ColdSnapshotStore(maxBytes);
+    }
+    sampler.schedule("ash", this::run, samplingInterval);
   }
 
   private final Buffer<AshSnapshot> snapshots;
-  private List<ActiveSession> activeSessions = new ArrayList<>();
-  private int samples = 0;
+  /**
+   * Snapshots evicted from the buffer, or {@code null} if disabled.
+   */
+  private ColdSnapshotStore coldSnapshots;
+  /** Average active sessions by wait class of each snapshot (same generations). */
+  private final Buffer<SeriesPoint> waitClassesPoints;
+  private final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
+  /** Only accessed by the encoding stage. */
+  private final SnapshotAccumulator accumulator = new SnapshotAccumulator(SNAPSHOT_INTERVAL);
+
+  private final PipelineStage<Sample> encodeStage;
+  private final PipelineStage<AshSnapshot> storeStage;
+  private final PipelineStage<AshSnapshot> archiveStage;
+
+  // adaptive sampling, only accessed by the sampling task
+  private long samplingInterval;
+  private AdaptiveInterval adaptiveInterval;
+  private long nextSample = 0;
+  private long nextAdjustment = 0;
+  private CpuTimes cpuTimes;
 
   @VisibleForTesting
   AshAgent() {
-    int storageSize = (int) (HOURS.toMillis(1) / (SAMPLING_INTERVAL * SNAPSHOT_SAMPLES));
+    int storageSize = (int) (HOURS.toMillis(1) / SNAPSHOT_INTERVAL);
     snapshots = new Buffer<>(storageSize);
+    waitClassesPoints = new Buffer<>(storageSize);
+
+    // the executor is injected after construction
+    Executor executor = task -> ingestExecutor.execute(task);
+    encodeStage = new PipelineStage<>("ash-encode", SAMPLES_QUEUE_SIZE, executor, this::encode);
+    storeStage = new PipelineStage<>("ash-store", SNAPSHOTS_QUEUE_SIZE, executor, this::store);
+    archiveStage = new PipelineStage<>("ash-archive", ARCHIVE_QUEUE_SIZE, executor,
+        snapshot -> archive.archiveSnapshot(snapshot));
+  }
+
+  private void run() {
+    run(System.currentTimeMillis());
   }
 
   @VisibleForTesting
-  void run() {
-    long timestamp = System.currentTimeMillis();
-    List<ActiveSession> sample = sessions.getActiveSessions();
-
-    synchronized (activeSessions) {
-      activeSessions.addAll(sample);
-      samples++;
-      if (samples == SNAPSHOT_SAMPLES) {
-        AshSnapshot snapshot = new AshSnapshot(timestamp, activeSessions, samples);
-        snapshots.add(snapshot);
-        activeSessions = new ArrayList<>();
-        samples = 0;
-
-        archive.archiveSnapshot(snapshot);
+  void run(long timestamp) {
+    if (timestamp < nextSample) {
+      return;
+    }
+    long queryStart = System.currentTimeMillis();
+    List<ActiveSession> sample = sessionSampler.sample();
+    long latency = System.currentTimeMillis() - queryStart;
+
+    encodeStage.offer(new Sample(timestamp, sample));
+
+    if (adaptiveInterval != null) {
+      adaptiveInterval.addLatency(latency);
+      if (timestamp >= nextAdjustment) {
+        adjustInterval();
+        nextAdjustment = timestamp + SNAPSHOT_INTERVAL;
+      }
+      // tolerates the jitter of the ticks
+      nextSample = timestamp + adaptiveInterval.getInterval() - samplingInterval / 2;
+    }
+  }
+
+  private void adjustInterval() {
+    CpuTimes previous = cpuTimes;
+    cpuTimes = databaseSystem.getCpuTimes();
+    adaptiveInterval.setCpuUtilization(
+        previous == null || cpuTimes == null ? null : cpuTimes.utilizationSince(previous));
+
+    long interval = adaptiveInterval.getInterval();
+    if (adaptiveInterval.adjust() != interval) {
+      logger.info("Sampling interval: {}ms", adaptiveInterval.getInterval());
+    }
+  }
+
+  private void encode(Sample sample) {
+    AshSnapshot snapshot = accumulator.add(sample.timestamp, sample.sessions);
+    if (snapshot != null) {
+      storeStage.offer(snapshot);
+      if (!archiveStage.offer(snapshot)) {
+        logger.error("Snapshot {} not archived, the archive is stalled", snapshot.timestamp);
       }
     }
+  }
 
-    long elapsedTimeMillis = System.currentTimeMillis() - timestamp;
-    if (elapsedTimeMillis > 750) {
-      logger.warn("Execution time: " + elapsedTimeMillis + "ms");
+  private void store(AshSnapshot snapshot) {
+    waitClassesPoints.add(snapshot.waitClassesPoint(waitClasses));
+    AshSnapshot evicted = snapshots.add(snapshot);
+    if (evicted != null && coldSnapshots != null) {
+      coldSnapshots.add(evicted);
     }
+    // the values of the snapshots evicted from the buffer
+    sessionSampler.getDictionary().evictUnusedBefore(snapshot.timestamp - HOURS.toMillis(1));
+
+    long generation = snapshots.getGeneration();
+    listeners.forEach(l -> l.accept(generation));
   }
 
   List<AshSnapshot> getSnapshots() {
     return this.snapshots.toList();
   }
 
-  List<String> getWaitClasses() {
+  /**
+   * Returns the snapshots in memory (in the heap or not) whose timestamps are in
+   * {@code [start, end]}, in chronological order, or {@code null} if the snapshots in memory do not
+   * cover the start of the interval.
+   */
+  ArchivedSnapshotsIterator getSnapshots(long start, long end) {
+    List<AshSnapshot> hot = snapshots.toList();
+    Long oldest = coldSnapshots == null ? null : coldSnapshots.getOldestTimestamp();
+    if (oldest == null) {
+      oldest = hot.isEmpty() ? null : hot.get(0).timestamp;
+    }
+    if (oldest == null || oldest > start) {
+      return null;
+    }
+    // a snapshot evicted from the buffer after the copy is skipped
+    long coldEnd = hot.isEmpty() ? end : Math.min(end, hot.get(0).timestamp - 1);
+    ArchivedSnapshotsIterator cold =
+        coldSnapshots == null ? null : coldSnapshots.getSnapshots(start, coldEnd);
+    Iterator<AshSnapshot> iterator = hot.stream()
+        .filter(s -> s.timestamp >= start && s.timestamp <= end).iterator();
+    if (cold != null) {
+      iterator = Iterators.concat(cold, iterator);
+    }
+    Iterator<AshSnapshot> all = iterator;
+    return new ArchivedSnapshotsIterator() {
+      @Override
+      public boolean hasNext() {
+        return all.hasNext();
+      }
+
+      @Override
+      public AshSnapshot next() {
+        return all.next();
+      }
+
+      @Override
+      public void close() throws IOException {
+        if (cold != null) {
+          cold.close();
+        }
+      }
+    };
+  }
+
+  List<SeriesPoint> getWaitClassesPoints() {
+    return this.waitClassesPoints.toList();
+  }
+
+  BufferSlice<SeriesPoint> getWaitClassesPoints(long since) {
+    return this.waitClassesPoints.since(since);
+  }
+
+  long getGeneration() {
+    return this.snapshots.getGeneration();
+  }
+
+  /**
+   * Registers a listener that receives the generation of each snapshot added to the buffer. The
+   * listener is invoked by the ingest pipeline, so it must not block.
+   */
+  void addSnapshotListener(LongConsumer listener) {
+    listeners.add(listener);
+  }
+
+  SeriesSchema getWaitClasses() {
     return waitClasses;
   }
+
+  /**
+   * Returns the execution statistics of the stages of the ingest pipeline.
+   */
+  List<PipelineStage.Stats> getPipelineStats() {
+    return ImmutableList.of(encodeStage.getStats(), storeStage.getStats(),
+        archiveStage.getStats());
+  }
+
+  private static class Sample {
+
+    final long timestamp;
+    final List<ActiveSession> sessions;
+
+    Sample(long timestamp, List<ActiveSession> sessions) {
+      this.timestamp = timestamp;
+      this.sessions = sessions;
+    }
+  }
 }
@@ -2,8 +2,10 @@ package br.com.cas10.oraman.agent.ash;
 
 import br.com.cas10.oraman.OramanProperties;
 import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.target.TargetContext;
+import br.com.cas10.oraman.target.TargetScoped;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
 import com.google.common.collect.UnmodifiableIterator;
 import com.google.common.io.Closer;
 import java.io.BufferedInputStream;
@@ -18,18 +20,21 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
@@ -40,6 +45,7 @@ import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Component;
 
 @Component
+@TargetScoped
 class AshArchive {
 
   private static final Logger logger = LoggerFactory.getLogger(AshArchive.class);
@@ -60,7 +66,7 @@ class AshArchive {
 
   @Autowired
   AshArchive(OramanProperties properties) {
-    this.archivePath = Paths.get(properties.getArchive().getDir());
+    this.archivePath = TargetContext.archiveDir(properties);
     this.archiveMaxDays = properties.getArchive().getMaxDays();
   }
 
@@ -74,9 +80,7 @@ class AshArchive {
   private String currentFile = null;
 
   synchronized void archiveSnapshot(AshSnapshot snapshot) {
-    ZonedDateTime snapshotDateTime =
-        Instant.ofEpochMilli(snapshot.timestamp).atZone(ZoneId.systemDefault());
-    String snapshotFile = FILENAME_FORMATTER.format(snapshotDateTime);
+    String snapshotFile = fileName(snapshot.timestamp);
     if (!snapshotFile.equals(currentFile)) {
       if (currentFile != null) {
         try {
@@ -93,7 +97,21 @@ class AshArchive {
 
   private void flushBuffer() throws IOException {
     Files.createDirectories(archivePath);
-    Path outPath = archivePath.resolve(currentFile);
+    writeSnapshots(archivePath.resolve(currentFile), buffer);
+  }
+
+  /**
+   * Returns the name of the archive file of the hour that contains the timestamp.
+   */
+  static String fileName(long timestamp) {
+    return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault())
+        .format(FILENAME_FORMATTER);
+  }
+
+  /**
+   * Writes an archive file.
+   */
+  static void writeSnapshots(Path outPath, List<AshSnapshot> buffer) throws IOException {
     try (OutputStream fos = Files.newOutputStream(outPath);
         BufferedOutputStream bos = new BufferedOutputStream(fos);
         ObjectOutputStream oos = new ObjectOutputStream(bos)) {
@@ -107,8 +125,30 @@ class AshArchive {
     }
   }
 
-  ArchivedSnapshotsIterator getArchivedSnapshots(long start, long end, long groupInterval) {
-    return new SnapshotGroupsIterator(archivePath, start, end, groupInterval);
+  ArchivedSnapshotsIterator getArchivedSnapshots(long start, long end, long groupInterval,
+      Predicate<ActiveSession> envelopeFilter) {
+    return new SnapshotGroupsIterator(archivePath, start, end, groupInterval, envelopeFilter);
+  }
+
+  /**
+   * Returns the archived snapshots of the hours that contain the specified intervals, in
+   * chronological order. Each file is read once, even if the intervals overlap.
+   */
+  ArchivedSnapshotsIterator getArchivedSnapshots(Collection<Range<Long>> intervals) {
+    SortedSet<LocalDateTime> hours = new TreeSet<>();
+    for (Range<Long> interval : intervals) {
+      LocalDateTime hour = toHour(interval.lowerEndpoint());
+      LocalDateTime last = toHour(interval.upperEndpoint());
+      for (; !hour.isAfter(last); hour = hour.plusHours(1)) {
+        hours.add(hour);
+      }
+    }
+    return new FileSetSnapshotsIterator(archivePath, hours);
+  }
+
+  private static LocalDateTime toHour(long timeMillis) {
+    return Instant.ofEpochMilli(timeMillis).atZone(ZoneId.systemDefault()).toLocalDateTime()
+        .truncatedTo(ChronoUnit.HOURS);
   }
 
   @VisibleForTesting
@@ -140,18 +180,32 @@ class AshArchive {
 
     private final long end;
     private final long groupInterval;
-    private final FileRangeSnapshotsIterator iterator;
+    private final ArchivedSnapshotsIterator iterator;
+    private final GroupAccumulator groupAccumulator;
 
     private AshSnapshot current;
     private long groupStart;
     private long groupEnd;
-    private List<AshSnapshot> groupMembers = new ArrayList<>();
 
-    SnapshotGroupsIterator(Path archivePath, long start, long end, long groupInterval) {
+    SnapshotGroupsIterator(Path archivePath, long start, long end, long groupInterval,
+        Predicate<ActiveSession> envelopeFilter) {
+      this(new FileRangeSnapshotsIterator(archivePath, toLocalDateTime(start),
+          toLocalDateTime(end).plusHours(1)), start, end, groupInterval, envelopeFilter);
+    }
+
+    /**
+     * Creates an iterator over the groups of the specified snapshots.
+     *
+     * @param iterator the snapshots to group, in chronological order.
+     * @param envelopeFilter the sessions counted in the envelopes of the groups (see
+     *        {@link GroupAccumulator}).
+     */
+    SnapshotGroupsIterator(ArchivedSnapshotsIterator iterator, long start, long end,
+        long groupInterval, Predicate<ActiveSession> envelopeFilter) {
+      this.groupAccumulator = new GroupAccumulator(envelopeFilter);
       this.end = end;
       this.groupInterval = groupInterval;
-      this.iterator = new FileRangeSnapshotsIterator(archivePath, toLocalDateTime(start),
-          toLocalDateTime(end).plusHours(1));
+      this.iterator = iterator;
       this.groupStart = start;
       this.groupEnd = Math.min(end, start + groupInterval);
     }
@@ -178,7 +232,7 @@ class AshArchive {
           current = null;
         } else {
           if (current.timestamp < groupEnd) {
-            groupMembers.add(current);
+            groupAccumulator.add(current);
             current = null;
           } else {
             return buildGroup();
@@ -189,27 +243,9 @@ class AshArchive {
     }
 
     private AshSnapshot buildGroup() {
-      AshSnapshot group;
-      switch (groupMembers.size()) {
-        case 0:
-          group = new AshSnapshot(groupEnd, ImmutableList.of(), 0);
-          break;
-        case 1:
-          group = groupMembers.get(0);
-          break;
-        default:
-          long timestamp = groupMembers.get(groupMembers.size() - 1).timestamp;
-          ImmutableList.Builder<ActiveSession> activeSessions = ImmutableList.builder();
-          int samples = 0;
-          for (AshSnapshot snapshot : groupMembers) {
-            activeSessions.addAll(snapshot.activeSessions);
-            samples += snapshot.samples;
-          }
-          group = new AshSnapshot(timestamp, activeSessions.build(), samples);
-      }
+      AshSnapshot group = groupAccumulator.build(groupEnd);
       groupStart = groupEnd;
       groupEnd = Math.min(end, groupStart + groupInterval);
-      groupMembers.clear();
       return group;
     }
 
@@ -266,6 +302,46 @@ class AshArchive {
     }
   }
 
+  static class FileSetSnapshotsIterator extends UnmodifiableIterator<AshSnapshot>
+      implements ArchivedSnapshotsIterator {
+
+    private final Path archivePath;
+    private final Iterator<LocalDateTime> hours;
+    private ArchivedSnapshotsIterator iterator = EmptyIterator.INSTANCE;
+
+    FileSetSnapshotsIterator(Path archivePath, SortedSet<LocalDateTime> hours) {
+      this.archivePath = archivePath;
+      this.hours = hours.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!iterator.hasNext() && hours.hasNext()) {
+        try {
+          iterator.close();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        iterator =
+            new FileSnapshotsIterator(archivePath.resolve(FILENAME_FORMATTER.format(hours.next())));
+      }
+      return iterator.hasNext();
+    }
+
+    @Override
+    public AshSnapshot next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return iterator.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+      iterator.close();
+    }
+  }
+
   @VisibleForTesting
   static class FileSnapshotsIterator extends UnmodifiableIterator<AshSnapshot>
       implements ArchivedSnapshotsIterator {
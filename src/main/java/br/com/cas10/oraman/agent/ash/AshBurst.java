@@ -0,0 +1,49 @@
+package br.com.cas10.oraman.agent.ash;
+
+/**
+ * A time-boxed capture of the active sessions at a high sampling rate.
+ */
+public class AshBurst {
+
+  public enum StopReason {
+    /** The time box ended. */
+    COMPLETED,
+    /** The sampling overhead crossed the configured threshold. */
+    OVERHEAD,
+    /** Stopped by a user. */
+    STOPPED,
+    /** The application was shut down. */
+    SHUTDOWN
+  }
+
+  /** Start time of the capture, which identifies it. */
+  public final long start;
+  /**
+   * End time of the capture, {@code null} while it is running.
+   */
+  public final Long end;
+  /** Sampling interval (milliseconds). */
+  public final long interval;
+  /** Time box (milliseconds). */
+  public final long duration;
+  public final int samples;
+  /** Percentage of the elapsed time spent running the sampling query. */
+  public final double overhead;
+  /**
+   * Why the capture stopped, {@code null} while it is running.
+   */
+  public final StopReason stopReason;
+  public final boolean active;
+
+  AshBurst(long start, Long end, long interval, long duration, int samples, double overhead,
+      StopReason stopReason) {
+    this.start = start;
+    this.end = end;
+    this.interval = interval;
+    this.duration = duration;
+    this.samples = samples;
+    this.overhead = overhead;
+    this.stopReason = stopReason;
+    this.active = end == null;
+  }
+}
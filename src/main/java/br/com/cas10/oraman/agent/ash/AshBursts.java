@@ -0,0 +1,331 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.agent.ash.AshArchive.ArchivedSnapshotsIterator;
+import br.com.cas10.oraman.agent.ash.AshArchive.SnapshotGroupsIterator;
+import br.com.cas10.oraman.agent.ash.AshBurst.StopReason;
+import br.com.cas10.oraman.oracle.SessionSampler;
+import br.com.cas10.oraman.oracle.SessionSampler.TimedSample;
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.SamplingTask;
+import br.com.cas10.oraman.target.TargetContext;
+import br.com.cas10.oraman.target.TargetScoped;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs burst captures: time-boxed samplings of the active sessions at a higher rate than the
+ * permanent ASH sampling, which is not affected.
+ *
+ * <p>The samples of a capture are summarized in snapshots of one second, kept in memory while the
+ * capture runs and archived (in the format of {@link AshArchive}) in a directory of their own when
+ * it stops, with a retention of their own. At most one capture runs at a time. A capture stops when
+ * its time box ends, when it is stopped by a user, or when the sampling query takes more than the
+ * configured share of its elapsed time.
+ */
+@Component
+@TargetScoped
+public class AshBursts {
+
+  private static final Logger logger = LoggerFactory.getLogger(AshBursts.class);
+
+  @VisibleForTesting
+  static final long SNAPSHOT_INTERVAL = SECONDS.toMillis(1);
+  /** Samples taken before the overhead of a capture is checked. */
+  @VisibleForTesting
+  static final int MIN_OVERHEAD_SAMPLES = 10;
+
+  private static final String INFO_FILE = "burst.properties";
+  private static final Pattern DIRECTORY_PATTERN = Pattern.compile("\\d+");
+
+  @Autowired
+  private SamplingExecutor sampler;
+  @Autowired
+  private TaskScheduler scheduler;
+  @Autowired
+  private SessionSampler sessionSampler;
+
+  @VisibleForTesting
+  Clock clock = Clock.systemDefaultZone();
+
+  private final Path burstsPath;
+  private final int maxDays;
+  private final long minInterval;
+  private final long maxDuration;
+  private final double maxOverhead;
+
+  private Capture capture;
+
+  @Autowired
+  AshBursts(OramanProperties properties) {
+    this.burstsPath = TargetContext.archiveDir(properties).resolve("ash-bursts");
+    this.maxDays = properties.getArchive().getAshBurstsMaxDays();
+    this.minInterval = properties.getAsh().getBurstMinInterval();
+    this.maxDuration = MINUTES.toMillis(properties.getAsh().getBurstMaxDuration());
+    this.maxOverhead = properties.getAsh().getBurstMaxOverhead();
+  }
+
+  @PostConstruct
+  private void init() throws IOException {
+    Files.createDirectories(burstsPath);
+    scheduler.schedule(this::cleanUpArchive, new CronTrigger("0 40 * * * *"));
+  }
+
+  /**
+   * Stops and archives the running capture, if any.
+   */
+  @PreDestroy
+  synchronized void close() {
+    if (capture != null) {
+      stop(capture, StopReason.SHUTDOWN);
+    }
+  }
+
+  /**
+   * Starts a capture.
+   *
+   * @param interval sampling interval (milliseconds).
+   * @param duration time box (milliseconds).
+   * @throws IllegalStateException if a capture is running.
+   */
+  public synchronized AshBurst start(long interval, long duration) {
+    checkArgument(interval >= minInterval && interval <= SNAPSHOT_INTERVAL,
+        "interval must be in [%s, %s]", minInterval, SNAPSHOT_INTERVAL);
+    checkArgument(duration > 0 && duration <= maxDuration, "duration must be in (0, %s]",
+        maxDuration);
+    checkState(capture == null, "A burst capture is running");
+
+    Capture c = new Capture(clock.millis(), interval, duration);
+    capture = c;
+    c.task = sampler.schedule("ash-burst", () -> sample(c), interval);
+    return c.toBurst();
+  }
+
+  /**
+   * Stops the running capture.
+   *
+   * @return the capture stopped, or {@code null} if no capture was running.
+   */
+  public synchronized AshBurst stop() {
+    return capture == null ? null : stop(capture, StopReason.STOPPED);
+  }
+
+  private synchronized AshBurst stop(Capture c, StopReason reason) {
+    if (capture != c) {
+      return null;
+    }
+    capture = null;
+    c.task.cancel();
+    c.end = clock.millis();
+    c.stopReason = reason;
+    AshSnapshot snapshot = c.accumulator.flush();
+    if (snapshot != null) {
+      c.snapshots.add(snapshot);
+    }
+    try {
+      archive(c);
+    } catch (IOException e) {
+      logger.error("Error while archiving a burst capture", e);
+    }
+    return c.toBurst();
+  }
+
+  @VisibleForTesting
+  void sample(Capture c) {
+    long timestamp = clock.millis();
+    if (timestamp >= c.start + c.duration) {
+      stop(c, StopReason.COMPLETED);
+      return;
+    }
+    TimedSample sample = sessionSampler.timedSample();
+    long now = clock.millis();
+
+    synchronized (this) {
+      if (capture != c) {
+        return;
+      }
+      AshSnapshot snapshot = c.accumulator.add(timestamp, sample.sessions);
+      if (snapshot != null) {
+        c.snapshots.add(snapshot);
+      }
+      c.samples++;
+      c.queryNanos += sample.queryNanos;
+      c.overhead = 100d * c.queryNanos / MILLISECONDS.toNanos(Math.max(1, now - c.start));
+      if (c.samples >= MIN_OVERHEAD_SAMPLES && c.overhead > maxOverhead) {
+        logger.warn("Burst capture stopped, sampling overhead: {}%", Math.round(c.overhead));
+        stop(c, StopReason.OVERHEAD);
+      }
+    }
+  }
+
+  private void archive(Capture c) throws IOException {
+    Path path = burstsPath.resolve(Long.toString(c.start));
+    Files.createDirectories(path);
+    Map<String, List<AshSnapshot>> files = new LinkedHashMap<>();
+    for (AshSnapshot snapshot : c.snapshots) {
+      files.computeIfAbsent(AshArchive.fileName(snapshot.timestamp), f -> new ArrayList<>())
+          .add(snapshot);
+    }
+    for (Map.Entry<String, List<AshSnapshot>> e : files.entrySet()) {
+      AshArchive.writeSnapshots(path.resolve(e.getKey()), e.getValue());
+    }
+
+    Properties info = new Properties();
+    info.setProperty("start", Long.toString(c.start));
+    info.setProperty("end", Long.toString(c.end));
+    info.setProperty("interval", Long.toString(c.interval));
+    info.setProperty("duration", Long.toString(c.duration));
+    info.setProperty("samples", Integer.toString(c.samples));
+    info.setProperty("overhead", Double.toString(c.overhead));
+    info.setProperty("stopReason", c.stopReason.name());
+    try (Writer writer = Files.newBufferedWriter(path.resolve(INFO_FILE))) {
+      info.store(writer, null);
+    }
+  }
+
+  /**
+   * Returns the running capture (if any) and the archived captures, most recent first.
+   */
+  public List<AshBurst> getBursts() {
+    List<AshBurst> bursts = new ArrayList<>();
+    synchronized (this) {
+      if (capture != null) {
+        bursts.add(capture.toBurst());
+      }
+    }
+    List<AshBurst> archived = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(burstsPath)) {
+      for (Path path : stream) {
+        AshBurst burst = readBurst(path);
+        if (burst != null) {
+          archived.add(burst);
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Error while listing the burst captures", e);
+    }
+    archived.sort(Comparator.comparingLong((AshBurst b) -> b.start).reversed());
+    bursts.addAll(archived);
+    return bursts;
+  }
+
+  /**
+   * Returns an archived capture, or {@code null}.
+   */
+  public AshBurst getBurst(long start) {
+    return readBurst(burstsPath.resolve(Long.toString(start)));
+  }
+
+  private static AshBurst readBurst(Path path) {
+    Path infoPath = path.resolve(INFO_FILE);
+    if (!DIRECTORY_PATTERN.matcher(path.getFileName().toString()).matches()
+        || !Files.isRegularFile(infoPath)) {
+      return null;
+    }
+    Properties info = new Properties();
+    try (Reader reader = Files.newBufferedReader(infoPath)) {
+      info.load(reader);
+      return new AshBurst(Long.parseLong(info.getProperty("start")),
+          Long.parseLong(info.getProperty("end")), Long.parseLong(info.getProperty("interval")),
+          Long.parseLong(info.getProperty("duration")),
+          Integer.parseInt(info.getProperty("samples")),
+          Double.parseDouble(info.getProperty("overhead")),
+          StopReason.valueOf(info.getProperty("stopReason")));
+    } catch (IOException | RuntimeException e) {
+      logger.error("Error while reading " + infoPath, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns the archived snapshots of a capture.
+   *
+   * @see AshArchive#getArchivedSnapshots(long, long, long, Predicate)
+   */
+  ArchivedSnapshotsIterator getArchivedSnapshots(long burst, long start, long end,
+      long groupInterval, Predicate<ActiveSession> envelopeFilter) {
+    return new SnapshotGroupsIterator(burstsPath.resolve(Long.toString(burst)), start, end,
+        groupInterval, envelopeFilter);
+  }
+
+  @VisibleForTesting
+  void cleanUpArchive() {
+    long firstAllowedStart = clock.millis() - DAYS.toMillis(maxDays);
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(burstsPath)) {
+      for (Path path : stream) {
+        String fileName = path.getFileName().toString();
+        if (!Files.isDirectory(path) || !DIRECTORY_PATTERN.matcher(fileName).matches()) {
+          continue;
+        }
+        if (Long.parseLong(fileName) < firstAllowedStart) {
+          logger.info(String.format("Removing burst capture: %s",
+              path.normalize().toAbsolutePath().toString()));
+          try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+              Files.delete(file);
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.error("Error while cleaning up the burst captures", e);
+    }
+  }
+
+  @VisibleForTesting
+  static final class Capture {
+
+    final long start;
+    final long interval;
+    final long duration;
+    final SnapshotAccumulator accumulator = new SnapshotAccumulator(SNAPSHOT_INTERVAL);
+    final List<AshSnapshot> snapshots = new ArrayList<>();
+    SamplingTask task;
+    int samples;
+    long queryNanos;
+    double overhead;
+    Long end;
+    StopReason stopReason;
+
+    Capture(long start, long interval, long duration) {
+      this.start = start;
+      this.interval = interval;
+      this.duration = duration;
+    }
+
+    AshBurst toBurst() {
+      return new AshBurst(start, end, interval, duration, samples, overhead, stopReason);
+    }
+  }
+}
@@ -1,37 +1,108 @@
 package br.com.cas10.oraman.agent.ash;
 
+import static java.util.stream.Collectors.toList;
+
 import br.com.cas10.oraman.oracle.data.ActiveSession;
-import br.com.cas10.oraman.util.Snapshot;
-import com.google.common.collect.HashMultiset;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Multiset;
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Active sessions of the samples taken in an interval.
+ *
+ * <p>The active sessions are run-length encoded: the consecutive samples in which a session was in
+ * the same state are stored as a single {@link SessionRun}, weighted by its count.
+ */
 class AshSnapshot implements Serializable {
 
   private static final long serialVersionUID = 5152182232054887467L;
 
   final long timestamp;
-  final List<ActiveSession> activeSessions;
+  final List<SessionRun> runs;
   final int samples;
-  final Snapshot<Double> waitClassesSnapshot;
+  /**
+   * Times at which the samples were taken, or {@code null} if unknown (e.g., snapshots archived by
+   * older versions).
+   */
+  final long[] sampleTimes;
+  /**
+   * Active sessions of the snapshots archived before the run-length encoding, converted to runs
+   * when read ({@code null} otherwise).
+   */
+  private final List<ActiveSession> activeSessions;
+  /**
+   * Peaks of the snapshots merged into this one, or {@code null} if the snapshot was not merged
+   * (see {@link GroupAccumulator}). Not archived.
+   */
+  final transient AasEnvelope envelope;
+
+  AshSnapshot(long timestamp, List<SessionRun> runs, int samples) {
+    this(timestamp, runs, samples, null);
+  }
 
-  AshSnapshot(long timestamp, List<ActiveSession> activeSessions, int samples) {
+  AshSnapshot(long timestamp, List<SessionRun> runs, int samples, AasEnvelope envelope) {
     this.timestamp = timestamp;
-    this.activeSessions = ImmutableList.copyOf(activeSessions);
+    this.runs = ImmutableList.copyOf(runs);
     this.samples = samples;
+    this.sampleTimes = null;
+    this.activeSessions = null;
+    this.envelope = envelope;
+  }
+
+  AshSnapshot(long timestamp, List<SessionRun> runs, long[] sampleTimes) {
+    this.timestamp = timestamp;
+    this.runs = ImmutableList.copyOf(runs);
+    this.samples = sampleTimes.length;
+    this.sampleTimes = sampleTimes.clone();
+    this.activeSessions = null;
+    this.envelope = null;
+  }
 
-    Multiset<String> activityByWaitClass = HashMultiset.create();
-    activeSessions.forEach(as -> activityByWaitClass.add(as.waitClass));
+  /**
+   * Creates a snapshot whose active sessions are not encoded, each one being a run of a single
+   * sample.
+   */
+  static AshSnapshot ofSessions(long timestamp, List<ActiveSession> activeSessions, int samples) {
+    return new AshSnapshot(timestamp,
+        activeSessions.stream().map(s -> new SessionRun(s, 0, 1)).collect(toList()), samples);
+  }
 
-    Map<String, Double> values = new HashMap<>();
-    for (Multiset.Entry<String> entry : activityByWaitClass.entrySet()) {
-      values.put(entry.getElement(), (double) entry.getCount() / samples);
+  private Object readResolve() {
+    if (runs != null) {
+      return this;
     }
+    AshSnapshot snapshot = ofSessions(timestamp, activeSessions, samples);
+    return sampleTimes == null ? snapshot
+        : new AshSnapshot(timestamp, snapshot.runs, sampleTimes);
+  }
 
-    this.waitClassesSnapshot = new Snapshot<>(timestamp, values);
+  /**
+   * Returns the number of active sessions in all the samples.
+   */
+  int getActivity() {
+    int activity = 0;
+    for (SessionRun run : runs) {
+      activity += run.count;
+    }
+    return activity;
+  }
+
+  /**
+   * Returns the average active sessions of each wait class of the schema.
+   */
+  SeriesPoint waitClassesPoint(SeriesSchema waitClasses) {
+    double[] values = new double[waitClasses.size()];
+    for (SessionRun run : runs) {
+      int index = waitClasses.indexOf(run.session.waitClass);
+      if (index >= 0) {
+        values[index] += run.count;
+      }
+    }
+    for (int i = 0; i < values.length; i++) {
+      values[i] /= samples;
+    }
+    return new SeriesPoint(timestamp, values);
   }
 }
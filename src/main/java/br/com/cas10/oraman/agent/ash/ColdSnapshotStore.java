@@ -0,0 +1,333 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import br.com.cas10.oraman.agent.ash.AshArchive.ArchivedSnapshotsIterator;
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Snapshots kept in memory outside of the Java heap.
+ *
+ * <p>Each snapshot is encoded in a compact binary format (not Java serialization, whose class
+ * descriptors would be repeated in each snapshot), compressed and appended to a direct buffer, so
+ * the heap only holds a small entry per snapshot. The snapshots are decoded when read.
+ *
+ * <p>The budget is split into segments of a fixed size, allocated when first needed and filled one
+ * after the other. Once the budget is allocated, the oldest segment is reused: its snapshots are
+ * evicted and it is filled again, so the direct memory of the store never exceeds the budget and is
+ * never released. A snapshot larger than a segment is not stored. Thread-safe.
+ */
+class ColdSnapshotStore {
+
+  @VisibleForTesting
+  static final int SEGMENT_BYTES = 4 * 1024 * 1024;
+
+  private static final int NULL = -1;
+
+  private final int segmentBytes;
+  private final int maxSegments;
+
+  /** Allocated segments, reused in a circle. */
+  private final List<Segment> segments = new ArrayList<>();
+  private final Deque<Entry> entries = new ArrayDeque<>();
+  private int current = -1;
+  private long bytes;
+  private long rejected;
+
+  /**
+   * Creates a store of segments of {@link #SEGMENT_BYTES} (or of the budget, if smaller).
+   *
+   * @param maxBytes the budget of the direct buffers.
+   */
+  ColdSnapshotStore(long maxBytes) {
+    this(maxBytes, (int) Math.min(maxBytes, SEGMENT_BYTES));
+  }
+
+  @VisibleForTesting
+  ColdSnapshotStore(long maxBytes, int segmentBytes) {
+    checkArgument(segmentBytes > 0 && maxBytes >= segmentBytes);
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxBytes / segmentBytes);
+  }
+
+  /**
+   * Adds a snapshot, more recent than the snapshots in the store.
+   */
+  void add(AshSnapshot snapshot) {
+    byte[] data = encode(snapshot);
+    synchronized (this) {
+      if (data.length > segmentBytes) {
+        rejected++;
+        return;
+      }
+      if (current < 0 || segments.get(current).buffer.remaining() < data.length) {
+        nextSegment();
+      }
+      Segment segment = segments.get(current);
+      int offset = segment.buffer.position();
+      segment.buffer.put(data);
+      entries.addLast(new Entry(snapshot.timestamp, segment, segment.generation, offset,
+          data.length));
+      bytes += data.length;
+    }
+  }
+
+  private void nextSegment() {
+    current = (current + 1) % maxSegments;
+    if (current == segments.size()) {
+      segments.add(new Segment(ByteBuffer.allocateDirect(segmentBytes)));
+      return;
+    }
+    // the oldest segment, whose snapshots are the oldest ones
+    Segment segment = segments.get(current);
+    while (!entries.isEmpty() && entries.getFirst().segment == segment) {
+      bytes -= entries.removeFirst().length;
+    }
+    segment.buffer.clear();
+    segment.generation++;
+  }
+
+  /**
+   * Returns the snapshots whose timestamps are in {@code [start, end]}, in chronological order,
+   * decoded one at a time. The snapshots evicted while iterating are skipped.
+   */
+  ArchivedSnapshotsIterator getSnapshots(long start, long end) {
+    List<Entry> selected = new ArrayList<>();
+    synchronized (this) {
+      for (Entry entry : entries) {
+        if (entry.timestamp >= start && entry.timestamp <= end) {
+          selected.add(entry);
+        }
+      }
+    }
+    return new DecodingIterator(selected.iterator());
+  }
+
+  /**
+   * Returns the bytes of an entry, or {@code null} if its segment was reused.
+   */
+  private synchronized byte[] read(Entry entry) {
+    if (entry.segment.generation != entry.generation) {
+      return null;
+    }
+    byte[] data = new byte[entry.length];
+    ByteBuffer buffer = entry.segment.buffer.duplicate();
+    buffer.position(entry.offset);
+    buffer.get(data);
+    return data;
+  }
+
+  /**
+   * Returns the timestamp of the oldest snapshot, or {@code null} if the store is empty.
+   */
+  synchronized Long getOldestTimestamp() {
+    return entries.isEmpty() ? null : entries.getFirst().timestamp;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the total size of the stored snapshots.
+   */
+  synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the total size of the direct buffers allocated.
+   */
+  synchronized long getAllocatedBytes() {
+    return (long) segments.size() * segmentBytes;
+  }
+
+  /**
+   * Returns the number of snapshots not stored because they were larger than a segment.
+   */
+  synchronized long getRejected() {
+    return rejected;
+  }
+
+  @VisibleForTesting
+  static byte[] encode(AshSnapshot snapshot) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataOutputStream data = new DataOutputStream(new DeflaterOutputStream(out))) {
+      Map<String, Integer> strings = new HashMap<>();
+      data.writeLong(snapshot.timestamp);
+      data.writeInt(snapshot.samples);
+      if (snapshot.sampleTimes == null) {
+        data.writeInt(NULL);
+      } else {
+        data.writeInt(snapshot.sampleTimes.length);
+        for (long time : snapshot.sampleTimes) {
+          data.writeLong(time);
+        }
+      }
+      data.writeInt(snapshot.runs.size());
+      for (SessionRun run : snapshot.runs) {
+        data.writeInt(run.start);
+        data.writeInt(run.count);
+        ActiveSession s = run.session;
+        data.writeInt(s.instanceNumber);
+        writeString(data, strings, s.sid);
+        writeString(data, strings, s.serialNumber);
+        writeString(data, strings, s.username);
+        writeString(data, strings, s.program);
+        writeString(data, strings, s.sqlId);
+        writeString(data, strings, s.sqlChildNumber);
+        writeString(data, strings, s.event);
+        writeString(data, strings, s.waitClass);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Writes a string once per snapshot: its later occurrences are written as the index of the
+   * first one.
+   */
+  private static void writeString(DataOutputStream data, Map<String, Integer> strings,
+      String value) throws IOException {
+    if (value == null) {
+      data.writeInt(NULL);
+      return;
+    }
+    Integer index = strings.get(value);
+    if (index != null) {
+      data.writeInt(index);
+      return;
+    }
+    data.writeInt(strings.size());
+    data.writeUTF(value);
+    strings.put(value, strings.size());
+  }
+
+  @VisibleForTesting
+  static AshSnapshot decode(byte[] bytes) {
+    try (DataInputStream data = new DataInputStream(
+        new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+      List<String> strings = new ArrayList<>();
+      long timestamp = data.readLong();
+      int samples = data.readInt();
+      int sampleTimesLength = data.readInt();
+      long[] sampleTimes = null;
+      if (sampleTimesLength != NULL) {
+        sampleTimes = new long[sampleTimesLength];
+        for (int i = 0; i < sampleTimes.length; i++) {
+          sampleTimes[i] = data.readLong();
+        }
+      }
+      int size = data.readInt();
+      ImmutableList.Builder<SessionRun> runs = ImmutableList.builder();
+      for (int i = 0; i < size; i++) {
+        final int start = data.readInt();
+        final int count = data.readInt();
+        ActiveSession s = new ActiveSession();
+        s.instanceNumber = data.readInt();
+        s.sid = readString(data, strings);
+        s.serialNumber = readString(data, strings);
+        s.username = readString(data, strings);
+        s.program = readString(data, strings);
+        s.sqlId = readString(data, strings);
+        s.sqlChildNumber = readString(data, strings);
+        s.event = readString(data, strings);
+        s.waitClass = readString(data, strings);
+        runs.add(new SessionRun(s, start, count));
+      }
+      return sampleTimes == null ? new AshSnapshot(timestamp, runs.build(), samples)
+          : new AshSnapshot(timestamp, runs.build(), sampleTimes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String readString(DataInputStream data, List<String> strings)
+      throws IOException {
+    int index = data.readInt();
+    if (index == NULL) {
+      return null;
+    }
+    if (index < strings.size()) {
+      return strings.get(index);
+    }
+    String value = data.readUTF();
+    strings.add(value);
+    return value;
+  }
+
+  private static class Segment {
+
+    final ByteBuffer buffer;
+    /** Incremented each time the segment is reused. */
+    long generation;
+
+    Segment(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+  }
+
+  private static class Entry {
+
+    final long timestamp;
+    final Segment segment;
+    /** Generation of the segment when the snapshot was written. */
+    final long generation;
+    final int offset;
+    final int length;
+
+    Entry(long timestamp, Segment segment, long generation, int offset, int length) {
+      this.timestamp = timestamp;
+      this.segment = segment;
+      this.generation = generation;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  private class DecodingIterator extends AbstractIterator<AshSnapshot>
+      implements ArchivedSnapshotsIterator {
+
+    private final Iterator<Entry> entries;
+
+    DecodingIterator(Iterator<Entry> entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    protected AshSnapshot computeNext() {
+      while (entries.hasNext()) {
+        byte[] data = read(entries.next());
+        if (data != null) {
+          return decode(data);
+        }
+      }
+      return endOfData();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package br.com.cas10.oraman.agent.ash;
+
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedHashMultiset;
+import com.google.common.collect.Multiset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Merges the snapshots of a group into a single snapshot, one snapshot at a time.
+ *
+ * <p>The runs of the members are folded into a single run per session state (see
+ * {@link SessionRun#sameState(ActiveSession, ActiveSession)}), counting the samples of the state
+ * in the whole group. The memory held by a group depends on the distinct states of its sessions,
+ * not on the number of snapshots it spans, and the members are not kept. The runs of a merged
+ * snapshot are not positioned in its samples (their starts are {@code 0}), nor are the times of
+ * its samples recorded.
+ *
+ * <p>The average active sessions by wait class of each member are recorded in the same pass, so the
+ * merged snapshot carries the {@link AasEnvelope} of the group. This takes a value per member and
+ * active wait class, released when the group is built. Only the sessions accepted by the filter of
+ * the accumulator are counted in the envelope, which must thus be the filter the merged snapshot is
+ * aggregated with (e.g., the sessions of an instance).
+ */
+class GroupAccumulator {
+
+  private final Predicate<ActiveSession> envelopeFilter;
+
+  private final Multiset<StateKey> counts = LinkedHashMultiset.create();
+  /** Average active sessions of the members, by wait class (zeros are omitted). */
+  private final Map<String, List<Double>> memberValues = new HashMap<>();
+  private final Multiset<String> memberActivity = HashMultiset.create();
+  /** Members with samples (i.e., those in the envelope). */
+  private int sampledMembers;
+
+  /** The only member so far, returned as it is if no other member is added. */
+  private AshSnapshot single;
+  private int members;
+  private int samples;
+  private long timestamp;
+
+  /**
+   * Creates an accumulator whose envelopes count the sessions accepted by the filter.
+   */
+  GroupAccumulator(Predicate<ActiveSession> envelopeFilter) {
+    this.envelopeFilter = envelopeFilter;
+  }
+
+  void add(AshSnapshot snapshot) {
+    members++;
+    samples += snapshot.samples;
+    timestamp = snapshot.timestamp;
+    if (members == 1) {
+      single = snapshot;
+      return;
+    }
+    if (single != null) {
+      fold(single);
+      single = null;
+    }
+    fold(snapshot);
+  }
+
+  private void fold(AshSnapshot snapshot) {
+    for (SessionRun run : snapshot.runs) {
+      counts.add(new StateKey(run.session), run.count);
+      if (run.session.waitClass != null && envelopeFilter.test(run.session)) {
+        memberActivity.add(run.session.waitClass, run.count);
+      }
+    }
+    if (snapshot.samples > 0) {
+      sampledMembers++;
+      for (Multiset.Entry<String> e : memberActivity.entrySet()) {
+        memberValues.computeIfAbsent(e.getElement(), k -> new ArrayList<>())
+            .add((double) e.getCount() / snapshot.samples);
+      }
+    }
+    memberActivity.clear();
+  }
+
+  private AasEnvelope envelope() {
+    Map<String, Double> max = new HashMap<>();
+    Map<String, Double> p95 = new HashMap<>();
+    // nearest rank, counting the members in which the wait class was not active
+    int rank = (int) Math.ceil(AasEnvelope.PERCENTILE * sampledMembers);
+    for (Map.Entry<String, List<Double>> e : memberValues.entrySet()) {
+      List<Double> values = e.getValue();
+      Collections.sort(values);
+      int zeros = sampledMembers - values.size();
+      max.put(e.getKey(), values.get(values.size() - 1));
+      p95.put(e.getKey(), rank <= zeros ? 0 : values.get(rank - zeros - 1));
+    }
+    return new AasEnvelope(max, p95);
+  }
+
+  /**
+   * Returns the merged snapshot and clears the accumulator.
+   *
+   * @param emptyTimestamp the timestamp of the snapshot of an empty group.
+   */
+  AshSnapshot build(long emptyTimestamp) {
+    AshSnapshot group;
+    if (members == 0) {
+      group = new AshSnapshot(emptyTimestamp, ImmutableList.of(), 0);
+    } else if (single != null) {
+      group = single;
+    } else {
+      ImmutableList.Builder<SessionRun> runs = ImmutableList.builder();
+      for (Multiset.Entry<StateKey> e : counts.entrySet()) {
+        runs.add(new SessionRun(e.getElement().session, 0, e.getCount()));
+      }
+      group = new AshSnapshot(timestamp, runs.build(), samples, envelope());
+    }
+    counts.clear();
+    memberValues.clear();
+    sampledMembers = 0;
+    single = null;
+    members = 0;
+    samples = 0;
+    return group;
+  }
+
+  private static final class StateKey {
+
+    final ActiveSession session;
+
+    StateKey(ActiveSession session) {
+      this.session = session;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof StateKey && SessionRun.sameState(session, ((StateKey) obj).session);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(session.instanceNumber, session.sid, session.serialNumber,
+          session.sqlId, session.event);
+    }
+  }
+}
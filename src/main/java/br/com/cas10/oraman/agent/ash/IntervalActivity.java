@@ -1,5 +1,6 @@
 package br.com.cas10.oraman.agent.ash;
 
+import br.com.cas10.oraman.util.SeriesPoint;
 import br.com.cas10.oraman.util.Snapshot;
 import com.google.common.collect.ImmutableList;
 import java.util.List;
@@ -9,18 +10,42 @@ public class IntervalActivity {
   public final long intervalStart;
   public final long intervalEnd;
   public final List<Snapshot<Double>> eventsSnapshots;
-  public final List<Snapshot<Double>> waitClassesSnapshots;
+  /**
+   * Average active sessions by wait class (see {@link Ash#getWaitClasses()}).
+   */
+  public final List<SeriesPoint> waitClassesSnapshots;
+  /**
+   * Maximum average active sessions by wait class of the snapshots of each group (see
+   * {@link AasEnvelope}), with the same timestamps as {@link #waitClassesSnapshots}.
+   */
+  public final List<SeriesPoint> waitClassesMax;
+  /** 95th percentile of the average active sessions by wait class of the snapshots of a group. */
+  public final List<SeriesPoint> waitClassesP95;
   public final List<SqlActivity> topSql;
   public final List<SessionActivity> topSessions;
+  /** If the top lists and the distinct counts were computed by fixed memory approximations. */
+  public final boolean approximate;
+  public final long distinctSql;
+  public final long distinctSessions;
+  /** Upper bound of the error of the activity of the top SQL and sessions (approximate mode). */
+  public final long maxActivityError;
 
   IntervalActivity(long intervalStart, long intervalEnd, List<Snapshot<Double>> eventsSnapshots,
-      List<Snapshot<Double>> waitClassesSnapshots, List<SqlActivity> topSql,
-      List<SessionActivity> topSessions) {
+      List<SeriesPoint> waitClassesSnapshots, List<SeriesPoint> waitClassesMax,
+      List<SeriesPoint> waitClassesP95, List<SqlActivity> topSql,
+      List<SessionActivity> topSessions, boolean approximate, long distinctSql,
+      long distinctSessions, long maxActivityError) {
     this.intervalStart = intervalStart;
     this.intervalEnd = intervalEnd;
     this.eventsSnapshots = ImmutableList.copyOf(eventsSnapshots);
     this.waitClassesSnapshots = ImmutableList.copyOf(waitClassesSnapshots);
+    this.waitClassesMax = ImmutableList.copyOf(waitClassesMax);
+    this.waitClassesP95 = ImmutableList.copyOf(waitClassesP95);
     this.topSql = ImmutableList.copyOf(topSql);
     this.topSessions = ImmutableList.copyOf(topSessions);
+    this.approximate = approximate;
+    this.distinctSql = distinctSql;
+    this.distinctSessions = distinctSessions;
+    this.maxActivityError = maxActivityError;
   }
 }
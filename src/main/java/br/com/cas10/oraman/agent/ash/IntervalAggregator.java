@@ -0,0 +1,265 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.stream.Collectors.toMap;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.oracle.data.Cursor;
+import br.com.cas10.oraman.util.HyperLogLog;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
+import br.com.cas10.oraman.util.Snapshot;
+import br.com.cas10.oraman.util.SpaceSaving;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Ordering;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Accumulates the activity of a sequence of ASH snapshots.
+ *
+ * <p>Snapshots are added one at a time, so the same pass over the data can feed several
+ * aggregators (e.g., two intervals being compared).
+ */
+class IntervalAggregator {
+
+  private static final Ordering<SqlActivity.Builder> SQL_ORDERING =
+      Ordering.from((a, b) -> Integer.compare(a.getActivity(), b.getActivity()));
+  private static final Ordering<SessionActivity.Builder> SESSIONS_ORDERING =
+      Ordering.from((a, b) -> Integer.compare(a.getActivity(), b.getActivity()));
+
+  private final Predicate<ActiveSession> activeSessionFilter;
+  private final SeriesSchema waitClasses;
+  private final boolean keepSnapshots;
+  private final boolean approximate;
+
+  private final SpaceSaving<String, SqlActivity.Builder> sqlActivity;
+  private final SpaceSaving<SessionKey, SessionActivity.Builder> sessionsActivity;
+  private final HyperLogLog distinctSql;
+  private final HyperLogLog distinctSessions;
+
+  private final Multiset<String> activityByEvent = HashMultiset.create();
+  private final Multiset<String> activityByWaitClass = HashMultiset.create();
+  private final Map<String, String> eventsWaitClasses = new HashMap<>();
+  private final List<Snapshot<Double>> eventsSnapshots = new ArrayList<>();
+  private final List<SeriesPoint> waitClassesSnapshots = new ArrayList<>();
+  private final List<SeriesPoint> waitClassesMax = new ArrayList<>();
+  private final List<SeriesPoint> waitClassesP95 = new ArrayList<>();
+
+  private int totalSamples = 0;
+  private int totalActivity = 0;
+
+  private IntervalAggregator(Predicate<ActiveSession> activeSessionFilter,
+      SeriesSchema waitClasses, OramanProperties.Approximation approximation) {
+    this.activeSessionFilter = checkNotNull(activeSessionFilter);
+    this.waitClasses = waitClasses;
+    this.keepSnapshots = waitClasses != null;
+    this.approximate = approximation != null;
+    if (approximate) {
+      sqlActivity = new SpaceSaving<>(approximation.getTopCapacity(), SqlActivity.Builder::new);
+      sessionsActivity =
+          new SpaceSaving<>(approximation.getTopCapacity(), SessionKey::newBuilder);
+      distinctSql = new HyperLogLog(approximation.getDistinctPrecision());
+      distinctSessions = new HyperLogLog(approximation.getDistinctPrecision());
+    } else {
+      sqlActivity = SpaceSaving.unbounded(SqlActivity.Builder::new);
+      sessionsActivity = SpaceSaving.unbounded(SessionKey::newBuilder);
+      distinctSql = null;
+      distinctSessions = null;
+    }
+  }
+
+  /**
+   * Creates an aggregator that keeps every SQL statement and session seen.
+   *
+   * @param waitClasses schema of the per snapshot activity by wait class, or {@code null} if the
+   *        per snapshot activity (events and wait classes) is not needed.
+   */
+  static IntervalAggregator exact(Predicate<ActiveSession> activeSessionFilter,
+      SeriesSchema waitClasses) {
+    return new IntervalAggregator(activeSessionFilter, waitClasses, null);
+  }
+
+  /**
+   * Creates an aggregator whose top lists and distinct counts are fixed memory approximations.
+   */
+  static IntervalAggregator approximate(Predicate<ActiveSession> activeSessionFilter,
+      SeriesSchema waitClasses, OramanProperties.Approximation approximation) {
+    return new IntervalAggregator(activeSessionFilter, checkNotNull(waitClasses),
+        checkNotNull(approximation));
+  }
+
+  void add(AshSnapshot snapshot) {
+    totalSamples += snapshot.samples;
+
+    Multiset<String> snapshotActivityByEvent = HashMultiset.create();
+    Multiset<String> snapshotActivityByWaitClass = HashMultiset.create();
+
+    for (SessionRun run : snapshot.runs) {
+      ActiveSession s = run.session;
+      if (!activeSessionFilter.test(s)) {
+        continue;
+      }
+      int count = run.count;
+      totalActivity += count;
+      snapshotActivityByEvent.add(s.event, count);
+      snapshotActivityByWaitClass.add(s.waitClass, count);
+      eventsWaitClasses.putIfAbsent(s.event, s.waitClass);
+
+      sqlActivity.offer(s.sqlId, count).add(s, count);
+      sessionsActivity.offer(new SessionKey(s), count).add(s, count);
+      if (approximate) {
+        distinctSql.add(s.sqlId);
+        distinctSessions.add(s.instanceNumber + ":" + s.sid + ',' + s.serialNumber);
+      }
+    }
+
+    for (Multiset.Entry<String> e : snapshotActivityByEvent.entrySet()) {
+      activityByEvent.add(e.getElement(), e.getCount());
+    }
+    for (Multiset.Entry<String> e : snapshotActivityByWaitClass.entrySet()) {
+      activityByWaitClass.add(e.getElement(), e.getCount());
+    }
+    if (!keepSnapshots) {
+      return;
+    }
+
+    Map<String, Double> eventsValues = snapshotActivityByEvent.entrySet().stream()
+        .collect(toMap(e -> e.getElement(), e -> (double) e.getCount() / snapshot.samples));
+    eventsSnapshots.add(new Snapshot<>(snapshot.timestamp, eventsValues));
+
+    double[] waitClassesValues = new double[waitClasses.size()];
+    for (Multiset.Entry<String> e : snapshotActivityByWaitClass.entrySet()) {
+      int index = waitClasses.indexOf(e.getElement());
+      if (index >= 0) {
+        waitClassesValues[index] = (double) e.getCount() / snapshot.samples;
+      }
+    }
+    waitClassesSnapshots.add(new SeriesPoint(snapshot.timestamp, waitClassesValues));
+
+    // the peaks of a snapshot that was not merged are its values
+    AasEnvelope envelope = snapshot.envelope;
+    waitClassesMax.add(new SeriesPoint(snapshot.timestamp,
+        envelope == null ? waitClassesValues : envelopeValues(envelope.max)));
+    waitClassesP95.add(new SeriesPoint(snapshot.timestamp,
+        envelope == null ? waitClassesValues : envelopeValues(envelope.p95)));
+  }
+
+  private double[] envelopeValues(Map<String, Double> peaks) {
+    double[] values = new double[waitClasses.size()];
+    for (Map.Entry<String, Double> e : peaks.entrySet()) {
+      int index = waitClasses.indexOf(e.getKey());
+      if (index >= 0) {
+        values[index] = e.getValue();
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Builds the activity data of the interval.
+   *
+   * @param cursorLookup returns the cursor of a SQL ID (or {@code null}).
+   */
+  IntervalActivity build(long start, long end, int topQueriesCount,
+      Function<String, Cursor> cursorLookup) {
+    List<SqlActivity> topSql = new ArrayList<>();
+    for (SqlActivity.Builder builder : SQL_ORDERING.greatestOf(sqlActivity.values(),
+        topQueriesCount)) {
+      Cursor cursor = builder.getSqlId() == null ? null : cursorLookup.apply(builder.getSqlId());
+      String sqlText = cursor == null ? null : cursor.sqlText;
+      String command = cursor == null ? null : cursor.command;
+      topSql.add(builder.build(sqlText, command, totalActivity, totalSamples));
+    }
+
+    List<SessionActivity> topSessions = new ArrayList<>();
+    for (SessionActivity.Builder builder : SESSIONS_ORDERING.greatestOf(sessionsActivity.values(),
+        10)) {
+      topSessions.add(builder.build(totalActivity));
+    }
+
+    if (approximate) {
+      return new IntervalActivity(start, end, eventsSnapshots, waitClassesSnapshots,
+          waitClassesMax, waitClassesP95, topSql, topSessions, true, distinctSql.estimate(),
+          distinctSessions.estimate(),
+          Math.max(sqlActivity.maxError(), sessionsActivity.maxError()));
+    }
+    return new IntervalActivity(start, end, eventsSnapshots, waitClassesSnapshots, waitClassesMax,
+        waitClassesP95, topSql, topSessions, false, sqlActivity.size(), sessionsActivity.size(), 0);
+  }
+
+  int getTotalSamples() {
+    return totalSamples;
+  }
+
+  int getTotalActivity() {
+    return totalActivity;
+  }
+
+  Multiset<String> getActivityByEvent() {
+    return activityByEvent;
+  }
+
+  Multiset<String> getActivityByWaitClass() {
+    return activityByWaitClass;
+  }
+
+  /**
+   * Returns the wait class of each event seen.
+   */
+  Map<String, String> getEventsWaitClasses() {
+    return eventsWaitClasses;
+  }
+
+  Collection<SqlActivity.Builder> getSqlActivity() {
+    return sqlActivity.values();
+  }
+
+  Collection<SessionActivity.Builder> getSessionsActivity() {
+    return sessionsActivity.values();
+  }
+
+  private static final class SessionKey {
+
+    final int instanceNumber;
+    final String sid;
+    final String serialNumber;
+    final String username;
+    final String program;
+
+    SessionKey(ActiveSession s) {
+      this.instanceNumber = s.instanceNumber;
+      this.sid = s.sid;
+      this.serialNumber = s.serialNumber;
+      this.username = s.username;
+      this.program = s.program;
+    }
+
+    SessionActivity.Builder newBuilder() {
+      return new SessionActivity.Builder(instanceNumber, sid, serialNumber, username, program);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof SessionKey)) {
+        return false;
+      }
+      SessionKey other = (SessionKey) obj;
+      return instanceNumber == other.instanceNumber && Objects.equals(sid, other.sid)
+          && Objects.equals(serialNumber, other.serialNumber);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(instanceNumber, sid, serialNumber);
+    }
+  }
+}
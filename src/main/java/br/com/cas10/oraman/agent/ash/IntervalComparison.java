@@ -0,0 +1,70 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+/**
+ * Activity of an interval compared to the activity of a baseline interval.
+ *
+ * <p>Activity is expressed as average active sessions, so intervals of different lengths can be
+ * compared.
+ */
+public class IntervalComparison {
+
+  public final long baselineStart;
+  public final long baselineEnd;
+  public final long intervalStart;
+  public final long intervalEnd;
+  public final double baselineAverageActiveSessions;
+  public final double averageActiveSessions;
+  public final List<ActivityDelta> waitClasses;
+  public final List<ActivityDelta> events;
+  public final List<ActivityDelta> sql;
+  public final List<ActivityDelta> sessions;
+
+  IntervalComparison(long baselineStart, long baselineEnd, long intervalStart, long intervalEnd,
+      double baselineAverageActiveSessions, double averageActiveSessions,
+      List<ActivityDelta> waitClasses, List<ActivityDelta> events, List<ActivityDelta> sql,
+      List<ActivityDelta> sessions) {
+    this.baselineStart = baselineStart;
+    this.baselineEnd = baselineEnd;
+    this.intervalStart = intervalStart;
+    this.intervalEnd = intervalEnd;
+    this.baselineAverageActiveSessions = baselineAverageActiveSessions;
+    this.averageActiveSessions = averageActiveSessions;
+    this.waitClasses = ImmutableList.copyOf(waitClasses);
+    this.events = ImmutableList.copyOf(events);
+    this.sql = ImmutableList.copyOf(sql);
+    this.sessions = ImmutableList.copyOf(sessions);
+  }
+
+  public static class ActivityDelta {
+
+    /**
+     * Wait class, event, SQL ID or session ({@code sid,serial#[@inst_id]}).
+     */
+    public final String key;
+    /** Wait class of an event, text of a SQL statement, user and program of a session. */
+    public final String description;
+    public final double baselineAverageActiveSessions;
+    public final double averageActiveSessions;
+    public final double delta;
+    /**
+     * {@code null} if there was no activity in the baseline.
+     */
+    public final Double ratio;
+
+    ActivityDelta(String key, String description, double baselineAverageActiveSessions,
+        double averageActiveSessions) {
+      this.key = checkNotNull(key);
+      this.description = description;
+      this.baselineAverageActiveSessions = baselineAverageActiveSessions;
+      this.averageActiveSessions = averageActiveSessions;
+      this.delta = averageActiveSessions - baselineAverageActiveSessions;
+      this.ratio = baselineAverageActiveSessions == 0 ? null
+          : averageActiveSessions / baselineAverageActiveSessions;
+    }
+  }
+}
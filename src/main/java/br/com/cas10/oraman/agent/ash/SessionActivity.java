@@ -9,6 +9,7 @@ import com.google.common.collect.Multiset;
 
 public class SessionActivity {
 
+  public final int instanceNumber;
   public final String sessionId;
   public final String serialNumber;
   public final String username;
@@ -18,8 +19,10 @@ public class SessionActivity {
   public final Multiset<String> activityByEvent;
   public final Multiset<String> activityByWaitClass;
 
-  private SessionActivity(String sessionId, String serialNumber, String username, String program,
-      Multiset<String> activityByEvent, Multiset<String> activityByWaitClass, int totalActivity) {
+  private SessionActivity(int instanceNumber, String sessionId, String serialNumber,
+      String username, String program, Multiset<String> activityByEvent,
+      Multiset<String> activityByWaitClass, int totalActivity) {
+    this.instanceNumber = instanceNumber;
     this.sessionId = sessionId;
     this.serialNumber = serialNumber;
     this.username = username;
@@ -32,6 +35,7 @@ public class SessionActivity {
 
   public static class Builder {
 
+    private final int instanceNumber;
     private final String sessionId;
     private final String serialNumber;
     private final String username;
@@ -39,25 +43,54 @@ public class SessionActivity {
     private final Multiset<String> activityByEvent = HashMultiset.create();
     private final Multiset<String> activityByWaitClass = HashMultiset.create();
 
-    public Builder(String sessionId, String serialNumber, String username, String program) {
+    public Builder(int instanceNumber, String sessionId, String serialNumber, String username,
+        String program) {
+      this.instanceNumber = instanceNumber;
       this.sessionId = checkNotNull(sessionId);
       this.serialNumber = checkNotNull(serialNumber);
       this.username = username;
       this.program = program;
     }
 
+    public int getInstanceNumber() {
+      return instanceNumber;
+    }
+
+    public String getSessionId() {
+      return sessionId;
+    }
+
+    public String getSerialNumber() {
+      return serialNumber;
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    public String getProgram() {
+      return program;
+    }
+
     public int getActivity() {
       return activityByWaitClass.size();
     }
 
     public void add(ActiveSession activeSession) {
-      activityByEvent.add(activeSession.event);
-      activityByWaitClass.add(activeSession.waitClass);
+      add(activeSession, 1);
+    }
+
+    /**
+     * Adds the activity of a session in {@code count} samples.
+     */
+    public void add(ActiveSession activeSession, int count) {
+      activityByEvent.add(activeSession.event, count);
+      activityByWaitClass.add(activeSession.waitClass, count);
     }
 
     public SessionActivity build(int totalActivity) {
-      return new SessionActivity(sessionId, serialNumber, username, program, activityByEvent,
-          activityByWaitClass, totalActivity);
+      return new SessionActivity(instanceNumber, sessionId, serialNumber, username, program,
+          activityByEvent, activityByWaitClass, totalActivity);
     }
   }
 }
@@ -0,0 +1,41 @@
+package br.com.cas10.oraman.agent.ash;
+
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Consecutive samples of a snapshot in which a session was in the same state (same SQL, event,
+ * etc.), stored once with the number of samples.
+ */
+class SessionRun implements Serializable {
+
+  private static final long serialVersionUID = -3049538623364212717L;
+
+  /** State of the session in the samples of the run. */
+  final ActiveSession session;
+  /**
+   * Index of the first sample of the run in its snapshot, or {@code 0} if unknown (snapshots
+   * archived before the runs were recorded, groups of snapshots).
+   */
+  final int start;
+  /** Number of samples of the run, which is its activity. */
+  final int count;
+
+  SessionRun(ActiveSession session, int start, int count) {
+    this.session = session;
+    this.start = start;
+    this.count = count;
+  }
+
+  /**
+   * Returns {@code true} if the samples are of the same session, in the same state.
+   */
+  static boolean sameState(ActiveSession a, ActiveSession b) {
+    return a.instanceNumber == b.instanceNumber && Objects.equals(a.sid, b.sid)
+        && Objects.equals(a.serialNumber, b.serialNumber)
+        && Objects.equals(a.username, b.username) && Objects.equals(a.program, b.program)
+        && Objects.equals(a.sqlId, b.sqlId) && Objects.equals(a.sqlChildNumber, b.sqlChildNumber)
+        && Objects.equals(a.event, b.event) && Objects.equals(a.waitClass, b.waitClass);
+  }
+}
@@ -0,0 +1,99 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups samples in snapshots that cover fixed intervals of the wall clock.
+ *
+ * <p>A snapshot holds the samples actually taken in its interval, so the ticks skipped by the
+ * sampler make a snapshot have fewer samples instead of a longer interval. The consecutive samples
+ * in which a session is in the same state are accumulated as a single {@link SessionRun}. Not
+ * thread safe.
+ */
+class SnapshotAccumulator {
+
+  private final long interval;
+
+  private List<Run> runs = new ArrayList<>();
+  /** Last run of each session (instance, SID and serial#) of the current snapshot. */
+  private Map<String, Run> lastRuns = new HashMap<>();
+  private List<Long> sampleTimes = new ArrayList<>();
+  /** End of the interval of the current snapshot. */
+  private long snapshotEnd = -1;
+
+  SnapshotAccumulator(long interval) {
+    checkArgument(interval > 0);
+    this.interval = interval;
+  }
+
+  /**
+   * Adds a sample.
+   *
+   * @return the previous snapshot, if the sample is the first one after the end of its interval, or
+   *         {@code null}.
+   */
+  AshSnapshot add(long timestamp, List<ActiveSession> sample) {
+    AshSnapshot snapshot = null;
+    if (timestamp >= snapshotEnd) {
+      snapshot = flush();
+      snapshotEnd = (timestamp / interval + 1) * interval;
+    }
+    int index = sampleTimes.size();
+    for (ActiveSession session : sample) {
+      String key = session.instanceNumber + ":" + session.sid + ',' + session.serialNumber;
+      Run run = lastRuns.get(key);
+      if (run != null && run.start + run.count == index
+          && SessionRun.sameState(run.session, session)) {
+        run.count++;
+      } else {
+        run = new Run(session, index);
+        runs.add(run);
+        lastRuns.put(key, run);
+      }
+    }
+    sampleTimes.add(timestamp);
+    return snapshot;
+  }
+
+  /**
+   * Returns the snapshot of the samples added since the last snapshot (timestamped with the end of
+   * its interval), or {@code null} if there are none.
+   */
+  AshSnapshot flush() {
+    if (sampleTimes.isEmpty()) {
+      return null;
+    }
+    List<SessionRun> sessionRuns = new ArrayList<>(runs.size());
+    for (Run run : runs) {
+      sessionRuns.add(new SessionRun(run.session, run.start, run.count));
+    }
+    AshSnapshot snapshot = new AshSnapshot(snapshotEnd, sessionRuns,
+        sampleTimes.stream().mapToLong(Long::longValue).toArray());
+    clear();
+    return snapshot;
+  }
+
+  private void clear() {
+    runs = new ArrayList<>();
+    lastRuns = new HashMap<>();
+    sampleTimes = new ArrayList<>();
+  }
+
+  private static class Run {
+
+    final ActiveSession session;
+    final int start;
+    int count = 1;
+
+    Run(ActiveSession session, int start) {
+      this.session = session;
+      this.start = start;
+    }
+  }
+}
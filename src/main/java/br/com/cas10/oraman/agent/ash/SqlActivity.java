@@ -49,8 +49,15 @@ public class SqlActivity {
     }
 
     public void add(ActiveSession activeSession) {
-      activityByEvent.add(activeSession.event);
-      activityByWaitClass.add(activeSession.waitClass);
+      add(activeSession, 1);
+    }
+
+    /**
+     * Adds the activity of a session in {@code count} samples.
+     */
+    public void add(ActiveSession activeSession, int count) {
+      activityByEvent.add(activeSession.event, count);
+      activityByWaitClass.add(activeSession.waitClass, count);
     }
 
     public SqlActivity build(String sqlText, String command, int totalActivity, int totalSamples) {
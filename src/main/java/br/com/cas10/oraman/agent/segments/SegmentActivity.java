@@ -0,0 +1,45 @@
+package br.com.cas10.oraman.agent.segments;
+
+import static br.com.cas10.oraman.agent.segments.SegmentStatistic.BUFFER_BUSY_WAITS;
+import static br.com.cas10.oraman.agent.segments.SegmentStatistic.LOGICAL_READS;
+import static br.com.cas10.oraman.agent.segments.SegmentStatistic.PHYSICAL_READS;
+import static br.com.cas10.oraman.agent.segments.SegmentStatistic.ROW_LOCK_WAITS;
+
+import br.com.cas10.oraman.oracle.data.SegmentObject;
+
+/**
+ * Activity of a segment in an interval.
+ *
+ * <p>The object names are {@code null} if the object could not be resolved (e.g., it was dropped
+ * or {@code dba_objects} is not accessible). {@code tableOwner} and {@code tableName} identify the
+ * table of table and index segments.
+ */
+public class SegmentActivity {
+
+  public final long objectId;
+  public final String owner;
+  public final String objectName;
+  public final String subobjectName;
+  public final String objectType;
+  public final String tableOwner;
+  public final String tableName;
+
+  public final long logicalReads;
+  public final long physicalReads;
+  public final long rowLockWaits;
+  public final long bufferBusyWaits;
+
+  SegmentActivity(long objectId, SegmentObject object, long[] values) {
+    this.objectId = objectId;
+    this.owner = object == null ? null : object.owner;
+    this.objectName = object == null ? null : object.objectName;
+    this.subobjectName = object == null ? null : object.subobjectName;
+    this.objectType = object == null ? null : object.objectType;
+    this.tableOwner = object == null ? null : object.tableOwner;
+    this.tableName = object == null ? null : object.tableName;
+    this.logicalReads = values[LOGICAL_READS.ordinal()];
+    this.physicalReads = values[PHYSICAL_READS.ordinal()];
+    this.rowLockWaits = values[ROW_LOCK_WAITS.ordinal()];
+    this.bufferBusyWaits = values[BUFFER_BUSY_WAITS.ordinal()];
+  }
+}
@@ -0,0 +1,42 @@
+package br.com.cas10.oraman.agent.segments;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Statistics of {@code v$segstat} collected by {@link SegmentsAgent}.
+ */
+public enum SegmentStatistic {
+
+  LOGICAL_READS("logical reads"),
+
+  PHYSICAL_READS("physical reads"),
+
+  ROW_LOCK_WAITS("row lock waits"),
+
+  BUFFER_BUSY_WAITS("buffer busy waits");
+
+  static final int COUNT = values().length;
+  static final List<String> NAMES =
+      Arrays.stream(values()).map(s -> s.statisticName).collect(toList());
+
+  final String statisticName;
+
+  private SegmentStatistic(String statisticName) {
+    this.statisticName = statisticName;
+  }
+
+  /**
+   * Returns the statistic with the specified {@code v$segstat.statistic_name}, or {@code null}.
+   */
+  static SegmentStatistic fromName(String name) {
+    for (SegmentStatistic statistic : values()) {
+      if (statistic.statisticName.equals(name)) {
+        return statistic;
+      }
+    }
+    return null;
+  }
+}
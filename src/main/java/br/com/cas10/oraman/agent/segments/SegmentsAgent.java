@@ -0,0 +1,272 @@
+package br.com.cas10.oraman.agent.segments;
+
+import static br.com.cas10.oraman.oracle.OracleObject.V_SEGSTAT;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import br.com.cas10.oraman.oracle.AccessChecker;
+import br.com.cas10.oraman.oracle.SystemStatistics;
+import br.com.cas10.oraman.oracle.Tables;
+import br.com.cas10.oraman.oracle.data.SegmentObject;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.TargetScoped;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.EvictingQueue;
+import com.google.common.collect.Ordering;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Samples the activity of each segment from {@code v$segstat}.
+ *
+ * <p>The database may have hundreds of thousands of segments, so only the segments that moved the
+ * most in each interval ({@link #TOP_COUNT} by statistic) are kept. The cumulative values of each
+ * segment are stored in arrays that are reused across samples, and the owner and name of the
+ * segments kept are resolved through a bounded cache of {@code dba_objects} lookups.
+ */
+@Component
+@TargetScoped
+public class SegmentsAgent {
+
+  @VisibleForTesting
+  static final long SAMPLING_INTERVAL_MILLIS = MINUTES.toMillis(5);
+  @VisibleForTesting
+  static final int TOP_COUNT = 10;
+
+  private static final int OBJECTS_CACHE_SIZE = 10_000;
+
+  @Autowired
+  private AccessChecker accessChecker;
+  @Autowired
+  private SamplingExecutor sampler;
+  @Autowired
+  private SystemStatistics systemStatistics;
+  @Autowired
+  private Tables tables;
+
+  @PostConstruct
+  private void init() {
+    if (accessChecker.isQueryable(V_SEGSTAT)) {
+      sampler.schedule("segments", this::run, SAMPLING_INTERVAL_MILLIS);
+    }
+  }
+
+  private final LoadingCache<Long, Optional<SegmentObject>> objects =
+      CacheBuilder.newBuilder().maximumSize(OBJECTS_CACHE_SIZE).expireAfterWrite(1, HOURS)
+          .build(new CacheLoader<Long, Optional<SegmentObject>>() {
+            @Override
+            public Optional<SegmentObject> load(Long objectId) {
+              return Optional.ofNullable(tables.getSegmentObject(objectId));
+            }
+          });
+
+  // cumulative values, only accessed by the sampling thread
+  private final Map<Long, Segment> segments = new HashMap<>();
+  private final SystemStatistics.SegmentStatisticHandler handler = this::readStatistic;
+  private long sample = 0;
+  private long previousTimestamp = -1;
+
+  private final EvictingQueue<Interval> intervals =
+      EvictingQueue.create((int) (HOURS.toMillis(24) / SAMPLING_INTERVAL_MILLIS));
+
+  @VisibleForTesting
+  SegmentsAgent() {}
+
+  @VisibleForTesting
+  void run() {
+    long timestamp = System.currentTimeMillis();
+    sample++;
+    systemStatistics.readSegmentStatistics(SegmentStatistic.NAMES, handler);
+
+    List<PriorityQueue<Segment>> tops = new ArrayList<>(SegmentStatistic.COUNT);
+    for (SegmentStatistic statistic : SegmentStatistic.values()) {
+      int index = statistic.ordinal();
+      tops.add(new PriorityQueue<>(TOP_COUNT + 1,
+          Comparator.comparingLong((Segment s) -> s.delta(index))));
+    }
+    for (Iterator<Segment> it = segments.values().iterator(); it.hasNext();) {
+      Segment segment = it.next();
+      if (segment.sample != sample) {
+        // dropped (or all its statistics were reset)
+        it.remove();
+        continue;
+      }
+      if (previousTimestamp < 0) {
+        continue;
+      }
+      for (int i = 0; i < SegmentStatistic.COUNT; i++) {
+        if (segment.delta(i) > 0) {
+          PriorityQueue<Segment> top = tops.get(i);
+          top.add(segment);
+          if (top.size() > TOP_COUNT) {
+            top.poll();
+          }
+        }
+      }
+    }
+
+    if (previousTimestamp >= 0) {
+      Map<Long, long[]> deltas = new LinkedHashMap<>();
+      for (PriorityQueue<Segment> top : tops) {
+        for (Segment segment : top) {
+          deltas.computeIfAbsent(segment.objectId, id -> segment.deltas());
+        }
+      }
+      List<SegmentDelta> interval = new ArrayList<>(deltas.size());
+      for (Map.Entry<Long, long[]> e : deltas.entrySet()) {
+        SegmentObject object = objects.getUnchecked(e.getKey()).orElse(null);
+        interval.add(new SegmentDelta(e.getKey(), object, e.getValue()));
+      }
+      synchronized (this) {
+        intervals.add(new Interval(timestamp, interval));
+      }
+    }
+    previousTimestamp = timestamp;
+  }
+
+  private void readStatistic(long objectId, String statistic, long value) {
+    SegmentStatistic s = SegmentStatistic.fromName(statistic);
+    if (s == null) {
+      return;
+    }
+    Segment segment = segments.get(objectId);
+    if (segment == null) {
+      segment = new Segment(objectId);
+      segments.put(objectId, segment);
+    }
+    if (segment.sample != sample) {
+      segment.next(sample);
+    }
+    segment.current[s.ordinal()] = value;
+  }
+
+  /**
+   * Returns the segments with the largest value of a statistic in the intervals that ended in
+   * {@code [start, end]} (at most the last 24 hours).
+   *
+   * <p>The values are lower bounds, since a segment only has data in the intervals in which it was
+   * one of the top segments of some statistic.
+   */
+  public List<SegmentActivity> getTopSegments(long start, long end, SegmentStatistic statistic,
+      int count) {
+    Map<Long, long[]> totals = new HashMap<>();
+    Map<Long, SegmentObject> segmentObjects = new HashMap<>();
+    synchronized (this) {
+      for (Interval interval : intervals) {
+        if (interval.end < start || interval.end > end) {
+          continue;
+        }
+        for (SegmentDelta delta : interval.segments) {
+          long[] values =
+              totals.computeIfAbsent(delta.objectId, id -> new long[SegmentStatistic.COUNT]);
+          for (int i = 0; i < values.length; i++) {
+            values[i] += delta.values[i];
+          }
+          if (delta.object != null) {
+            segmentObjects.put(delta.objectId, delta.object);
+          }
+        }
+      }
+    }
+
+    int index = statistic.ordinal();
+    List<SegmentActivity> activity = new ArrayList<>();
+    for (Map.Entry<Long, long[]> e : totals.entrySet()) {
+      if (e.getValue()[index] > 0) {
+        activity.add(
+            new SegmentActivity(e.getKey(), segmentObjects.get(e.getKey()), e.getValue()));
+      }
+    }
+    return Ordering.from((SegmentActivity a, SegmentActivity b) -> Long
+        .compare(getValue(a, statistic), getValue(b, statistic))).greatestOf(activity, count);
+  }
+
+  private static long getValue(SegmentActivity activity, SegmentStatistic statistic) {
+    switch (statistic) {
+      case LOGICAL_READS:
+        return activity.logicalReads;
+      case PHYSICAL_READS:
+        return activity.physicalReads;
+      case ROW_LOCK_WAITS:
+        return activity.rowLockWaits;
+      case BUFFER_BUSY_WAITS:
+        return activity.bufferBusyWaits;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  private static final class Segment {
+
+    final long objectId;
+    long[] previous = new long[SegmentStatistic.COUNT];
+    long[] current = new long[SegmentStatistic.COUNT];
+    /** Last sample in which the segment was read. */
+    long sample;
+
+    Segment(long objectId) {
+      this.objectId = objectId;
+    }
+
+    void next(long sample) {
+      long[] swap = previous;
+      previous = current;
+      current = swap;
+      Arrays.fill(current, 0);
+      this.sample = sample;
+    }
+
+    long delta(int statistic) {
+      long currentValue = current[statistic];
+      long previousValue = previous[statistic];
+      // a decrease means that the statistic was reset
+      return currentValue < previousValue ? currentValue : currentValue - previousValue;
+    }
+
+    long[] deltas() {
+      long[] deltas = new long[SegmentStatistic.COUNT];
+      for (int i = 0; i < deltas.length; i++) {
+        deltas[i] = delta(i);
+      }
+      return deltas;
+    }
+  }
+
+  private static final class SegmentDelta {
+
+    final long objectId;
+    final SegmentObject object;
+    final long[] values;
+
+    SegmentDelta(long objectId, SegmentObject object, long[] values) {
+      this.objectId = objectId;
+      this.object = object;
+      this.values = values;
+    }
+  }
+
+  private static final class Interval {
+
+    final long end;
+    final List<SegmentDelta> segments;
+
+    Interval(long end, List<SegmentDelta> segments) {
+      this.end = end;
+      this.segments = segments;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package br.com.cas10.oraman.agent.sqlstats;
+
+import static br.com.cas10.oraman.agent.sqlstats.SqlStatsMetric.BUFFER_GETS;
+import static br.com.cas10.oraman.agent.sqlstats.SqlStatsMetric.CPU_TIME;
+import static br.com.cas10.oraman.agent.sqlstats.SqlStatsMetric.DISK_READS;
+import static br.com.cas10.oraman.agent.sqlstats.SqlStatsMetric.ELAPSED_TIME;
+import static br.com.cas10.oraman.agent.sqlstats.SqlStatsMetric.EXECUTIONS;
+import static br.com.cas10.oraman.agent.sqlstats.SqlStatsMetric.ROWS_PROCESSED;
+
+/**
+ * Work done by an execution plan of a statement in an interval.
+ */
+public class SqlStatsActivity {
+
+  public final String sqlId;
+  public final long planHashValue;
+  /** Start of the interval. */
+  public final long timestamp;
+
+  public final long executions;
+  public final long elapsedTime;
+  public final long cpuTime;
+  public final long bufferGets;
+  public final long diskReads;
+  public final long rowsProcessed;
+
+  /**
+   * {@code null} if there were no executions in the interval.
+   */
+  public final Double elapsedTimePerExecution;
+  /**
+   * {@code null} if there were no executions in the interval.
+   */
+  public final Double bufferGetsPerExecution;
+
+  SqlStatsActivity(SqlStatsKey key, long timestamp, long[] values) {
+    this.sqlId = key.sqlId;
+    this.planHashValue = key.planHashValue;
+    this.timestamp = timestamp;
+    this.executions = values[EXECUTIONS.ordinal()];
+    this.elapsedTime = values[ELAPSED_TIME.ordinal()];
+    this.cpuTime = values[CPU_TIME.ordinal()];
+    this.bufferGets = values[BUFFER_GETS.ordinal()];
+    this.diskReads = values[DISK_READS.ordinal()];
+    this.rowsProcessed = values[ROWS_PROCESSED.ordinal()];
+    this.elapsedTimePerExecution = executions == 0 ? null : (double) elapsedTime / executions;
+    this.bufferGetsPerExecution = executions == 0 ? null : (double) bufferGets / executions;
+  }
+}
@@ -0,0 +1,185 @@
+package br.com.cas10.oraman.agent.sqlstats;
+
+import static br.com.cas10.oraman.oracle.OracleObject.V_SQLSTATS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import br.com.cas10.oraman.oracle.AccessChecker;
+import br.com.cas10.oraman.oracle.Cursors;
+import br.com.cas10.oraman.oracle.data.SqlStats;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.TargetScoped;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects the statistics of the SQL statements from {@code v$sqlstats}.
+ *
+ * <p>The cumulative values of each statement (SQL ID and plan hash value) are kept between samples
+ * and only the deltas of the statements that changed are archived. The first sample and one sample
+ * per hour read every statement, and the statements no longer in the view (aged out of the shared
+ * pool) are forgotten; the other samples only read the statements active since the previous
+ * sample. The number of statements kept is also capped: beyond it, the least recently seen ones
+ * are forgotten.
+ *
+ * <p>A statement seen again after being forgotten is handled as a new statement: its whole
+ * cumulative values are archived as a single delta.
+ */
+@Component
+@TargetScoped
+public class SqlStatsAgent {
+
+  @VisibleForTesting
+  static final long SAMPLING_INTERVAL_MILLIS = MINUTES.toMillis(1);
+
+  /** Interval between the samples that read every statement. */
+  private static final long FULL_READ_INTERVAL_MILLIS = HOURS.toMillis(1);
+  /** Maximum number of statements whose cumulative values are kept. */
+  private static final int MAX_STATEMENTS = 100_000;
+
+  @Autowired
+  private AccessChecker accessChecker;
+  @Autowired
+  private SqlStatsArchive archive;
+  @Autowired
+  private Cursors cursors;
+  @Autowired
+  private SamplingExecutor sampler;
+
+  @VisibleForTesting
+  Clock clock = Clock.systemDefaultZone();
+  @VisibleForTesting
+  int maxStatements = MAX_STATEMENTS;
+
+  @PostConstruct
+  private void init() {
+    if (accessChecker.isQueryable(V_SQLSTATS)) {
+      sampler.schedule("sql-stats", this::run, SAMPLING_INTERVAL_MILLIS);
+    }
+  }
+
+  /** The statements in access order, so the least recently seen one is the eldest. */
+  private final Map<SqlStatsKey, Statement> statements =
+      new LinkedHashMap<SqlStatsKey, Statement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SqlStatsKey, Statement> eldest) {
+          return size() > maxStatements;
+        }
+      };
+  private boolean initialized = false;
+  private long lastFullRead;
+
+  @VisibleForTesting
+  void run() {
+    long timestamp = clock.millis();
+    // the first sample reads every statement to get the initial values, and the periodic full
+    // reads find the statements aged out; the other samples read the statements active since the
+    // previous sample (with some margin)
+    boolean fullRead = !initialized || timestamp - lastFullRead >= FULL_READ_INTERVAL_MILLIS;
+    long activeSeconds = fullRead ? Integer.MAX_VALUE
+        : 2 * MILLISECONDS.toSeconds(SAMPLING_INTERVAL_MILLIS);
+
+    Map<SqlStatsKey, long[]> deltas = new LinkedHashMap<>();
+    for (SqlStats stats : cursors.getSqlStats(activeSeconds)) {
+      SqlStatsKey key = new SqlStatsKey(stats.sqlId, stats.planHashValue);
+      long[] values = values(stats);
+      Statement statement = statements.get(key);
+      if (statement == null) {
+        statements.put(key, new Statement(values, timestamp));
+        // statements loaded after the first sample: all the work is new
+        if (initialized && !isZero(values)) {
+          deltas.put(key, values);
+        }
+        continue;
+      }
+      long[] delta = delta(statement.values, values);
+      statement.values = values;
+      statement.lastSeen = timestamp;
+      if (!isZero(delta)) {
+        deltas.put(key, delta);
+      }
+    }
+    initialized = true;
+
+    if (!deltas.isEmpty()) {
+      archive.archive(timestamp, deltas);
+    }
+    if (fullRead) {
+      // statements not read are no longer in the shared pool
+      statements.values().removeIf(s -> s.lastSeen != timestamp);
+      lastFullRead = timestamp;
+    }
+  }
+
+  private static long[] values(SqlStats stats) {
+    long[] values = new long[SqlStatsMetric.COUNT];
+    values[SqlStatsMetric.EXECUTIONS.ordinal()] = stats.executions;
+    values[SqlStatsMetric.ELAPSED_TIME.ordinal()] = stats.elapsedTime;
+    values[SqlStatsMetric.CPU_TIME.ordinal()] = stats.cpuTime;
+    values[SqlStatsMetric.BUFFER_GETS.ordinal()] = stats.bufferGets;
+    values[SqlStatsMetric.DISK_READS.ordinal()] = stats.diskReads;
+    values[SqlStatsMetric.ROWS_PROCESSED.ordinal()] = stats.rowsProcessed;
+    return values;
+  }
+
+  /**
+   * Returns the delta between the previous and the current values. If any value decreased, the
+   * statement was aged out and reloaded, so the current values are the delta.
+   */
+  private static long[] delta(long[] previous, long[] current) {
+    long[] delta = new long[current.length];
+    for (int i = 0; i < delta.length; i++) {
+      delta[i] = current[i] - previous[i];
+      if (delta[i] < 0) {
+        return current;
+      }
+    }
+    return delta;
+  }
+
+  private static boolean isZero(long[] values) {
+    for (long value : values) {
+      if (value != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the statements with the largest values of a metric in the closed interval
+   * {@code [start, end]}.
+   */
+  public List<SqlStatsActivity> getTopSql(long start, long end, SqlStatsMetric metric, int count)
+      throws IOException {
+    return archive.getTopSql(start, end, metric, count);
+  }
+
+  /**
+   * Returns the activity of each execution plan of a statement in the closed interval
+   * {@code [start, end]}, summed in intervals of {@code intervalMillis}, in chronological order.
+   */
+  public List<SqlStatsActivity> getSqlHistory(String sqlId, long start, long end,
+      long intervalMillis) throws IOException {
+    return archive.getSqlHistory(sqlId, start, end, intervalMillis);
+  }
+
+  private static final class Statement {
+
+    long[] values;
+    long lastSeen;
+
+    Statement(long[] values, long lastSeen) {
+      this.values = values;
+      this.lastSeen = lastSeen;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package br.com.cas10.oraman.agent.sqlstats;
+
+import static br.com.cas10.oraman.util.BatchArchive.readVarLong;
+import static br.com.cas10.oraman.util.BatchArchive.writeVarLong;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.target.TargetContext;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.BatchArchive;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Ordering;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Archive of the SQL statistics deltas calculated by {@link SqlStatsAgent}.
+ *
+ * <p>Each sample is stored as a batch with the deltas of the statements that changed: SQL ID, plan
+ * hash value and one variable length number per metric.
+ */
+@Component
+@TargetScoped
+class SqlStatsArchive {
+
+  private static final Logger logger = LoggerFactory.getLogger(SqlStatsArchive.class);
+
+  @Autowired
+  private TaskScheduler scheduler;
+
+  @VisibleForTesting
+  Clock clock = Clock.systemDefaultZone();
+
+  private final BatchArchive batches;
+  private final int archiveMaxDays;
+
+  @Autowired
+  SqlStatsArchive(OramanProperties properties) {
+    this.batches =
+        new BatchArchive(TargetContext.archiveDir(properties).resolve("sqlstats"));
+    this.archiveMaxDays = properties.getArchive().getSqlStatsMaxDays();
+  }
+
+  @PostConstruct
+  private void init() {
+    scheduler.schedule(this::cleanUpArchive, new CronTrigger("0 50 * * * *"));
+  }
+
+  /**
+   * Archives the deltas of a sample.
+   *
+   * @param deltas the values of the metrics of each statement, indexed by {@link SqlStatsMetric}.
+   */
+  void archive(long timestamp, Map<SqlStatsKey, long[]> deltas) {
+    try {
+      ByteArrayOutputStream batch = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(batch);
+      out.writeInt(deltas.size());
+      for (Map.Entry<SqlStatsKey, long[]> e : deltas.entrySet()) {
+        out.writeUTF(e.getKey().sqlId);
+        writeVarLong(out, e.getKey().planHashValue);
+        for (long value : e.getValue()) {
+          writeVarLong(out, value);
+        }
+      }
+      batches.append(timestamp, batch.toByteArray());
+    } catch (IOException e) {
+      logger.error("Error while archiving SQL statistics", e);
+    }
+  }
+
+  /**
+   * Returns the statements with the largest values of a metric in the closed interval
+   * {@code [start, end]}.
+   */
+  List<SqlStatsActivity> getTopSql(long start, long end, SqlStatsMetric metric, int count)
+      throws IOException {
+    Map<SqlStatsKey, long[]> totals = new HashMap<>();
+    read(start, end, (timestamp, key, values) -> {
+      long[] total = totals.computeIfAbsent(key, k -> new long[SqlStatsMetric.COUNT]);
+      for (int i = 0; i < total.length; i++) {
+        total[i] += values[i];
+      }
+    });
+    Ordering<Map.Entry<SqlStatsKey, long[]>> ordering =
+        Ordering.from(Comparator.comparingLong(e -> e.getValue()[metric.ordinal()]));
+    List<SqlStatsActivity> top = new ArrayList<>();
+    for (Map.Entry<SqlStatsKey, long[]> e : ordering.greatestOf(totals.entrySet(), count)) {
+      top.add(new SqlStatsActivity(e.getKey(), start, e.getValue()));
+    }
+    return top;
+  }
+
+  /**
+   * Returns the activity of each execution plan of a statement in the closed interval
+   * {@code [start, end]}, summed in intervals of {@code intervalMillis}, in chronological order.
+   */
+  List<SqlStatsActivity> getSqlHistory(String sqlId, long start, long end, long intervalMillis)
+      throws IOException {
+    Map<Long, Map<Long, long[]>> intervals = new TreeMap<>();
+    read(start, end, (timestamp, key, values) -> {
+      if (!key.sqlId.equals(sqlId)) {
+        return;
+      }
+      long intervalStart = timestamp - Math.floorMod(timestamp - start, intervalMillis);
+      long[] total = intervals.computeIfAbsent(intervalStart, k -> new TreeMap<>())
+          .computeIfAbsent(key.planHashValue, k -> new long[SqlStatsMetric.COUNT]);
+      for (int i = 0; i < total.length; i++) {
+        total[i] += values[i];
+      }
+    });
+    List<SqlStatsActivity> history = new ArrayList<>();
+    intervals.forEach((intervalStart, plans) -> plans.forEach((planHashValue, values) -> history
+        .add(new SqlStatsActivity(new SqlStatsKey(sqlId, planHashValue), intervalStart, values))));
+    return history;
+  }
+
+  private void read(long start, long end, DeltaConsumer consumer) throws IOException {
+    batches.read(start, end, (timestamp, in) -> {
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        SqlStatsKey key = new SqlStatsKey(in.readUTF(), readVarLong(in));
+        long[] values = new long[SqlStatsMetric.COUNT];
+        for (int j = 0; j < values.length; j++) {
+          values[j] = readVarLong(in);
+        }
+        consumer.accept(timestamp, key, values);
+      }
+    });
+  }
+
+  @VisibleForTesting
+  void cleanUpArchive() {
+    try {
+      batches.cleanUp(LocalDate.now(clock).minusDays(archiveMaxDays));
+    } catch (IOException e) {
+      logger.error("Error while cleaning up the archive", e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface DeltaConsumer {
+
+    void accept(long timestamp, SqlStatsKey key, long[] values);
+  }
+}
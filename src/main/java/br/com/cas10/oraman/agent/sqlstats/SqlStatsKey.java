@@ -0,0 +1,30 @@
+package br.com.cas10.oraman.agent.sqlstats;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Objects;
+
+final class SqlStatsKey {
+
+  final String sqlId;
+  final long planHashValue;
+
+  SqlStatsKey(String sqlId, long planHashValue) {
+    this.sqlId = checkNotNull(sqlId);
+    this.planHashValue = planHashValue;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof SqlStatsKey)) {
+      return false;
+    }
+    SqlStatsKey other = (SqlStatsKey) obj;
+    return sqlId.equals(other.sqlId) && planHashValue == other.planHashValue;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(sqlId, planHashValue);
+  }
+}
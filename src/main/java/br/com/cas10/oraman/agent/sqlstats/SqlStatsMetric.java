@@ -0,0 +1,22 @@
+package br.com.cas10.oraman.agent.sqlstats;
+
+/**
+ * Statistics of {@code v$sqlstats} collected by {@link SqlStatsAgent}. The times are in
+ * microseconds.
+ */
+public enum SqlStatsMetric {
+
+  EXECUTIONS,
+
+  ELAPSED_TIME,
+
+  CPU_TIME,
+
+  BUFFER_GETS,
+
+  DISK_READS,
+
+  ROWS_PROCESSED;
+
+  static final int COUNT = values().length;
+}
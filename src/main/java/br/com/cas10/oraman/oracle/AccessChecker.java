@@ -2,6 +2,7 @@ package br.com.cas10.oraman.oracle;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import br.com.cas10.oraman.target.TargetScoped;
 import com.google.common.collect.ImmutableMap;
 import java.util.ArrayList;
 import java.util.EnumMap;
@@ -15,6 +16,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 @Service
+@TargetScoped
 public class AccessChecker {
 
   private static final Logger logger = LoggerFactory.getLogger(AccessChecker.class);
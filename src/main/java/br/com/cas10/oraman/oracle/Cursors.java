@@ -4,6 +4,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import br.com.cas10.oraman.oracle.data.Cursor;
 import br.com.cas10.oraman.oracle.data.ExecutionPlan;
+import br.com.cas10.oraman.oracle.data.SqlStats;
 import com.google.common.collect.ImmutableMap;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,6 +21,7 @@ public class Cursors {
   private final String cursorBySqlId;
   private final String sqlFullTextBySqlId;
   private final String planTableOutputBySqlIdAndChildNumber;
+  private final String sqlStatsSql;
 
   @Autowired
   private NamedParameterJdbcTemplate jdbc;
@@ -32,6 +34,7 @@ public class Cursors {
     cursorBySqlId = loader.load("cursor_by_sqlid.sql");
     sqlFullTextBySqlId = loader.load("sql_fulltext.sql");
     planTableOutputBySqlIdAndChildNumber = loader.load("plan_table_output.sql");
+    sqlStatsSql = loader.load("sqlstats.sql");
   }
 
   /**
@@ -107,6 +110,26 @@ public class Cursors {
     return plans;
   }
 
+  /**
+   * Returns the cumulative statistics ({@code v$sqlstats}) of the statements active in the last
+   * {@code activeSeconds} seconds.
+   */
+  public List<SqlStats> getSqlStats(long activeSeconds) {
+    return jdbc.query(sqlStatsSql, ImmutableMap.of("activeSeconds", activeSeconds),
+        (rs, rowNum) -> {
+          SqlStats stats = new SqlStats();
+          stats.sqlId = rs.getString("sql_id");
+          stats.planHashValue = rs.getLong("plan_hash_value");
+          stats.executions = rs.getLong("executions");
+          stats.elapsedTime = rs.getLong("elapsed_time");
+          stats.cpuTime = rs.getLong("cpu_time");
+          stats.bufferGets = rs.getLong("buffer_gets");
+          stats.diskReads = rs.getLong("disk_reads");
+          stats.rowsProcessed = rs.getLong("rows_processed");
+          return stats;
+        });
+  }
+
   private String getPlan(String sqlId, long childNumber) {
     List<String> lines = jdbc.queryForList(planTableOutputBySqlIdAndChildNumber,
         ImmutableMap.of("sqlId", sqlId, "childNumber", childNumber), String.class);
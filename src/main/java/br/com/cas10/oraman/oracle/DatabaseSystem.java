@@ -3,18 +3,22 @@ package br.com.cas10.oraman.oracle;
 import static br.com.cas10.oraman.oracle.OracleObject.V_OSSTAT;
 import static com.google.common.collect.Iterables.getOnlyElement;
 
+import br.com.cas10.oraman.oracle.data.CpuTimes;
+import br.com.cas10.oraman.target.TargetScoped;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 @Service
+@TargetScoped
 public class DatabaseSystem {
 
   private final String instanceNumberSql;
   private final String checkExpressEditionSql;
   private final String numCpuCoresSql;
   private final String numCpuThreadsSql;
+  private final String osCpuTimesSql;
 
   @Autowired
   private AccessChecker accessChecker;
@@ -24,6 +28,7 @@ public class DatabaseSystem {
   private Integer cpuCores;
   private Integer cpuThreads;
   private long instanceNumber;
+  private boolean osstatQueryable;
 
   @Autowired
   public DatabaseSystem(SqlFileLoader loader) {
@@ -31,11 +36,13 @@ public class DatabaseSystem {
     checkExpressEditionSql = loader.load("check_express_edition.sql");
     numCpuCoresSql = loader.load("num_cpu_cores.sql");
     numCpuThreadsSql = loader.load("num_cpu_threads.sql");
+    osCpuTimesSql = loader.load("os_cpu_times.sql");
   }
 
   @PostConstruct
   private void init() {
     instanceNumber = jdbc.queryForObject(instanceNumberSql, Long.class);
+    osstatQueryable = accessChecker.isQueryable(V_OSSTAT);
 
     int xeQueryResult = jdbc.queryForObject(checkExpressEditionSql, Integer.class);
     boolean expressEdition = xeQueryResult > 0;
@@ -43,7 +50,7 @@ public class DatabaseSystem {
     if (expressEdition) {
       cpuCores = 1;
       cpuThreads = 1;
-    } else if (accessChecker.isQueryable(V_OSSTAT)) {
+    } else if (osstatQueryable) {
       cpuThreads = jdbc.queryForObject(numCpuThreadsSql, Integer.class);
       // NUM_CPU_CORES is not always available (e.g., cloud environments)
       cpuCores = getOnlyElement(jdbc.queryForList(numCpuCoresSql, Integer.class), cpuThreads);
@@ -77,6 +84,25 @@ public class DatabaseSystem {
     return cpuThreads;
   }
 
+  /**
+   * Returns the busy and idle times of the CPUs ({@code BUSY_TIME} and {@code IDLE_TIME} on
+   * {@code v$osstat}), or {@code null} if {@code v$osstat} is not available.
+   */
+  public CpuTimes getCpuTimes() {
+    if (!osstatQueryable) {
+      return null;
+    }
+    CpuTimes times = new CpuTimes();
+    jdbc.query(osCpuTimesSql, rs -> {
+      if ("BUSY_TIME".equals(rs.getString("stat_name"))) {
+        times.busyTime = rs.getLong("value");
+      } else {
+        times.idleTime = rs.getLong("value");
+      }
+    });
+    return times;
+  }
+
   /**
    * Returns the ID of the monitored instance ({@code INSTANCE_NUMBER}).
    */
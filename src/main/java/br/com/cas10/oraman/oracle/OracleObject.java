@@ -24,16 +24,26 @@ public enum OracleObject {
 
   GV_SESSION("gv$session"),
 
+  V_EVENT_HISTOGRAM("v$event_histogram"),
+
+  V_EVENT_HISTOGRAM_MICRO("v$event_histogram_micro"),
+
   V_EVENT_NAME("v$event_name"),
 
   V_LOCKED_OBJECT("v$locked_object"),
 
   V_OSSTAT("v$osstat"),
 
+  V_SEGSTAT("v$segstat"),
+
   V_SQLCOMMAND("v$sqlcommand"),
 
+  V_SQLSTATS("v$sqlstats"),
+
   V_SYS_TIME_MODEL("v$sys_time_model"),
 
+  V_SYSSTAT("v$sysstat"),
+
   V_SYSTEM_EVENT("v$system_event");
 
   public final String name;
@@ -0,0 +1,155 @@
+package br.com.cas10.oraman.oracle;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.SymbolDictionary;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Samples the active sessions, on the critical path of the ASH sampling.
+ *
+ * <p>Unlike the other queries, the sampling query does not borrow a connection from the pool (nor
+ * open a transaction) on each execution: it keeps a connection of its own and a prepared
+ * statement, which are reopened after an error (the statement is also prepared again when the
+ * cluster mode changes). The connection is taken from the pool of the target for good, so the pool
+ * has a connection more for it (see {@code RootConfig}). The rows are fetched in large batches and
+ * read by column index, and the repeated values (events, programs, SQL ids, etc.) are shared
+ * through a {@link SymbolDictionary}, from which the values are evicted when the snapshots that use
+ * them age out (see {@link #getDictionary()}).
+ */
+@Component
+@TargetScoped
+public class SessionSampler {
+
+  private static final Logger logger = LoggerFactory.getLogger(SessionSampler.class);
+
+  private final String activeSessionsSql;
+  private final String globalActiveSessionsSql;
+  private final int fetchSize;
+  private final SymbolDictionary dictionary;
+
+  @Autowired
+  private DataSource dataSource;
+  @Autowired
+  private Sessions sessions;
+
+  private Connection connection;
+  private PreparedStatement statement;
+  private String preparedSql;
+
+  @Autowired
+  SessionSampler(SqlFileLoader loader, OramanProperties properties) {
+    activeSessionsSql = loader.load("active_sessions.sql");
+    globalActiveSessionsSql = loader.load("global_active_sessions.sql");
+    fetchSize = properties.getAsh().getFetchSize();
+    dictionary = new SymbolDictionary(properties.getAsh().getDictionarySize());
+  }
+
+  /**
+   * Returns the active sessions of the local instance or, in cluster mode, of all the instances.
+   *
+   * @see Sessions#clusterEnabled()
+   */
+  public List<ActiveSession> sample() {
+    return timedSample().sessions;
+  }
+
+  /**
+   * Returns the active sessions, like {@link #sample()}, and the time the query took. The time
+   * does not include the wait for another sampling in progress.
+   */
+  public synchronized TimedSample timedSample() {
+    String sql = sessions.clusterEnabled() ? globalActiveSessionsSql : activeSessionsSql;
+    long start = System.nanoTime();
+    try {
+      if (statement != null && !sql.equals(preparedSql)) {
+        // the cluster mode changed
+        close(statement);
+        statement = null;
+      }
+      if (connection == null) {
+        connection = dataSource.getConnection();
+      }
+      if (statement == null) {
+        statement = connection.prepareStatement(sql);
+        statement.setFetchSize(fetchSize);
+        preparedSql = sql;
+      }
+      long timestamp = System.currentTimeMillis();
+      List<ActiveSession> list = new ArrayList<>();
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          ActiveSession s = new ActiveSession();
+          s.instanceNumber = rs.getInt(1);
+          s.sid = dictionary.intern(rs.getString(2), timestamp);
+          s.serialNumber = dictionary.intern(rs.getString(3), timestamp);
+          s.username = dictionary.intern(rs.getString(4), timestamp);
+          s.program = dictionary.intern(rs.getString(5), timestamp);
+          s.sqlId = dictionary.intern(rs.getString(6), timestamp);
+          s.sqlChildNumber = dictionary.intern(rs.getString(7), timestamp);
+          s.event = dictionary.intern(rs.getString(8), timestamp);
+          s.waitClass = dictionary.intern(rs.getString(9), timestamp);
+          list.add(s);
+        }
+      }
+      return new TimedSample(list, System.nanoTime() - start);
+    } catch (SQLException e) {
+      close();
+      throw new UncategorizedSQLException("Sampling the active sessions", sql, e);
+    }
+  }
+
+  /**
+   * Returns the dictionary of the sampled values. The values are stamped with the time of the
+   * samples that use them.
+   */
+  public SymbolDictionary getDictionary() {
+    return dictionary;
+  }
+
+  @PreDestroy
+  synchronized void close() {
+    close(statement);
+    close(connection);
+    statement = null;
+    connection = null;
+  }
+
+  private static void close(AutoCloseable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (Exception e) {
+      logger.warn("Error while closing the sampling connection", e);
+    }
+  }
+
+  /**
+   * The active sessions and the time the query took.
+   */
+  public static class TimedSample {
+
+    public final List<ActiveSession> sessions;
+    public final long queryNanos;
+
+    public TimedSample(List<ActiveSession> sessions, long queryNanos) {
+      this.sessions = sessions;
+      this.queryNanos = queryNanos;
+    }
+  }
+}
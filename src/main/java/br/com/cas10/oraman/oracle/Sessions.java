@@ -6,10 +6,12 @@ import static br.com.cas10.oraman.oracle.OracleObject.V_LOCKED_OBJECT;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.stream.Collectors.toList;
 
+import br.com.cas10.oraman.OramanProperties;
 import br.com.cas10.oraman.oracle.data.ActiveSession;
 import br.com.cas10.oraman.oracle.data.GlobalSession;
 import br.com.cas10.oraman.oracle.data.LockedObject;
 import br.com.cas10.oraman.oracle.data.Session;
+import br.com.cas10.oraman.target.TargetScoped;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -25,6 +27,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
+@TargetScoped
 public class Sessions {
 
   private static final Logger logger = LoggerFactory.getLogger(Sessions.class);
@@ -43,7 +46,6 @@ public class Sessions {
 
   private final String alterSystemPrivilegeSql;
   private final String allSessionsSql;
-  private final String activeSessionsSql;
   private final String lockedObjectsSql;
   private final String sessionBySidSql;
   private final String sessionBySidAndSerialSql;
@@ -55,15 +57,17 @@ public class Sessions {
   @Autowired
   @VisibleForTesting
   NamedParameterJdbcTemplate jdbc;
+  @Autowired
+  private OramanProperties properties;
 
   @VisibleForTesting
   boolean sessionTerminationEnabled;
+  private boolean clusterEnabled;
 
   @Autowired
   public Sessions(SqlFileLoader loader) {
     alterSystemPrivilegeSql = loader.load("alter_system_privilege.sql");
     allSessionsSql = loader.load("all_sessions.sql");
-    activeSessionsSql = loader.load("active_sessions.sql");
     lockedObjectsSql = loader.load("locked_objects.sql");
     sessionBySidSql = loader.load("session_by_sid.sql");
     sessionBySidAndSerialSql = loader.load("session_by_sid_and_serial.sql");
@@ -76,6 +80,11 @@ public class Sessions {
     Integer alterSystemPrivilegeResult =
         jdbc.getJdbcOperations().queryForObject(alterSystemPrivilegeSql, Integer.class);
     sessionTerminationEnabled = alterSystemPrivilegeResult > 0;
+
+    clusterEnabled = properties.getCluster() && accessChecker.isQueryable(GV_SESSION);
+    if (properties.getCluster() && !clusterEnabled) {
+      logger.warn("gv$session is not accessible, only the local instance will be sampled");
+    }
   }
 
   @Transactional(readOnly = true)
@@ -138,42 +147,22 @@ public class Sessions {
     });
   }
 
-  @Transactional(readOnly = true)
-  public List<ActiveSession> getActiveSessions() {
-    return jdbc.query(activeSessionsSql, (rs, rowNum) -> {
-      ActiveSession s = new ActiveSession();
-      s.sid = rs.getString("sid").intern();
-      s.serialNumber = rs.getString("serial#").intern();
-      s.username = nullSafeIntern(rs.getString("username"));
-      s.program = nullSafeIntern(rs.getString("program"));
-      s.sqlId = nullSafeIntern(rs.getString("sql_id"));
-      s.sqlChildNumber = nullSafeIntern(rs.getString("sql_child_number"));
-      s.event = rs.getString("event").intern();
-      s.waitClass = rs.getString("wait_class").intern();
-      return s;
-    });
-  }
-
   @Transactional(readOnly = true)
   public List<ActiveSession> getAllSessions() {
     return jdbc.query(allSessionsSql, (rs, rowNum) -> {
       ActiveSession s = new ActiveSession();
-      s.sid = rs.getString("sid").intern();
-      s.serialNumber = rs.getString("serial#").intern();
-      s.username = nullSafeIntern(rs.getString("username"));
-      s.program = nullSafeIntern(rs.getString("program"));
-      s.sqlId = nullSafeIntern(rs.getString("sql_id"));
-      s.sqlChildNumber = nullSafeIntern(rs.getString("sql_child_number"));
-      s.event = rs.getString("event").intern();
-      s.waitClass = rs.getString("wait_class").intern();
+      s.sid = rs.getString("sid");
+      s.serialNumber = rs.getString("serial#");
+      s.username = rs.getString("username");
+      s.program = rs.getString("program");
+      s.sqlId = rs.getString("sql_id");
+      s.sqlChildNumber = rs.getString("sql_child_number");
+      s.event = rs.getString("event");
+      s.waitClass = rs.getString("wait_class");
       return s;
     });
   }
 
-  private static String nullSafeIntern(String string) {
-    return string == null ? null : string.intern();
-  }
-
   public void killSession(long sessionId, long serialNumber) {
     checkArgument(sessionId >= 0);
     checkArgument(serialNumber >= 0);
@@ -189,6 +178,16 @@ public class Sessions {
     return sessionTerminationEnabled;
   }
 
+  /**
+   * Returns {@code true} if the active sessions of all the instances of the cluster are sampled
+   * (read from {@code gv$session} in a single query).
+   *
+   * @see SessionSampler
+   */
+  public boolean clusterEnabled() {
+    return clusterEnabled;
+  }
+
   private static class SessionBean {
     final Session session = new Session();
     boolean isBlocked;
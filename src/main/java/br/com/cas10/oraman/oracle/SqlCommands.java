@@ -7,6 +7,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.max;
 import static java.util.stream.Collectors.toMap;
 
+import br.com.cas10.oraman.target.TargetScoped;
 import com.google.common.io.CharStreams;
 import java.io.IOException;
 import java.io.InputStream;
@@ -23,6 +24,7 @@ import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
 @Service
+@TargetScoped
 class SqlCommands {
 
   private static final Logger logger = LoggerFactory.getLogger(SqlCommands.class);
@@ -0,0 +1,56 @@
+package br.com.cas10.oraman.oracle;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class SystemStatistics {
+
+  private final String segmentStatisticsSql;
+  private final String sysstatSql;
+
+  @Autowired
+  private NamedParameterJdbcTemplate jdbc;
+
+  @Autowired
+  public SystemStatistics(SqlFileLoader loader) {
+    segmentStatisticsSql = loader.load("segment_statistics.sql");
+    sysstatSql = loader.load("sysstat.sql");
+  }
+
+  /**
+   * Returns the cumulative values of the specified statistics from {@code v$sysstat}, read in a
+   * single query. Unknown statistics are not included in the result.
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Long> getStatistics(Collection<String> names) {
+    Map<String, Long> values = new HashMap<>();
+    jdbc.query(sysstatSql, ImmutableMap.of("names", names),
+        (RowCallbackHandler) rs -> values.put(rs.getString(1), rs.getLong(2)));
+    return values;
+  }
+
+  /**
+   * Reads the non-zero values of the specified statistics of each segment from
+   * {@code v$segstat}. The rows are passed to the handler as they are read, without intermediate
+   * objects.
+   */
+  @Transactional(readOnly = true)
+  public void readSegmentStatistics(Collection<String> names, SegmentStatisticHandler handler) {
+    jdbc.query(segmentStatisticsSql, ImmutableMap.of("names", names),
+        (RowCallbackHandler) rs -> handler.handle(rs.getLong(1), rs.getString(2), rs.getLong(3)));
+  }
+
+  @FunctionalInterface
+  public interface SegmentStatisticHandler {
+
+    void handle(long objectId, String statistic, long value);
+  }
+}
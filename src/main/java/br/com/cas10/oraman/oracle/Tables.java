@@ -3,6 +3,7 @@ package br.com.cas10.oraman.oracle;
 import static br.com.cas10.oraman.oracle.OracleObject.DBA_INDEXES;
 import static br.com.cas10.oraman.oracle.OracleObject.DBA_IND_COLUMNS;
 import static br.com.cas10.oraman.oracle.OracleObject.DBA_LOBS;
+import static br.com.cas10.oraman.oracle.OracleObject.DBA_OBJECTS;
 import static br.com.cas10.oraman.oracle.OracleObject.DBA_SEGMENTS;
 import static br.com.cas10.oraman.oracle.OracleObject.DBA_TABLES;
 import static br.com.cas10.oraman.oracle.OracleObject.DBA_TAB_COLUMNS;
@@ -12,7 +13,9 @@ import static java.util.stream.Collectors.toList;
 
 import br.com.cas10.oraman.oracle.data.Column;
 import br.com.cas10.oraman.oracle.data.Index;
+import br.com.cas10.oraman.oracle.data.SegmentObject;
 import br.com.cas10.oraman.oracle.data.Table;
+import br.com.cas10.oraman.target.TargetScoped;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.util.List;
@@ -20,12 +23,14 @@ import java.util.Map;
 import java.util.function.Predicate;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
+@TargetScoped
 public class Tables {
 
   private static final RowMapper<Table> tableRowMapper = (rs, rowNum) -> {
@@ -81,6 +86,7 @@ public class Tables {
 
   private final String allSchemasSql;
   private final String allTablesSql;
+  private final String segmentObjectSql;
   private final String tableSql;
   private final String tableColumnsSql;
   private final String tableIndexesSql;
@@ -91,11 +97,13 @@ public class Tables {
   private NamedParameterJdbcTemplate jdbc;
 
   private boolean requiredObjectsAccessible;
+  private boolean segmentObjectsAccessible;
 
   @Autowired
   public Tables(SqlFileLoader loader) {
     allSchemasSql = loader.load("all_schemas.sql");
     allTablesSql = loader.load("all_tables.sql");
+    segmentObjectSql = loader.load("segment_object.sql");
     tableSql = loader.load("table.sql");
     tableColumnsSql = loader.load("table_columns.sql");
     tableIndexesSql = loader.load("table_indexes.sql");
@@ -107,6 +115,8 @@ public class Tables {
     requiredObjectsAccessible =
         asList(DBA_IND_COLUMNS, DBA_INDEXES, DBA_LOBS, DBA_SEGMENTS, DBA_TAB_COLUMNS, DBA_TABLES,
             DBA_USERS).stream().filter(accessiblePredicate.negate()).collect(toList()).isEmpty();
+    segmentObjectsAccessible =
+        accessChecker.isQueryable(DBA_OBJECTS) && accessChecker.isQueryable(DBA_INDEXES);
   }
 
   @Transactional(readOnly = true)
@@ -134,4 +144,28 @@ public class Tables {
         .forEach(i -> table.indexes.put(i.name, i));
     return table;
   }
+
+  /**
+   * Returns the object of a segment ({@code v$segstat.obj#}) and its table, or {@code null} if
+   * the object was not found or {@code dba_objects} is not accessible.
+   */
+  @Transactional(readOnly = true)
+  public SegmentObject getSegmentObject(long objectId) {
+    if (!segmentObjectsAccessible) {
+      return null;
+    }
+    List<SegmentObject> list =
+        jdbc.query(segmentObjectSql, ImmutableMap.of("objectId", objectId), (rs, rowNum) -> {
+          SegmentObject object = new SegmentObject();
+          object.objectId = objectId;
+          object.owner = rs.getString("owner");
+          object.objectName = rs.getString("object_name");
+          object.subobjectName = rs.getString("subobject_name");
+          object.objectType = rs.getString("object_type");
+          object.tableOwner = rs.getString("table_owner");
+          object.tableName = rs.getString("table_name");
+          return object;
+        });
+    return DataAccessUtils.singleResult(list);
+  }
 }
@@ -1,8 +1,10 @@
 package br.com.cas10.oraman.oracle;
 
+import static br.com.cas10.oraman.oracle.OracleObject.V_EVENT_HISTOGRAM_MICRO;
 import static br.com.cas10.oraman.oracle.OracleObject.V_EVENT_NAME;
 
 import br.com.cas10.oraman.oracle.data.Wait;
+import br.com.cas10.oraman.target.TargetScoped;
 import com.google.common.collect.ImmutableList;
 import java.util.List;
 import javax.annotation.PostConstruct;
@@ -10,10 +12,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 @Service
+@TargetScoped
 public class Waits {
 
   private static final Logger logger = LoggerFactory.getLogger(Waits.class);
@@ -23,6 +27,9 @@ public class Waits {
       ImmutableList.of("Administrative", "Application", "Cluster", "Commit", "Concurrency",
           "Configuration", "Network", "Other", "Queueing", "Scheduler", "System I/O", "User I/O");
 
+  private final String eventHistogramSql;
+  private final String eventHistogramMicroSql;
+  private final String systemEventsSql;
   private final String waitClassesSql;
   private final String waitsSql;
 
@@ -32,9 +39,13 @@ public class Waits {
   private JdbcTemplate jdbc;
 
   private List<String> waitClasses;
+  private boolean eventHistogramMicro;
 
   @Autowired
   public Waits(SqlFileLoader loader) {
+    eventHistogramSql = loader.load("event_histogram.sql");
+    eventHistogramMicroSql = loader.load("event_histogram_micro.sql");
+    systemEventsSql = loader.load("system_events.sql");
     waitClassesSql = loader.load("wait_classes.sql");
     waitsSql = loader.load("waits.sql");
   }
@@ -50,6 +61,7 @@ public class Waits {
       list = WAIT_CLASSES;
     }
     waitClasses = ImmutableList.copyOf(list);
+    eventHistogramMicro = accessChecker.isQueryable(V_EVENT_HISTOGRAM_MICRO);
   }
 
   /**
@@ -66,10 +78,46 @@ public class Waits {
     });
   }
 
+  /**
+   * Reads the cumulative waits of each event from {@code v$system_event}, except {@code Idle}
+   * events. The rows are passed to the handler as they are read, without intermediate objects.
+   */
+  @Transactional(readOnly = true)
+  public void readSystemEvents(SystemEventHandler handler) {
+    jdbc.query(systemEventsSql, (RowCallbackHandler) rs -> handler.handle(rs.getString(1),
+        rs.getString(2), rs.getLong(3), rs.getLong(4)));
+  }
+
+  /**
+   * Reads the cumulative wait time histograms of the events, except {@code Idle} events. The
+   * buckets are read from {@code v$event_histogram_micro} where available (Oracle 12.2 and later)
+   * or else from {@code v$event_histogram}, and passed to the handler with their upper bound in
+   * microseconds.
+   */
+  @Transactional(readOnly = true)
+  public void readEventHistograms(EventHistogramHandler handler) {
+    String sql = eventHistogramMicro ? eventHistogramMicroSql : eventHistogramSql;
+    long unitMicros = eventHistogramMicro ? 1 : 1000;
+    jdbc.query(sql, (RowCallbackHandler) rs -> handler.handle(rs.getString(1),
+        rs.getLong(2) * unitMicros, rs.getLong(3)));
+  }
+
   /**
    * Returns the wait classes from {@code v$event_name}, except {@code Idle}.
    */
   public List<String> getWaitClasses() {
     return this.waitClasses;
   }
+
+  @FunctionalInterface
+  public interface SystemEventHandler {
+
+    void handle(String event, String waitClass, long totalWaits, long timeWaitedMicros);
+  }
+
+  @FunctionalInterface
+  public interface EventHistogramHandler {
+
+    void handle(String event, long upperBoundMicros, long waits);
+  }
 }
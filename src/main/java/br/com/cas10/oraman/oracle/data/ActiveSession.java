@@ -6,6 +6,8 @@ public class ActiveSession implements Serializable {
 
   private static final long serialVersionUID = 2282212278946348587L;
 
+  /** Zero in the snapshots archived before the instance number was recorded. */
+  public int instanceNumber;
   public String sid;
   public String serialNumber;
   public String username;
@@ -0,0 +1,21 @@
+package br.com.cas10.oraman.oracle.data;
+
+/**
+ * Cumulative times (hundredths of a second) of the CPUs of the database host, summed over all the
+ * CPUs.
+ */
+public class CpuTimes {
+
+  public long busyTime;
+  public long idleTime;
+
+  /**
+   * Returns the fraction of the CPU time that was busy since a previous reading, or {@code null}
+   * if no time elapsed.
+   */
+  public Double utilizationSince(CpuTimes previous) {
+    long busy = busyTime - previous.busyTime;
+    long total = busy + idleTime - previous.idleTime;
+    return total <= 0 ? null : (double) busy / total;
+  }
+}
@@ -0,0 +1,16 @@
+package br.com.cas10.oraman.oracle.data;
+
+public class SegmentObject {
+
+  public long objectId;
+  public String owner;
+  public String objectName;
+  public String subobjectName;
+  public String objectType;
+  /**
+   * Table of a table or index segment ({@code null} for other segments).
+   */
+  public String tableOwner;
+  public String tableName;
+
+}
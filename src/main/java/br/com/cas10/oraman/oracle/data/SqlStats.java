@@ -0,0 +1,15 @@
+package br.com.cas10.oraman.oracle.data;
+
+public class SqlStats {
+
+  public String sqlId;
+  public long planHashValue;
+
+  public long executions;
+  public long elapsedTime;
+  public long cpuTime;
+  public long bufferGets;
+  public long diskReads;
+  public long rowsProcessed;
+
+}
@@ -0,0 +1,89 @@
+package br.com.cas10.oraman.target;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Runs the periodic sampling tasks of all the targets.
+ *
+ * <p>A single timer thread fires the ticks and hands the tasks to a bounded pool of workers, which
+ * run the blocking JDBC calls. A tick of a task whose previous run has not finished is skipped and
+ * counted as an overrun, so a slow target neither queues up work nor delays the other targets: the
+ * workers hold at most one pending run per task.
+ *
+ * <p>The ticks of a task are aligned to the multiples of its period, plus an offset (derived from
+ * the target and the name of the task) that spreads the queries of the targets over the period.
+ */
+public class SamplingExecutor implements DisposableBean {
+
+  private final ScheduledThreadPoolExecutor timer;
+  private final ThreadPoolExecutor workers;
+  private final long maxJitterMillis;
+  private final List<SamplingTask> tasks = new CopyOnWriteArrayList<>();
+
+  @VisibleForTesting
+  Clock clock = Clock.systemDefaultZone();
+
+  /**
+   * Creates an executor with its own timer and workers.
+   *
+   * @param poolSize maximum number of tasks running at the same time.
+   * @param maxJitterMillis maximum offset of the ticks (never greater than the period).
+   */
+  public SamplingExecutor(int poolSize, long maxJitterMillis) {
+    checkArgument(poolSize > 0);
+    checkArgument(maxJitterMillis >= 0);
+    this.maxJitterMillis = maxJitterMillis;
+    timer = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("sampling-timer-"));
+    timer.setRemoveOnCancelPolicy(true);
+    workers = new ThreadPoolExecutor(poolSize, poolSize, 60, SECONDS, new LinkedBlockingQueue<>(),
+        new CustomizableThreadFactory("sampler-"));
+    workers.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Schedules a task to run every {@code periodMillis} with the current target.
+   */
+  public SamplingTask schedule(String name, Runnable task, long periodMillis) {
+    checkArgument(periodMillis > 0);
+    Target target = TargetContext.current();
+    String key = target == null ? name : target.getName() + '/' + name;
+    long offset = Math.floorMod(Hashing.murmur3_32().hashUnencodedChars(key).asInt(),
+        Math.min(maxJitterMillis, periodMillis - 1) + 1);
+
+    long now = clock.millis();
+    long firstTick = (now / periodMillis + 1) * periodMillis + offset;
+    SamplingTask samplingTask = new SamplingTask(name, target, TargetContext.wrap(task),
+        periodMillis, offset, firstTick, workers, clock);
+    samplingTask.setFuture(timer.scheduleAtFixedRate(samplingTask::tick, firstTick - now,
+        periodMillis, MILLISECONDS));
+    tasks.add(samplingTask);
+    return samplingTask;
+  }
+
+  /**
+   * Returns the tasks scheduled (including the cancelled ones).
+   */
+  public List<SamplingTask> getTasks() {
+    return ImmutableList.copyOf(tasks);
+  }
+
+  @Override
+  public void destroy() {
+    timer.shutdownNow();
+    workers.shutdownNow();
+  }
+}
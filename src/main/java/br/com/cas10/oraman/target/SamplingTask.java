@@ -0,0 +1,136 @@
+package br.com.cas10.oraman.target;
+
+import java.time.Clock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A task scheduled by {@link SamplingExecutor}, with its execution statistics.
+ */
+public class SamplingTask {
+
+  private static final Logger logger = LoggerFactory.getLogger(SamplingTask.class);
+
+  private final String name;
+  private final Target target;
+  private final Runnable task;
+  private final long periodMillis;
+  private final long offsetMillis;
+  private final Executor workers;
+  private final Clock clock;
+
+  private final AtomicBoolean pending = new AtomicBoolean();
+  private final AtomicLong runs = new AtomicLong();
+  private final AtomicLong overruns = new AtomicLong();
+  private final AtomicLong maxDelayMillis = new AtomicLong();
+  private volatile long lastDurationMillis;
+  private volatile ScheduledFuture<?> future;
+
+  /** Time of the next tick, only accessed by the timer thread. */
+  private long nextTick;
+
+  SamplingTask(String name, Target target, Runnable task, long periodMillis, long offsetMillis,
+      long firstTick, Executor workers, Clock clock) {
+    this.name = name;
+    this.target = target;
+    this.task = task;
+    this.periodMillis = periodMillis;
+    this.offsetMillis = offsetMillis;
+    this.nextTick = firstTick;
+    this.workers = workers;
+    this.clock = clock;
+  }
+
+  void setFuture(ScheduledFuture<?> future) {
+    this.future = future;
+  }
+
+  void tick() {
+    long tick = nextTick;
+    nextTick += periodMillis;
+    if (!pending.compareAndSet(false, true)) {
+      long count = overruns.incrementAndGet();
+      if (count == 1 || count % 100 == 0) {
+        logger.warn("{} ({}): tick skipped, previous run still in progress ({} overruns)", name,
+            target, count);
+      }
+      return;
+    }
+    try {
+      workers.execute(() -> run(tick));
+    } catch (RejectedExecutionException e) {
+      pending.set(false);
+    }
+  }
+
+  private void run(long tick) {
+    long start = clock.millis();
+    maxDelayMillis.accumulateAndGet(start - tick, Math::max);
+    try {
+      task.run();
+    } catch (RuntimeException e) {
+      logger.error("Error running " + name + " (" + target + ")", e);
+    } finally {
+      lastDurationMillis = clock.millis() - start;
+      runs.incrementAndGet();
+      pending.set(false);
+    }
+  }
+
+  /**
+   * Stops the task. A run in progress is not interrupted.
+   */
+  public void cancel() {
+    future.cancel(false);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the target of the task, or {@code null} if no targets were configured.
+   */
+  public Target getTarget() {
+    return target;
+  }
+
+  public long getPeriodMillis() {
+    return periodMillis;
+  }
+
+  /**
+   * Returns the offset of the ticks from the multiples of the period.
+   */
+  public long getOffsetMillis() {
+    return offsetMillis;
+  }
+
+  public long getRuns() {
+    return runs.get();
+  }
+
+  /**
+   * Returns the number of ticks skipped because the previous run had not finished.
+   */
+  public long getOverruns() {
+    return overruns.get();
+  }
+
+  /**
+   * Returns the largest delay between a tick and the start of its run (e.g., waiting for a free
+   * worker).
+   */
+  public long getMaxDelayMillis() {
+    return maxDelayMillis.get();
+  }
+
+  public long getLastDurationMillis() {
+    return lastDurationMillis;
+  }
+}
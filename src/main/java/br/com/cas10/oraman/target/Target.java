@@ -0,0 +1,39 @@
+package br.com.cas10.oraman.target;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import br.com.cas10.oraman.OramanProperties;
+import java.nio.file.Path;
+
+/**
+ * A monitored database.
+ */
+public final class Target {
+
+  private final String name;
+  private final OramanProperties.DataSource dataSource;
+  private final Path archiveDir;
+
+  Target(String name, OramanProperties.DataSource dataSource, Path archiveDir) {
+    this.name = checkNotNull(name);
+    this.dataSource = checkNotNull(dataSource);
+    this.archiveDir = checkNotNull(archiveDir);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public OramanProperties.DataSource getDataSource() {
+    return dataSource;
+  }
+
+  public Path getArchiveDir() {
+    return archiveDir;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
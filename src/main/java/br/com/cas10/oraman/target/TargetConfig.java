@@ -0,0 +1,16 @@
+package br.com.cas10.oraman.target;
+
+import org.springframework.beans.factory.config.CustomScopeConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+class TargetConfig {
+
+  @Bean
+  static CustomScopeConfigurer targetScopeConfigurer() {
+    CustomScopeConfigurer configurer = new CustomScopeConfigurer();
+    configurer.addScope(TargetScope.NAME, new TargetScope());
+    return configurer;
+  }
+}
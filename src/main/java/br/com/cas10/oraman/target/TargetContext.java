@@ -0,0 +1,86 @@
+package br.com.cas10.oraman.target;
+
+import br.com.cas10.oraman.OramanProperties;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Holds the target of the current thread.
+ *
+ * <p>The target is set by {@link TargetFilter} for web requests and propagated to the tasks
+ * submitted to the shared schedulers and executors (see {@link #wrap(Runnable)}), so the collectors
+ * of each target run with their own target. Threads without a target use the default target (the
+ * first one configured).
+ */
+public final class TargetContext {
+
+  private static final ThreadLocal<Target> CURRENT = new ThreadLocal<>();
+
+  private static volatile Target defaultTarget;
+
+  private TargetContext() {}
+
+  static void setDefault(Target target) {
+    defaultTarget = target;
+  }
+
+  /**
+   * Sets the target of the current thread.
+   *
+   * @return the previous target of the thread, to be restored with {@link #restore(Target)}.
+   */
+  static Target set(Target target) {
+    Target previous = CURRENT.get();
+    CURRENT.set(target);
+    return previous;
+  }
+
+  static void restore(Target previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  /**
+   * Returns the target of the current thread, or the default target. Returns {@code null} if no
+   * targets were configured (e.g., in unit tests).
+   */
+  public static Target current() {
+    Target target = CURRENT.get();
+    return target == null ? defaultTarget : target;
+  }
+
+  /**
+   * Runs a task with the specified target.
+   */
+  public static void run(Target target, Runnable task) {
+    Target previous = set(target);
+    try {
+      task.run();
+    } finally {
+      restore(previous);
+    }
+  }
+
+  /**
+   * Returns a task that runs with the target of the current thread.
+   */
+  public static Runnable wrap(Runnable task) {
+    Target target = current();
+    if (target == null) {
+      return task;
+    }
+    return () -> run(target, task);
+  }
+
+  /**
+   * Returns the archive directory of the current target, or {@code oraman.archive.dir} if no
+   * targets were configured.
+   */
+  public static Path archiveDir(OramanProperties properties) {
+    Target target = current();
+    return target == null ? Paths.get(properties.getArchive().getDir()) : target.getArchiveDir();
+  }
+}
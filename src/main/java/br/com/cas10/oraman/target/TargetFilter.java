@@ -0,0 +1,61 @@
+package br.com.cas10.oraman.target;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Sets the target of each request: the {@code target} parameter, the {@code oramanTarget} cookie
+ * (set by the target selector of the UI) or the default target. Unknown targets are rejected if
+ * requested through the parameter, and ignored if set in the cookie (e.g., a removed target).
+ */
+@Component
+class TargetFilter extends OncePerRequestFilter {
+
+  static final String PARAMETER = "target";
+  static final String COOKIE = "oramanTarget";
+
+  @Autowired
+  private Targets targets;
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    Target target = null;
+    String name = request.getParameter(PARAMETER);
+    if (name != null) {
+      target = targets.getTarget(name);
+      if (target == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown target: " + name);
+        return;
+      }
+    } else if (request.getCookies() != null) {
+      for (Cookie cookie : request.getCookies()) {
+        if (COOKIE.equals(cookie.getName())) {
+          target = targets.getTarget(cookie.getValue());
+        }
+      }
+    }
+    if (target == null) {
+      target = targets.getDefaultTarget();
+    }
+
+    Target previous = TargetContext.set(target);
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      TargetContext.restore(previous);
+    }
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    return false;
+  }
+}
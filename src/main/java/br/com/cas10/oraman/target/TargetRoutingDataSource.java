@@ -0,0 +1,37 @@
+package br.com.cas10.oraman.target;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes the connection requests to the data source of the current target.
+ */
+public class TargetRoutingDataSource extends AbstractRoutingDataSource {
+
+  /**
+   * Creates the data sources of the targets.
+   *
+   * @param factory creates the data source of a target.
+   */
+  public TargetRoutingDataSource(Targets targets, Function<Target, DataSource> factory) {
+    Map<Object, Object> dataSources = new HashMap<>();
+    for (Target target : targets.getTargets()) {
+      dataSources.put(target.getName(), factory.apply(target));
+    }
+    setTargetDataSources(dataSources);
+    setLenientFallback(false);
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    Target target = TargetContext.current();
+    checkState(target != null, "No target");
+    return target.getName();
+  }
+}
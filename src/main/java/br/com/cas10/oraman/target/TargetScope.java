@@ -0,0 +1,73 @@
+package br.com.cas10.oraman.target;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.Scope;
+
+/**
+ * Scope of the {@link TargetScoped} components: one instance per target.
+ */
+class TargetScope implements Scope {
+
+  static final String NAME = "target";
+
+  private final Map<String, Map<String, Object>> beans = new ConcurrentHashMap<>();
+  private final List<Runnable> destructionCallbacks = new ArrayList<>();
+
+  @Override
+  public Object get(String name, ObjectFactory<?> objectFactory) {
+    Map<String, Object> targetBeans =
+        beans.computeIfAbsent(currentTarget().getName(), t -> new ConcurrentHashMap<>());
+    Object bean = targetBeans.get(name);
+    if (bean != null) {
+      return bean;
+    }
+    // the creation of a bean may create other beans of the target (reentrant)
+    synchronized (this) {
+      bean = targetBeans.get(name);
+      if (bean == null) {
+        bean = objectFactory.getObject();
+        targetBeans.put(name, bean);
+      }
+      return bean;
+    }
+  }
+
+  @Override
+  public Object remove(String name) {
+    Map<String, Object> targetBeans = beans.get(currentTarget().getName());
+    return targetBeans == null ? null : targetBeans.remove(name);
+  }
+
+  @Override
+  public synchronized void registerDestructionCallback(String name, Runnable callback) {
+    destructionCallbacks.add(callback);
+  }
+
+  @Override
+  public Object resolveContextualObject(String key) {
+    return null;
+  }
+
+  @Override
+  public String getConversationId() {
+    return currentTarget().getName();
+  }
+
+  synchronized void destroy() {
+    destructionCallbacks.forEach(Runnable::run);
+    destructionCallbacks.clear();
+    beans.clear();
+  }
+
+  private static Target currentTarget() {
+    Target target = TargetContext.current();
+    checkState(target != null, "No target");
+    return target;
+  }
+}
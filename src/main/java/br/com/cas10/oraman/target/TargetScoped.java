@@ -0,0 +1,19 @@
+package br.com.cas10.oraman.target;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ScopedProxyMode;
+
+/**
+ * Marks a component that has one instance per target. The component is injected as a proxy that
+ * delegates to the instance of the current target.
+ */
+@java.lang.annotation.Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Scope(value = TargetScope.NAME, proxyMode = ScopedProxyMode.TARGET_CLASS)
+public @interface TargetScoped {
+}
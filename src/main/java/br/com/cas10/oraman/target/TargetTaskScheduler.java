@@ -0,0 +1,56 @@
+package br.com.cas10.oraman.target;
+
+import java.util.Date;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Task scheduler whose tasks run with the target that was current when they were scheduled, so a
+ * single pool can run the collectors of all the targets.
+ */
+public class TargetTaskScheduler extends ThreadPoolTaskScheduler {
+
+  private static final long serialVersionUID = 7102564870962317045L;
+
+  @Override
+  public void execute(Runnable task) {
+    super.execute(TargetContext.wrap(task));
+  }
+
+  @Override
+  public Future<?> submit(Runnable task) {
+    return super.submit(TargetContext.wrap(task));
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+    return super.schedule(TargetContext.wrap(task), trigger);
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+    return super.schedule(TargetContext.wrap(task), startTime);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+    return super.scheduleAtFixedRate(TargetContext.wrap(task), startTime, period);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+    return super.scheduleAtFixedRate(TargetContext.wrap(task), period);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+    return super.scheduleWithFixedDelay(TargetContext.wrap(task), startTime, delay);
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+    return super.scheduleWithFixedDelay(TargetContext.wrap(task), delay);
+  }
+}
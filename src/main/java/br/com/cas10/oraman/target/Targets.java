@@ -0,0 +1,107 @@
+package br.com.cas10.oraman.target;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import br.com.cas10.oraman.OramanProperties;
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * The monitored databases ({@code oraman.targets}, or {@code oraman.dataSource} if no targets are
+ * configured).
+ *
+ * <p>The {@link TargetScoped} components of each target (e.g., the collectors) are created on
+ * startup, with the target set as the current target.
+ */
+@Component
+public class Targets implements SmartInitializingSingleton, DisposableBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(Targets.class);
+
+  static final String DEFAULT_TARGET = "default";
+
+  private final List<Target> targets;
+
+  @Autowired
+  private ConfigurableListableBeanFactory beanFactory;
+
+  @Autowired
+  public Targets(OramanProperties properties) {
+    Path archiveDir = Paths.get(properties.getArchive().getDir());
+    ImmutableList.Builder<Target> builder = ImmutableList.builder();
+    if (properties.getTargets().isEmpty()) {
+      OramanProperties.DataSource dataSource = properties.getDataSource();
+      checkState(dataSource.getUrl() != null && dataSource.getUsername() != null
+          && dataSource.getPassword() != null, "oraman.dataSource is not configured");
+      builder.add(new Target(DEFAULT_TARGET, dataSource, archiveDir));
+    } else {
+      Set<String> names = new HashSet<>();
+      for (OramanProperties.Target target : properties.getTargets()) {
+        checkState(names.add(target.getName()), "Duplicate target: " + target.getName());
+        builder.add(new Target(target.getName(), target.getDataSource(),
+            archiveDir.resolve(target.getName())));
+      }
+    }
+    targets = builder.build();
+    TargetContext.setDefault(targets.get(0));
+  }
+
+  public List<Target> getTargets() {
+    return targets;
+  }
+
+  /**
+   * Returns the target with the specified name, or {@code null}.
+   */
+  public Target getTarget(String name) {
+    return targets.stream().filter(t -> t.getName().equals(name)).findFirst().orElse(null);
+  }
+
+  public Target getDefaultTarget() {
+    return targets.get(0);
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    for (Target target : targets) {
+      try {
+        TargetContext.run(target, this::createTargetBeans);
+      } catch (RuntimeException e) {
+        if (targets.size() == 1) {
+          throw e;
+        }
+        // the components not created are created on demand
+        logger.error("Error initializing target " + target, e);
+      }
+    }
+  }
+
+  private void createTargetBeans() {
+    for (String name : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition definition = beanFactory.getBeanDefinition(name);
+      if (TargetScope.NAME.equals(definition.getScope()) && !definition.isAbstract()) {
+        beanFactory.getBean(name);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    TargetScope scope = (TargetScope) beanFactory.getRegisteredScope(TargetScope.NAME);
+    if (scope != null) {
+      scope.destroy();
+    }
+  }
+}
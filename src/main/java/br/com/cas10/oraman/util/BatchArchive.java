@@ -0,0 +1,207 @@
+package br.com.cas10.oraman.util;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batches of variable length records, stored in one file per day.
+ *
+ * <p>Each batch is stored with its timestamp and length, so the batches outside a queried range
+ * are skipped without being decoded. A batch is appended with a single write; an incomplete batch
+ * at the end of a file (e.g., interrupted write) is ignored, and is truncated before the first
+ * batch appended to the file. A file is read up to its first batch whose length is not consistent
+ * with the size of the file.
+ */
+public class BatchArchive {
+
+  private static final Logger logger = LoggerFactory.getLogger(BatchArchive.class);
+
+  private static final DateTimeFormatter FILENAME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+  private static final Pattern FILENAME_PATTERN = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+  /** Size of the timestamp and length of a batch. */
+  private static final int HEADER_BYTES = 12;
+
+  private final Path dir;
+
+  /** The last file appended to, already checked for an incomplete batch. */
+  private Path checkedPath;
+
+  public BatchArchive(Path dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Appends a batch. Batches must be appended in chronological order.
+   */
+  public synchronized void append(long timestamp, byte[] batch) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.length + HEADER_BYTES);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeLong(timestamp);
+    out.writeInt(batch.length);
+    out.write(batch);
+
+    Files.createDirectories(dir);
+    Path path = dir.resolve(FILENAME_FORMATTER.format(toDate(timestamp)));
+    if (!path.equals(checkedPath)) {
+      truncateIncompleteBatch(path);
+      checkedPath = path;
+    }
+    try (OutputStream os = Files.newOutputStream(path, CREATE, APPEND)) {
+      bytes.writeTo(os);
+    }
+  }
+
+  /**
+   * Passes the batches whose timestamp is in the closed interval {@code [start, end]} to the
+   * reader, in chronological order.
+   */
+  public synchronized void read(long start, long end, BatchReader reader) throws IOException {
+    LocalDate last = toDate(end);
+    for (LocalDate date = toDate(start); !date.isAfter(last); date = date.plusDays(1)) {
+      Path path = dir.resolve(FILENAME_FORMATTER.format(date));
+      if (!Files.isRegularFile(path)) {
+        continue;
+      }
+      long size = Files.size(path);
+      try (InputStream is = Files.newInputStream(path);
+          DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+        read(in, size, start, end, reader);
+      }
+    }
+  }
+
+  private static void read(DataInputStream in, long size, long start, long end,
+      BatchReader reader) throws IOException {
+    long position = 0;
+    while (size - position >= HEADER_BYTES) {
+      final long timestamp = in.readLong();
+      int length = in.readInt();
+      position += HEADER_BYTES;
+      if (length < 0 || length > size - position) {
+        // incomplete batch, or batches appended after an incomplete one
+        return;
+      }
+      position += length;
+      if (timestamp < start || timestamp > end) {
+        ByteStreams.skipFully(in, length);
+        continue;
+      }
+      byte[] batch = new byte[length];
+      in.readFully(batch);
+      reader.read(timestamp, new DataInputStream(new ByteArrayInputStream(batch)));
+    }
+  }
+
+  /**
+   * Removes the incomplete batch at the end of a file, so the batches appended to it can be read.
+   */
+  private static void truncateIncompleteBatch(Path path) throws IOException {
+    if (!Files.isRegularFile(path)) {
+      return;
+    }
+    long size = Files.size(path);
+    long position = 0;
+    try (InputStream is = Files.newInputStream(path);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+      while (size - position >= HEADER_BYTES) {
+        in.readLong();
+        int length = in.readInt();
+        if (length < 0 || length > size - position - HEADER_BYTES) {
+          break;
+        }
+        ByteStreams.skipFully(in, length);
+        position += HEADER_BYTES + length;
+      }
+    }
+    if (position < size) {
+      logger.warn(String.format("Truncating incomplete batch: %s",
+          path.normalize().toAbsolutePath().toString()));
+      try (FileChannel channel = FileChannel.open(path, WRITE)) {
+        channel.truncate(position);
+      }
+    }
+  }
+
+  /**
+   * Removes the files of the days before {@code firstAllowedDate}.
+   */
+  public synchronized void cleanUp(LocalDate firstAllowedDate) throws IOException {
+    if (!Files.isDirectory(dir)) {
+      return;
+    }
+    String firstAllowedName = FILENAME_FORMATTER.format(firstAllowedDate);
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path path : stream) {
+        String fileName = path.getFileName().toString();
+        if (!Files.isRegularFile(path) || !FILENAME_PATTERN.matcher(fileName).matches()) {
+          continue;
+        }
+        if (fileName.compareTo(firstAllowedName) < 0) {
+          logger.info(
+              String.format("Removing file: %s", path.normalize().toAbsolutePath().toString()));
+          Files.deleteIfExists(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes a non-negative number with 7 bits per byte (small numbers take a single byte).
+   */
+  public static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  /**
+   * Reads a number written by {@link #writeVarLong(DataOutput, long)}.
+   */
+  public static long readVarLong(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0;; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  private static LocalDate toDate(long timeMillis) {
+    return Instant.ofEpochMilli(timeMillis).atZone(ZoneId.systemDefault()).toLocalDate();
+  }
+
+  @FunctionalInterface
+  public interface BatchReader {
+
+    void read(long timestamp, DataInput batch) throws IOException;
+  }
+}
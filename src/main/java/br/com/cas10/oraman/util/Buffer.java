@@ -9,16 +9,40 @@ import java.util.List;
 public class Buffer<T> {
 
   private final EvictingQueue<T> buffer;
+  private final int maxSize;
+  private long generation;
 
   public Buffer(int maxSize) {
     buffer = EvictingQueue.create(maxSize);
+    this.maxSize = maxSize;
   }
 
-  public synchronized void add(T o) {
+  /**
+   * Adds an element.
+   *
+   * @return the element evicted to make room for it, or {@code null}.
+   */
+  public synchronized T add(T o) {
+    T evicted = buffer.size() == maxSize ? buffer.peek() : null;
     buffer.offer(checkNotNull(o));
+    generation++;
+    return evicted;
   }
 
   public synchronized List<T> toList() {
     return ImmutableList.copyOf(buffer);
   }
+
+  /**
+   * Returns the elements added after the specified generation.
+   *
+   * @param since a generation returned by a previous call, or {@code -1}.
+   */
+  public synchronized BufferSlice<T> since(long since) {
+    return BufferSlice.of(ImmutableList.copyOf(buffer), generation, maxSize, since);
+  }
+
+  public synchronized long getGeneration() {
+    return generation;
+  }
 }
@@ -0,0 +1,55 @@
+package br.com.cas10.oraman.util;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Elements added to a buffer after a given generation.
+ *
+ * @param <T> the type of the elements.
+ */
+public class BufferSlice<T> {
+
+  /** Number of elements added to the buffer so far. */
+  public final long generation;
+  /** Maximum number of elements kept by the buffer. */
+  public final int capacity;
+  /**
+   * {@code true} if the requested generation is no longer available, in which case the slice
+   * contains all the elements of the buffer and previously received elements must be discarded.
+   */
+  public final boolean reset;
+  public final List<T> elements;
+
+  BufferSlice(long generation, int capacity, boolean reset, List<T> elements) {
+    this.generation = generation;
+    this.capacity = capacity;
+    this.reset = reset;
+    this.elements = ImmutableList.copyOf(elements);
+  }
+
+  /**
+   * Returns a slice with the same generation whose elements are the result of applying the
+   * function to the elements of this slice.
+   */
+  public <U> BufferSlice<U> map(Function<? super T, ? extends U> function) {
+    List<U> mapped = new ArrayList<>(elements.size());
+    elements.forEach(e -> mapped.add(function.apply(e)));
+    return new BufferSlice<>(generation, capacity, reset, mapped);
+  }
+
+  /**
+   * Returns the elements of a buffer added after {@code since}. A negative {@code since} returns
+   * all elements.
+   */
+  static <T> BufferSlice<T> of(List<T> elements, long generation, int capacity, long since) {
+    long added = generation - since;
+    if (since < 0 || since > generation || added > elements.size()) {
+      return new BufferSlice<>(generation, capacity, true, elements);
+    }
+    return new BufferSlice<>(generation, capacity, false,
+        elements.subList(elements.size() - (int) added, elements.size()));
+  }
+}
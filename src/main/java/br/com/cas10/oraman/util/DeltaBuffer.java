@@ -11,22 +11,48 @@ public class DeltaBuffer<T, U> {
 
   private final EvictingQueue<U> buffer;
   private final BiFunction<T, T, U> deltaFunction;
+  private final int maxSize;
   private T last;
+  private long generation;
 
   public DeltaBuffer(int maxSize, BiFunction<T, T, U> deltaFunction) {
     this.buffer = EvictingQueue.create(maxSize);
     this.deltaFunction = deltaFunction;
+    this.maxSize = maxSize;
   }
 
-  public synchronized void add(T o) {
+  /**
+   * Adds a value to this buffer.
+   *
+   * @return the delta between the value and the previous one, or {@code null} if this is the first
+   *         value.
+   */
+  public synchronized U add(T o) {
     checkNotNull(o);
+    U delta = null;
     if (last != null) {
-      buffer.offer(deltaFunction.apply(last, o));
+      delta = deltaFunction.apply(last, o);
+      buffer.offer(delta);
+      generation++;
     }
     last = o;
+    return delta;
   }
 
   public synchronized List<U> toList() {
     return ImmutableList.copyOf(buffer);
   }
+
+  /**
+   * Returns the deltas added after the specified generation.
+   *
+   * @param since a generation returned by a previous call, or {@code -1}.
+   */
+  public synchronized BufferSlice<U> since(long since) {
+    return BufferSlice.of(ImmutableList.copyOf(buffer), generation, maxSize, since);
+  }
+
+  public synchronized long getGeneration() {
+    return generation;
+  }
 }
@@ -0,0 +1,80 @@
+package br.com.cas10.oraman.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * HyperLogLog distinct values counter.
+ *
+ * <p>Uses {@code 2^precision} bytes of memory regardless of the number of values added. The
+ * relative standard error of the estimate is {@code 1.04 / sqrt(2^precision)}.
+ */
+public class HyperLogLog {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog(int precision) {
+    checkArgument(precision >= 4 && precision <= 16, "precision must be in [4, 16]");
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public void add(CharSequence value) {
+    addHash(HASH_FUNCTION.hashUnencodedChars(value == null ? "" : value).asLong());
+  }
+
+  private void addHash(long hash) {
+    int index = (int) (hash >>> (Long.SIZE - precision));
+    long remaining = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /**
+   * Returns the estimated number of distinct values added to this counter.
+   */
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1d / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      // small range correction (linear counting)
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  /**
+   * Returns the relative standard error of the estimates.
+   */
+  public double relativeError() {
+    return 1.04 / Math.sqrt(registers.length);
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package br.com.cas10.oraman.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of wait times in power of two buckets.
+ *
+ * <p>Bucket {@code i} counts the waits shorter than {@code 2^i} microseconds (and not shorter than
+ * {@code 2^(i-1)}). Histograms are merged by adding their counts, so the histograms of the samples
+ * of any interval can be combined.
+ */
+public class LatencyHistogram {
+
+  /**
+   * The last bucket ({@code 2^39} microseconds, about six days) also counts longer waits.
+   */
+  public static final int BUCKETS = 40;
+
+  private final long[] counts;
+
+  public LatencyHistogram() {
+    this(new long[BUCKETS]);
+  }
+
+  /**
+   * Creates a histogram of the specified counts.
+   *
+   * @param counts the counts of the buckets (not copied).
+   */
+  public LatencyHistogram(long[] counts) {
+    checkArgument(counts.length == BUCKETS);
+    this.counts = counts;
+  }
+
+  /**
+   * Returns the bucket of the waits shorter than the specified upper bound. Bounds that are not
+   * powers of two (e.g., milliseconds) are rounded up to the next power of two.
+   */
+  public static int bucketOf(long upperBoundMicros) {
+    checkArgument(upperBoundMicros > 0);
+    return Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(upperBoundMicros - 1));
+  }
+
+  /**
+   * Returns the upper bound (microseconds) of a bucket.
+   */
+  public static long upperBound(int bucket) {
+    return 1L << bucket;
+  }
+
+  public void add(int bucket, long count) {
+    counts[bucket] += count;
+  }
+
+  public void merge(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+  }
+
+  public long getCount() {
+    return Arrays.stream(counts).sum();
+  }
+
+  public long[] getCounts() {
+    return counts.clone();
+  }
+
+  /**
+   * Returns an approximation (microseconds) of a quantile of the wait times, interpolated within
+   * the bucket that contains it. Returns {@code 0} if the histogram is empty.
+   *
+   * @param quantile a value in {@code [0, 1]}.
+   */
+  public double quantile(double quantile) {
+    checkArgument(quantile >= 0 && quantile <= 1);
+    long total = getCount();
+    if (total == 0) {
+      return 0;
+    }
+    double rank = quantile * total;
+    long cumulative = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      if (counts[i] == 0) {
+        continue;
+      }
+      if (cumulative + counts[i] >= rank) {
+        double lower = i == 0 ? 0 : upperBound(i - 1);
+        double upper = upperBound(i);
+        return lower + (upper - lower) * (rank - cumulative) / counts[i];
+      }
+      cumulative += counts[i];
+    }
+    return upperBound(BUCKETS - 1);
+  }
+}
@@ -0,0 +1,209 @@
+package br.com.cas10.oraman.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Time series stored in memory-mapped files, one file per day.
+ *
+ * <p>Each file has a header (number of values per record and number of records) followed by fixed
+ * width records: the timestamp and the values. Records must be appended in chronological order, so
+ * range queries locate the first record with a binary search.
+ *
+ * <p>If the width of the series changes (e.g., the set of wait classes), the file of the day is
+ * renamed with the suffix {@code -w<width>} and a new file is started. The renamed files are not
+ * read, but removed with the other files of their day.
+ */
+public class MappedSeries {
+
+  private static final Logger logger = LoggerFactory.getLogger(MappedSeries.class);
+
+  private static final DateTimeFormatter FILENAME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+  private static final Pattern FILENAME_PATTERN =
+      Pattern.compile("\\d{4}-\\d{2}-\\d{2}(-w\\d+)?");
+  private static final int HEADER_SIZE = 8;
+  private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+  private final Path dir;
+  private final int width;
+  private final int recordSize;
+  private final int fileCapacity;
+
+  private LocalDate currentDate;
+  private MappedByteBuffer current;
+
+  /**
+   * Creates a series stored in the specified directory.
+   *
+   * @param width number of values of each record.
+   * @param intervalMillis expected interval between records, used to size the files (with room
+   *        for twice as many records).
+   */
+  public MappedSeries(Path dir, int width, long intervalMillis) {
+    checkArgument(width > 0);
+    checkArgument(intervalMillis > 0);
+    this.dir = dir;
+    this.width = width;
+    this.recordSize = Long.BYTES + width * Double.BYTES;
+    this.fileCapacity = (int) (2 * DAY_MILLIS / intervalMillis);
+  }
+
+  public synchronized void append(long timestamp, double[] values) throws IOException {
+    checkArgument(values.length == width);
+    LocalDate date = toDate(timestamp);
+    if (!date.equals(currentDate)) {
+      current = null;
+      current = mapForWrite(date);
+      currentDate = date;
+    }
+    int count = current.getInt(Integer.BYTES);
+    if (count >= fileCapacity) {
+      logger.warn("File full: " + dir.resolve(FILENAME_FORMATTER.format(date)));
+      return;
+    }
+    int position = HEADER_SIZE + count * recordSize;
+    current.putLong(position, timestamp);
+    for (int i = 0; i < width; i++) {
+      current.putDouble(position + Long.BYTES + i * Double.BYTES, values[i]);
+    }
+    current.putInt(Integer.BYTES, count + 1);
+  }
+
+  private MappedByteBuffer mapForWrite(LocalDate date) throws IOException {
+    Files.createDirectories(dir);
+    Path path = dir.resolve(FILENAME_FORMATTER.format(date));
+    int fileWidth = readWidth(path);
+    if (fileWidth >= 0 && fileWidth != width) {
+      Path renamed = dir.resolve(FILENAME_FORMATTER.format(date) + "-w" + fileWidth);
+      logger.warn(String.format("Incompatible record width, %s renamed to %s", path, renamed));
+      Files.move(path, renamed, REPLACE_EXISTING);
+    }
+    try (FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+      boolean created = channel.size() < HEADER_SIZE;
+      MappedByteBuffer buffer =
+          channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) fileCapacity * recordSize);
+      if (created) {
+        buffer.putInt(0, width);
+        buffer.putInt(Integer.BYTES, 0);
+      }
+      return buffer;
+    }
+  }
+
+  /**
+   * Returns the record width of a file, or {@code -1} if the file does not exist or is empty.
+   */
+  private static int readWidth(Path path) throws IOException {
+    if (!Files.isRegularFile(path)) {
+      return -1;
+    }
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return -1;
+      }
+      return channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE).getInt(0);
+    }
+  }
+
+  /**
+   * Returns the records whose timestamp is in the closed interval {@code [start, end]}.
+   */
+  public List<SeriesPoint> read(long start, long end) throws IOException {
+    List<SeriesPoint> points = new ArrayList<>();
+    LocalDate last = toDate(end);
+    for (LocalDate date = toDate(start); !date.isAfter(last); date = date.plusDays(1)) {
+      Path path = dir.resolve(FILENAME_FORMATTER.format(date));
+      if (Files.isRegularFile(path)) {
+        read(path, start, end, points);
+      }
+    }
+    return points;
+  }
+
+  private void read(Path path, long start, long end, List<SeriesPoint> points)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return;
+      }
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt(0) != width) {
+        logger.warn("Incompatible record width: " + path);
+        return;
+      }
+      int count = (int) Math.min(buffer.getInt(Integer.BYTES),
+          (channel.size() - HEADER_SIZE) / recordSize);
+
+      int low = 0;
+      int high = count;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (buffer.getLong(HEADER_SIZE + middle * recordSize) < start) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+
+      for (int i = low; i < count; i++) {
+        int position = HEADER_SIZE + i * recordSize;
+        long timestamp = buffer.getLong(position);
+        if (timestamp > end) {
+          break;
+        }
+        double[] values = new double[width];
+        for (int j = 0; j < width; j++) {
+          values[j] = buffer.getDouble(position + Long.BYTES + j * Double.BYTES);
+        }
+        points.add(new SeriesPoint(timestamp, values));
+      }
+    }
+  }
+
+  /**
+   * Removes the files of the days before {@code firstAllowedDate}.
+   */
+  public void cleanUp(LocalDate firstAllowedDate) throws IOException {
+    if (!Files.isDirectory(dir)) {
+      return;
+    }
+    String firstAllowedName = FILENAME_FORMATTER.format(firstAllowedDate);
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path path : stream) {
+        String fileName = path.getFileName().toString();
+        if (!Files.isRegularFile(path) || !FILENAME_PATTERN.matcher(fileName).matches()) {
+          continue;
+        }
+        if (fileName.compareTo(firstAllowedName) < 0) {
+          logger.info(
+              String.format("Removing file: %s", path.normalize().toAbsolutePath().toString()));
+          Files.deleteIfExists(path);
+        }
+      }
+    }
+  }
+
+  private static LocalDate toDate(long timeMillis) {
+    return Instant.ofEpochMilli(timeMillis).atZone(ZoneId.systemDefault()).toLocalDate();
+  }
+}
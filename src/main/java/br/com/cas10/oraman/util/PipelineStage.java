@@ -0,0 +1,203 @@
+package br.com.cas10.oraman.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A stage of a pipeline: a bounded queue of items, handled one at a time in the order they were
+ * offered.
+ *
+ * <p>The stage has no thread of its own. The first item offered to an idle stage submits a task
+ * to the executor, which handles the items until the queue is empty, so the stages of many
+ * pipelines share a small pool and each stage has a single consumer at a time. Each stage is meant
+ * to be fed by a single producer (e.g., the previous stage). An item offered to a full queue is
+ * dropped and counted, so a stuck stage never blocks the stages before it. If the executor rejects
+ * the task, the items are left in the queue until the next offer submits a task again.
+ *
+ * <p>The drops and the rejections are logged and reported as the last error of the stage (see
+ * {@link Stats#lastError}), so the producers that cannot afford to lose items (e.g., the archive)
+ * can be watched, and sized with a queue deep enough for the stalls they must absorb.
+ */
+public class PipelineStage<T> {
+
+  private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+  private final String name;
+  private final Executor executor;
+  private final Consumer<T> handler;
+  private final BlockingQueue<Entry<T>> queue;
+
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final AtomicLong processed = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong rejections = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private volatile long lastNanos;
+  private volatile String lastError;
+  private volatile long lastErrorTime;
+
+  /**
+   * Creates a stage with an empty queue.
+   *
+   * @param name identifies the stage in the logs and the statistics.
+   * @param capacity maximum number of items waiting to be handled.
+   * @param executor runs the handler.
+   * @param handler handles each item.
+   */
+  public PipelineStage(String name, int capacity, Executor executor, Consumer<T> handler) {
+    checkArgument(capacity > 0);
+    this.name = name;
+    this.executor = executor;
+    this.handler = handler;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /**
+   * Offers an item to the stage, without blocking.
+   *
+   * @return {@code false} if the item was dropped because the queue was full.
+   */
+  public boolean offer(T item) {
+    if (!queue.offer(new Entry<>(item, System.nanoTime()))) {
+      long count = dropped.incrementAndGet();
+      if (count == 1 || count % 100 == 0) {
+        logger.warn("{}: queue full, item dropped ({} dropped)", name, count);
+      }
+      error("queue full, item dropped");
+      return false;
+    }
+    schedule();
+    return true;
+  }
+
+  private void schedule() {
+    if (!scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(this::drain);
+    } catch (RejectedExecutionException e) {
+      // the items are kept, the next offer submits a task again
+      scheduled.set(false);
+      long count = rejections.incrementAndGet();
+      if (count == 1 || count % 100 == 0) {
+        logger.error("{}: task rejected by the executor, {} items queued ({} rejections)", name,
+            queue.size(), count);
+      }
+      error("task rejected by the executor");
+    }
+  }
+
+  private void error(String message) {
+    lastError = message;
+    lastErrorTime = System.currentTimeMillis();
+  }
+
+  private void drain() {
+    Entry<T> entry;
+    while ((entry = queue.poll()) != null) {
+      long start = System.nanoTime();
+      maxWaitNanos.accumulateAndGet(start - entry.offered, Math::max);
+      try {
+        handler.accept(entry.item);
+      } catch (RuntimeException e) {
+        failures.incrementAndGet();
+        logger.error("Error running " + name, e);
+      } finally {
+        long duration = System.nanoTime() - start;
+        lastNanos = duration;
+        totalNanos.addAndGet(duration);
+        maxNanos.accumulateAndGet(duration, Math::max);
+        processed.incrementAndGet();
+      }
+    }
+    scheduled.set(false);
+    // an item offered after the last poll, while the stage was still scheduled
+    if (!queue.isEmpty()) {
+      schedule();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Stats getStats() {
+    String error = lastError;
+    return new Stats(name, processed.get(), dropped.get(), failures.get(), rejections.get(),
+        queue.size(), error, error == null ? null : lastErrorTime, lastNanos, totalNanos.get(),
+        maxNanos.get(), maxWaitNanos.get());
+  }
+
+  private static class Entry<T> {
+
+    final T item;
+    final long offered;
+
+    Entry(T item, long offered) {
+      this.item = item;
+      this.offered = offered;
+    }
+  }
+
+  /**
+   * Execution statistics of a stage. The times are in microseconds.
+   */
+  public static class Stats {
+
+    public final String name;
+    public final long processed;
+    /** Items dropped because the queue was full. */
+    public final long dropped;
+    /** Items whose handler threw an exception. */
+    public final long failures;
+    /** Tasks rejected by the executor. */
+    public final long rejections;
+    /** Items waiting to be handled. */
+    public final int queued;
+    /**
+     * Last drop or rejection, or {@code null} if there was none.
+     */
+    public final String lastError;
+    /**
+     * Time of the last error (milliseconds since the epoch), or {@code null} if there was none.
+     */
+    public final Long lastErrorTime;
+    public final long lastDuration;
+    public final long averageDuration;
+    public final long maxDuration;
+    /** Longest time an item waited in the queue. */
+    public final long maxWait;
+
+    Stats(String name, long processed, long dropped, long failures, long rejections, int queued,
+        String lastError, Long lastErrorTime, long lastNanos, long totalNanos, long maxNanos,
+        long maxWaitNanos) {
+      this.name = name;
+      this.processed = processed;
+      this.dropped = dropped;
+      this.failures = failures;
+      this.rejections = rejections;
+      this.queued = queued;
+      this.lastError = lastError;
+      this.lastErrorTime = lastErrorTime;
+      this.lastDuration = TimeUnit.NANOSECONDS.toMicros(lastNanos);
+      this.averageDuration =
+          processed == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / processed);
+      this.maxDuration = TimeUnit.NANOSECONDS.toMicros(maxNanos);
+      this.maxWait = TimeUnit.NANOSECONDS.toMicros(maxWaitNanos);
+    }
+  }
+}
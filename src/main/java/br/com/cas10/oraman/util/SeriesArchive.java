@@ -0,0 +1,189 @@
+package br.com.cas10.oraman.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time series archived at several resolutions.
+ *
+ * <p>The first tier receives the appended points. Each of the other tiers stores the averages of
+ * the points of consecutive intervals of its resolution (timestamped with the end of the
+ * interval), so long ranges are read from a few coarse records. Each tier has its own retention.
+ *
+ * <p>The intervals being rolled up are only kept in memory. After a restart, the first point
+ * appended restores its interval, and writes the previous interval if it was not written, from the
+ * points of the first tier.
+ */
+public class SeriesArchive {
+
+  private final int width;
+  private final List<Tier> tiers;
+  private final List<MappedSeries> series;
+  private final List<Rollup> rollups;
+
+  /**
+   * Creates an archive stored in the specified directory (a subdirectory per tier).
+   *
+   * @param tiers the tiers, from the finest to the coarsest resolution.
+   */
+  public SeriesArchive(Path dir, int width, List<Tier> tiers) {
+    checkArgument(!tiers.isEmpty());
+    this.width = width;
+    this.tiers = ImmutableList.copyOf(tiers);
+
+    ImmutableList.Builder<MappedSeries> seriesBuilder = ImmutableList.builder();
+    ImmutableList.Builder<Rollup> rollupsBuilder = ImmutableList.builder();
+    MappedSeries first = null;
+    for (int i = 0; i < tiers.size(); i++) {
+      Tier tier = tiers.get(i);
+      MappedSeries tierSeries =
+          new MappedSeries(dir.resolve(tier.name), width, tier.intervalMillis);
+      seriesBuilder.add(tierSeries);
+      if (i == 0) {
+        first = tierSeries;
+      } else {
+        rollupsBuilder.add(new Rollup(tier.intervalMillis, tierSeries, first, width));
+      }
+    }
+    this.series = seriesBuilder.build();
+    this.rollups = rollupsBuilder.build();
+  }
+
+  public synchronized void append(long timestamp, double[] values) throws IOException {
+    checkArgument(values.length == width);
+    series.get(0).append(timestamp, values);
+    for (Rollup rollup : rollups) {
+      rollup.add(timestamp, values);
+    }
+  }
+
+  /**
+   * Returns the points of the closed interval {@code [start, end]}, read from the finest tier that
+   * retains the start of the interval and has at most {@code maxPoints} points in it (or from the
+   * coarsest tier).
+   */
+  public List<SeriesPoint> query(long start, long end, int maxPoints, LocalDate today)
+      throws IOException {
+    LocalDate startDate = Instant.ofEpochMilli(start).atZone(ZoneId.systemDefault()).toLocalDate();
+    int index = tiers.size() - 1;
+    for (int i = 0; i < tiers.size(); i++) {
+      Tier tier = tiers.get(i);
+      boolean retained = !startDate.isBefore(today.minusDays(tier.maxDays));
+      if (retained && (end - start) / tier.intervalMillis <= maxPoints) {
+        index = i;
+        break;
+      }
+    }
+    return series.get(index).read(start, end);
+  }
+
+  /**
+   * Removes the files that are no longer retained.
+   */
+  public void cleanUp(LocalDate today) throws IOException {
+    for (int i = 0; i < tiers.size(); i++) {
+      series.get(i).cleanUp(today.minusDays(tiers.get(i).maxDays));
+    }
+  }
+
+  public static class Tier {
+
+    final String name;
+    final long intervalMillis;
+    final int maxDays;
+
+    /**
+     * Creates a tier.
+     *
+     * @param name name of the directory of the tier.
+     * @param intervalMillis resolution of the tier.
+     * @param maxDays number of days retained, besides the current day.
+     */
+    public Tier(String name, long intervalMillis, int maxDays) {
+      checkArgument(intervalMillis > 0);
+      this.name = checkNotNull(name);
+      this.intervalMillis = intervalMillis;
+      this.maxDays = maxDays;
+    }
+  }
+
+  private static class Rollup {
+
+    final long intervalMillis;
+    final MappedSeries series;
+    /** The series of the first tier, from which the interval is restored. */
+    final MappedSeries source;
+    final double[] sums;
+    long bucket = Long.MIN_VALUE;
+    int count;
+
+    Rollup(long intervalMillis, MappedSeries series, MappedSeries source, int width) {
+      this.intervalMillis = intervalMillis;
+      this.series = series;
+      this.source = source;
+      this.sums = new double[width];
+    }
+
+    void add(long timestamp, double[] values) throws IOException {
+      long pointBucket = Math.floorDiv(timestamp - 1, intervalMillis);
+      if (bucket == Long.MIN_VALUE) {
+        restore(pointBucket, timestamp);
+      }
+      if (pointBucket != bucket) {
+        flush();
+        bucket = pointBucket;
+      }
+      accumulate(values);
+    }
+
+    /**
+     * Restores the interval of the first point appended (the points of the first tier before it),
+     * and writes the previous interval if it was not written.
+     */
+    private void restore(long pointBucket, long timestamp) throws IOException {
+      long previousEnd = pointBucket * intervalMillis;
+      if (series.read(previousEnd, previousEnd).isEmpty()) {
+        bucket = pointBucket - 1;
+        addAll(source.read(previousEnd - intervalMillis + 1, previousEnd));
+        flush();
+      }
+      bucket = pointBucket;
+      addAll(source.read(previousEnd + 1, timestamp - 1));
+    }
+
+    private void addAll(List<SeriesPoint> points) {
+      for (SeriesPoint point : points) {
+        accumulate(point.getValues());
+      }
+    }
+
+    private void accumulate(double[] values) {
+      for (int i = 0; i < values.length; i++) {
+        sums[i] += values[i];
+      }
+      count++;
+    }
+
+    private void flush() throws IOException {
+      if (count == 0) {
+        return;
+      }
+      double[] averages = new double[sums.length];
+      for (int i = 0; i < sums.length; i++) {
+        averages[i] = sums[i] / count;
+      }
+      series.append((bucket + 1) * intervalMillis, averages);
+      Arrays.fill(sums, 0);
+      count = 0;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package br.com.cas10.oraman.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Point of a series with a fixed number of values (see {@link SeriesSchema}).
+ *
+ * <p>Serialized to JSON as {@code [timestamp, [values]]}.
+ */
+@JsonFormat(shape = JsonFormat.Shape.ARRAY)
+@JsonPropertyOrder({"timestamp", "values"})
+public class SeriesPoint {
+
+  private final long timestamp;
+  private final double[] values;
+
+  public SeriesPoint(long timestamp, double[] values) {
+    this.timestamp = timestamp;
+    this.values = checkNotNull(values);
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Returns the values of this point. The array must not be modified.
+   */
+  public double[] getValues() {
+    return values;
+  }
+}
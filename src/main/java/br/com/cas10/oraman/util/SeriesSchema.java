@@ -0,0 +1,41 @@
+package br.com.cas10.oraman.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keys of the values of the points of a series. The value of a key is at the same index in every
+ * point.
+ */
+public class SeriesSchema {
+
+  private final List<String> keys;
+  private final Map<String, Integer> indexes;
+
+  public SeriesSchema(List<String> keys) {
+    this.keys = ImmutableList.copyOf(keys);
+    ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+    for (int i = 0; i < this.keys.size(); i++) {
+      builder.put(this.keys.get(i), i);
+    }
+    this.indexes = builder.build();
+  }
+
+  public List<String> getKeys() {
+    return keys;
+  }
+
+  public int size() {
+    return keys.size();
+  }
+
+  /**
+   * Returns the index of a key, or {@code -1} if the key is not part of this schema.
+   */
+  public int indexOf(String key) {
+    Integer index = indexes.get(key);
+    return index == null ? -1 : index;
+  }
+}
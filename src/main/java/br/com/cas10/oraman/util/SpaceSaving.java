@@ -0,0 +1,161 @@
+package br.com.cas10.oraman.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Space-Saving top-K counter.
+ *
+ * <p>Monitors at most {@code capacity} keys. Each monitored key is associated with a value created
+ * by the supplied factory (e.g., a builder that accumulates data about the key). When a key that
+ * is not monitored is offered and the counter is full, the key with the smallest count is evicted
+ * and the new key inherits its count. The count of a monitored key overestimates the true count by
+ * at most {@link #maxError()}, which is never greater than {@code total / capacity}.
+ *
+ * <p>While the number of distinct keys does not exceed the capacity the counts are exact.
+ *
+ * @param <K> the key type.
+ * @param <V> the type of the values associated with the keys.
+ */
+public class SpaceSaving<K, V> {
+
+  private static final Comparator<Entry<?, ?>> ORDER =
+      Comparator.<Entry<?, ?>>comparingLong(e -> e.count).thenComparingLong(e -> e.sequence);
+
+  private final int capacity;
+  private final Function<? super K, ? extends V> factory;
+  private final Map<K, Entry<K, V>> entries = new HashMap<>();
+
+  /** Created when the first eviction is necessary. */
+  private TreeSet<Entry<K, V>> ordered;
+  private long sequence;
+  private long total;
+
+  public SpaceSaving(int capacity, Function<? super K, ? extends V> factory) {
+    checkArgument(capacity > 0);
+    this.capacity = capacity;
+    this.factory = checkNotNull(factory);
+  }
+
+  /**
+   * Creates a counter that never evicts keys.
+   */
+  public static <K, V> SpaceSaving<K, V> unbounded(Function<? super K, ? extends V> factory) {
+    return new SpaceSaving<>(Integer.MAX_VALUE, factory);
+  }
+
+  /**
+   * Increments the count of a key.
+   *
+   * @return the value associated with the key.
+   */
+  public V offer(K key) {
+    return offer(key, 1);
+  }
+
+  /**
+   * Adds {@code count} to the count of a key.
+   *
+   * @return the value associated with the key.
+   */
+  public V offer(K key, long count) {
+    checkArgument(count > 0);
+    total += count;
+    Entry<K, V> entry = entries.get(key);
+    if (entry != null) {
+      increment(entry, count);
+      return entry.value;
+    }
+    if (entries.size() < capacity) {
+      entry = new Entry<>(key, factory.apply(key), 0, sequence++);
+      entries.put(key, entry);
+      if (ordered != null) {
+        ordered.add(entry);
+      }
+      increment(entry, count);
+      return entry.value;
+    }
+    if (ordered == null) {
+      ordered = new TreeSet<>(ORDER);
+      ordered.addAll(entries.values());
+    }
+    Entry<K, V> min = ordered.pollFirst();
+    entries.remove(min.key);
+    entry = new Entry<>(key, factory.apply(key), min.count, sequence++);
+    entries.put(key, entry);
+    ordered.add(entry);
+    increment(entry, count);
+    return entry.value;
+  }
+
+  private void increment(Entry<K, V> entry, long count) {
+    if (ordered == null) {
+      entry.count += count;
+    } else {
+      ordered.remove(entry);
+      entry.count += count;
+      ordered.add(entry);
+    }
+  }
+
+  /**
+   * Returns the values associated with the monitored keys.
+   */
+  public Collection<V> values() {
+    List<V> values = new ArrayList<>(entries.size());
+    entries.values().forEach(e -> values.add(e.value));
+    return values;
+  }
+
+  /**
+   * Returns the number of monitored keys.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the sum of all counts offered.
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns {@code true} if no key has been evicted.
+   */
+  public boolean isExact() {
+    return ordered == null;
+  }
+
+  /**
+   * Returns the upper bound of the overestimation of the counts of the monitored keys.
+   */
+  public long maxError() {
+    return ordered == null || ordered.isEmpty() ? 0 : ordered.first().count;
+  }
+
+  private static class Entry<K, V> {
+
+    final K key;
+    final V value;
+    final long sequence;
+    long count;
+
+    Entry(K key, V value, long count, long sequence) {
+      this.key = key;
+      this.value = value;
+      this.count = count;
+      this.sequence = sequence;
+    }
+  }
+}
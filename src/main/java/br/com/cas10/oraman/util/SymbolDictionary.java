@@ -0,0 +1,124 @@
+package br.com.cas10.oraman.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded dictionary of repeated values (events, programs, SQL ids, etc.), which shares a
+ * single instance of each value. Unlike {@link String#intern()}, the values that are no longer used
+ * are evicted.
+ *
+ * <p>Once the dictionary is full, the new values are returned as they are (not shared) until some
+ * entries are evicted.
+ *
+ * <p>Thread-safe. A value used while it is being evicted may be evicted anyway, in which case it is
+ * added again the next time it is used.
+ */
+public class SymbolDictionary {
+
+  private final int maxSize;
+  private final Map<String, Symbol> symbols = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public SymbolDictionary(int maxSize) {
+    checkArgument(maxSize > 0);
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the shared instance of a value, adding it to the dictionary if needed.
+   *
+   * @param value the value, or {@code null}.
+   * @param timestamp the time of use of the value.
+   */
+  public String intern(String value, long timestamp) {
+    if (value == null) {
+      return null;
+    }
+    Symbol symbol = symbols.get(value);
+    if (symbol != null) {
+      hits.increment();
+      if (symbol.lastUsed < timestamp) {
+        symbol.lastUsed = timestamp;
+      }
+      return symbol.value;
+    }
+    misses.increment();
+    if (symbols.size() >= maxSize) {
+      rejections.increment();
+      return value;
+    }
+    symbol = symbols.putIfAbsent(value, new Symbol(value, timestamp));
+    return symbol == null ? value : symbol.value;
+  }
+
+  /**
+   * Evicts the values not used since the specified time (e.g., the start of the oldest snapshot
+   * kept in memory).
+   *
+   * @return the number of values evicted.
+   */
+  public int evictUnusedBefore(long timestamp) {
+    int count = 0;
+    for (Symbol symbol : symbols.values()) {
+      if (symbol.lastUsed < timestamp && symbols.remove(symbol.value, symbol)) {
+        count++;
+      }
+    }
+    evictions.add(count);
+    return count;
+  }
+
+  public int size() {
+    return symbols.size();
+  }
+
+  public Stats getStats() {
+    return new Stats(symbols.size(), maxSize, hits.sum(), misses.sum(), rejections.sum(),
+        evictions.sum());
+  }
+
+  private static class Symbol {
+
+    final String value;
+    volatile long lastUsed;
+
+    Symbol(String value, long lastUsed) {
+      this.value = value;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  /**
+   * Usage statistics of a dictionary.
+   */
+  public static class Stats {
+
+    public final int size;
+    public final int maxSize;
+    public final long hits;
+    public final long misses;
+    /** Values not added because the dictionary was full. */
+    public final long rejections;
+    public final long evictions;
+    /** Fraction of the lookups that found the value in the dictionary. */
+    public final double hitRate;
+
+    Stats(int size, int maxSize, long hits, long misses, long rejections, long evictions) {
+      this.size = size;
+      this.maxSize = maxSize;
+      this.hits = hits;
+      this.misses = misses;
+      this.rejections = rejections;
+      this.evictions = evictions;
+      this.hitRate = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+  }
+}
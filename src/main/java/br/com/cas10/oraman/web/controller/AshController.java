@@ -3,16 +3,29 @@ package br.com.cas10.oraman.web.controller;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
 import static org.springframework.web.bind.annotation.RequestMethod.GET;
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
 
 import br.com.cas10.oraman.agent.ash.Ash;
+import br.com.cas10.oraman.agent.ash.AshBursts;
 import br.com.cas10.oraman.agent.ash.IntervalActivity;
+import br.com.cas10.oraman.agent.ash.IntervalComparison;
 import br.com.cas10.oraman.agent.ash.SessionActivity;
 import br.com.cas10.oraman.agent.ash.SqlActivity;
 import br.com.cas10.oraman.oracle.DatabaseSystem;
+import br.com.cas10.oraman.oracle.SessionSampler;
+import br.com.cas10.oraman.oracle.Sessions;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.BufferSlice;
+import br.com.cas10.oraman.util.PipelineStage;
+import br.com.cas10.oraman.util.SeriesPoint;
 import br.com.cas10.oraman.util.Snapshot;
+import br.com.cas10.oraman.util.SymbolDictionary;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -21,12 +34,18 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
 @OramanController
+@TargetScoped
 class AshController {
 
   private static final long FIVE_MINUTES = MINUTES.toMillis(5);
@@ -35,22 +54,61 @@ class AshController {
   @Autowired
   private Ash ash;
   @Autowired
+  private AshBursts bursts;
+  @Autowired
   private DatabaseSystem databaseSystem;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private SessionSampler sessionSampler;
+  @Autowired
+  private Sessions sessions;
+
+  private MemoizedResponses ashResponses;
+
+  @PostConstruct
+  private void init() {
+    ashResponses = new MemoizedResponses(objectMapper, this::ashData);
+  }
 
+  /**
+   * Returns the activity of the last hour.
+   *
+   * <p>If {@code since} is the generation returned by a previous request, only the snapshots added
+   * after it are returned, and the interval data is omitted if there are no new snapshots.
+   */
   @RequestMapping(value = "/ash/ash", method = GET)
-  Map<String, ?> ash() {
-    List<Snapshot<Double>> snapshots = ash.getWaitClassesSnapshots();
+  ResponseEntity<byte[]> ash(
+      @RequestParam(value = "since", required = false, defaultValue = "-1") Long since,
+      @RequestHeader(value = ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return ashResponse(ash.getGeneration(), since).toResponseEntity(acceptEncoding);
+  }
+
+  /**
+   * Returns the response of {@code /ash/ash}, rendered once per snapshot generation.
+   */
+  RenderedResponse ashResponse(long generation, long since) {
+    return ashResponses.get(generation, since);
+  }
+
+  private Map<String, ?> ashData(long since) {
+    BufferSlice<SeriesPoint> slice = ash.getWaitClassesSnapshots(since);
+
+    Map<String, Object> response = new LinkedHashMap<>();
+    putAasData(slice, response);
+    if (!slice.reset && slice.elements.isEmpty()) {
+      return response;
+    }
 
+    List<SeriesPoint> snapshots = slice.reset ? slice.elements
+        : ash.getWaitClassesSnapshots();
     long intervalStart = 0;
     long intervalEnd = 0;
-    if (!snapshots.isEmpty()) {
-      intervalEnd = Iterables.getLast(snapshots).getTimestamp();
+    if (!slice.elements.isEmpty()) {
+      intervalEnd = Iterables.getLast(slice.elements).getTimestamp();
       intervalStart = Math.max(snapshots.get(0).getTimestamp(), intervalEnd - FIVE_MINUTES);
     }
     IntervalActivity intervalActivity = ash.getIntervalActivity(intervalStart, intervalEnd, 10);
-
-    Map<String, Object> response = new LinkedHashMap<>();
-    putAasData(snapshots, response);
     putIntervalData(intervalActivity, response);
     return response;
   }
@@ -59,15 +117,96 @@ class AshController {
   Map<String, ?> ashArchiveInterval(@RequestParam("start") Long start,
       @RequestParam("end") Long end,
       @RequestParam(value = "topQueriesCount", required = false, defaultValue = "10")
-      Integer topQueriesCount) {
-    long groupInterval = Math.max((end - start) / 240, 15_000);
-    IntervalActivity intervalActivity = ash.getArchivedIntervalActivity(
-            start, end, groupInterval,topQueriesCount);
+      Integer topQueriesCount,
+      @RequestParam(value = "approximate", required = false, defaultValue = "false")
+      Boolean approximate,
+      @RequestParam(value = "instance", required = false) Integer instance,
+      @RequestParam(value = "burst", required = false) Long burst) {
+    IntervalActivity intervalActivity;
+    if (burst == null) {
+      long groupInterval = Math.max((end - start) / 240, 15_000);
+      intervalActivity = ash.getArchivedIntervalActivity(start, end, groupInterval,
+          topQueriesCount, approximate, instance);
+    } else {
+      long groupInterval = Math.max((end - start) / 240, 1_000);
+      intervalActivity =
+          ash.getBurstActivity(burst, start, end, groupInterval, topQueriesCount, instance);
+    }
 
     Map<String, Object> response = new LinkedHashMap<>();
-    putAasData(intervalActivity.waitClassesSnapshots, response);
+    Map<String, Object> averageActiveSessions = aasData(intervalActivity.waitClassesSnapshots);
+    averageActiveSessions.put("max", intervalActivity.waitClassesMax);
+    averageActiveSessions.put("p95", intervalActivity.waitClassesP95);
+    response.put("averageActiveSessions", averageActiveSessions);
     putIntervalData(intervalActivity, response);
     response.put("topQueriesCount", topQueriesCount);
+    response.put("approximate", intervalActivity.approximate);
+    response.put("distinctSql", intervalActivity.distinctSql);
+    response.put("distinctSessions", intervalActivity.distinctSessions);
+    response.put("maxActivityError", intervalActivity.maxActivityError);
+    return response;
+  }
+
+  /**
+   * Returns the running burst capture (if any) and the archived ones.
+   */
+  @RequestMapping(value = "/ash/bursts", method = GET)
+  Map<String, ?> bursts() {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("bursts", bursts.getBursts());
+    return response;
+  }
+
+  /**
+   * Starts a burst capture.
+   *
+   * @param interval sampling interval (milliseconds).
+   * @param duration time box (seconds).
+   */
+  @RequestMapping(value = "/ash/bursts/start", method = POST)
+  ResponseEntity<?> startBurst(@RequestParam("interval") Long interval,
+      @RequestParam("duration") Long duration) {
+    try {
+      return ResponseEntity.ok(bursts.start(interval, SECONDS.toMillis(duration)));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(e.getMessage());
+    } catch (IllegalStateException e) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+  }
+
+  @ResponseStatus(HttpStatus.OK)
+  @RequestMapping(value = "/ash/bursts/stop", method = POST)
+  void stopBurst() {
+    bursts.stop();
+  }
+
+  /**
+   * Returns the usage statistics of the dictionary of the sampled values.
+   */
+  @RequestMapping(value = "/ash/dictionary", method = GET)
+  SymbolDictionary.Stats dictionary() {
+    return sessionSampler.getDictionary().getStats();
+  }
+
+  /**
+   * Returns the execution statistics of the stages of the ASH ingest pipeline.
+   */
+  @RequestMapping(value = "/ash/pipeline", method = GET)
+  List<PipelineStage.Stats> pipeline() {
+    return ash.getPipelineStats();
+  }
+
+  @RequestMapping(value = "/ash/ash-compare", method = GET)
+  Map<String, ?> ashCompare(@RequestParam("baselineStart") Long baselineStart,
+      @RequestParam("baselineEnd") Long baselineEnd, @RequestParam("start") Long start,
+      @RequestParam("end") Long end,
+      @RequestParam(value = "topCount", required = false, defaultValue = "10") Integer topCount) {
+    IntervalComparison comparison =
+        ash.compareArchivedIntervals(baselineStart, baselineEnd, start, end, topCount);
+
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("comparison", comparison);
     return response;
   }
 
@@ -75,12 +214,36 @@ class AshController {
   Map<String, ?> ashInterval(@RequestParam("start") Long start,
       @RequestParam("end") Long end,
       @RequestParam(value = "topQueriesCount", required = false, defaultValue = "10")
-      Integer topQueriesCount) {
-    IntervalActivity intervalActivity = ash.getIntervalActivity(start, end, topQueriesCount);
+      Integer topQueriesCount,
+      @RequestParam(value = "instance", required = false) Integer instance) {
+    IntervalActivity intervalActivity =
+        ash.getIntervalActivity(start, end, topQueriesCount, instance);
 
     Map<String, Object> response = new LinkedHashMap<>();
     putIntervalData(intervalActivity, response);
     response.put("topQueriesCount", topQueriesCount);
+    response.put("instance", instance);
+    return response;
+  }
+
+  /**
+   * Returns the average active sessions of each instance in the last hour.
+   */
+  @RequestMapping(value = "/ash/ash-instances", method = GET)
+  Map<String, ?> ashInstances() {
+    List<Integer> instances = ash.getInstances();
+    List<List<Object>> data = new ArrayList<>();
+    for (Snapshot<Double> snapshot : ash.getInstancesSnapshots()) {
+      List<Double> values = instances.stream()
+          .map(i -> snapshot.getValues().getOrDefault(i.toString(), ZERO)).collect(toList());
+      data.add(asList(snapshot.getTimestamp(), values));
+    }
+
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("cluster", sessions.clusterEnabled());
+    response.put("instances", instances);
+    response.put("keys", instances.stream().map(i -> "Instance " + i).collect(toList()));
+    response.put("data", data);
     return response;
   }
 
@@ -94,6 +257,7 @@ class AshController {
     List<Map<String, Object>> topSessions = new ArrayList<>();
     for (SessionActivity session : activity.topSessions) {
       Map<String, Object> sessionMap = new LinkedHashMap<>();
+      sessionMap.put("instanceNumber", session.instanceNumber);
       sessionMap.put("sessionId", session.sessionId);
       sessionMap.put("serialNumber", session.serialNumber);
       sessionMap.put("username", session.username);
@@ -110,12 +274,14 @@ class AshController {
 
   @RequestMapping(value = "/ash/ash-session", method = GET)
   Map<String, ?> ashSession(@RequestParam("sid") Long sid,
-      @RequestParam("serialNumber") Long serialNumber) {
+      @RequestParam("serialNumber") Long serialNumber,
+      @RequestParam(value = "instance", required = false) Integer instance) {
     String sidStr = sid.toString();
     String serialNumberStr = serialNumber.toString();
 
-    IntervalActivity activity =
-        ash.getActivity(s -> sidStr.equals(s.sid) && serialNumberStr.equals(s.serialNumber), 10);
+    IntervalActivity activity = ash.getActivity(s -> sidStr.equals(s.sid)
+        && serialNumberStr.equals(s.serialNumber)
+        && (instance == null || instance == s.instanceNumber), 10);
 
     Map<String, Object> response = new LinkedHashMap<>();
     putEventsAasData(activity.eventsSnapshots, response);
@@ -137,23 +303,22 @@ class AshController {
     return response;
   }
 
-  private void putAasData(List<Snapshot<Double>> snapshots, Map<String, Object> response) {
-    List<String> waitClasses = ash.getWaitClasses();
+  private void putAasData(BufferSlice<SeriesPoint> slice, Map<String, Object> response) {
+    Map<String, Object> averageActiveSessions = aasData(slice.elements);
+    averageActiveSessions.put("generation", slice.generation);
+    averageActiveSessions.put("capacity", slice.capacity);
+    averageActiveSessions.put("reset", slice.reset);
 
-    List<List<Object>> data = new ArrayList<>(snapshots.size());
-    for (Snapshot<Double> snapshot : snapshots) {
-      List<Double> values = waitClasses.stream()
-          .map(wc -> snapshot.getValues().getOrDefault(wc, ZERO)).collect(toList());
-      data.add(asList(snapshot.getTimestamp(), values));
-    }
+    response.put("averageActiveSessions", averageActiveSessions);
+  }
 
+  private Map<String, Object> aasData(List<SeriesPoint> snapshots) {
     Map<String, Object> averageActiveSessions = new LinkedHashMap<>();
     averageActiveSessions.put("cpuCores", databaseSystem.getCpuCores());
     averageActiveSessions.put("cpuThreads", databaseSystem.getCpuThreads());
-    averageActiveSessions.put("keys", waitClasses);
-    averageActiveSessions.put("data", data);
-
-    response.put("averageActiveSessions", averageActiveSessions);
+    averageActiveSessions.put("keys", ash.getWaitClasses());
+    averageActiveSessions.put("data", snapshots);
+    return averageActiveSessions;
   }
 
   private void putEventsAasData(List<Snapshot<Double>> snapshots, Map<String, Object> response) {
@@ -190,6 +355,7 @@ class AshController {
     List<Map<String, Object>> topSessions = new ArrayList<>();
     for (SessionActivity session : intervalActivity.topSessions) {
       Map<String, Object> sessionMap = new LinkedHashMap<>();
+      sessionMap.put("instanceNumber", session.instanceNumber);
       sessionMap.put("sessionId", session.sessionId);
       sessionMap.put("serialNumber", session.serialNumber);
       sessionMap.put("username", session.username);
@@ -0,0 +1,111 @@
+package br.com.cas10.oraman.web.controller;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-Sent Events channel that delivers the same messages to all its subscribers.
+ *
+ * <p>Messages are published already encoded, so each message is serialized once regardless of the
+ * number of subscribers. Each subscriber has a bounded queue drained by the executor; a subscriber
+ * whose queue is full (i.e., a client that does not keep up) is disconnected and is expected to
+ * reconnect and fetch the data it missed.
+ */
+class EventStream {
+
+  private static final Logger logger = LoggerFactory.getLogger(EventStream.class);
+
+  private final String eventName;
+  private final Executor executor;
+  private final int queueCapacity;
+  private final long timeoutMillis;
+  private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+
+  EventStream(String eventName, Executor executor, int queueCapacity, long timeoutMillis) {
+    this.eventName = checkNotNull(eventName);
+    this.executor = checkNotNull(executor);
+    this.queueCapacity = queueCapacity;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  SseEmitter subscribe() {
+    Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis));
+    subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+    subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+    subscribers.add(subscriber);
+    return subscriber.emitter;
+  }
+
+  boolean hasSubscribers() {
+    return !subscribers.isEmpty();
+  }
+
+  int getSubscribersCount() {
+    return subscribers.size();
+  }
+
+  /**
+   * Queues an encoded message to all subscribers. Never blocks.
+   */
+  void publish(String data) {
+    for (Subscriber subscriber : subscribers) {
+      if (subscriber.queue.offer(data)) {
+        subscriber.scheduleDrain();
+      } else {
+        logger.info("Slow {} subscriber disconnected", eventName);
+        subscriber.evict();
+      }
+    }
+  }
+
+  private class Subscriber {
+
+    final SseEmitter emitter;
+    final BlockingQueue<String> queue = new ArrayBlockingQueue<>(queueCapacity);
+    final AtomicBoolean draining = new AtomicBoolean();
+
+    Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    void scheduleDrain() {
+      if (draining.compareAndSet(false, true)) {
+        executor.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      try {
+        String data;
+        while ((data = queue.poll()) != null) {
+          emitter.send(SseEmitter.event().name(eventName).data(data));
+        }
+      } catch (IOException | IllegalStateException e) {
+        evict();
+        return;
+      } finally {
+        draining.set(false);
+      }
+      if (!queue.isEmpty()) {
+        scheduleDrain();
+      }
+    }
+
+    void evict() {
+      if (subscribers.remove(this)) {
+        queue.clear();
+        emitter.complete();
+      }
+    }
+  }
+}
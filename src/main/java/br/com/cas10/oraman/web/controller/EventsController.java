@@ -0,0 +1,67 @@
+package br.com.cas10.oraman.web.controller;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import br.com.cas10.oraman.agent.EventActivity;
+import br.com.cas10.oraman.agent.EventHistogramAgent;
+import br.com.cas10.oraman.agent.EventLatency;
+import br.com.cas10.oraman.agent.EventsAgent;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@OramanController
+class EventsController {
+
+  @Autowired
+  private EventHistogramAgent eventHistogramAgent;
+  @Autowired
+  private EventsAgent eventsAgent;
+
+  /**
+   * Returns the events with the largest time waited in the last hour.
+   */
+  @RequestMapping(value = "/events/top", method = RequestMethod.GET)
+  List<EventActivity> topEvents(
+      @RequestParam(value = "count", required = false, defaultValue = "10") Integer count) {
+    return eventsAgent.getTopEvents(count);
+  }
+
+  /**
+   * Returns the waits per second and the average wait time of an event in the last hour.
+   */
+  @RequestMapping(value = "/events/event", method = RequestMethod.GET)
+  Map<String, ?> event(@RequestParam("name") String name) {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("event", name);
+    response.put("keys", eventsAgent.getEventSeriesKeys());
+    response.put("data", eventsAgent.getEventSeries(name));
+    return response;
+  }
+
+  /**
+   * Returns the wait time percentiles of each event in an interval.
+   */
+  @RequestMapping(value = "/events/latency", method = RequestMethod.GET)
+  List<EventLatency> latency(@RequestParam("start") Long start, @RequestParam("end") Long end)
+      throws IOException {
+    return eventHistogramAgent.getLatencies(start, end);
+  }
+
+  /**
+   * Returns the wait time percentiles of an event in an interval, by five minutes (or by
+   * {@code interval} milliseconds).
+   */
+  @RequestMapping(value = "/events/latency-history", method = RequestMethod.GET)
+  List<EventLatency> latencyHistory(@RequestParam("event") String event,
+      @RequestParam("start") Long start, @RequestParam("end") Long end,
+      @RequestParam(value = "interval", required = false) Long interval) throws IOException {
+    long intervalMillis = interval == null ? MINUTES.toMillis(5) : interval;
+    return eventHistogramAgent.getLatencyHistory(event, start, end, intervalMillis);
+  }
+}
@@ -1,47 +1,137 @@
 package br.com.cas10.oraman.web.controller;
 
-import static java.util.stream.Collectors.toList;
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
 
+import br.com.cas10.oraman.agent.ThroughputAgent;
 import br.com.cas10.oraman.agent.WaitsAgent;
 import br.com.cas10.oraman.oracle.DatabaseSystem;
-import br.com.cas10.oraman.util.Snapshot;
-import java.util.ArrayList;
+import br.com.cas10.oraman.target.TargetScoped;
+import br.com.cas10.oraman.util.BufferSlice;
+import br.com.cas10.oraman.util.SeriesPoint;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @OramanController
+@TargetScoped
 class HomeController {
 
-  private static final Double ZERO = Double.valueOf(0);
-
   @Autowired
   private DatabaseSystem databaseSystem;
   @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private ThroughputAgent throughputAgent;
+  @Autowired
   private WaitsAgent waitsAgent;
 
+  private MemoizedResponses averageActiveSessionsResponses;
+
+  @PostConstruct
+  private void init() {
+    averageActiveSessionsResponses =
+        new MemoizedResponses(objectMapper, this::averageActiveSessionsData);
+  }
+
+  /**
+   * Returns the average active sessions of the last hour.
+   *
+   * <p>If {@code since} is the generation returned by a previous request, only the snapshots added
+   * after it are returned.
+   */
   @RequestMapping(value = "/home/average-active-sessions", method = RequestMethod.GET)
-  Map<String, ?> averageActiveSessions() {
-    List<Snapshot<Double>> snapshots = waitsAgent.getSnapshots();
-    List<String> waitClasses = waitsAgent.getWaitClasses();
-
-    List<List<Object>> data = new ArrayList<>(snapshots.size());
-    for (Snapshot<Double> snapshot : snapshots) {
-      List<Object> snapshotData = new ArrayList<>(1 + waitClasses.size());
-      snapshotData.add(snapshot.getTimestamp());
-      snapshotData.add(waitClasses.stream().map(wc -> snapshot.getValues().getOrDefault(wc, ZERO))
-          .collect(toList()));
-      data.add(snapshotData);
-    }
+  ResponseEntity<byte[]> averageActiveSessions(
+      @RequestParam(value = "since", required = false, defaultValue = "-1") Long since,
+      @RequestHeader(value = ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    return averageActiveSessionsResponse(waitsAgent.getGeneration(), since)
+        .toResponseEntity(acceptEncoding);
+  }
+
+  /**
+   * Returns the response of {@code /home/average-active-sessions}, rendered once per snapshot
+   * generation.
+   */
+  RenderedResponse averageActiveSessionsResponse(long generation, long since) {
+    return averageActiveSessionsResponses.get(generation, since);
+  }
+
+  private Map<String, ?> averageActiveSessionsData(long since) {
+    BufferSlice<SeriesPoint> slice = waitsAgent.getSnapshots(since);
+
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("cpuCores", databaseSystem.getCpuCores());
+    response.put("cpuThreads", databaseSystem.getCpuThreads());
+    response.put("keys", waitsAgent.getWaitClasses());
+    response.put("data", slice.elements);
+    response.put("generation", slice.generation);
+    response.put("capacity", slice.capacity);
+    response.put("reset", slice.reset);
+    return response;
+  }
+
+  /**
+   * Returns the archived average active sessions of an interval. Long intervals are returned at a
+   * coarser resolution (five minutes or one hour averages).
+   */
+  @RequestMapping(value = "/home/average-active-sessions-history", method = RequestMethod.GET)
+  Map<String, ?> averageActiveSessionsHistory(@RequestParam("start") Long start,
+      @RequestParam("end") Long end) throws IOException {
+    List<SeriesPoint> points = waitsAgent.getArchivedSnapshots(start, end);
 
     Map<String, Object> response = new LinkedHashMap<>();
     response.put("cpuCores", databaseSystem.getCpuCores());
     response.put("cpuThreads", databaseSystem.getCpuThreads());
-    response.put("keys", waitClasses);
-    response.put("data", data);
+    response.put("keys", waitsAgent.getWaitClasses());
+    response.put("data", points);
+    return response;
+  }
+
+  /**
+   * Returns the names of the sampled {@code v$sysstat} statistics.
+   */
+  @RequestMapping(value = "/home/throughput-statistics", method = RequestMethod.GET)
+  List<String> throughputStatistics() {
+    return throughputAgent.getStatistics();
+  }
+
+  /**
+   * Returns the rates per second of the {@code v$sysstat} statistics in the last hour.
+   *
+   * <p>If {@code since} is the generation returned by a previous request, only the snapshots added
+   * after it are returned.
+   */
+  @RequestMapping(value = "/home/throughput", method = RequestMethod.GET)
+  Map<String, ?> throughput(
+      @RequestParam(value = "since", required = false, defaultValue = "-1") Long since) {
+    BufferSlice<SeriesPoint> slice = throughputAgent.getSnapshots(since);
+
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("keys", throughputAgent.getStatistics());
+    response.put("data", slice.elements);
+    response.put("generation", slice.generation);
+    response.put("capacity", slice.capacity);
+    response.put("reset", slice.reset);
+    return response;
+  }
+
+  /**
+   * Returns the archived rates per second of the {@code v$sysstat} statistics of an interval.
+   */
+  @RequestMapping(value = "/home/throughput-history", method = RequestMethod.GET)
+  Map<String, ?> throughputHistory(@RequestParam("start") Long start,
+      @RequestParam("end") Long end) throws IOException {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("keys", throughputAgent.getStatistics());
+    response.put("data", throughputAgent.getArchivedSnapshots(start, end));
     return response;
   }
 }
@@ -0,0 +1,86 @@
+package br.com.cas10.oraman.web.controller;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.LongFunction;
+
+/**
+ * Responses of an endpoint whose data changes only when a new snapshot is taken.
+ *
+ * <p>Responses are rendered at most once per data generation and request key (e.g., the
+ * {@code since} parameter). Concurrent requests for a response that is being rendered wait for it
+ * instead of rendering it again. The responses of the previous generations are discarded.
+ */
+class MemoizedResponses {
+
+  /** Limits the memory used by unusual keys. */
+  private static final int MAX_KEYS = 16;
+
+  private final ObjectMapper objectMapper;
+  private final LongFunction<?> renderer;
+
+  private long generation = -1;
+  private ConcurrentMap<Long, FutureTask<RenderedResponse>> responses = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the memoized responses of a renderer.
+   *
+   * @param renderer creates the body of the response of a key.
+   */
+  MemoizedResponses(ObjectMapper objectMapper, LongFunction<?> renderer) {
+    this.objectMapper = checkNotNull(objectMapper);
+    this.renderer = checkNotNull(renderer);
+  }
+
+  RenderedResponse get(long generation, long key) {
+    ConcurrentMap<Long, FutureTask<RenderedResponse>> generationResponses;
+    synchronized (this) {
+      if (generation > this.generation) {
+        this.generation = generation;
+        this.responses = new ConcurrentHashMap<>();
+      } else if (generation < this.generation) {
+        return render(key);
+      }
+      generationResponses = this.responses;
+    }
+
+    FutureTask<RenderedResponse> task = generationResponses.get(key);
+    if (task == null) {
+      if (generationResponses.size() >= MAX_KEYS) {
+        return render(key);
+      }
+      FutureTask<RenderedResponse> newTask = new FutureTask<>(() -> render(key));
+      task = generationResponses.putIfAbsent(key, newTask);
+      if (task == null) {
+        task = newTask;
+        task.run();
+      }
+    }
+
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      generationResponses.remove(key, task);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private RenderedResponse render(long key) {
+    try {
+      return new RenderedResponse(objectMapper.writeValueAsBytes(renderer.apply(key)));
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package br.com.cas10.oraman.web.controller;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * JSON response serialized once, kept both plain and gzipped.
+ */
+class RenderedResponse {
+
+  private final byte[] json;
+  private final byte[] gzipped;
+
+  RenderedResponse(byte[] json) {
+    this.json = json;
+    this.gzipped = gzip(json);
+  }
+
+  private static byte[] gzip(byte[] data) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(data);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Returns the gzipped body if the client accepts it.
+   *
+   * @param acceptEncoding value of the {@code Accept-Encoding} request header (may be
+   *        {@code null}).
+   */
+  ResponseEntity<byte[]> toResponseEntity(String acceptEncoding) {
+    ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON_UTF8).header(HttpHeaders.VARY,
+            HttpHeaders.ACCEPT_ENCODING);
+    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzipped);
+    }
+    return builder.body(json);
+  }
+
+  String getJson() {
+    return new String(json, UTF_8);
+  }
+}
@@ -0,0 +1,29 @@
+package br.com.cas10.oraman.web.controller;
+
+import br.com.cas10.oraman.agent.segments.SegmentActivity;
+import br.com.cas10.oraman.agent.segments.SegmentStatistic;
+import br.com.cas10.oraman.agent.segments.SegmentsAgent;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@OramanController
+class SegmentsController {
+
+  @Autowired
+  private SegmentsAgent segmentsAgent;
+
+  /**
+   * Returns the segments with the largest value of a statistic in an interval.
+   */
+  @RequestMapping(value = "/segments/top", method = RequestMethod.GET)
+  List<SegmentActivity> topSegments(@RequestParam("start") Long start,
+      @RequestParam("end") Long end,
+      @RequestParam(value = "statistic", required = false, defaultValue = "LOGICAL_READS")
+          SegmentStatistic statistic,
+      @RequestParam(value = "count", required = false, defaultValue = "10") Integer count) {
+    return segmentsAgent.getTopSegments(start, end, statistic, count);
+  }
+}
@@ -1,18 +1,28 @@
 package br.com.cas10.oraman.web.controller;
 
+import static java.util.concurrent.TimeUnit.HOURS;
+
+import br.com.cas10.oraman.agent.sqlstats.SqlStatsActivity;
+import br.com.cas10.oraman.agent.sqlstats.SqlStatsAgent;
+import br.com.cas10.oraman.agent.sqlstats.SqlStatsMetric;
 import br.com.cas10.oraman.oracle.Cursors;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @OramanController
 class SqlController {
 
   @Autowired
   private Cursors cursors;
+  @Autowired
+  private SqlStatsAgent sqlStatsAgent;
 
   @RequestMapping(value = "/sql/{sqlId}", method = RequestMethod.GET)
   Map<String, ?> sql(@PathVariable("sqlId") String sqlId) {
@@ -21,4 +31,28 @@ class SqlController {
     response.put("executionPlans", cursors.getExecutionPlans(sqlId));
     return response;
   }
+
+  /**
+   * Returns the statistics of each execution plan of a statement in an interval, summed by hour
+   * (or by {@code interval} milliseconds).
+   */
+  @RequestMapping(value = "/sql/{sqlId}/history", method = RequestMethod.GET)
+  List<SqlStatsActivity> sqlHistory(@PathVariable("sqlId") String sqlId,
+      @RequestParam("start") Long start, @RequestParam("end") Long end,
+      @RequestParam(value = "interval", required = false) Long interval) throws IOException {
+    long intervalMillis = interval == null ? HOURS.toMillis(1) : interval;
+    return sqlStatsAgent.getSqlHistory(sqlId, start, end, intervalMillis);
+  }
+
+  /**
+   * Returns the statements with the largest values of a metric in an interval.
+   */
+  @RequestMapping(value = "/sql-stats/top", method = RequestMethod.GET)
+  List<SqlStatsActivity> topSql(@RequestParam("start") Long start, @RequestParam("end") Long end,
+      @RequestParam(value = "metric", required = false, defaultValue = "ELAPSED_TIME")
+          SqlStatsMetric metric,
+      @RequestParam(value = "count", required = false, defaultValue = "20") Integer count)
+      throws IOException {
+    return sqlStatsAgent.getTopSql(start, end, metric, count);
+  }
 }
@@ -0,0 +1,86 @@
+package br.com.cas10.oraman.web.controller;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+
+import br.com.cas10.oraman.agent.WaitsAgent;
+import br.com.cas10.oraman.agent.ash.Ash;
+import br.com.cas10.oraman.target.TargetScoped;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the snapshots of the live charts to the browsers.
+ *
+ * <p>Each new snapshot is encoded once, in the same format as the incremental responses of the
+ * polled endpoints ({@code since} = previous generation), and delivered to every subscriber.
+ */
+@OramanController
+@TargetScoped
+class StreamController {
+
+  private static final Logger logger = LoggerFactory.getLogger(StreamController.class);
+
+  private static final int QUEUE_CAPACITY = 8;
+  private static final long TIMEOUT_MILLIS = MINUTES.toMillis(30);
+
+  @Autowired
+  private Ash ash;
+  @Autowired
+  private AshController ashController;
+  @Autowired
+  private HomeController homeController;
+  @Autowired
+  @Qualifier("push")
+  private TaskExecutor executor;
+  @Autowired
+  private WaitsAgent waitsAgent;
+
+  private EventStream ashStream;
+  private EventStream homeStream;
+
+  @PostConstruct
+  private void init() {
+    ashStream = new EventStream("snapshot", executor, QUEUE_CAPACITY, TIMEOUT_MILLIS);
+    homeStream = new EventStream("snapshot", executor, QUEUE_CAPACITY, TIMEOUT_MILLIS);
+
+    ash.addSnapshotListener(generation -> publish(ashStream,
+        () -> ashController.ashResponse(generation, generation - 1)));
+    waitsAgent.addSnapshotListener(generation -> publish(homeStream,
+        () -> homeController.averageActiveSessionsResponse(generation, generation - 1)));
+  }
+
+  /**
+   * The messages are the memoized incremental responses, so they are shared with the clients that
+   * poll.
+   */
+  private void publish(EventStream stream, Supplier<RenderedResponse> message) {
+    if (!stream.hasSubscribers()) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        stream.publish(message.get().getJson());
+      } catch (RuntimeException e) {
+        logger.error("Error rendering message", e);
+      }
+    });
+  }
+
+  @RequestMapping(value = "/stream/ash", method = GET)
+  SseEmitter ash() {
+    return ashStream.subscribe();
+  }
+
+  @RequestMapping(value = "/stream/home", method = GET)
+  SseEmitter home() {
+    return homeStream.subscribe();
+  }
+}
@@ -0,0 +1,57 @@
+package br.com.cas10.oraman.web.controller;
+
+import static java.util.stream.Collectors.toList;
+
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.SamplingTask;
+import br.com.cas10.oraman.target.Target;
+import br.com.cas10.oraman.target.TargetContext;
+import br.com.cas10.oraman.target.Targets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+@OramanController
+class TargetsController {
+
+  @Autowired
+  private SamplingExecutor sampler;
+  @Autowired
+  private Targets targets;
+
+  /**
+   * Returns the names of the monitored databases and the target of the request.
+   */
+  @RequestMapping(value = "/targets", method = RequestMethod.GET)
+  Map<String, ?> targets() {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("targets", targets.getTargets().stream().map(Target::getName).collect(toList()));
+    response.put("current", TargetContext.current().getName());
+    return response;
+  }
+
+  /**
+   * Returns the execution statistics of the sampling tasks of all the targets.
+   */
+  @RequestMapping(value = "/targets/sampling", method = RequestMethod.GET)
+  List<Map<String, ?>> sampling() {
+    List<Map<String, ?>> response = new ArrayList<>();
+    for (SamplingTask task : sampler.getTasks()) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("target", task.getTarget() == null ? null : task.getTarget().getName());
+      map.put("name", task.getName());
+      map.put("period", task.getPeriodMillis());
+      map.put("offset", task.getOffsetMillis());
+      map.put("runs", task.getRuns());
+      map.put("overruns", task.getOverruns());
+      map.put("maxDelay", task.getMaxDelayMillis());
+      map.put("lastDuration", task.getLastDurationMillis());
+      response.add(map);
+    }
+    return response;
+  }
+}
@@ -1,4 +1,5 @@
 select
+to_number(sys_context('userenv', 'instance')) as inst_id,
 sid,
 serial#,
 decode(type, 'BACKGROUND', substr(program, -5, 4), username) as username,
@@ -0,0 +1,3 @@
+select h.event, h.wait_time_milli, h.wait_count
+from {{ v$event_histogram }} h join {{ v$event_name }} n on n.event# = h.event#
+where n.wait_class <> 'Idle' and h.wait_count > 0
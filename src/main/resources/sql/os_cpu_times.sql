@@ -0,0 +1 @@
+select stat_name, value from {{ v$osstat }} where stat_name in ('BUSY_TIME', 'IDLE_TIME')
@@ -0,0 +1,13 @@
+select
+
+o.owner,
+o.object_name,
+o.subobject_name,
+o.object_type,
+case when o.object_type like 'TABLE%' then o.owner else i.table_owner end as table_owner,
+case when o.object_type like 'TABLE%' then o.object_name else i.table_name end as table_name
+
+from {{ dba_objects }} o
+left join {{ dba_indexes }} i on o.object_type like 'INDEX%' and i.owner = o.owner
+  and i.index_name = o.object_name
+where o.object_id = :objectId
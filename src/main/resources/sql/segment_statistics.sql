@@ -0,0 +1,2 @@
+select obj#, statistic_name, value
+from {{ v$segstat }} where statistic_name in (:names) and value > 0
@@ -0,0 +1,12 @@
+select
+
+sql_id,
+plan_hash_value,
+executions,
+elapsed_time,
+cpu_time,
+buffer_gets,
+disk_reads,
+rows_processed
+
+from {{ v$sqlstats }} where last_active_time >= sysdate - :activeSeconds / 86400
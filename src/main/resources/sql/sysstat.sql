@@ -0,0 +1 @@
+select name, value from {{ v$sysstat }} where name in (:names)
@@ -0,0 +1,2 @@
+select event, wait_class, total_waits, time_waited_micro
+from {{ v$system_event }} where wait_class <> 'Idle'
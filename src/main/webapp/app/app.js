@@ -32,4 +32,20 @@
 		});
 	} ]);
 
+	// Monitored database. The target of the requests is the 'oramanTarget'
+	// cookie, so it also applies to the event streams.
+	mainApp.controller('TargetCtrl', [ '$scope', '$http', '$route',
+			function($scope, $http, $route) {
+				$scope.target = {};
+				$http.get('ws/targets').success(function(json) {
+					$scope.targets = json.targets;
+					$scope.target.current = json.current;
+				});
+				$scope.select = function() {
+					document.cookie = 'oramanTarget='
+							+ encodeURIComponent($scope.target.current) + '; path=/';
+					$route.reload();
+				};
+			} ]);
+
 })();
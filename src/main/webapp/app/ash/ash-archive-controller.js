@@ -47,7 +47,7 @@
 		throw 'Not a valid date: ' + string;
 	}
 
-	function AshArchiveCtrl($scope, $routeParams, $location) {
+	function AshArchiveCtrl($scope, $routeParams, $location, $http) {
 
 		function updateTopSql(data) {
 			var top = (data.length > 0) ? data[0].activity : null;
@@ -73,6 +73,17 @@
 		$scope.intervalEnd = parseInt($routeParams.end);
 		$scope.topQueriesCountOptions = [10, 25, 50, 100];
 		$scope.topQueriesCount = $routeParams.topQueriesCount ? parseInt($routeParams.topQueriesCount) : 10;
+		$scope.approximate = $routeParams.approximate == 'true';
+		$scope.burst = $routeParams.burst ? parseInt($routeParams.burst) : null;
+
+		function search(start, end) {
+			var params = { start: start, end: end, topQueriesCount: $scope.topQueriesCount,
+					approximate: $scope.approximate };
+			if ($scope.burst !== null) {
+				params.burst = $scope.burst;
+			}
+			$location.search(params);
+		}
 
 		if (isNaN($scope.intervalStart) || isNaN($scope.intervalEnd)) {
 			var end = new Date();
@@ -80,7 +91,7 @@
 			end = end.getTime();
 			var start = end - 60 * 60 * 1000;
 
-			$location.search({ start: start, end: end, topQueriesCount: $scope.topQueriesCount });
+			search(start, end);
 			return;
 		}
 
@@ -88,46 +99,62 @@
 		$scope.intervalEndString = dateToString(new Date($scope.intervalEnd));
 
 		$scope.url = 'ws/ash/ash-archive?start=' + $scope.intervalStart
-				+ '&end=' + $scope.intervalEnd + '&topQueriesCount=' + $scope.topQueriesCount;
+				+ '&end=' + $scope.intervalEnd + '&topQueriesCount=' + $scope.topQueriesCount
+				+ '&approximate=' + $scope.approximate;
+		if ($scope.burst !== null) {
+			$scope.url += '&burst=' + $scope.burst;
+		}
 		$scope.series = series;
 		$scope.preprocessor = function(json) {
 			updateTopSql(json.topSql);
 			updateTopSessions(json.topSessions);
+			$scope.distinctSql = json.distinctSql;
+			$scope.distinctSessions = json.distinctSessions;
+			$scope.maxActivityError = json.approximate ? json.maxActivityError : null;
 			return json.averageActiveSessions;
 		};
 
 		$scope.loadData = function() {
-			$location.search({
-				start: parseDate($scope.intervalStartString).getTime(),
-				end: parseDate($scope.intervalEndString).getTime(),
-				topQueriesCount: $scope.topQueriesCount
+			search(parseDate($scope.intervalStartString).getTime(),
+					parseDate($scope.intervalEndString).getTime());
+		};
+
+		$scope.compare = function(baselineShift) {
+			var url = 'ws/ash/ash-compare?baselineStart=' + ($scope.intervalStart - baselineShift)
+					+ '&baselineEnd=' + ($scope.intervalEnd - baselineShift)
+					+ '&start=' + $scope.intervalStart + '&end=' + $scope.intervalEnd
+					+ '&topCount=' + $scope.topQueriesCount;
+			$http.get(url).success(function(json) {
+				var fix = list => list.forEach(function(d) {
+					d.baselineFixed = d.baselineAverageActiveSessions.toFixed(2);
+					d.aasFixed = d.averageActiveSessions.toFixed(2);
+					d.deltaFixed = (d.delta > 0 ? '+' : '') + d.delta.toFixed(2);
+					d.ratioFixed = d.ratio == null ? 'new' : d.ratio.toFixed(2) + 'x';
+				});
+				var c = json.comparison;
+				[c.waitClasses, c.events, c.sql, c.sessions].forEach(fix);
+				$scope.comparison = c;
+				$scope.comparisonSections = [ [ 'Wait Classes', c.waitClasses ],
+						[ 'Events', c.events ], [ 'SQL', c.sql ], [ 'Sessions', c.sessions ] ];
 			});
 		};
 
 		$scope.goForward = function() {
 			var shift = $scope.intervalEnd - $scope.intervalStart;
 			if (shift > 0) {
-				$location.search({
-					start: $scope.intervalStart + shift, 
-					end: $scope.intervalEnd + shift, 
-					topQueriesCount: $scope.topQueriesCount
-				});
+				search($scope.intervalStart + shift, $scope.intervalEnd + shift);
 			}
 		};
 
 		$scope.goBack = function() {
 			var shift = $scope.intervalEnd - $scope.intervalStart;
 			if (shift > 0) {
-				$location.search({
-					start: $scope.intervalStart - shift, 
-					end: $scope.intervalEnd - shift,
-					topQueriesCount: $scope.topQueriesCount
-				});
+				search($scope.intervalStart - shift, $scope.intervalEnd - shift);
 			}
 		};
 	}
 
 	module.controller('AshArchiveCtrl', [ '$scope', '$routeParams',
-			'$location', AshArchiveCtrl ]);
+			'$location', '$http', AshArchiveCtrl ]);
 
 })();
@@ -27,7 +27,7 @@
 		return result;
 	}
 
-	function AshCtrl($scope, $http) {		
+	function AshCtrl($scope, $http, $interval) {		
 		function updateTopSql(data) {
 			var top = (data.length > 0) ? data[0].activity : null;
 			data.forEach(function(sql) {
@@ -68,20 +68,41 @@
 		$scope.preprocessor = function(json) {
 			// Optimization: caches the default interval data (5 minutes) in
 			// order to avoid unnecessary requests when the 'selectedInterval'
-			// watcher is triggered.
-			$scope.cachedAshData = json;
+			// watcher is triggered. The interval data is omitted by the server
+			// if no snapshots were added since the last request.
+			if (json.intervalStart !== undefined) {
+				$scope.cachedAshData = json;
+			}
 			return json.averageActiveSessions;
 		};
 
 		$scope.topQueriesCountOptions = [10, 25, 50, 100];
 		$scope.selectedInterval = {
-			topQueriesCount: 10
+			topQueriesCount: 10,
+			instance: null
 		};
 
+		// cluster mode: average active sessions by instance, and the top
+		// lists of a single instance (null for the whole cluster)
+		var instanceColors = d3.scale.category10();
+		$scope.instanceSeries = [];
+		$scope.instancesPreprocessor = function(json) {
+			$scope.instances = json.instances;
+			$scope.instanceSeries.length = 0;
+			json.keys.forEach(function(key, index) {
+				$scope.instanceSeries.push([ key, instanceColors(index) ]);
+			});
+			return json;
+		};
+		$http.get('ws/ash/ash-instances').success(function(json) {
+			$scope.cluster = json.cluster;
+		});
+
 		$scope.$watchCollection('selectedInterval', function() {
 			var selStart = $scope.selectedInterval.start;
 			var selEnd = $scope.selectedInterval.end;
 			var topQueriesCount = $scope.selectedInterval.topQueriesCount;
+			var instance = $scope.selectedInterval.instance;
 
 			// Page initialization
 			if (!selStart || !selEnd)
@@ -90,17 +111,69 @@
 			// Cache hit
 			if (selStart.getTime() == $scope.cachedAshData.intervalStart
 					&& selEnd.getTime() == $scope.cachedAshData.intervalEnd
-					&& topQueriesCount == $scope.cachedAshData.topQueriesCount) {
+					&& topQueriesCount == $scope.cachedAshData.topQueriesCount
+					&& instance === null) {
 				updateIntervalData($scope.cachedAshData);
 				return;
 			}
 
 			var url = 'ws/ash/ash-interval?start=' + selStart.getTime()
 					+ '&end=' + selEnd.getTime() + '&topQueriesCount=' + topQueriesCount;
+			if (instance !== null) {
+				url += '&instance=' + instance;
+			}
 			$http.get(url).success(updateIntervalData);
 		});
+
+		$scope.burstIntervalOptions = [ 100, 200, 500 ];
+		$scope.burstDurationOptions = [ 1, 2, 5, 10 ];
+		$scope.burst = { interval : 200, duration : 5 };
+
+		function loadBursts() {
+			$http.get('ws/ash/bursts').success(function(json) {
+				json.bursts.forEach(function(b) {
+					b.overheadFixed = b.overhead.toFixed(1);
+					// the last snapshot is timestamped with the end of its second
+					b.url = '#/ash-archive?start=' + b.start + '&end=' + (b.end + 1000)
+							+ '&burst=' + b.start;
+				});
+				$scope.bursts = json.bursts;
+				$scope.activeBurst = json.bursts.length > 0 && json.bursts[0].active
+						? json.bursts[0] : null;
+			});
+		}
+		loadBursts();
+		var burstsRefresh = $interval(function() {
+			if ($scope.activeBurst) {
+				loadBursts();
+			}
+		}, 5000);
+		$scope.$on('$destroy', function() {
+			$interval.cancel(burstsRefresh);
+		});
+
+		$scope.startBurst = function() {
+			var params = $.param({
+				interval : $scope.burst.interval,
+				duration : $scope.burst.duration * 60
+			});
+			$http.post('ws/ash/bursts/start', params, {
+				headers : {
+					'Content-Type' : 'application/x-www-form-urlencoded'
+				}
+			}).success(function() {
+				$scope.burstError = null;
+				loadBursts();
+			}).error(function(message) {
+				$scope.burstError = message;
+			});
+		};
+
+		$scope.stopBurst = function() {
+			$http.post('ws/ash/bursts/stop').success(loadBursts);
+		};
 	}
 
-	module.controller('AshCtrl', [ '$scope', '$http', AshCtrl ]);
+	module.controller('AshCtrl', [ '$scope', '$http', '$interval', AshCtrl ]);
 
 })();
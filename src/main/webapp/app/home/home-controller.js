@@ -2,7 +2,24 @@
 
 	var module = angular.module('home', [ 'averageActiveSessions' ]);
 
-	function HomeCtrl($scope) {
+	var day = 24 * 60 * 60 * 1000;
+
+	// The live range shows the snapshots in memory; the other ranges are
+	// read from the archive (at a coarser resolution for the longer ones).
+	var ranges = [ {
+		name : '1 hour'
+	}, {
+		name : '1 day',
+		length : day
+	}, {
+		name : '7 days',
+		length : 7 * day
+	}, {
+		name : '30 days',
+		length : 30 * day
+	} ];
+
+	function HomeCtrl($scope, $routeParams, $location, $http, $interval) {
 
 		$scope.series = [ [ 'CPU', '#04ce04' ], [ 'Scheduler', '#87fd88' ],
 				[ 'User I/O', '#044ae4' ], [ 'System I/O', '#0993e1' ],
@@ -11,8 +28,78 @@
 				[ 'Administrative', '#73745e' ], [ 'Network', '#9b9378' ],
 				[ 'Queueing', '#cbb796' ], [ 'Cluster', '#cec4a7' ],
 				[ 'Other', '#f070ac' ] ];
+
+		$scope.ranges = ranges;
+		$scope.range = ranges.find(r => r.name == $routeParams.range) || ranges[0];
+		$scope.throughputUrl = 'ws/home/throughput';
+		if ($scope.range.length) {
+			var end = new Date().getTime();
+			var interval = '?start=' + (end - $scope.range.length) + '&end='
+					+ end;
+			$scope.historyUrl = 'ws/home/average-active-sessions-history'
+					+ interval;
+			$scope.throughputUrl = 'ws/home/throughput-history' + interval;
+		}
+
+		$scope.selectRange = function(range) {
+			$location.search('range', range.length ? range.name : null);
+		};
+
+		// The throughput chart shows one statistic at a time, since the
+		// rates of different statistics have different units
+		$http.get('ws/home/throughput-statistics').success(function(json) {
+			$scope.statistics = json;
+			$scope.selectStatistic(json[0]);
+		});
+
+		$scope.selectStatistic = function(statistic) {
+			$scope.statistic = statistic;
+			$scope.throughputSeries = [ [ statistic, '#044ae4' ] ];
+		};
+
+		$scope.throughputPreprocessor = function(json) {
+			var index = json.keys.indexOf($scope.statistic);
+			json.keys = [ $scope.statistic ];
+			json.data = json.data.map(d => [ d[0], [ d[1][index] ] ]);
+			return json;
+		};
+
+		if (!$scope.range.length) {
+			var loadTopEvents = function() {
+				$http.get('ws/events/top').success(function(json) {
+					$scope.topEvents = json;
+
+					// percentiles of the last hour, from the wait time histograms
+					var now = new Date().getTime();
+					$http.get('ws/events/latency?start=' + (now - 60 * 60 * 1000)
+							+ '&end=' + now).success(function(latencies) {
+						json.forEach(function(e) {
+							e.latency = latencies.find(l => l.event == e.event);
+						});
+					});
+				});
+			};
+			loadTopEvents();
+			var timer = $interval(loadTopEvents, 15000);
+
+			var loadHotSegments = function() {
+				var now = new Date().getTime();
+				$http.get('ws/segments/top?start=' + (now - 60 * 60 * 1000) + '&end='
+						+ now).success(function(json) {
+					$scope.hotSegments = json;
+				});
+			};
+			loadHotSegments();
+			var segmentsTimer = $interval(loadHotSegments, 5 * 60 * 1000);
+
+			$scope.$on('$destroy', function() {
+				$interval.cancel(timer);
+				$interval.cancel(segmentsTimer);
+			});
+		}
 	}
 
-	module.controller('HomeCtrl', [ '$scope', HomeCtrl ]);
+	module.controller('HomeCtrl', [ '$scope', '$routeParams', '$location',
+			'$http', '$interval', HomeCtrl ]);
 
 })();
\ No newline at end of file
@@ -11,6 +11,7 @@
       scope: {
         url: '@aasUrl',
         autoRefresh: '@aasAutoRefresh',
+        stream: '@aasStream',
         title: '@aasTitle',
         noDataMessage: '@aasNoDataMessage',
         waitFor: '@aasWaitFor',
@@ -25,23 +26,106 @@
           return json;
         };
 
+        // Endpoints that return a 'generation' are polled incrementally: only
+        // the snapshots added since the last response are requested, and
+        // they are appended to the data already drawn.
+        var current = null;
+        var currentUrl = null;
+
+        function requestUrl() {
+          if (!current || current.generation === undefined
+              || currentUrl != scope.url) {
+            return scope.url;
+          }
+          var separator = scope.url.indexOf('?') < 0 ? '?' : '&';
+          return scope.url + separator + 'since=' + current.generation;
+        }
+
+        function merge(url, json) {
+          if (json.generation === undefined || json.reset || !current
+              || currentUrl != url) {
+            return json;
+          }
+          if (json.data.length == 0) {
+            current.generation = json.generation;
+            return null;
+          }
+          json.data = current.data.concat(json.data).slice(-json.capacity);
+          return json;
+        }
+
+        function update(url, json) {
+          var merged = merge(url, json);
+          if (!merged) {
+            return;
+          }
+          current = merged;
+          currentUrl = url;
+          destroyChart(element);
+          updateChart(merged, scope, element);
+        }
+
         function refresh() {
           if (scope.lockedForUpdate || !scope.url) {
             return;
           }
-          $http.get(scope.url).success(function(json) {
-            destroyChart(element);
-            updateChart(preprocessor(json), scope, element);
+          var url = scope.url;
+          $http.get(requestUrl()).success(function(json) {
+            update(url, preprocessor(json));
+          });
+        }
+
+        // Pushed messages have the format of the incremental responses. If
+        // a message does not follow the data already drawn (e.g., messages
+        // lost while the selection was being dragged) the missing snapshots
+        // are requested.
+        function receive(json) {
+          if (!current || current.generation === undefined) {
+            return;
+          }
+          if (scope.lockedForUpdate
+              || json.generation - json.data.length != current.generation) {
+            refresh();
+            return;
+          }
+          update(scope.url, json);
+        }
+
+        function startPolling() {
+          var refreshPromise = $interval(refresh, parseInt(scope.autoRefresh));
+          scope.$on('$destroy', function() {
+            $interval.cancel(refreshPromise);
+          });
+        }
+
+        function startStream() {
+          var source = new EventSource(scope.stream);
+          // 'open' is also fired after reconnections (e.g., after the
+          // server disconnected a slow client)
+          source.addEventListener('open', function() {
+            scope.$apply(refresh);
+          });
+          source.addEventListener('snapshot', function(e) {
+            scope.$apply(function() {
+              receive(preprocessor(JSON.parse(e.data)));
+            });
+          });
+          source.addEventListener('error', function() {
+            if (source.readyState == EventSource.CLOSED && scope.autoRefresh) {
+              startPolling();
+            }
+          });
+          scope.$on('$destroy', function() {
+            source.close();
           });
         }
 
         function start() {
           refresh();
-          if (scope.autoRefresh) {
-            var refreshPromise = $interval(refresh, parseInt(scope.autoRefresh));
-            scope.$on('$destroy', function() {
-              $interval.cancel(refreshPromise);
-            });
+          if (scope.stream && window.EventSource) {
+            startStream();
+          } else if (scope.autoRefresh) {
+            startPolling();
           }
         }
 
@@ -148,6 +232,22 @@
     } else if (json.cpuThreads && maxY <= json.cpuThreads) {
         maxY = json.cpuThreads;
     }
+    // Points that merge several snapshots (archived intervals) carry the
+    // peaks of the snapshots: the maximum and the 95th percentile of each
+    // series, drawn on top of the series below it.
+    var envelope = json.max && json.p95 && json.max.length == json.data.length;
+    if (envelope) {
+      maxY = Math.max(maxY, d3.max(json.data, function(d, i) {
+        var base = 0;
+        var top = 0;
+        scope.series.forEach(function(s) {
+          var keyIndex = json.keys.indexOf(s[0]);
+          top = Math.max(top, base + json.max[i][1][keyIndex]);
+          base += d[1][keyIndex];
+        });
+        return top;
+      }));
+    }
     maxY = Math.max(maxY, 1);
 
     var xDomain = d3.extent(json.data, d => d[0]);
@@ -202,10 +302,12 @@
         index: index,
         key: s[0],
         color: s[1],
-        values: json.data.map(function(d) {
+        values: json.data.map(function(d, i) {
           return {
             x: d[0],
-            y: d[1][keyIndex]
+            y: d[1][keyIndex],
+            max: envelope ? json.max[i][1][keyIndex] : 0,
+            p95: envelope ? json.p95[i][1][keyIndex] : 0
           };
         })
       };
@@ -226,6 +328,38 @@
       },
       'class': 'aas-data'
     });
+    if (envelope) {
+      var p95Area = d3.svg.area().x(function(d) {
+        return x(d.x);
+      }).y0(function(d) {
+        return y(d.y0 + d.y);
+      }).y1(function(d) {
+        return y(d.y0 + Math.max(d.y, d.p95));
+      });
+      var maxLine = d3.svg.line().x(function(d) {
+        return x(d.x);
+      }).y(function(d) {
+        return y(d.y0 + Math.max(d.y, d.max));
+      });
+      svg.selectAll('.aas-p95').data(data).enter().append('path').attr({
+        d: function(d) {
+          return p95Area(d.values);
+        },
+        fill: function(d) {
+          return d.color;
+        },
+        'class': 'aas-p95'
+      });
+      svg.selectAll('.aas-max').data(data).enter().append('path').attr({
+        d: function(d) {
+          return maxLine(d.values);
+        },
+        stroke: function(d) {
+          return d.color;
+        },
+        'class': 'aas-max'
+      });
+    }
     svg.selectAll('.aas-data').on('mouseover.area', function() {
       d3.select(this).attr('fill-opacity', 0.8);
     }).on('mouseout.area', function() {
@@ -244,6 +378,10 @@
     var xAxis = d3.svg.axis().scale(x).orient('bottom').tickFormat(
         d3.time.format(xTickFormat)).ticks(xTicks);
     var yAxis = d3.svg.axis().scale(y).orient('left').ticks(yTicks);
+    if (maxY >= 10000) {
+      // large rates (e.g., bytes per second) use SI prefixes to fit the margin
+      yAxis.tickFormat(d3.format('.2s'));
+    }
 
     svg.append('g').attr('class', 'axis').attr('transform',
         'translate(0,' + height + ')').call(xAxis);
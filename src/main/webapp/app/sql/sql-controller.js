@@ -83,6 +83,13 @@
       }
     });
 
+    var end = new Date().getTime();
+    var start = end - 7 * 24 * 60 * 60 * 1000;
+    $http.get('ws/sql/' + $routeParams.sqlId + '/history?start=' + start
+        + '&end=' + end).success(function(json) {
+      $scope.history = json.reverse();
+    });
+
     $scope.sqlId = $routeParams.sqlId;
     $scope.series = [];
     $scope.preprocessor = function(json) {
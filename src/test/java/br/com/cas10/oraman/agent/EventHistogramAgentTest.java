@@ -0,0 +1,88 @@
+package br.com.cas10.oraman.agent;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.oracle.Waits;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EventHistogramAgentTest {
+
+  private static final String EVENT_1 = "event 1";
+  private static final String EVENT_2 = "event 2";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRun() throws IOException {
+    EventHistogramAgent agent = newAgent(h -> {
+      h.handle(EVENT_1, 1000, 100);
+    }, h -> {
+      h.handle(EVENT_1, 1000, 190);
+      h.handle(EVENT_1, 16_000, 10);
+      h.handle(EVENT_2, 1, 5);
+    }, h -> {
+      // instance restart
+      h.handle(EVENT_1, 1000, 10);
+      h.handle(EVENT_2, 1, 5);
+    });
+
+    final long start = 1_500_000_000_000L;
+    for (int i = 0; i < 3; i++) {
+      agent.clock = Clock.fixed(Instant.ofEpochMilli(start + MINUTES.toMillis(i)),
+          ZoneId.systemDefault());
+      agent.run();
+    }
+
+    List<EventLatency> latencies = agent.getLatencies(start, start + MINUTES.toMillis(2));
+    assertEquals(2, latencies.size());
+    EventLatency event1 = latencies.get(0);
+    assertEquals(EVENT_1, event1.event);
+    assertEquals(110, event1.waits);
+    assertEquals(512 + 512 * 55 / 100d, event1.p50Micros, 1e-9);
+    assertEquals(8192 + 8192 * 0.45, event1.p95Micros, 1e-9);
+    EventLatency event2 = latencies.get(1);
+    assertEquals(EVENT_2, event2.event);
+    assertEquals(5, event2.waits);
+
+    List<EventLatency> history = agent.getLatencyHistory(EVENT_1, start,
+        start + MINUTES.toMillis(2), MINUTES.toMillis(1));
+    assertEquals(2, history.size());
+    assertEquals(start + MINUTES.toMillis(1), history.get(0).timestamp);
+    assertEquals(100, history.get(0).waits);
+    assertEquals(start + MINUTES.toMillis(2), history.get(1).timestamp);
+    assertEquals(10, history.get(1).waits);
+  }
+
+  @SafeVarargs
+  private final EventHistogramAgent newAgent(Consumer<Waits.EventHistogramHandler>... samples) {
+    Waits waits = mock(Waits.class);
+    int[] calls = {0};
+    doAnswer(invocation -> {
+      samples[calls[0]++].accept(invocation.getArgument(0));
+      return null;
+    }).when(waits).readEventHistograms(any());
+
+    OramanProperties properties = new OramanProperties();
+    properties.getArchive().setDir(folder.getRoot().getPath());
+
+    EventHistogramAgent agent = new EventHistogramAgent();
+    setField(agent, "archive", new EventHistogramArchive(properties));
+    setField(agent, "waits", waits);
+    return agent;
+  }
+}
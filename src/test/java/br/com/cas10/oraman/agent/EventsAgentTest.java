@@ -0,0 +1,107 @@
+package br.com.cas10.oraman.agent;
+
+import static br.com.cas10.oraman.agent.EventsAgent.SAMPLING_INTERVAL_MILLIS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import br.com.cas10.oraman.oracle.Waits;
+import br.com.cas10.oraman.util.SeriesPoint;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+public class EventsAgentTest {
+
+  private static final String EVENT_1 = "event 1";
+  private static final String EVENT_2 = "event 2";
+  private static final String WAIT_CLASS = "wait class";
+
+  private static final double SAMPLING_INTERVAL_SECONDS =
+      MILLISECONDS.toSeconds(SAMPLING_INTERVAL_MILLIS);
+
+  @Test
+  public void testRun() {
+    EventsAgent agent = newAgent(h -> h.handle(EVENT_1, WAIT_CLASS, 10, 1000),
+        h -> {
+          h.handle(EVENT_1, WAIT_CLASS, 20, 3000);
+          h.handle(EVENT_2, WAIT_CLASS, 5, 500);
+        },
+        h -> {
+          h.handle(EVENT_1, WAIT_CLASS, 30, 4000);
+          h.handle(EVENT_2, WAIT_CLASS, 7, 1500);
+        });
+
+    agent.run();
+    assertTrue(agent.getTopEvents(10).isEmpty());
+    agent.run();
+    agent.run();
+
+    List<EventActivity> topEvents = agent.getTopEvents(10);
+    assertEquals(2, topEvents.size());
+    EventActivity event1 = topEvents.get(0);
+    assertEquals(EVENT_1, event1.event);
+    assertEquals(WAIT_CLASS, event1.waitClass);
+    assertEquals(20, event1.waits);
+    assertEquals(3000, event1.timeWaitedMicros);
+    assertEquals(150, event1.averageWaitMicros, 0);
+    assertEquals(3000 / (2 * SAMPLING_INTERVAL_SECONDS * 1_000_000),
+        event1.averageActiveSessions, 1e-12);
+    EventActivity event2 = topEvents.get(1);
+    assertEquals(EVENT_2, event2.event);
+    assertEquals(2, event2.waits);
+    assertEquals(500, event2.averageWaitMicros, 0);
+    assertEquals(1, agent.getTopEvents(1).size());
+
+    // the first delta of a new event is zero
+    List<SeriesPoint> series = agent.getEventSeries(EVENT_2);
+    assertEquals(2, series.size());
+    assertArrayEquals(new double[] {0, 0}, series.get(0).getValues(), 0);
+    assertArrayEquals(new double[] {2 / SAMPLING_INTERVAL_SECONDS, 500},
+        series.get(1).getValues(), 0);
+
+    assertTrue(agent.getEventSeries("unknown").isEmpty());
+  }
+
+  @Test
+  public void testManyEvents() {
+    final int events = 2000;
+    EventsAgent agent = newAgent(h -> {
+      for (int i = 0; i < events; i++) {
+        h.handle("event " + i, WAIT_CLASS, i, i);
+      }
+    }, h -> {
+      for (int i = 0; i < events; i++) {
+        h.handle("event " + i, WAIT_CLASS, 2 * i, 3 * i);
+      }
+    });
+
+    agent.run();
+    agent.run();
+
+    List<SeriesPoint> series = agent.getEventSeries("event " + (events - 1));
+    assertEquals(1, series.size());
+    assertArrayEquals(new double[] {(events - 1) / SAMPLING_INTERVAL_SECONDS, 2},
+        series.get(0).getValues(), 0);
+    assertEquals("event " + (events - 1), agent.getTopEvents(1).get(0).event);
+  }
+
+  @SafeVarargs
+  private static EventsAgent newAgent(Consumer<Waits.SystemEventHandler>... samples) {
+    Waits waits = mock(Waits.class);
+    int[] calls = {0};
+    doAnswer(invocation -> {
+      samples[calls[0]++].accept(invocation.getArgument(0));
+      return null;
+    }).when(waits).readSystemEvents(any());
+
+    EventsAgent agent = new EventsAgent();
+    setField(agent, "waits", waits);
+    return agent;
+  }
+}
@@ -0,0 +1,65 @@
+package br.com.cas10.oraman.agent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import br.com.cas10.oraman.oracle.SystemStatistics;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import org.junit.Test;
+
+public class ThroughputAgentTest {
+
+  private static final String EXECUTE_COUNT = "execute count";
+  private static final String USER_CALLS = "user calls";
+
+  @Test
+  public void testRun() {
+    SystemStatistics systemStatistics = mock(SystemStatistics.class);
+    when(systemStatistics.getStatistics(any()))
+        .thenReturn(ImmutableMap.of(EXECUTE_COUNT, 1000L, USER_CALLS, 500L))
+        .thenReturn(ImmutableMap.of(EXECUTE_COUNT, 1300L, USER_CALLS, 650L))
+        // instance restart
+        .thenReturn(ImmutableMap.of(EXECUTE_COUNT, 20L));
+
+    ThroughputArchive archive = mock(ThroughputArchive.class);
+
+    ThroughputAgent agent = new ThroughputAgent();
+    setField(agent, "archive", archive);
+    setField(agent, "systemStatistics", systemStatistics);
+    setField(agent, "statistics", new SeriesSchema(ImmutableList.of(EXECUTE_COUNT, USER_CALLS)));
+
+    agent.clock = clockAt(0);
+    agent.run();
+    agent.clock = clockAt(15_000);
+    agent.run();
+    agent.clock = clockAt(25_000);
+    agent.run();
+
+    assertEquals(2, agent.getSnapshots().size());
+    verify(archive, times(2)).archiveSnapshot(any());
+
+    SeriesPoint snapshot1 = agent.getSnapshots().get(0);
+    assertEquals(15_000, snapshot1.getTimestamp());
+    assertArrayEquals(new double[] {20, 10}, snapshot1.getValues(), 0);
+
+    SeriesPoint snapshot2 = agent.getSnapshots().get(1);
+    assertEquals(25_000, snapshot2.getTimestamp());
+    assertArrayEquals(new double[] {2, 0}, snapshot2.getValues(), 0);
+  }
+
+  private static Clock clockAt(long millis) {
+    return Clock.fixed(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+  }
+}
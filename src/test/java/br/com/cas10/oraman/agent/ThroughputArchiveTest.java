@@ -0,0 +1,24 @@
+package br.com.cas10.oraman.agent;
+
+import static org.junit.Assert.assertTrue;
+
+import br.com.cas10.oraman.OramanProperties;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ThroughputArchiveTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testGetArchivedSnapshotsNotOpened() throws IOException {
+    OramanProperties properties = new OramanProperties();
+    properties.getArchive().setDir(folder.getRoot().toString());
+    ThroughputArchive archive = new ThroughputArchive(properties);
+
+    assertTrue(archive.getArchivedSnapshots(0, Long.MAX_VALUE).isEmpty());
+  }
+}
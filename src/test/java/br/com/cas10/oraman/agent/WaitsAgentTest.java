@@ -5,13 +5,18 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import br.com.cas10.oraman.oracle.Waits;
 import br.com.cas10.oraman.oracle.data.Wait;
-import br.com.cas10.oraman.util.Snapshot;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.util.List;
 import java.util.Map;
@@ -31,8 +36,13 @@ public class WaitsAgentTest {
     Waits waits = mock(Waits.class);
     when(waits.getWaits()).thenReturn(waits1).thenReturn(waits2).thenReturn(waits3);
 
+    WaitsArchive archive = mock(WaitsArchive.class);
+
     WaitsAgent agent = new WaitsAgent();
+    setField(agent, "archive", archive);
     setField(agent, "waits", waits);
+    setField(agent, "waitClasses",
+        new SeriesSchema(ImmutableList.of(WAIT_CLASS_1, WAIT_CLASS_2)));
 
     assertEquals(0, agent.getSnapshots().size());
     agent.run();
@@ -41,18 +51,19 @@ public class WaitsAgentTest {
     assertEquals(1, agent.getSnapshots().size());
     agent.run();
     assertEquals(2, agent.getSnapshots().size());
+    verify(archive, times(2)).archiveSnapshot(any());
 
     final double samplingIntervalSeconds = MILLISECONDS.toSeconds(SAMPLING_INTERVAL_MILLIS);
 
-    Snapshot<Double> snapshot1 = agent.getSnapshots().get(0);
-    assertEquals(2, snapshot1.getValues().size());
-    assertEquals(5 / samplingIntervalSeconds, snapshot1.getValues().get(WAIT_CLASS_1), 0);
-    assertEquals(3 / samplingIntervalSeconds, snapshot1.getValues().get(WAIT_CLASS_2), 0);
+    SeriesPoint snapshot1 = agent.getSnapshots().get(0);
+    assertEquals(2, snapshot1.getValues().length);
+    assertEquals(5 / samplingIntervalSeconds, snapshot1.getValues()[0], 0);
+    assertEquals(3 / samplingIntervalSeconds, snapshot1.getValues()[1], 0);
 
-    Snapshot<Double> snapshot2 = agent.getSnapshots().get(1);
-    assertEquals(2, snapshot2.getValues().size());
-    assertEquals(3 / samplingIntervalSeconds, snapshot2.getValues().get(WAIT_CLASS_1), 0);
-    assertEquals(7 / samplingIntervalSeconds, snapshot2.getValues().get(WAIT_CLASS_2), 0);
+    SeriesPoint snapshot2 = agent.getSnapshots().get(1);
+    assertEquals(2, snapshot2.getValues().length);
+    assertEquals(3 / samplingIntervalSeconds, snapshot2.getValues()[0], 0);
+    assertEquals(7 / samplingIntervalSeconds, snapshot2.getValues()[1], 0);
   }
 
   private static List<Wait> waitsList(Map<String, Integer> waits) {
@@ -0,0 +1,47 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AdaptiveIntervalTest {
+
+  @Test
+  public void testCpuSaturation() {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 4000, 0.9, 500);
+    interval.addLatency(10);
+    assertEquals(1000, interval.adjust());
+
+    interval.setCpuUtilization(0.95);
+    assertEquals(2000, interval.adjust());
+    assertEquals(4000, interval.adjust());
+    assertEquals(4000, interval.adjust());
+
+    // below the threshold, but not recovered
+    interval.setCpuUtilization(0.8);
+    assertEquals(4000, interval.adjust());
+
+    interval.setCpuUtilization(0.5);
+    assertEquals(2000, interval.adjust());
+    assertEquals(1000, interval.adjust());
+    assertEquals(1000, interval.adjust());
+  }
+
+  @Test
+  public void testLatencySaturation() {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 4000, 0.9, 500);
+    interval.addLatency(100);
+    interval.addLatency(1000);
+    // moving average: 325
+    assertEquals(1000, interval.adjust());
+    interval.addLatency(1500);
+    assertEquals(2000, interval.adjust());
+
+    // unknown CPU utilization does not prevent the recovery
+    interval.setCpuUtilization(null);
+    for (int i = 0; i < 10; i++) {
+      interval.addLatency(50);
+    }
+    assertEquals(1000, interval.adjust());
+  }
+}
@@ -1,18 +1,24 @@
 package br.com.cas10.oraman.agent.ash;
 
-import static br.com.cas10.oraman.agent.ash.AshAgent.SNAPSHOT_SAMPLES;
+import static br.com.cas10.oraman.agent.ash.AshAgent.SNAPSHOT_INTERVAL;
+import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
-import br.com.cas10.oraman.oracle.Sessions;
+import br.com.cas10.oraman.oracle.SessionSampler;
 import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
+import br.com.cas10.oraman.util.SymbolDictionary;
+import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import org.junit.Test;
 
 public class AshAgentTest {
@@ -24,35 +30,98 @@ public class AshAgentTest {
   public void testRun() {
     List<ActiveSession> activeSessionsList = activeSessionsList();
 
-    Sessions sessions = mock(Sessions.class);
-    when(sessions.getActiveSessions()).thenReturn(activeSessionsList);
+    SessionSampler sessions = mock(SessionSampler.class);
+    when(sessions.sample()).thenReturn(activeSessionsList);
+    when(sessions.getDictionary()).thenReturn(new SymbolDictionary(100));
 
     AshAgent agent = new AshAgent();
     setField(agent, "archive", mock(AshArchive.class));
-    setField(agent, "sessions", sessions);
+    setField(agent, "sessionSampler", sessions);
+    setField(agent, "waitClasses",
+        new SeriesSchema(ImmutableList.of(WAIT_CLASS_1, WAIT_CLASS_2)));
 
-    for (int i = 0; i < SNAPSHOT_SAMPLES; i++) {
-      assertTrue(agent.getSnapshots().isEmpty());
-      agent.run();
-    }
-    for (int i = 0; i < SNAPSHOT_SAMPLES; i++) {
-      assertEquals(1, agent.getSnapshots().size());
-      agent.run();
+    // samples every second, starting in the middle of an interval
+    long time = SNAPSHOT_INTERVAL + 7000;
+    for (; time < 3 * SNAPSHOT_INTERVAL; time += 1000) {
+      agent.run(time);
     }
+    assertEquals(1, agent.getSnapshots().size());
+    agent.run(time);
     assertEquals(2, agent.getSnapshots().size());
 
+    AshSnapshot first = agent.getSnapshots().get(0);
+    assertEquals(2 * SNAPSHOT_INTERVAL, first.timestamp);
+    assertEquals(8, first.samples);
+
     AshSnapshot snapshot = agent.getSnapshots().get(1);
 
-    assertEquals(SNAPSHOT_SAMPLES, snapshot.samples);
-    assertEquals(SNAPSHOT_SAMPLES * activeSessionsList.size(), snapshot.activeSessions.size());
+    assertEquals(3 * SNAPSHOT_INTERVAL, snapshot.timestamp);
+    assertEquals(15, snapshot.samples);
+    assertEquals(15 * activeSessionsList.size(), snapshot.getActivity());
+
+    assertEquals(2, agent.getWaitClassesPoints().size());
+    SeriesPoint activityByWaitClass = agent.getWaitClassesPoints().get(1);
 
-    Map<String, Double> activityByWaitClass = snapshot.waitClassesSnapshot.getValues();
+    assertEquals(snapshot.timestamp, activityByWaitClass.getTimestamp());
+    assertArrayEquals(new double[] {3, 1}, activityByWaitClass.getValues(), 0);
+  }
+
+  @Test
+  public void testSkippedSamples() {
+    SessionSampler sessions = mock(SessionSampler.class);
+    when(sessions.sample()).thenReturn(activeSessionsList());
+    when(sessions.getDictionary()).thenReturn(new SymbolDictionary(100));
+
+    AshAgent agent = new AshAgent();
+    setField(agent, "archive", mock(AshArchive.class));
+    setField(agent, "sessionSampler", sessions);
+    setField(agent, "waitClasses",
+        new SeriesSchema(ImmutableList.of(WAIT_CLASS_1, WAIT_CLASS_2)));
+
+    // samples every 250 ms, some of them skipped
+    long[] times = {0, 250, 500, 2000, 2250, 9750, 14750};
+    for (long time : times) {
+      agent.run(time);
+    }
+    agent.run(SNAPSHOT_INTERVAL);
 
-    assertEquals(2, activityByWaitClass.size());
-    assertTrue(activityByWaitClass.containsKey(WAIT_CLASS_1));
-    assertTrue(activityByWaitClass.containsKey(WAIT_CLASS_2));
-    assertEquals(3d, activityByWaitClass.get(WAIT_CLASS_1), 0);
-    assertEquals(1d, activityByWaitClass.get(WAIT_CLASS_2), 0);
+    assertEquals(1, agent.getSnapshots().size());
+    AshSnapshot snapshot = agent.getSnapshots().get(0);
+    assertEquals(SNAPSHOT_INTERVAL, snapshot.timestamp);
+    assertArrayEquals(times, snapshot.sampleTimes);
+    assertEquals(times.length, snapshot.samples);
+    // the average is taken over the samples actually taken
+    assertArrayEquals(new double[] {3, 1}, agent.getWaitClassesPoints().get(0).getValues(), 0);
+  }
+
+  @Test
+  public void testColdSnapshots() {
+    SessionSampler sessions = mock(SessionSampler.class);
+    when(sessions.sample()).thenReturn(activeSessionsList());
+    when(sessions.getDictionary()).thenReturn(new SymbolDictionary(100));
+
+    AshAgent agent = new AshAgent();
+    setField(agent, "archive", mock(AshArchive.class));
+    setField(agent, "sessionSampler", sessions);
+    setField(agent, "waitClasses",
+        new SeriesSchema(ImmutableList.of(WAIT_CLASS_1, WAIT_CLASS_2)));
+    setField(agent, "coldSnapshots", new ColdSnapshotStore(1024 * 1024));
+
+    // two hours of snapshots, with a sample per snapshot
+    long hour = HOURS.toMillis(1);
+    for (long time = 0; time <= 2 * hour; time += SNAPSHOT_INTERVAL) {
+      agent.run(time);
+    }
+    assertEquals(hour / SNAPSHOT_INTERVAL, agent.getSnapshots().size());
+    assertNull(agent.getSnapshots(0, 2 * hour));
+
+    // in the heap and out of it
+    List<AshSnapshot> snapshots = newArrayList(agent.getSnapshots(hour / 2, hour + hour / 2));
+    assertEquals(hour / SNAPSHOT_INTERVAL + 1, snapshots.size());
+    for (int i = 0; i < snapshots.size(); i++) {
+      assertEquals(hour / 2 + i * SNAPSHOT_INTERVAL, snapshots.get(i).timestamp);
+      assertEquals(4, snapshots.get(i).getActivity());
+    }
   }
 
   private static List<ActiveSession> activeSessionsList() {
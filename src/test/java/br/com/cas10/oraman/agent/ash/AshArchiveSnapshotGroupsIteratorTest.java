@@ -2,16 +2,22 @@ package br.com.cas10.oraman.agent.ash;
 
 import static br.com.cas10.oraman.agent.ash.AshArchiveTestUtils.ARCHIVE_PATH;
 import static com.google.common.base.Preconditions.checkState;
+import static java.util.Arrays.asList;
 import static java.util.Arrays.stream;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import br.com.cas10.oraman.agent.ash.AshArchive.ArchivedSnapshotsIterator;
 import br.com.cas10.oraman.agent.ash.AshArchive.SnapshotGroupsIterator;
 import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.util.SeriesSchema;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multiset;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
@@ -23,7 +29,9 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Predicate;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -80,7 +88,7 @@ public class AshArchiveSnapshotGroupsIteratorTest {
     long groupInterval = MINUTES.toMillis(1);
 
     try (SnapshotGroupsIterator iterator =
-        new SnapshotGroupsIterator(ARCHIVE_PATH, start, end, groupInterval)) {
+        new SnapshotGroupsIterator(ARCHIVE_PATH, start, end, groupInterval, s -> true)) {
 
       assertTrue(iterator.hasNext());
       AshSnapshot snapshot1 = iterator.next();
@@ -113,7 +121,7 @@ public class AshArchiveSnapshotGroupsIteratorTest {
     long groupInterval = MINUTES.toMillis(1);
 
     try (SnapshotGroupsIterator iterator =
-        new SnapshotGroupsIterator(ARCHIVE_PATH, start, end, groupInterval)) {
+        new SnapshotGroupsIterator(ARCHIVE_PATH, start, end, groupInterval, s -> true)) {
 
       assertTrue(iterator.hasNext());
       AshSnapshot snapshot1 = iterator.next();
@@ -134,7 +142,7 @@ public class AshArchiveSnapshotGroupsIteratorTest {
     long groupInterval = MINUTES.toMillis(1);
 
     try (SnapshotGroupsIterator iterator =
-        new SnapshotGroupsIterator(ARCHIVE_PATH, start, end, groupInterval)) {
+        new SnapshotGroupsIterator(ARCHIVE_PATH, start, end, groupInterval, s -> true)) {
       assertFalse(iterator.hasNext());
     }
   }
@@ -146,18 +154,159 @@ public class AshArchiveSnapshotGroupsIteratorTest {
     long groupInterval = MINUTES.toMillis(1);
 
     try (SnapshotGroupsIterator iterator =
-        new SnapshotGroupsIterator(ARCHIVE_PATH, start, end, groupInterval)) {
+        new SnapshotGroupsIterator(ARCHIVE_PATH, start, end, groupInterval, s -> true)) {
       assertFalse(iterator.hasNext());
     }
   }
 
+  @Test
+  public void testMergedRuns() throws IOException {
+    ActiveSession reading = session("1", "db file sequential read", WC_1);
+    ActiveSession waiting = session("2", "enq: TX - row lock contention", WC_2);
+    ActiveSession otherEvent = session("2", "log file sync", WC_2);
+
+    // 30 minutes of snapshots of the same sessions, split in several runs
+    List<AshSnapshot> snapshots = new ArrayList<>();
+    long start = toTimestamp(LocalTime.of(15, 0));
+    for (int i = 1; i <= 120; i++) {
+      snapshots.add(new AshSnapshot(start + i * 15_000, asList(new SessionRun(reading, 0, 5),
+          new SessionRun(waiting, 0, 4), new SessionRun(reading, 10, 5),
+          new SessionRun(otherEvent, 4, 1)), SNAPSHOT_SAMPLES + 5));
+    }
+
+    try (SnapshotGroupsIterator iterator = new SnapshotGroupsIterator(memory(snapshots), start,
+        start + MINUTES.toMillis(31), MINUTES.toMillis(31), s -> true)) {
+      AshSnapshot group = iterator.next();
+      assertEquals(snapshots.get(119).timestamp, group.timestamp);
+      assertEquals(120 * (SNAPSHOT_SAMPLES + 5), group.samples);
+      // a run per session state
+      assertEquals(3, group.runs.size());
+      assertSame(reading, group.runs.get(0).session);
+      assertEquals(120 * 10, group.runs.get(0).count);
+      assertEquals(120 * 4, group.runs.get(1).count);
+      assertEquals(120, group.runs.get(2).count);
+      assertFalse(iterator.hasNext());
+    }
+  }
+
+  @Test
+  public void testEnvelope() throws IOException {
+    ActiveSession reading = session("1", "db file sequential read", WC_1);
+    ActiveSession spike = session("2", "enq: TX - row lock contention", WC_2);
+
+    // 1 AAS of wait class 1, except for a snapshot without activity and a spike to 8 AAS
+    List<AshSnapshot> snapshots = new ArrayList<>();
+    long start = toTimestamp(LocalTime.of(15, 0));
+    for (int i = 0; i < 20; i++) {
+      List<SessionRun> runs = new ArrayList<>();
+      if (i == 7) {
+        runs.add(new SessionRun(reading, 0, 8 * SNAPSHOT_SAMPLES));
+      } else if (i != 12) {
+        runs.add(new SessionRun(reading, 0, SNAPSHOT_SAMPLES));
+      }
+      if (i == 15) {
+        runs.add(new SessionRun(spike, 0, SNAPSHOT_SAMPLES / 2));
+      }
+      snapshots.add(new AshSnapshot(start + i * 15_000, runs, SNAPSHOT_SAMPLES));
+    }
+
+    IntervalAggregator aggregator = IntervalAggregator.exact(s -> true,
+        new SeriesSchema(ImmutableList.of(WC_1, WC_2)));
+    try (SnapshotGroupsIterator iterator = new SnapshotGroupsIterator(memory(snapshots), start,
+        start + MINUTES.toMillis(5), MINUTES.toMillis(5), s -> true)) {
+      AshSnapshot group = iterator.next();
+      assertEquals(8, group.envelope.max.get(WC_1), 0);
+      // nearest rank: the 19th of the 20 values
+      assertEquals(1, group.envelope.p95.get(WC_1), 0);
+      assertEquals(0.5, group.envelope.max.get(WC_2), 0);
+      assertEquals(0, group.envelope.p95.get(WC_2), 0);
+      aggregator.add(group);
+    }
+    IntervalActivity activity =
+        aggregator.build(start, start + MINUTES.toMillis(5), 10, id -> null);
+    assertArrayEquals(new double[] {26 / 20d, 0.5 / 20},
+        activity.waitClassesSnapshots.get(0).getValues(), 1e-9);
+    assertArrayEquals(new double[] {8, 0.5}, activity.waitClassesMax.get(0).getValues(), 0);
+    assertArrayEquals(new double[] {1, 0}, activity.waitClassesP95.get(0).getValues(), 0);
+  }
+
+  @Test
+  public void testInstanceEnvelope() throws IOException {
+    ActiveSession first = session("1", "db file sequential read", WC_1);
+    first.instanceNumber = 1;
+    ActiveSession second = session("1", "db file sequential read", WC_1);
+    second.instanceNumber = 2;
+
+    // 1 AAS on instance 1, a spike to 8 AAS on instance 2
+    List<AshSnapshot> snapshots = new ArrayList<>();
+    long start = toTimestamp(LocalTime.of(15, 0));
+    for (int i = 0; i < 20; i++) {
+      List<SessionRun> runs = new ArrayList<>();
+      runs.add(new SessionRun(first, 0, SNAPSHOT_SAMPLES));
+      if (i == 7) {
+        runs.add(new SessionRun(second, 0, 8 * SNAPSHOT_SAMPLES));
+      }
+      snapshots.add(new AshSnapshot(start + i * 15_000, runs, SNAPSHOT_SAMPLES));
+    }
+
+    Predicate<ActiveSession> instance = s -> s.instanceNumber == 1;
+    IntervalAggregator aggregator =
+        IntervalAggregator.exact(instance, new SeriesSchema(ImmutableList.of(WC_1, WC_2)));
+    try (SnapshotGroupsIterator iterator = new SnapshotGroupsIterator(memory(snapshots), start,
+        start + MINUTES.toMillis(5), MINUTES.toMillis(5), instance)) {
+      AshSnapshot group = iterator.next();
+      // the spike of the other instance is not in the envelope
+      assertEquals(1, group.envelope.max.get(WC_1), 0);
+      assertEquals(1, group.envelope.p95.get(WC_1), 0);
+      aggregator.add(group);
+    }
+    IntervalActivity activity =
+        aggregator.build(start, start + MINUTES.toMillis(5), 10, id -> null);
+    assertArrayEquals(new double[] {1, 0}, activity.waitClassesSnapshots.get(0).getValues(), 0);
+    assertArrayEquals(new double[] {1, 0}, activity.waitClassesMax.get(0).getValues(), 0);
+
+    // the whole cluster
+    try (SnapshotGroupsIterator iterator = new SnapshotGroupsIterator(memory(snapshots), start,
+        start + MINUTES.toMillis(5), MINUTES.toMillis(5), s -> true)) {
+      assertEquals(9, iterator.next().envelope.max.get(WC_1), 0);
+    }
+  }
+
+  private static ArchivedSnapshotsIterator memory(List<AshSnapshot> snapshots) {
+    Iterator<AshSnapshot> source = snapshots.iterator();
+    return new ArchivedSnapshotsIterator() {
+      @Override
+      public boolean hasNext() {
+        return source.hasNext();
+      }
+
+      @Override
+      public AshSnapshot next() {
+        return source.next();
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  private static ActiveSession session(String sid, String event, String waitClass) {
+    ActiveSession as = new ActiveSession();
+    as.sid = sid;
+    as.serialNumber = "1";
+    as.event = event;
+    as.waitClass = waitClass;
+    return as;
+  }
+
   static AshSnapshot newSnapshot(LocalTime time, String... waitClasses) {
     List<ActiveSession> activeSessions = stream(waitClasses).map(wc -> {
       ActiveSession as = new ActiveSession();
       as.waitClass = wc;
       return as;
     }).collect(toList());
-    return new AshSnapshot(toTimestamp(time), activeSessions, SNAPSHOT_SAMPLES);
+    return AshSnapshot.ofSessions(toTimestamp(time), activeSessions, SNAPSHOT_SAMPLES);
   }
 
   static long toTimestamp(LocalTime time) {
@@ -170,7 +319,7 @@ public class AshArchiveSnapshotGroupsIteratorTest {
     assertEquals(expectedSnapshotCount * SNAPSHOT_SAMPLES, snapshot.samples);
 
     Multiset<String> waitClassActivity = HashMultiset.create();
-    snapshot.activeSessions.stream().map(as -> as.waitClass).forEach(waitClassActivity::add);
+    snapshot.runs.forEach(r -> waitClassActivity.add(r.session.waitClass, r.count));
 
     assertEquals(expectedWC1, waitClassActivity.count(WC_1));
     assertEquals(expectedWC2, waitClassActivity.count(WC_2));
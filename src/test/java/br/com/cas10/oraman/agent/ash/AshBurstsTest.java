@@ -0,0 +1,162 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.agent.ash.AshBurst.StopReason;
+import br.com.cas10.oraman.oracle.SessionSampler;
+import br.com.cas10.oraman.oracle.SessionSampler.TimedSample;
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.target.SamplingExecutor;
+import br.com.cas10.oraman.target.SamplingTask;
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+public class AshBurstsTest {
+
+  private static final long START = 1_500_000_000_000L;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private AshBursts bursts;
+  private SessionSampler sessions;
+  private SamplingTask task;
+  private ArgumentCaptor<Runnable> sampler;
+
+  @Before
+  public void setUp() throws Exception {
+    OramanProperties properties = new OramanProperties();
+    properties.getArchive().setDir(folder.getRoot().toString());
+    Files.createDirectories(folder.getRoot().toPath().resolve("ash-bursts"));
+
+    sessions = mock(SessionSampler.class);
+    ActiveSession session = new ActiveSession();
+    session.waitClass = "wait class";
+    when(sessions.timedSample()).thenReturn(new TimedSample(ImmutableList.of(session), 0));
+
+    task = mock(SamplingTask.class);
+    sampler = ArgumentCaptor.forClass(Runnable.class);
+    SamplingExecutor samplingExecutor = mock(SamplingExecutor.class);
+    when(samplingExecutor.schedule(eq("ash-burst"), sampler.capture(), anyLong()))
+        .thenReturn(task);
+
+    bursts = new AshBursts(properties);
+    bursts.clock = clock(START);
+    setField(bursts, "sampler", samplingExecutor);
+    setField(bursts, "sessionSampler", sessions);
+  }
+
+  @Test
+  public void testCapture() {
+    bursts.start(100, 5000);
+    assertTrue(bursts.getBursts().get(0).active);
+    try {
+      bursts.start(100, 5000);
+      fail();
+    } catch (IllegalStateException e) {
+      // a single capture at a time
+    }
+
+    for (long time = START; time <= START + 5000; time += 100) {
+      bursts.clock = clock(time);
+      sampler.getValue().run();
+    }
+    verify(task).cancel();
+
+    List<AshBurst> list = bursts.getBursts();
+    assertEquals(1, list.size());
+    AshBurst burst = list.get(0);
+    assertFalse(burst.active);
+    assertEquals(StopReason.COMPLETED, burst.stopReason);
+    assertEquals(50, burst.samples);
+    assertEquals(START, burst.start);
+    assertEquals(START + 5000, (long) burst.end);
+
+    List<AshSnapshot> snapshots = newArrayList(
+        bursts.getArchivedSnapshots(START, START, START + 6000, AshBursts.SNAPSHOT_INTERVAL,
+            s -> true));
+    assertEquals(50, snapshots.stream().mapToInt(s -> s.samples).sum());
+    // one snapshot of ten samples per second, timestamped with the end of the second
+    snapshots.removeIf(s -> s.samples == 0);
+    assertEquals(5, snapshots.size());
+    assertEquals(10, snapshots.get(0).samples);
+    assertEquals(START + 1000, snapshots.get(0).timestamp);
+  }
+
+  @Test
+  public void testOverhead() {
+    // the sampling query takes half of the interval
+    when(sessions.timedSample())
+        .thenReturn(new TimedSample(ImmutableList.of(), MILLISECONDS.toNanos(50)));
+
+    bursts.start(100, 60_000);
+    for (int i = 0; i < AshBursts.MIN_OVERHEAD_SAMPLES; i++) {
+      assertTrue(bursts.getBursts().get(0).active);
+      bursts.clock = clock(START + i * 100);
+      sampler.getValue().run();
+    }
+
+    AshBurst burst = bursts.getBursts().get(0);
+    assertEquals(StopReason.OVERHEAD, burst.stopReason);
+    assertEquals(AshBursts.MIN_OVERHEAD_SAMPLES, burst.samples);
+  }
+
+  @Test
+  public void testStopAndCleanUp() throws Exception {
+    bursts.start(200, 5000);
+    sampler.getValue().run();
+    AshBurst burst = bursts.stop();
+    assertEquals(StopReason.STOPPED, burst.stopReason);
+    assertNull(bursts.stop());
+    assertEquals(1, bursts.getBurst(START).samples);
+
+    Path path = folder.getRoot().toPath().resolve("ash-bursts").resolve(Long.toString(START));
+    assertTrue(Files.isDirectory(path));
+    bursts.clock = clock(START + Duration.ofDays(32).toMillis());
+    bursts.cleanUpArchive();
+    assertFalse(Files.exists(path));
+    assertTrue(bursts.getBursts().isEmpty());
+  }
+
+  @Test
+  public void testShutdown() {
+    bursts.start(200, 5000);
+    sampler.getValue().run();
+    bursts.close();
+    verify(task).cancel();
+
+    AshBurst burst = bursts.getBurst(START);
+    assertEquals(StopReason.SHUTDOWN, burst.stopReason);
+    assertEquals(1, burst.samples);
+    // nothing running
+    bursts.close();
+  }
+
+  private static Clock clock(long millis) {
+    return Clock.fixed(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+  }
+}
@@ -1,9 +1,18 @@
 package br.com.cas10.oraman.agent.ash;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import br.com.cas10.oraman.oracle.data.ActiveSession;
-import br.com.cas10.oraman.util.Snapshot;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.Test;
@@ -13,9 +22,10 @@ public class AshSnapshotTest {
   private static final String WAIT_CLASS_1 = "wait class 1";
   private static final String WAIT_CLASS_2 = "wait class 2";
   private static final String WAIT_CLASS_3 = "wait class 3";
+  private static final String WAIT_CLASS_OTHER = "other wait class";
 
   @Test
-  public void testConstructor() {
+  public void testWaitClassesPoint() {
     List<ActiveSession> activeSessions = new ArrayList<>();
 
     activeSessions.add(newActiveSession(WAIT_CLASS_1));
@@ -31,13 +41,81 @@ public class AshSnapshotTest {
 
     final int samples = 3;
 
-    AshSnapshot snapshot = new AshSnapshot(1, activeSessions, samples);
-    Snapshot<Double> waitClassesSnapshot = snapshot.waitClassesSnapshot;
+    AshSnapshot snapshot = AshSnapshot.ofSessions(1, activeSessions, samples);
+    SeriesSchema schema =
+        new SeriesSchema(ImmutableList.of(WAIT_CLASS_3, WAIT_CLASS_OTHER, WAIT_CLASS_1));
+    SeriesPoint waitClassesPoint = snapshot.waitClassesPoint(schema);
 
-    assertEquals(3, waitClassesSnapshot.getValues().size());
-    assertEquals(2d / samples, waitClassesSnapshot.getValues().get(WAIT_CLASS_1), 0);
-    assertEquals(5d / samples, waitClassesSnapshot.getValues().get(WAIT_CLASS_2), 0);
-    assertEquals(1d / samples, waitClassesSnapshot.getValues().get(WAIT_CLASS_3), 0);
+    // wait classes not in the schema are ignored
+    assertEquals(1, waitClassesPoint.getTimestamp());
+    assertArrayEquals(new double[] {1d / samples, 0, 2d / samples}, waitClassesPoint.getValues(),
+        0);
+  }
+
+  @Test
+  public void testRuns() {
+    ActiveSession batch = newSession("1", "sql 1", WAIT_CLASS_1);
+    ActiveSession other = newSession("2", "sql 2", WAIT_CLASS_2);
+    SnapshotAccumulator accumulator = new SnapshotAccumulator(1000);
+    for (int i = 0; i < 10; i++) {
+      // the other session changes its SQL in the sixth sample and is idle in the eighth
+      ActiveSession otherSample = newSession("2", i < 5 ? "sql 2" : "sql 3", WAIT_CLASS_2);
+      accumulator.add(i * 10, i == 7 ? ImmutableList.of(batch)
+          : ImmutableList.of(newSession("1", "sql 1", WAIT_CLASS_1), otherSample));
+    }
+    AshSnapshot snapshot = accumulator.flush();
+
+    assertEquals(10, snapshot.samples);
+    assertEquals(19, snapshot.getActivity());
+    assertEquals(4, snapshot.runs.size());
+    assertRun(snapshot.runs.get(0), batch, 0, 10);
+    assertRun(snapshot.runs.get(1), other, 0, 5);
+    assertEquals("sql 3", snapshot.runs.get(2).session.sqlId);
+    assertEquals(5, snapshot.runs.get(2).start);
+    assertEquals(2, snapshot.runs.get(2).count);
+    assertEquals(8, snapshot.runs.get(3).start);
+    assertEquals(2, snapshot.runs.get(3).count);
+
+    SeriesSchema schema = new SeriesSchema(ImmutableList.of(WAIT_CLASS_1, WAIT_CLASS_2));
+    assertArrayEquals(new double[] {1, 0.9}, snapshot.waitClassesPoint(schema).getValues(), 0);
+  }
+
+  @Test
+  public void testLegacySnapshot() throws Exception {
+    // a snapshot archived before the run-length encoding
+    AshSnapshot legacy = new AshSnapshot(1, ImmutableList.of(), 2);
+    setField(legacy, "runs", null);
+    setField(legacy, "activeSessions",
+        ImmutableList.of(newActiveSession(WAIT_CLASS_1), newActiveSession(WAIT_CLASS_2)));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      oos.writeObject(legacy);
+    }
+    AshSnapshot snapshot;
+    try (ObjectInputStream ois =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      snapshot = (AshSnapshot) ois.readObject();
+    }
+    assertEquals(2, snapshot.runs.size());
+    assertEquals(WAIT_CLASS_2, snapshot.runs.get(1).session.waitClass);
+    assertEquals(1, snapshot.runs.get(1).count);
+    assertEquals(2, snapshot.samples);
+  }
+
+  private static void assertRun(SessionRun run, ActiveSession session, int start, int count) {
+    assertTrue(SessionRun.sameState(session, run.session));
+    assertEquals(start, run.start);
+    assertEquals(count, run.count);
+  }
+
+  private static ActiveSession newSession(String sid, String sqlId, String waitClass) {
+    ActiveSession as = newActiveSession(waitClass);
+    as.sid = sid;
+    as.serialNumber = "1";
+    as.sqlId = sqlId;
+    as.event = waitClass;
+    return as;
   }
 
   private static ActiveSession newActiveSession(String waitClass) {
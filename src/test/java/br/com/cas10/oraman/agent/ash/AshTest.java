@@ -1,19 +1,26 @@
 package br.com.cas10.oraman.agent.ash;
 
+import static br.com.cas10.oraman.agent.ash.util.Util.verifyPoint;
 import static br.com.cas10.oraman.agent.ash.util.Util.verifySnapshot;
-import static java.util.stream.Collectors.counting;
 import static java.util.stream.Collectors.summingInt;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
+import br.com.cas10.oraman.agent.ash.AshArchive.ArchivedSnapshotsIterator;
+import br.com.cas10.oraman.agent.ash.IntervalComparison.ActivityDelta;
 import br.com.cas10.oraman.agent.ash.util.SessionActivityVerifier;
 import br.com.cas10.oraman.agent.ash.util.SqlActivityVerifier;
 import br.com.cas10.oraman.oracle.Cursors;
 import br.com.cas10.oraman.oracle.data.ActiveSession;
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
 import br.com.cas10.oraman.util.Snapshot;
 import com.google.common.collect.ImmutableList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.Predicate;
 import org.junit.Test;
@@ -29,6 +36,8 @@ public class AshTest {
 
   private static final String WAIT_CLASS_1 = "wait class 1";
   private static final String WAIT_CLASS_2 = "wait class 2";
+  private static final SeriesSchema WAIT_CLASSES =
+      new SeriesSchema(ImmutableList.of(WAIT_CLASS_1, WAIT_CLASS_2));
 
   private static final String[] EVENT_1 = {"event 1", WAIT_CLASS_1};
   private static final String[] EVENT_2 = {"event 2", WAIT_CLASS_2};
@@ -44,23 +53,24 @@ public class AshTest {
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1))
         .add(newActiveSession(SESSION_2, SQL_ID_2, EVENT_2))
         .add(newActiveSession(SESSION_3, (String) null, EVENT_3)).build();
-    AshSnapshot s1 = new AshSnapshot(1, s1Sessions, samples);
+    AshSnapshot s1 = AshSnapshot.ofSessions(1, s1Sessions, samples);
 
     List<ActiveSession> s2Sessions = ImmutableList.<ActiveSession>builder()//
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_3))
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_3))
         .add(newActiveSession(SESSION_2, SQL_ID_1, EVENT_1))
         .add(newActiveSession(SESSION_2, SQL_ID_1, EVENT_3)).build();
-    AshSnapshot s2 = new AshSnapshot(2, s2Sessions, samples);
+    AshSnapshot s2 = AshSnapshot.ofSessions(2, s2Sessions, samples);
 
     AshSnapshot s3 = new AshSnapshot(3, ImmutableList.of(), samples);
 
     List<AshSnapshot> snapshots = ImmutableList.of(s1, s2, s3);
     final int totalSamples = snapshots.size() * samples;
-    final int totalActivity = snapshots.stream().flatMap(s -> s.activeSessions.stream())
-        .filter(filter).collect(counting()).intValue();
+    final int totalActivity = snapshots.stream().flatMap(s -> s.runs.stream())
+        .filter(r -> filter.test(r.session)).collect(summingInt(r -> r.count));
 
     AshAgent agent = mock(AshAgent.class);
+    when(agent.getWaitClasses()).thenReturn(WAIT_CLASSES);
     when(agent.getSnapshots()).thenReturn(snapshots);
 
     Ash ash = new Ash();
@@ -78,11 +88,11 @@ public class AshTest {
     verifySnapshot(eSnapshots.get(1), 2, samples, EVENT_1[0], 1, EVENT_3[0], 3);
     verifySnapshot(eSnapshots.get(2), 3, samples);
 
-    List<Snapshot<Double>> wcSnapshots = activity.waitClassesSnapshots;
+    List<SeriesPoint> wcSnapshots = activity.waitClassesSnapshots;
     assertEquals(3, wcSnapshots.size());
-    verifySnapshot(wcSnapshots.get(0), 1, samples, WAIT_CLASS_1, 1);
-    verifySnapshot(wcSnapshots.get(1), 2, samples, WAIT_CLASS_1, 1, WAIT_CLASS_2, 3);
-    verifySnapshot(wcSnapshots.get(2), 3, samples);
+    verifyPoint(wcSnapshots.get(0), WAIT_CLASSES, 1, samples, WAIT_CLASS_1, 1);
+    verifyPoint(wcSnapshots.get(1), WAIT_CLASSES, 2, samples, WAIT_CLASS_1, 1, WAIT_CLASS_2, 3);
+    verifyPoint(wcSnapshots.get(2), WAIT_CLASSES, 3, samples);
 
     SqlActivityVerifier sqlVerifier = new SqlActivityVerifier(totalActivity, totalSamples);
     assertEquals(1, activity.topSql.size());
@@ -110,22 +120,23 @@ public class AshTest {
     List<ActiveSession> s1Sessions = ImmutableList.<ActiveSession>builder()//
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1))
         .add(newActiveSession(SESSION_2, SQL_ID_2, EVENT_2)).build();
-    AshSnapshot s1 = new AshSnapshot(1, s1Sessions, samples);
+    AshSnapshot s1 = AshSnapshot.ofSessions(1, s1Sessions, samples);
 
     List<ActiveSession> s2Sessions = ImmutableList.<ActiveSession>builder()//
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1))
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_3))
         .add(newActiveSession(SESSION_1, SQL_ID_2, EVENT_3)).build();
-    AshSnapshot s2 = new AshSnapshot(2, s2Sessions, samples);
+    AshSnapshot s2 = AshSnapshot.ofSessions(2, s2Sessions, samples);
 
     AshSnapshot s3 = new AshSnapshot(3, ImmutableList.of(), samples);
 
     List<AshSnapshot> snapshots = ImmutableList.of(s1, s2, s3);
     final int totalSamples = snapshots.size() * samples;
-    final int totalActivity = snapshots.stream().flatMap(s -> s.activeSessions.stream())
-        .filter(filter).collect(counting()).intValue();
+    final int totalActivity = snapshots.stream().flatMap(s -> s.runs.stream())
+        .filter(r -> filter.test(r.session)).collect(summingInt(r -> r.count));
 
     AshAgent agent = mock(AshAgent.class);
+    when(agent.getWaitClasses()).thenReturn(WAIT_CLASSES);
     when(agent.getSnapshots()).thenReturn(snapshots);
 
     Ash ash = new Ash();
@@ -143,11 +154,11 @@ public class AshTest {
     verifySnapshot(eSnapshots.get(1), 2, samples, EVENT_1[0], 1, EVENT_3[0], 2);
     verifySnapshot(eSnapshots.get(2), 3, samples);
 
-    List<Snapshot<Double>> wcSnapshots = activity.waitClassesSnapshots;
+    List<SeriesPoint> wcSnapshots = activity.waitClassesSnapshots;
     assertEquals(3, wcSnapshots.size());
-    verifySnapshot(wcSnapshots.get(0), 1, samples, WAIT_CLASS_1, 1);
-    verifySnapshot(wcSnapshots.get(1), 2, samples, WAIT_CLASS_1, 1, WAIT_CLASS_2, 2);
-    verifySnapshot(wcSnapshots.get(2), 3, samples);
+    verifyPoint(wcSnapshots.get(0), WAIT_CLASSES, 1, samples, WAIT_CLASS_1, 1);
+    verifyPoint(wcSnapshots.get(1), WAIT_CLASSES, 2, samples, WAIT_CLASS_1, 1, WAIT_CLASS_2, 2);
+    verifyPoint(wcSnapshots.get(2), WAIT_CLASSES, 3, samples);
 
     SqlActivityVerifier sqlVerifier = new SqlActivityVerifier(totalActivity, totalSamples);
     assertEquals(2, activity.topSql.size());
@@ -171,37 +182,38 @@ public class AshTest {
 
     List<ActiveSession> s1Sessions = ImmutableList.<ActiveSession>builder()//
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1)).build();
-    AshSnapshot s1 = new AshSnapshot(1, s1Sessions, samples);
+    AshSnapshot s1 = AshSnapshot.ofSessions(1, s1Sessions, samples);
 
     List<ActiveSession> s2Sessions = ImmutableList.<ActiveSession>builder()//
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1))
         .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1))
         .add(newActiveSession(SESSION_2, SQL_ID_2, EVENT_1))
         .add(newActiveSession(SESSION_2, SQL_ID_2, EVENT_2)).build();
-    AshSnapshot s2 = new AshSnapshot(2, s2Sessions, samples);
+    AshSnapshot s2 = AshSnapshot.ofSessions(2, s2Sessions, samples);
 
     List<ActiveSession> s3Sessions = ImmutableList.<ActiveSession>builder()//
         .add(newActiveSession(SESSION_2, SQL_ID_2, EVENT_2))
         .add(newActiveSession(SESSION_2, SQL_ID_2, EVENT_2))
         .add(newActiveSession(SESSION_2, SQL_ID_1, EVENT_1))
         .add(newActiveSession(SESSION_2, SQL_ID_1, EVENT_1)).build();
-    AshSnapshot s3 = new AshSnapshot(3, s3Sessions, samples);
+    AshSnapshot s3 = AshSnapshot.ofSessions(3, s3Sessions, samples);
 
     List<ActiveSession> s4Sessions = ImmutableList.<ActiveSession>builder()//
         .add(newActiveSession(SESSION_2, SQL_ID_1, EVENT_1))
         .add(newActiveSession(SESSION_3, SQL_ID_1, EVENT_2)).build();
-    AshSnapshot s4 = new AshSnapshot(4, s4Sessions, samples);
+    AshSnapshot s4 = AshSnapshot.ofSessions(4, s4Sessions, samples);
 
     List<ActiveSession> s5Sessions = ImmutableList.<ActiveSession>builder()//
         .add(newActiveSession(SESSION_3, SQL_ID_1, EVENT_2)).build();
-    AshSnapshot s5 = new AshSnapshot(5, s5Sessions, samples);
+    AshSnapshot s5 = AshSnapshot.ofSessions(5, s5Sessions, samples);
 
     List<AshSnapshot> selectedSnapshots = ImmutableList.of(s2, s3, s4);
     final int totalSamples = selectedSnapshots.size() * samples;
     final int totalActivity =
-        selectedSnapshots.stream().collect(summingInt(s -> s.activeSessions.size()));
+        selectedSnapshots.stream().collect(summingInt(AshSnapshot::getActivity));
 
     AshAgent agent = mock(AshAgent.class);
+    when(agent.getWaitClasses()).thenReturn(WAIT_CLASSES);
     when(agent.getSnapshots()).thenReturn(ImmutableList.of(s1, s2, s3, s4, s5));
 
     Ash ash = new Ash();
@@ -219,11 +231,11 @@ public class AshTest {
     verifySnapshot(eSnapshots.get(1), 3, samples, EVENT_1[0], 2, EVENT_2[0], 2);
     verifySnapshot(eSnapshots.get(2), 4, samples, EVENT_1[0], 1, EVENT_2[0], 1);
 
-    List<Snapshot<Double>> wcSnapshots = activity.waitClassesSnapshots;
+    List<SeriesPoint> wcSnapshots = activity.waitClassesSnapshots;
     assertEquals(3, wcSnapshots.size());
-    verifySnapshot(wcSnapshots.get(0), 2, samples, WAIT_CLASS_1, 3, WAIT_CLASS_2, 1);
-    verifySnapshot(wcSnapshots.get(1), 3, samples, WAIT_CLASS_1, 2, WAIT_CLASS_2, 2);
-    verifySnapshot(wcSnapshots.get(2), 4, samples, WAIT_CLASS_1, 1, WAIT_CLASS_2, 1);
+    verifyPoint(wcSnapshots.get(0), WAIT_CLASSES, 2, samples, WAIT_CLASS_1, 3, WAIT_CLASS_2, 1);
+    verifyPoint(wcSnapshots.get(1), WAIT_CLASSES, 3, samples, WAIT_CLASS_1, 2, WAIT_CLASS_2, 2);
+    verifyPoint(wcSnapshots.get(2), WAIT_CLASSES, 4, samples, WAIT_CLASS_1, 1, WAIT_CLASS_2, 1);
 
     SqlActivityVerifier sqlVerifier = new SqlActivityVerifier(totalActivity, totalSamples);
     assertEquals(2, activity.topSql.size());
@@ -247,6 +259,112 @@ public class AshTest {
         .events(EVENT_2[0], 1).waitClasses(WAIT_CLASS_2, 1);
   }
 
+  @Test
+  public void testCompareArchivedIntervals() {
+    final int samples = 10;
+
+    AshSnapshot b1 = AshSnapshot.ofSessions(1, ImmutableList.<ActiveSession>builder()
+        .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1))
+        .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1))
+        .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1)).build(), samples);
+    AshSnapshot b2 = AshSnapshot.ofSessions(2, ImmutableList.<ActiveSession>builder()
+        .add(newActiveSession(SESSION_2, SQL_ID_2, EVENT_2)).build(), samples);
+    AshSnapshot c1 = AshSnapshot.ofSessions(11, ImmutableList.<ActiveSession>builder()
+        .add(newActiveSession(SESSION_1, SQL_ID_1, EVENT_1))
+        .add(newActiveSession(SESSION_3, (String) null, EVENT_3))
+        .add(newActiveSession(SESSION_3, (String) null, EVENT_3))
+        .add(newActiveSession(SESSION_3, (String) null, EVENT_3)).build(), samples);
+    AshSnapshot c2 = new AshSnapshot(12, ImmutableList.of(), samples);
+
+    Iterator<AshSnapshot> snapshots = ImmutableList.of(b1, b2, c1, c2).iterator();
+    ArchivedSnapshotsIterator iterator = mock(ArchivedSnapshotsIterator.class);
+    when(iterator.hasNext()).then(invocation -> snapshots.hasNext());
+    when(iterator.next()).then(invocation -> snapshots.next());
+
+    AshArchive archive = mock(AshArchive.class);
+    when(archive.getArchivedSnapshots(anyCollection())).thenReturn(iterator);
+
+    Ash ash = new Ash();
+    setField(ash, "archive", archive);
+    setField(ash, "cursors", mock(Cursors.class));
+
+    IntervalComparison comparison = ash.compareArchivedIntervals(1, 2, 11, 12, 10);
+
+    assertEquals(4d / 20, comparison.baselineAverageActiveSessions, 0);
+    assertEquals(4d / 20, comparison.averageActiveSessions, 0);
+
+    assertEquals(3, comparison.sql.size());
+    verifyDelta(comparison.sql.get(0), "Unknown", 0, 3d / 20, null);
+    verifyDelta(comparison.sql.get(1), SQL_ID_1, 3d / 20, 1d / 20, 1d / 3);
+    verifyDelta(comparison.sql.get(2), SQL_ID_2, 1d / 20, 0, 0d);
+
+    assertEquals(3, comparison.events.size());
+    verifyDelta(comparison.events.get(0), EVENT_3[0], 0, 3d / 20, null);
+    assertEquals(WAIT_CLASS_2, comparison.events.get(0).description);
+    verifyDelta(comparison.events.get(1), EVENT_1[0], 3d / 20, 1d / 20, 1d / 3);
+
+    assertEquals(3, comparison.sessions.size());
+    verifyDelta(comparison.sessions.get(0), "3,300", 0, 3d / 20, null);
+    verifyDelta(comparison.sessions.get(2), "2,200", 1d / 20, 0, 0d);
+  }
+
+  private static void verifyDelta(ActivityDelta delta, String key, double baseline, double current,
+      Double ratio) {
+    assertEquals(key, delta.key);
+    assertEquals(baseline, delta.baselineAverageActiveSessions, 1e-9);
+    assertEquals(current, delta.averageActiveSessions, 1e-9);
+    assertEquals(current - baseline, delta.delta, 1e-9);
+    if (ratio == null) {
+      assertNull(delta.ratio);
+    } else {
+      assertEquals(ratio, delta.ratio, 1e-9);
+    }
+  }
+
+  @Test
+  public void testInstances() {
+    final int samples = 5;
+
+    ActiveSession i1s1 = newActiveSession(SESSION_1, SQL_ID_1, EVENT_1);
+    i1s1.instanceNumber = 1;
+    // same sid and serial# in another instance
+    ActiveSession i2s1 = newActiveSession(SESSION_1, SQL_ID_2, EVENT_2);
+    i2s1.instanceNumber = 2;
+    AshSnapshot s1 = AshSnapshot.ofSessions(1, ImmutableList.of(i1s1, i2s1, i2s1), samples);
+    AshSnapshot s2 = AshSnapshot.ofSessions(2, ImmutableList.of(i2s1), samples);
+
+    AshAgent agent = mock(AshAgent.class);
+    when(agent.getWaitClasses()).thenReturn(WAIT_CLASSES);
+    when(agent.getSnapshots()).thenReturn(ImmutableList.of(s1, s2));
+
+    Ash ash = new Ash();
+    setField(ash, "agent", agent);
+    setField(ash, "cursors", mock(Cursors.class));
+
+    assertEquals(ImmutableList.of(1, 2), ash.getInstances());
+    List<Snapshot<Double>> instancesSnapshots = ash.getInstancesSnapshots();
+    assertEquals(2, instancesSnapshots.size());
+    verifySnapshot(instancesSnapshots.get(0), 1, samples, "1", 1, "2", 2);
+    verifySnapshot(instancesSnapshots.get(1), 2, samples, "2", 1);
+
+    // cluster-wide
+    IntervalActivity cluster = ash.getIntervalActivity(1, 2, 10);
+    assertEquals(2, cluster.topSessions.size());
+    assertEquals(2, cluster.topSessions.get(0).instanceNumber);
+    assertEquals(3, cluster.topSessions.get(0).activity);
+    assertEquals(1, cluster.topSessions.get(1).instanceNumber);
+    verifyPoint(cluster.waitClassesSnapshots.get(0), WAIT_CLASSES, 1, samples, WAIT_CLASS_1, 1,
+        WAIT_CLASS_2, 2);
+
+    IntervalActivity instance1 = ash.getIntervalActivity(1, 2, 10, 1);
+    assertEquals(1, instance1.topSessions.size());
+    assertEquals(1, instance1.topSessions.get(0).instanceNumber);
+    assertEquals(1, instance1.topSql.size());
+    assertEquals(SQL_ID_1, instance1.topSql.get(0).sqlId);
+    verifyPoint(instance1.waitClassesSnapshots.get(0), WAIT_CLASSES, 1, samples, WAIT_CLASS_1, 1);
+    verifyPoint(instance1.waitClassesSnapshots.get(1), WAIT_CLASSES, 2, samples);
+  }
+
   private static ActiveSession newActiveSession(String[] session, String sqlId, String[] event) {
     ActiveSession as = new ActiveSession();
     as.sid = session[0];
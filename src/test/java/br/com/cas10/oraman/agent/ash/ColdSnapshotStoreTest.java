@@ -0,0 +1,149 @@
+package br.com.cas10.oraman.agent.ash;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.Test;
+
+public class ColdSnapshotStoreTest {
+
+  @Test
+  public void testGetSnapshots() {
+    ColdSnapshotStore store = new ColdSnapshotStore(1024 * 1024);
+    assertNull(store.getOldestTimestamp());
+    for (int i = 1; i <= 10; i++) {
+      store.add(newSnapshot(i * 1000));
+    }
+    assertEquals(10, store.size());
+    assertEquals(1000, (long) store.getOldestTimestamp());
+
+    List<AshSnapshot> snapshots = newArrayList(store.getSnapshots(3000, 5000));
+    assertEquals(3, snapshots.size());
+    AshSnapshot snapshot = snapshots.get(0);
+    assertEquals(3000, snapshot.timestamp);
+    assertEquals(15, snapshot.samples);
+    assertEquals(1, snapshot.runs.size());
+    assertEquals("sql", snapshot.runs.get(0).session.sqlId);
+    assertEquals(15, snapshot.runs.get(0).count);
+    // the buffers are not consumed by the reads
+    assertEquals(3, newArrayList(store.getSnapshots(3000, 5000)).size());
+  }
+
+  @Test
+  public void testEviction() {
+    int snapshotBytes = ColdSnapshotStore.encode(newSnapshot(0)).length;
+    // room for two snapshots per segment (their compressed sizes vary slightly), two segments
+    int segmentBytes = 2 * snapshotBytes + snapshotBytes / 2;
+    ColdSnapshotStore store = new ColdSnapshotStore(2 * segmentBytes, segmentBytes);
+    for (int i = 1; i <= 10; i++) {
+      store.add(newSnapshot(i * 1000));
+      assertTrue(store.getAllocatedBytes() <= 2 * segmentBytes);
+    }
+    // the oldest segment is reused, evicting its snapshots
+    assertEquals(4, store.size());
+    assertEquals(7000, (long) store.getOldestTimestamp());
+    assertEquals(2 * segmentBytes, store.getAllocatedBytes());
+    assertTrue(store.getBytes() <= store.getAllocatedBytes());
+  }
+
+  @Test
+  public void testEvictionWhileReading() {
+    int snapshotBytes = ColdSnapshotStore.encode(newSnapshot(0)).length;
+    int segmentBytes = 2 * snapshotBytes + snapshotBytes / 2;
+    ColdSnapshotStore store = new ColdSnapshotStore(2 * segmentBytes, segmentBytes);
+    for (int i = 1; i <= 4; i++) {
+      store.add(newSnapshot(i * 1000));
+    }
+    Iterator<AshSnapshot> iterator = store.getSnapshots(0, Long.MAX_VALUE);
+    store.add(newSnapshot(5000));
+
+    // the first segment was reused
+    List<AshSnapshot> snapshots = newArrayList(iterator);
+    assertEquals(2, snapshots.size());
+    assertEquals(3000, snapshots.get(0).timestamp);
+    assertEquals(4000, snapshots.get(1).timestamp);
+  }
+
+  @Test
+  public void testRejected() {
+    int snapshotBytes = ColdSnapshotStore.encode(newSnapshot(0)).length;
+    ColdSnapshotStore store = new ColdSnapshotStore(snapshotBytes - 1);
+    store.add(newSnapshot(1000));
+    assertEquals(0, store.size());
+    assertEquals(1, store.getRejected());
+  }
+
+  @Test
+  public void testEncoding() throws IOException {
+    ActiveSession first = new ActiveSession();
+    first.instanceNumber = 2;
+    first.sid = "10";
+    first.serialNumber = "20";
+    first.username = "APP";
+    first.program = "program";
+    first.sqlId = "sql";
+    first.sqlChildNumber = "0";
+    first.event = "event";
+    first.waitClass = "wait class";
+    ActiveSession second = new ActiveSession();
+    second.sid = "11";
+    second.serialNumber = "21";
+    second.event = "event";
+    AshSnapshot snapshot = new AshSnapshot(15000,
+        ImmutableList.of(new SessionRun(first, 0, 3), new SessionRun(second, 2, 1)),
+        new long[] {1000, 2000, 3000});
+
+    byte[] data = ColdSnapshotStore.encode(snapshot);
+    AshSnapshot decoded = ColdSnapshotStore.decode(data);
+    assertEquals(15000, decoded.timestamp);
+    assertEquals(3, decoded.samples);
+    assertArrayEquals(new long[] {1000, 2000, 3000}, decoded.sampleTimes);
+    assertEquals(2, decoded.runs.size());
+    SessionRun run = decoded.runs.get(0);
+    assertEquals(0, run.start);
+    assertEquals(3, run.count);
+    assertTrue(SessionRun.sameState(first, run.session));
+    run = decoded.runs.get(1);
+    assertEquals(2, run.start);
+    assertEquals(1, run.count);
+    assertTrue(SessionRun.sameState(second, run.session));
+    // the repeated values are shared
+    assertSame(decoded.runs.get(0).session.event, run.session.event);
+
+    AshSnapshot group = ColdSnapshotStore.decode(
+        ColdSnapshotStore.encode(new AshSnapshot(15000, snapshot.runs, 30)));
+    assertEquals(30, group.samples);
+    assertNull(group.sampleTimes);
+
+    // no class descriptors, unlike Java serialization
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(out))) {
+      oos.writeObject(snapshot);
+    }
+    assertTrue(data.length * 2 < out.size());
+  }
+
+  private static AshSnapshot newSnapshot(long timestamp) {
+    ActiveSession session = new ActiveSession();
+    session.sid = "1";
+    session.serialNumber = "1";
+    session.sqlId = "sql";
+    session.event = "event";
+    session.waitClass = "wait class";
+    long[] sampleTimes = new long[15];
+    return new AshSnapshot(timestamp, ImmutableList.of(new SessionRun(session, 0, 15)),
+        sampleTimes);
+  }
+}
@@ -12,7 +12,8 @@ public class SessionActivityTest {
 
   @Test
   public void testBuilder() {
-    SessionActivity.Builder builder = new SessionActivity.Builder("1", "1", "oraman", "OraManager");
+    SessionActivity.Builder builder =
+        new SessionActivity.Builder(1, "1", "1", "oraman", "OraManager");
 
     builder.add(newActiveSession(WAIT_CLASS_1));
     builder.add(newActiveSession(WAIT_CLASS_1));
@@ -1,7 +1,10 @@
 package br.com.cas10.oraman.agent.ash.util;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import br.com.cas10.oraman.util.SeriesPoint;
+import br.com.cas10.oraman.util.SeriesSchema;
 import br.com.cas10.oraman.util.Snapshot;
 import com.google.common.collect.Multiset;
 
@@ -18,6 +21,18 @@ public class Util {
     assertEquals(counts.length / 2, snapshot.getValues().size());
   }
 
+  public static void verifyPoint(SeriesPoint point, SeriesSchema schema, long timestamp,
+      int samples, Object... counts) {
+    assertEquals(timestamp, point.getTimestamp());
+    double[] expected = new double[schema.size()];
+    for (int i = 0; i < counts.length; i += 2) {
+      String key = (String) counts[i];
+      Integer count = (Integer) counts[i + 1];
+      expected[schema.indexOf(key)] = (double) count / samples;
+    }
+    assertArrayEquals(expected, point.getValues(), 0);
+  }
+
   static void verifyMultiset(Object[] expected, Multiset<String> actual) {
     int expectedSize = 0;
     for (int i = 0; i < expected.length; i += 2) {
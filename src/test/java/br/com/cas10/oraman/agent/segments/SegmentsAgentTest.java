@@ -0,0 +1,135 @@
+package br.com.cas10.oraman.agent.segments;
+
+import static br.com.cas10.oraman.agent.segments.SegmentStatistic.LOGICAL_READS;
+import static br.com.cas10.oraman.agent.segments.SegmentStatistic.ROW_LOCK_WAITS;
+import static br.com.cas10.oraman.agent.segments.SegmentsAgent.TOP_COUNT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import br.com.cas10.oraman.oracle.SystemStatistics;
+import br.com.cas10.oraman.oracle.Tables;
+import br.com.cas10.oraman.oracle.data.SegmentObject;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+public class SegmentsAgentTest {
+
+  private static final String LOGICAL = LOGICAL_READS.statisticName;
+  private static final String ROW_LOCK = ROW_LOCK_WAITS.statisticName;
+
+  private final Tables tables = mock(Tables.class);
+
+  @Test
+  public void testRun() {
+    SegmentObject index = new SegmentObject();
+    index.objectId = 1;
+    index.owner = "OWNER";
+    index.objectName = "INDEX_1";
+    index.objectType = "INDEX";
+    index.tableOwner = "OWNER";
+    index.tableName = "TABLE_1";
+    when(tables.getSegmentObject(1)).thenReturn(index);
+
+    SegmentsAgent agent = newAgent(h -> {
+      h.handle(1, LOGICAL, 100);
+      h.handle(2, LOGICAL, 100);
+      h.handle(3, LOGICAL, 100);
+    }, h -> {
+      h.handle(1, LOGICAL, 150);
+      h.handle(1, ROW_LOCK, 2);
+      // reset
+      h.handle(2, LOGICAL, 30);
+      // new segment
+      h.handle(4, LOGICAL, 70);
+    }, h -> {
+      h.handle(1, LOGICAL, 160);
+      h.handle(1, ROW_LOCK, 2);
+      // segment 3 reappears after being removed
+      h.handle(3, LOGICAL, 120);
+    });
+
+    agent.run();
+    assertTrue(agent.getTopSegments(0, Long.MAX_VALUE, LOGICAL_READS, 10).isEmpty());
+    agent.run();
+    agent.run();
+
+    List<SegmentActivity> top = agent.getTopSegments(0, Long.MAX_VALUE, LOGICAL_READS, 10);
+    assertEquals(4, top.size());
+    assertEquals(120, top.get(0).logicalReads);
+    assertEquals(3, top.get(0).objectId);
+    assertNull(top.get(0).objectName);
+    assertEquals(70, top.get(1).logicalReads);
+    assertEquals(4, top.get(1).objectId);
+    SegmentActivity segment1 = top.get(2);
+    assertEquals(1, segment1.objectId);
+    assertEquals(60, segment1.logicalReads);
+    assertEquals(2, segment1.rowLockWaits);
+    assertEquals("INDEX_1", segment1.objectName);
+    assertEquals("TABLE_1", segment1.tableName);
+    assertEquals(30, top.get(3).logicalReads);
+
+    List<SegmentActivity> rowLocks = agent.getTopSegments(0, Long.MAX_VALUE, ROW_LOCK_WAITS, 10);
+    assertEquals(1, rowLocks.size());
+    assertEquals(1, rowLocks.get(0).objectId);
+    assertEquals(1, agent.getTopSegments(0, Long.MAX_VALUE, LOGICAL_READS, 1).size());
+    assertTrue(agent.getTopSegments(0, 0, LOGICAL_READS, 10).isEmpty());
+
+    // names are resolved once
+    verify(tables, times(1)).getSegmentObject(1);
+  }
+
+  @Test
+  public void testTopCount() {
+    final int segments = 100_000;
+    SegmentsAgent agent = newAgent(h -> {
+      for (int i = 0; i < segments; i++) {
+        h.handle(i, LOGICAL, 1);
+      }
+    }, h -> {
+      for (int i = 0; i < segments; i++) {
+        h.handle(i, LOGICAL, 2 + i);
+        h.handle(i, ROW_LOCK, segments - i);
+      }
+    });
+
+    agent.run();
+    agent.run();
+
+    List<SegmentActivity> top = agent.getTopSegments(0, Long.MAX_VALUE, LOGICAL_READS, 100);
+    // the top segments of each statistic
+    assertEquals(2 * TOP_COUNT, top.size());
+    assertEquals(segments - 1, top.get(0).objectId);
+    assertEquals(segments, top.get(0).logicalReads);
+    List<SegmentActivity> rowLocks = agent.getTopSegments(0, Long.MAX_VALUE, ROW_LOCK_WAITS, 100);
+    assertEquals(2 * TOP_COUNT, rowLocks.size());
+    assertEquals(0, rowLocks.get(0).objectId);
+    verify(tables, times(2 * TOP_COUNT)).getSegmentObject(anyLong());
+  }
+
+  @SafeVarargs
+  private final SegmentsAgent newAgent(
+      Consumer<SystemStatistics.SegmentStatisticHandler>... samples) {
+    SystemStatistics systemStatistics = mock(SystemStatistics.class);
+    int[] calls = {0};
+    doAnswer(invocation -> {
+      samples[calls[0]++].accept(invocation.getArgument(1));
+      return null;
+    }).when(systemStatistics).readSegmentStatistics(eq(SegmentStatistic.NAMES), any());
+
+    SegmentsAgent agent = new SegmentsAgent();
+    setField(agent, "systemStatistics", systemStatistics);
+    setField(agent, "tables", tables);
+    return agent;
+  }
+}
@@ -0,0 +1,138 @@
+package br.com.cas10.oraman.agent.sqlstats;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import br.com.cas10.oraman.oracle.Cursors;
+import br.com.cas10.oraman.oracle.data.SqlStats;
+import com.google.common.collect.ImmutableList;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Map;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class SqlStatsAgentTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRun() {
+    Cursors cursors = mock(Cursors.class);
+    when(cursors.getSqlStats(anyLong()))
+        .thenReturn(ImmutableList.of(sqlStats("a", 1, 10, 1000), sqlStats("b", 2, 5, 500)))
+        // "b" did not change; "c" is new
+        .thenReturn(ImmutableList.of(sqlStats("a", 1, 15, 1600), sqlStats("b", 2, 5, 500),
+            sqlStats("c", 3, 2, 40)))
+        // "a" was reloaded
+        .thenReturn(ImmutableList.of(sqlStats("a", 1, 3, 300)));
+
+    SqlStatsArchive archive = mock(SqlStatsArchive.class);
+
+    SqlStatsAgent agent = new SqlStatsAgent();
+    setField(agent, "archive", archive);
+    setField(agent, "cursors", cursors);
+    agent.clock = Clock.fixed(Instant.ofEpochMilli(60_000), ZoneId.systemDefault());
+
+    agent.run();
+    verify(archive, never()).archive(anyLong(), any());
+
+    agent.run();
+    ArgumentCaptor<Map<SqlStatsKey, long[]>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(archive).archive(eq(60_000L), captor.capture());
+    Map<SqlStatsKey, long[]> deltas = captor.getValue();
+    assertEquals(2, deltas.size());
+    assertArrayEquals(new long[] {5, 600, 300, 50, 0, 5},
+        deltas.get(new SqlStatsKey("a", 1)));
+    assertArrayEquals(new long[] {2, 40, 20, 20, 0, 2}, deltas.get(new SqlStatsKey("c", 3)));
+
+    agent.run();
+    verify(archive, times(2)).archive(eq(60_000L), captor.capture());
+    deltas = captor.getValue();
+    assertEquals(1, deltas.size());
+    assertArrayEquals(new long[] {3, 300, 150, 30, 0, 3}, deltas.get(new SqlStatsKey("a", 1)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRunFullRead() {
+    Cursors cursors = mock(Cursors.class);
+    when(cursors.getSqlStats(anyLong()))
+        .thenReturn(ImmutableList.of(sqlStats("a", 1, 10, 1000), sqlStats("b", 2, 5, 500)))
+        // full read: "b" was aged out
+        .thenReturn(ImmutableList.of(sqlStats("a", 1, 10, 1000)))
+        // "b" was loaded again
+        .thenReturn(ImmutableList.of(sqlStats("b", 2, 5, 500)));
+
+    SqlStatsArchive archive = mock(SqlStatsArchive.class);
+
+    SqlStatsAgent agent = new SqlStatsAgent();
+    setField(agent, "archive", archive);
+    setField(agent, "cursors", cursors);
+    agent.clock = Clock.fixed(Instant.ofEpochMilli(0), ZoneId.systemDefault());
+    agent.run();
+
+    long timestamp = HOURS.toMillis(1);
+    agent.clock = Clock.fixed(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    agent.run();
+    verify(cursors, times(2)).getSqlStats(Integer.MAX_VALUE);
+    verify(archive, never()).archive(anyLong(), any());
+
+    agent.run();
+    ArgumentCaptor<Map<SqlStatsKey, long[]>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(archive).archive(eq(timestamp), captor.capture());
+    assertArrayEquals(new long[] {5, 500, 250, 50, 0, 5},
+        captor.getValue().get(new SqlStatsKey("b", 2)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRunMaxStatements() {
+    Cursors cursors = mock(Cursors.class);
+    when(cursors.getSqlStats(anyLong()))
+        .thenReturn(ImmutableList.of(sqlStats("a", 1, 10, 1000), sqlStats("b", 2, 5, 500)))
+        // "a" is the least recently seen statement when "c" is loaded
+        .thenReturn(ImmutableList.of(sqlStats("b", 2, 6, 600), sqlStats("c", 3, 2, 40)))
+        .thenReturn(ImmutableList.of(sqlStats("a", 1, 11, 1100)));
+
+    SqlStatsArchive archive = mock(SqlStatsArchive.class);
+
+    SqlStatsAgent agent = new SqlStatsAgent();
+    setField(agent, "archive", archive);
+    setField(agent, "cursors", cursors);
+    agent.clock = Clock.fixed(Instant.ofEpochMilli(60_000), ZoneId.systemDefault());
+    agent.maxStatements = 2;
+
+    agent.run();
+    agent.run();
+    agent.run();
+    ArgumentCaptor<Map<SqlStatsKey, long[]>> captor = ArgumentCaptor.forClass(Map.class);
+    verify(archive, times(2)).archive(eq(60_000L), captor.capture());
+    // "a" was forgotten: its whole cumulative values are the delta
+    assertArrayEquals(new long[] {11, 1100, 550, 110, 0, 11},
+        captor.getValue().get(new SqlStatsKey("a", 1)));
+  }
+
+  private static SqlStats sqlStats(String sqlId, long planHashValue, long executions,
+      long elapsedTime) {
+    SqlStats stats = new SqlStats();
+    stats.sqlId = sqlId;
+    stats.planHashValue = planHashValue;
+    stats.executions = executions;
+    stats.elapsedTime = elapsedTime;
+    stats.cpuTime = elapsedTime / 2;
+    stats.bufferGets = executions * 10;
+    stats.rowsProcessed = executions;
+    return stats;
+  }
+}
@@ -0,0 +1,118 @@
+package br.com.cas10.oraman.agent.sqlstats;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import br.com.cas10.oraman.OramanProperties;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SqlStatsArchiveTest {
+
+  private static final long START = LocalDate.of(2018, 1, 1).atStartOfDay(ZoneId.systemDefault())
+      .toInstant().toEpochMilli();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testQueries() throws IOException {
+    SqlStatsArchive archive = newArchive(31);
+    SqlStatsKey a1 = new SqlStatsKey("a", 1);
+    SqlStatsKey a2 = new SqlStatsKey("a", 2);
+    SqlStatsKey b = new SqlStatsKey("b", 3);
+
+    archive.archive(START, ImmutableMap.of(a1, values(10, 1000), b, values(1, 5000)));
+    archive.archive(START + MINUTES.toMillis(1), ImmutableMap.of(a1, values(5, 500)));
+    archive.archive(START + HOURS.toMillis(1), ImmutableMap.of(a2, values(2, 1_000_000)));
+    // next day
+    archive.archive(START + DAYS.toMillis(1), ImmutableMap.of(b, values(0, 10_000)));
+
+    List<SqlStatsActivity> top =
+        archive.getTopSql(START, START + DAYS.toMillis(1), SqlStatsMetric.EXECUTIONS, 2);
+    assertEquals(2, top.size());
+    assertEquals("a", top.get(0).sqlId);
+    assertEquals(1, top.get(0).planHashValue);
+    assertEquals(15, top.get(0).executions);
+    assertEquals(100, top.get(0).elapsedTimePerExecution, 0);
+    assertEquals(2, top.get(1).planHashValue);
+
+    top = archive.getTopSql(START + 1, START + DAYS.toMillis(1), SqlStatsMetric.ELAPSED_TIME, 1);
+    assertEquals("a", top.get(0).sqlId);
+    assertEquals(2, top.get(0).planHashValue);
+
+    top = archive.getTopSql(START + DAYS.toMillis(1), START + DAYS.toMillis(2),
+        SqlStatsMetric.ELAPSED_TIME, 10);
+    assertEquals(1, top.size());
+    assertEquals(10_000, top.get(0).elapsedTime);
+    assertNull(top.get(0).elapsedTimePerExecution);
+
+    List<SqlStatsActivity> history =
+        archive.getSqlHistory("a", START, START + DAYS.toMillis(1), HOURS.toMillis(1));
+    assertEquals(2, history.size());
+    assertEquals(START, history.get(0).timestamp);
+    assertEquals(15, history.get(0).executions);
+    assertEquals(START + HOURS.toMillis(1), history.get(1).timestamp);
+    assertEquals(2, history.get(1).planHashValue);
+  }
+
+  @Test
+  public void testIncompleteBatch() throws IOException {
+    SqlStatsArchive archive = newArchive(31);
+    SqlStatsKey a = new SqlStatsKey("a", 1);
+    archive.archive(START, ImmutableMap.of(a, values(10, 1000)));
+    archive.archive(START + 1, ImmutableMap.of(a, values(10, 1000)));
+
+    Path file = folder.getRoot().toPath().resolve("sqlstats").resolve("2018-01-01");
+    byte[] content = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(content, content.length - 2));
+
+    List<SqlStatsActivity> top = archive.getTopSql(START, START + 1, SqlStatsMetric.EXECUTIONS, 1);
+    assertEquals(10, top.get(0).executions);
+  }
+
+  @Test
+  public void testCleanUpArchive() throws IOException {
+    SqlStatsArchive archive = newArchive(5);
+    archive.archive(START, ImmutableMap.of(new SqlStatsKey("a", 1), values(1, 1)));
+    archive.archive(START + DAYS.toMillis(5), ImmutableMap.of(new SqlStatsKey("a", 1),
+        values(1, 1)));
+    archive.clock = Clock.fixed(LocalDate.of(2018, 1, 7).atStartOfDay(ZoneId.systemDefault())
+        .toInstant(), ZoneId.systemDefault());
+
+    archive.cleanUpArchive();
+
+    Path dir = folder.getRoot().toPath().resolve("sqlstats");
+    assertTrue(Files.exists(dir.resolve("2018-01-06")));
+    assertFalse(Files.exists(dir.resolve("2018-01-01")));
+  }
+
+  private SqlStatsArchive newArchive(int maxDays) {
+    OramanProperties properties = new OramanProperties();
+    properties.getArchive().setDir(folder.getRoot().getPath());
+    properties.getArchive().setSqlStatsMaxDays(maxDays);
+    return new SqlStatsArchive(properties);
+  }
+
+  private static long[] values(long executions, long elapsedTime) {
+    long[] values = new long[SqlStatsMetric.COUNT];
+    values[SqlStatsMetric.EXECUTIONS.ordinal()] = executions;
+    values[SqlStatsMetric.ELAPSED_TIME.ordinal()] = elapsedTime;
+    return values;
+  }
+}
@@ -0,0 +1,323 @@
+package br.com.cas10.oraman.oracle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import br.com.cas10.oraman.OramanProperties;
+import br.com.cas10.oraman.oracle.data.ActiveSession;
+import com.google.common.base.Defaults;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.sql.DataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class SessionSamplerTest {
+
+  private static final Logger logger = LoggerFactory.getLogger(SessionSamplerTest.class);
+
+  private static final List<String> COLUMNS = Arrays.asList("inst_id", "sid", "serial#",
+      "username", "program", "sql_id", "sql_child_number", "event", "wait_class");
+
+  private StandInDatabase database;
+  private SessionSampler sampler;
+
+  @Before
+  public void setUp() {
+    database = new StandInDatabase(rows(200), 0);
+    sampler = newSampler(database);
+  }
+
+  @Test
+  public void testSample() {
+    List<ActiveSession> first = sampler.sample();
+    List<ActiveSession> second = sampler.sample();
+    sampler.sample();
+
+    assertEquals(200, first.size());
+    ActiveSession session = first.get(7);
+    assertEquals(1, session.instanceNumber);
+    assertEquals("7", session.sid);
+    assertEquals("1007", session.serialNumber);
+    assertEquals("APP", session.username);
+    assertEquals("program 2", session.program);
+    assertEquals("sql 7", session.sqlId);
+    assertNull(session.sqlChildNumber);
+    assertEquals("db file sequential read", session.event);
+    assertEquals("User I/O", session.waitClass);
+    // the values read by the driver on each execution are shared
+    assertSame(session.event, second.get(7).event);
+    assertSame(session.event, second.get(8).event);
+    assertSame(session.sqlId, second.get(7).sqlId);
+    // 200 sids and serial numbers, 5 programs, 50 SQL ids and the constants
+    assertEquals(458, sampler.getDictionary().size());
+
+    assertEquals(1, database.connections);
+    assertEquals(1, database.parses);
+    assertEquals(200, database.fetchSize);
+  }
+
+  @Test
+  public void testReconnect() {
+    sampler.sample();
+    database.failures = 1;
+    try {
+      sampler.sample();
+      fail();
+    } catch (UncategorizedSQLException e) {
+      // the connection is discarded
+    }
+    assertEquals(0, database.openConnections);
+    assertEquals(200, sampler.sample().size());
+    assertEquals(2, database.connections);
+    assertEquals(1, database.openConnections);
+  }
+
+  @Test
+  public void testClusterModeChange() {
+    Sessions sessions = mock(Sessions.class);
+    when(sessions.clusterEnabled()).thenReturn(false, false, true, true);
+    setField(sampler, "sessions", sessions);
+
+    for (int i = 0; i < 4; i++) {
+      assertEquals(200, sampler.sample().size());
+    }
+    // prepared again for the global query, on the same connection
+    assertEquals(2, database.parses);
+    assertEquals(1, database.connections);
+  }
+
+  /**
+   * Per-tick cost of the sampling query (200 active sessions, 100 µs per round trip), through the
+   * pool and a transaction as the other queries (before), and through the sampler (after).
+   */
+  @Test
+  public void testBenchmark() {
+    database = new StandInDatabase(rows(200), TimeUnit.MICROSECONDS.toNanos(100));
+    sampler = newSampler(database);
+    String sql = COLUMNS.toString();
+    JdbcTemplate jdbc = new JdbcTemplate(database.dataSource());
+    TransactionTemplate transaction =
+        new TransactionTemplate(new DataSourceTransactionManager(database.dataSource()));
+    transaction.setReadOnly(true);
+
+    int ticks = 200;
+    long beforeRoundTrips = database.roundTrips;
+    long beforeStart = System.nanoTime();
+    for (int i = 0; i < ticks; i++) {
+      List<ActiveSession> list = transaction.execute(status -> jdbc.query(sql, (rs, rowNum) -> {
+        ActiveSession s = new ActiveSession();
+        s.instanceNumber = rs.getInt("inst_id");
+        s.sid = rs.getString("sid").intern();
+        s.serialNumber = rs.getString("serial#").intern();
+        s.username = nullSafeIntern(rs.getString("username"));
+        s.program = nullSafeIntern(rs.getString("program"));
+        s.sqlId = nullSafeIntern(rs.getString("sql_id"));
+        s.sqlChildNumber = nullSafeIntern(rs.getString("sql_child_number"));
+        s.event = rs.getString("event").intern();
+        s.waitClass = rs.getString("wait_class").intern();
+        return s;
+      }));
+      assertEquals(200, list.size());
+    }
+    long before = System.nanoTime() - beforeStart;
+    beforeRoundTrips = database.roundTrips - beforeRoundTrips;
+
+    long afterRoundTrips = database.roundTrips;
+    long afterStart = System.nanoTime();
+    for (int i = 0; i < ticks; i++) {
+      assertEquals(200, sampler.sample().size());
+    }
+    long after = System.nanoTime() - afterStart;
+    afterRoundTrips = database.roundTrips - afterRoundTrips;
+
+    logger.info(String.format("Per tick: %.2f ms, %d round trips (before); %.2f ms, %d round trips",
+        before / ticks / 1e6, beforeRoundTrips / ticks, after / ticks / 1e6,
+        afterRoundTrips / ticks));
+    // the times depend on the host, only the round trips are checked
+    assertTrue(afterRoundTrips * 10 < beforeRoundTrips);
+  }
+
+  private static SessionSampler newSampler(StandInDatabase database) {
+    SqlFileLoader loader = new SqlFileLoader();
+    setField(loader, "mappings", new ObjectMappings(new OramanProperties()));
+    SessionSampler sampler = new SessionSampler(loader, new OramanProperties());
+    setField(sampler, "dataSource", database.dataSource());
+    setField(sampler, "sessions", mock(Sessions.class));
+    return sampler;
+  }
+
+  private static String nullSafeIntern(String string) {
+    return string == null ? null : string.intern();
+  }
+
+  private static List<Object[]> rows(int count) {
+    List<Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(new Object[] {1, Integer.toString(i), Integer.toString(1000 + i), "APP",
+          "program " + i % 5, "sql " + i % 50, null, "db file sequential read", "User I/O"});
+    }
+    return rows;
+  }
+
+  /**
+   * A database of a single table (the active sessions), with the round trips of a JDBC driver:
+   * borrowing a connection (validation), parsing, executing, fetching each batch of rows, and the
+   * transaction and session settings.
+   */
+  private static class StandInDatabase {
+
+    private static final int DEFAULT_FETCH_SIZE = 10;
+
+    final List<Object[]> rows;
+    final long roundTripNanos;
+    long roundTrips;
+    int connections;
+    int openConnections;
+    int parses;
+    int fetchSize;
+    int failures;
+
+    StandInDatabase(List<Object[]> rows, long roundTripNanos) {
+      this.rows = rows;
+      this.roundTripNanos = roundTripNanos;
+    }
+
+    private void roundTrip() {
+      roundTrips++;
+      if (roundTripNanos > 0) {
+        LockSupport.parkNanos(roundTripNanos);
+      }
+    }
+
+    DataSource dataSource() {
+      return proxy(DataSource.class, (proxy, method, args) -> {
+        if (method.getName().equals("getConnection")) {
+          roundTrip();
+          connections++;
+          openConnections++;
+          return connection();
+        }
+        return objectMethod(proxy, method.getName(), args);
+      });
+    }
+
+    private Connection connection() {
+      return proxy(Connection.class, (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "prepareStatement":
+          case "createStatement":
+            roundTrip();
+            parses++;
+            return statement();
+          case "setAutoCommit":
+          case "setReadOnly":
+          case "commit":
+          case "rollback":
+            roundTrip();
+            return null;
+          case "getAutoCommit":
+            return true;
+          case "close":
+            openConnections--;
+            return null;
+          default:
+            return objectMethod(proxy, method.getName(), args);
+        }
+      });
+    }
+
+    private PreparedStatement statement() {
+      int[] statementFetchSize = {DEFAULT_FETCH_SIZE};
+      return proxy(PreparedStatement.class, (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "setFetchSize":
+            statementFetchSize[0] = (Integer) args[0];
+            fetchSize = statementFetchSize[0];
+            return null;
+          case "getFetchSize":
+            return statementFetchSize[0];
+          case "executeQuery":
+            roundTrip();
+            if (failures > 0) {
+              failures--;
+              throw new SQLException("ORA-03113: end-of-file on communication channel");
+            }
+            return resultSet(statementFetchSize[0]);
+          default:
+            return objectMethod(proxy, method.getName(), args);
+        }
+      });
+    }
+
+    private ResultSet resultSet(int batchSize) {
+      int[] row = {-1};
+      return proxy(ResultSet.class, (proxy, method, args) -> {
+        switch (method.getName()) {
+          case "next":
+            row[0]++;
+            if (row[0] > 0 && row[0] % batchSize == 0) {
+              roundTrip();
+            }
+            return row[0] < rows.size();
+          case "getString":
+            Object value = value(row[0], args[0]);
+            // a new instance on each read, as a driver
+            return value == null ? null : new String(value.toString());
+          case "getInt":
+            return (Integer) value(row[0], args[0]);
+          default:
+            return objectMethod(proxy, method.getName(), args);
+        }
+      });
+    }
+
+    private Object value(int row, Object column) {
+      int index = column instanceof Integer ? (Integer) column : COLUMNS.indexOf(column) + 1;
+      return rows.get(row)[index - 1];
+    }
+
+    private static Object objectMethod(Object proxy, String name, Object[] args) {
+      switch (name) {
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "stand-in";
+        default:
+          return null;
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+      return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+          (proxy, method, args) -> {
+            Object result = handler.invoke(proxy, method, args);
+            return result == null ? Defaults.defaultValue(method.getReturnType()) : result;
+          });
+    }
+  }
+}
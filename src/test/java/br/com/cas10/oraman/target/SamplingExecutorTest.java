@@ -0,0 +1,142 @@
+package br.com.cas10.oraman.target;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import br.com.cas10.oraman.OramanProperties;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class SamplingExecutorTest {
+
+  private SamplingExecutor executor;
+
+  @After
+  public void tearDown() {
+    if (executor != null) {
+      executor.destroy();
+    }
+  }
+
+  @Test
+  public void testAlignment() throws Exception {
+    executor = new SamplingExecutor(2, 200);
+    List<Long> starts = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(3);
+    SamplingTask task = executor.schedule("task", () -> {
+      starts.add(System.currentTimeMillis());
+      latch.countDown();
+    }, 100);
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    task.cancel();
+
+    assertTrue(task.getOffsetMillis() >= 0 && task.getOffsetMillis() < 100);
+    for (long start : starts) {
+      assertTrue(Math.floorMod(start - task.getOffsetMillis(), 100) < 50);
+    }
+  }
+
+  @Test
+  public void testOverrun() {
+    Clock clock = mock(Clock.class);
+    List<Runnable> workers = new ArrayList<>();
+    SamplingTask task = new SamplingTask("task", null, () -> {}, 100, 0, 1000, workers::add,
+        clock);
+
+    task.tick();
+    task.tick();
+    task.tick();
+    // the ticks that fire while the task runs are skipped, not queued
+    assertEquals(1, workers.size());
+    assertEquals(2, task.getOverruns());
+
+    // started 30 ms after the tick, ran for 180 ms
+    when(clock.millis()).thenReturn(1030L, 1210L);
+    workers.remove(0).run();
+    assertEquals(1, task.getRuns());
+    assertEquals(30, task.getMaxDelayMillis());
+    assertEquals(180, task.getLastDurationMillis());
+
+    task.tick();
+    assertEquals(1, workers.size());
+    assertEquals(2, task.getOverruns());
+  }
+
+  @Test
+  public void testRejected() {
+    Clock clock = mock(Clock.class);
+    SamplingTask task = new SamplingTask("task", null, () -> {}, 100, 0, 1000, r -> {
+      throw new RejectedExecutionException();
+    }, clock);
+
+    task.tick();
+    task.tick();
+    // a rejected run is not pending
+    assertEquals(0, task.getOverruns());
+  }
+
+  @Test
+  public void testOffsets() {
+    executor = new SamplingExecutor(2, 1000);
+    List<SamplingTask> tasks = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      Target target =
+          new Target("db" + i, new OramanProperties.DataSource(), Paths.get("/archive"));
+      TargetContext.run(target,
+          () -> tasks.add(executor.schedule("ash", () -> {}, HOURS.toMillis(1))));
+    }
+    tasks.forEach(SamplingTask::cancel);
+
+    // the targets are spread over the period
+    assertTrue(tasks.stream().map(SamplingTask::getOffsetMillis).collect(toSet()).size() > 300);
+    for (SamplingTask task : tasks) {
+      assertTrue(task.getOffsetMillis() >= 0 && task.getOffsetMillis() <= 1000);
+    }
+  }
+
+  /**
+   * 500 targets sampled every second, each tick blocked for 20 ms (a JDBC round trip), by a pool
+   * of 32 threads. A benchmark that depends on the timing of the host, run by hand.
+   */
+  @Ignore
+  @Test
+  public void testManyTargets() throws Exception {
+    executor = new SamplingExecutor(32, 1000);
+    List<SamplingTask> tasks = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      Target target =
+          new Target("db" + i, new OramanProperties.DataSource(), Paths.get("/archive"));
+      TargetContext.run(target,
+          () -> tasks.add(executor.schedule("ash", () -> sleep(20), 1000)));
+    }
+    Thread.sleep(3500);
+    tasks.forEach(SamplingTask::cancel);
+
+    for (SamplingTask task : tasks) {
+      assertTrue(task.getTarget().getName(), task.getRuns() >= 2);
+      assertEquals(0, task.getOverruns());
+      assertTrue(task.getMaxDelayMillis() < 500);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package br.com.cas10.oraman.target;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import br.com.cas10.oraman.OramanProperties;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+public class TargetsTest {
+
+  private static final List<String> created = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    TargetContext.setDefault(null);
+    created.clear();
+  }
+
+  @Test
+  public void testTargets() throws Exception {
+    try (AnnotationConfigApplicationContext context =
+        new AnnotationConfigApplicationContext(TestConfig.class, TargetBean.class)) {
+      Targets targets = context.getBean(Targets.class);
+      Target db1 = targets.getTarget("db1");
+      Target db2 = targets.getTarget("db2");
+      assertSame(db1, targets.getDefaultTarget());
+      assertNull(targets.getTarget("db3"));
+      assertEquals(Paths.get("/archive/db2"), db2.getArchiveDir());
+
+      // created on startup, once per target
+      assertEquals(2, created.size());
+      assertTrue(created.contains("db1") && created.contains("db2"));
+
+      TargetBean bean = context.getBean(TargetBean.class);
+      assertEquals("db1", bean.getTarget());
+      TargetContext.run(db2, () -> assertEquals("db2", bean.getTarget()));
+      assertEquals(2, created.size());
+
+      // scheduled tasks run with the target that was current when they were scheduled
+      TargetTaskScheduler scheduler = context.getBean(TargetTaskScheduler.class);
+      CompletableFuture<Target> future = new CompletableFuture<>();
+      TargetContext.run(db2,
+          () -> scheduler.execute(() -> future.complete(TargetContext.current())));
+      assertSame(db2, future.get(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testDefaultTarget() {
+    OramanProperties properties = new OramanProperties();
+    properties.getArchive().setDir("/archive");
+    properties.getDataSource().setUrl("url");
+    properties.getDataSource().setUsername("username");
+    properties.getDataSource().setPassword("password");
+
+    Targets targets = new Targets(properties);
+    assertEquals(1, targets.getTargets().size());
+    assertEquals(Targets.DEFAULT_TARGET, targets.getDefaultTarget().getName());
+    assertEquals(Paths.get("/archive"), TargetContext.archiveDir(properties));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoDataSource() {
+    OramanProperties properties = new OramanProperties();
+    properties.getArchive().setDir("/archive");
+    new Targets(properties);
+  }
+
+  @Configuration
+  @Import(TargetConfig.class)
+  static class TestConfig {
+
+    @Bean
+    OramanProperties properties() {
+      OramanProperties properties = new OramanProperties();
+      properties.getArchive().setDir("/archive");
+      properties.getTargets().add(newTarget("db1"));
+      properties.getTargets().add(newTarget("db2"));
+      return properties;
+    }
+
+    @Bean
+    Targets targets() {
+      return new Targets(properties());
+    }
+
+    @Bean
+    TargetTaskScheduler scheduler() {
+      return new TargetTaskScheduler();
+    }
+
+    private static OramanProperties.Target newTarget(String name) {
+      OramanProperties.Target target = new OramanProperties.Target();
+      target.setName(name);
+      return target;
+    }
+  }
+
+  @TargetScoped
+  static class TargetBean {
+
+    private final String target;
+
+    TargetBean() {
+      target = TargetContext.current().getName();
+      created.add(target);
+    }
+
+    String getTarget() {
+      return target;
+    }
+  }
+}
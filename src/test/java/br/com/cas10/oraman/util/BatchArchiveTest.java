@@ -0,0 +1,94 @@
+package br.com.cas10.oraman.util;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchArchiveTest {
+
+  private static final LocalDate DATE = LocalDate.of(2018, 9, 1);
+  private static final long T0 =
+      DATE.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  private static final long T1 = T0 + MINUTES.toMillis(1);
+  private static final long T2 = T0 + MINUTES.toMillis(2);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path dir;
+  private Path file;
+
+  @Before
+  public void before() {
+    dir = folder.getRoot().toPath();
+    file = dir.resolve(DATE.toString());
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    BatchArchive archive = new BatchArchive(dir);
+    archive.append(T0, new byte[] {1, 2});
+    archive.append(T1, new byte[] {3});
+    archive.append(T2, new byte[] {});
+
+    assertEquals(ImmutableList.of(T0, T1, T2), readTimestamps(archive, T0, T2));
+    assertEquals(ImmutableList.of(T1), readTimestamps(archive, T1, T1));
+  }
+
+  @Test
+  public void testReadIncompleteBatchFollowedByBatch() throws IOException {
+    BatchArchive archive = new BatchArchive(dir);
+    archive.append(T0, new byte[] {1, 2});
+    // a write interrupted in the header, followed by a batch appended without truncating it: the
+    // length read overlaps the following batch
+    byte[] incomplete = batch(T1, new byte[] {3, 4, 5, 6});
+    Files.write(file, Arrays.copyOf(incomplete, 7), APPEND);
+    Files.write(file, batch(T2, new byte[] {7}), APPEND);
+
+    assertEquals(ImmutableList.of(T0), readTimestamps(archive, T0, T2));
+  }
+
+  @Test
+  public void testAppendTruncatesIncompleteBatch() throws IOException {
+    new BatchArchive(dir).append(T0, new byte[] {1, 2});
+    byte[] incomplete = batch(T1, new byte[] {3, 4, 5, 6});
+    Files.write(file, Arrays.copyOf(incomplete, 7), APPEND);
+
+    BatchArchive archive = new BatchArchive(dir);
+    archive.append(T2, new byte[] {7});
+
+    assertEquals(ImmutableList.of(T0, T2), readTimestamps(archive, T0, T2));
+  }
+
+  private static List<Long> readTimestamps(BatchArchive archive, long start, long end)
+      throws IOException {
+    List<Long> timestamps = new ArrayList<>();
+    archive.read(start, end, (timestamp, batch) -> timestamps.add(timestamp));
+    return timestamps;
+  }
+
+  private static byte[] batch(long timestamp, byte[] batch) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeLong(timestamp);
+    out.writeInt(batch.length);
+    out.write(batch);
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,69 @@
+package br.com.cas10.oraman.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class BufferTest {
+
+  @Test
+  public void testSince() {
+    Buffer<Integer> buffer = new Buffer<>(3);
+    BufferSlice<Integer> slice = buffer.since(-1);
+    assertTrue(slice.reset);
+    assertEquals(0, slice.generation);
+    assertEquals(3, slice.capacity);
+    assertEquals(ImmutableList.of(), slice.elements);
+
+    buffer.add(1);
+    buffer.add(2);
+    slice = buffer.since(slice.generation);
+    assertFalse(slice.reset);
+    assertEquals(2, slice.generation);
+    assertEquals(ImmutableList.of(1, 2), slice.elements);
+
+    slice = buffer.since(slice.generation);
+    assertFalse(slice.reset);
+    assertEquals(ImmutableList.of(), slice.elements);
+
+    buffer.add(3);
+    buffer.add(4);
+    slice = buffer.since(2);
+    assertFalse(slice.reset);
+    assertEquals(4, slice.generation);
+    assertEquals(ImmutableList.of(3, 4), slice.elements);
+  }
+
+  @Test
+  public void testSinceEvicted() {
+    Buffer<Integer> buffer = new Buffer<>(2);
+    for (int i = 1; i <= 5; i++) {
+      buffer.add(i);
+    }
+    BufferSlice<Integer> slice = buffer.since(1);
+    assertTrue(slice.reset);
+    assertEquals(5, slice.generation);
+    assertEquals(ImmutableList.of(4, 5), slice.elements);
+
+    slice = buffer.since(6);
+    assertTrue(slice.reset);
+    assertEquals(ImmutableList.of(4, 5), slice.elements);
+  }
+
+  @Test
+  public void testDeltaBufferSince() {
+    DeltaBuffer<Integer, Integer> buffer = new DeltaBuffer<>(10, (a, b) -> b - a);
+    buffer.add(1);
+    assertEquals(0, buffer.getGeneration());
+    buffer.add(3);
+    buffer.add(7);
+    BufferSlice<Integer> slice = buffer.since(1);
+    assertFalse(slice.reset);
+    assertEquals(2, slice.generation);
+    assertEquals(ImmutableList.of(4), slice.elements);
+    assertEquals(ImmutableList.of(8), slice.map(i -> i * 2).elements);
+  }
+}
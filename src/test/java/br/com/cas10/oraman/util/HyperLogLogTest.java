@@ -0,0 +1,30 @@
+package br.com.cas10.oraman.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+  @Test
+  public void testEstimate() {
+    HyperLogLog hll = new HyperLogLog(12);
+    assertEquals(0, hll.estimate());
+
+    for (int i = 0; i < 100_000; i++) {
+      hll.add("sql" + (i % 50_000));
+    }
+    double tolerance = 3 * hll.relativeError() * 50_000;
+    assertEquals(50_000, hll.estimate(), tolerance);
+  }
+
+  @Test
+  public void testSmallCardinality() {
+    HyperLogLog hll = new HyperLogLog(12);
+    for (int i = 0; i < 1000; i++) {
+      hll.add(Integer.toString(i % 10));
+    }
+    hll.add(null);
+    assertEquals(11, hll.estimate());
+  }
+}
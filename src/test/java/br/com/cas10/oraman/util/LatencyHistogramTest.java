@@ -0,0 +1,37 @@
+package br.com.cas10.oraman.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketOf() {
+    assertEquals(0, LatencyHistogram.bucketOf(1));
+    assertEquals(1, LatencyHistogram.bucketOf(2));
+    assertEquals(3, LatencyHistogram.bucketOf(8));
+    // milliseconds buckets of v$event_histogram
+    assertEquals(10, LatencyHistogram.bucketOf(1000));
+    assertEquals(14, LatencyHistogram.bucketOf(16_000));
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testQuantile() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.quantile(0.5), 0);
+
+    // 90 waits in [512, 1024) and 10 waits in [8192, 16384)
+    histogram.add(10, 90);
+    LatencyHistogram other = new LatencyHistogram();
+    other.add(14, 10);
+    histogram.merge(other);
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(512 + 512 * 50 / 90d, histogram.quantile(0.5), 1e-9);
+    assertEquals(1024, histogram.quantile(0.9), 1e-9);
+    assertEquals(8192 + 8192 * 0.5, histogram.quantile(0.95), 1e-9);
+    assertEquals(16384, histogram.quantile(1), 1e-9);
+  }
+}
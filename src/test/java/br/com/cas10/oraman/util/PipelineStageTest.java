@@ -0,0 +1,123 @@
+package br.com.cas10.oraman.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class PipelineStageTest {
+
+  @Test
+  public void testOrder() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      int count = 10_000;
+      List<Integer> handled = new ArrayList<>();
+      CountDownLatch done = new CountDownLatch(count);
+      PipelineStage<Integer> second = new PipelineStage<>("second", 16, executor, i -> {
+        // a single consumer at a time
+        synchronized (handled) {
+          handled.add(i);
+        }
+        done.countDown();
+      });
+      PipelineStage<Integer> first = new PipelineStage<>("first", 16, executor, i -> {
+        while (!second.offer(i)) {
+          Thread.yield();
+        }
+      });
+      for (int i = 0; i < count; i++) {
+        while (!first.offer(i)) {
+          Thread.yield();
+        }
+      }
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      for (int i = 0; i < count; i++) {
+        assertEquals(i, (int) handled.get(i));
+      }
+      assertEquals(count, second.getStats().processed);
+      assertEquals(0, second.getStats().queued);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFullQueue() {
+    List<Runnable> tasks = new ArrayList<>();
+    List<String> handled = new ArrayList<>();
+    PipelineStage<String> stage = new PipelineStage<>("stage", 2, tasks::add, handled::add);
+
+    assertTrue(stage.offer("a"));
+    assertTrue(stage.offer("b"));
+    assertFalse(stage.offer("c"));
+    // a single task while the stage is scheduled
+    assertEquals(1, tasks.size());
+    assertEquals(2, stage.getStats().queued);
+    assertEquals(1, stage.getStats().dropped);
+    assertNotNull(stage.getStats().lastError);
+
+    tasks.remove(0).run();
+    assertEquals(2, handled.size());
+    assertTrue(stage.offer("d"));
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void testRejected() {
+    List<Runnable> tasks = new ArrayList<>();
+    AtomicBoolean rejecting = new AtomicBoolean(true);
+    List<String> handled = new ArrayList<>();
+    PipelineStage<String> stage = new PipelineStage<>("stage", 4, task -> {
+      if (rejecting.get()) {
+        throw new RejectedExecutionException();
+      }
+      tasks.add(task);
+    }, handled::add);
+
+    // the item is kept
+    assertTrue(stage.offer("a"));
+    PipelineStage.Stats stats = stage.getStats();
+    assertEquals(1, stats.rejections);
+    assertEquals(1, stats.queued);
+    assertNotNull(stats.lastError);
+    assertNotNull(stats.lastErrorTime);
+
+    rejecting.set(false);
+    assertTrue(stage.offer("b"));
+    tasks.remove(0).run();
+    assertEquals(ImmutableList.of("a", "b"), handled);
+  }
+
+  @Test
+  public void testFailure() {
+    List<String> handled = new ArrayList<>();
+    PipelineStage<String> stage = new PipelineStage<>("stage", 2, Runnable::run, s -> {
+      if (s.isEmpty()) {
+        throw new IllegalArgumentException();
+      }
+      handled.add(s);
+    });
+
+    stage.offer("");
+    stage.offer("a");
+
+    assertEquals(1, handled.size());
+    PipelineStage.Stats stats = stage.getStats();
+    assertEquals(2, stats.processed);
+    assertEquals(1, stats.failures);
+    assertNull(stats.lastError);
+  }
+}
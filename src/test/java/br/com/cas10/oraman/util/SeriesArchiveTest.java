@@ -0,0 +1,139 @@
+package br.com.cas10.oraman.util;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SeriesArchiveTest {
+
+  private static final long INTERVAL = SECONDS.toMillis(15);
+  private static final long ROLLUP_INTERVAL = MINUTES.toMillis(1);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testMappedSeries() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    long start = LocalDate.of(2018, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant()
+        .toEpochMilli();
+
+    MappedSeries series = new MappedSeries(dir, 2, INTERVAL);
+    for (int i = 0; i < 10; i++) {
+      series.append(start + i * INTERVAL, new double[] {i, -i});
+    }
+    // next day
+    series.append(start + DAYS.toMillis(1), new double[] {10, -10});
+
+    List<SeriesPoint> points = series.read(start + 3 * INTERVAL, start + DAYS.toMillis(1));
+    assertEquals(8, points.size());
+    assertEquals(start + 3 * INTERVAL, points.get(0).getTimestamp());
+    assertArrayEquals(new double[] {3, -3}, points.get(0).getValues(), 0);
+    assertArrayEquals(new double[] {10, -10}, points.get(7).getValues(), 0);
+
+    // reopened files are appended to
+    series = new MappedSeries(dir, 2, INTERVAL);
+    series.append(start + 10 * INTERVAL, new double[] {11, -11});
+    assertEquals(11, series.read(start, start + 10 * INTERVAL).size());
+
+    series.cleanUp(LocalDate.of(2018, 1, 2));
+    assertEquals(0, series.read(start, start + 10 * INTERVAL).size());
+    assertEquals(1, series.read(start, start + DAYS.toMillis(1)).size());
+  }
+
+  @Test
+  public void testRollupAndQuery() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    long start = Instant.now().toEpochMilli() / ROLLUP_INTERVAL * ROLLUP_INTERVAL;
+    LocalDate today = LocalDate.now();
+
+    SeriesArchive archive = new SeriesArchive(dir, 1, ImmutableList.of(
+        new SeriesArchive.Tier("raw", INTERVAL, 7),
+        new SeriesArchive.Tier("1m", ROLLUP_INTERVAL, 30)));
+    // two complete minutes and the first point of a third one
+    for (int i = 1; i <= 9; i++) {
+      archive.append(start + i * INTERVAL, new double[] {i});
+    }
+    assertEquals(2, Files.list(dir).count());
+
+    long end = start + 9 * INTERVAL;
+    assertEquals(9, archive.query(start, end, 100, today).size());
+
+    List<SeriesPoint> rollup = archive.query(start, end, 2, today);
+    assertEquals(2, rollup.size());
+    assertEquals(start + ROLLUP_INTERVAL, rollup.get(0).getTimestamp());
+    assertArrayEquals(new double[] {2.5}, rollup.get(0).getValues(), 0);
+    assertEquals(start + 2 * ROLLUP_INTERVAL, rollup.get(1).getTimestamp());
+    assertArrayEquals(new double[] {6.5}, rollup.get(1).getValues(), 0);
+  }
+
+  @Test
+  public void testWidthChange() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    long start = LocalDate.of(2018, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant()
+        .toEpochMilli();
+
+    new MappedSeries(dir, 2, INTERVAL).append(start, new double[] {1, 2});
+    // e.g., a wait class added
+    MappedSeries series = new MappedSeries(dir, 3, INTERVAL);
+    series.append(start + INTERVAL, new double[] {1, 2, 3});
+    series.append(start + 2 * INTERVAL, new double[] {4, 5, 6});
+
+    List<SeriesPoint> points = series.read(start, start + 2 * INTERVAL);
+    assertEquals(2, points.size());
+    assertArrayEquals(new double[] {4, 5, 6}, points.get(1).getValues(), 0);
+    assertTrue(Files.isRegularFile(dir.resolve("2018-01-01-w2")));
+
+    series.cleanUp(LocalDate.of(2018, 1, 2));
+    assertEquals(0, Files.list(dir).count());
+  }
+
+  @Test
+  public void testRollupRestored() throws IOException {
+    Path dir = folder.getRoot().toPath();
+    long start = Instant.now().toEpochMilli() / ROLLUP_INTERVAL * ROLLUP_INTERVAL;
+    LocalDate today = LocalDate.now();
+    List<SeriesArchive.Tier> tiers = ImmutableList.of(
+        new SeriesArchive.Tier("raw", INTERVAL, 7),
+        new SeriesArchive.Tier("1m", ROLLUP_INTERVAL, 30));
+
+    // a complete minute and two points of the second one
+    SeriesArchive archive = new SeriesArchive(dir, 1, tiers);
+    for (int i = 1; i <= 6; i++) {
+      archive.append(start + i * INTERVAL, new double[] {i});
+    }
+    // restarted in the middle of the second minute
+    archive = new SeriesArchive(dir, 1, tiers);
+    archive.append(start + 7 * INTERVAL, new double[] {7});
+    archive.append(start + 8 * INTERVAL, new double[] {8});
+    archive.append(start + 9 * INTERVAL, new double[] {9});
+
+    List<SeriesPoint> rollup = archive.query(start, start + 9 * INTERVAL, 2, today);
+    assertEquals(2, rollup.size());
+    assertArrayEquals(new double[] {2.5}, rollup.get(0).getValues(), 0);
+    assertArrayEquals(new double[] {6.5}, rollup.get(1).getValues(), 0);
+
+    // restarted after the end of the third minute, which was not written
+    archive = new SeriesArchive(dir, 1, tiers);
+    archive.append(start + 13 * INTERVAL, new double[] {13});
+    rollup = archive.query(start, start + 13 * INTERVAL, 4, today);
+    assertEquals(3, rollup.size());
+    assertEquals(start + 3 * ROLLUP_INTERVAL, rollup.get(2).getTimestamp());
+    assertArrayEquals(new double[] {9}, rollup.get(2).getValues(), 0);
+  }
+}
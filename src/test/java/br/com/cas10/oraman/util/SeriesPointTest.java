@@ -0,0 +1,16 @@
+package br.com.cas10.oraman.util;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+public class SeriesPointTest {
+
+  @Test
+  public void testJson() throws JsonProcessingException {
+    SeriesPoint point = new SeriesPoint(1000, new double[] {0.5, 0, 2});
+    assertEquals("[1000,[0.5,0.0,2.0]]", new ObjectMapper().writeValueAsString(point));
+  }
+}
@@ -0,0 +1,56 @@
+package br.com.cas10.oraman.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SpaceSavingTest {
+
+  @Test
+  public void testExact() {
+    SpaceSaving<String, AtomicInteger> counter = new SpaceSaving<>(3, k -> new AtomicInteger());
+    counter.offer("a").incrementAndGet();
+    counter.offer("b").incrementAndGet();
+    counter.offer("a").incrementAndGet();
+    counter.offer(null).incrementAndGet();
+
+    assertTrue(counter.isExact());
+    assertEquals(0, counter.maxError());
+    assertEquals(3, counter.size());
+    assertEquals(4, counter.getTotal());
+  }
+
+  @Test
+  public void testEviction() {
+    SpaceSaving<String, Multiset<String>> counter = new SpaceSaving<>(2, k -> HashMultiset.create());
+    counter.offer("a", 5).add("a", 5);
+    counter.offer("b").add("b");
+    counter.offer("c").add("c");
+
+    assertFalse(counter.isExact());
+    assertEquals(2, counter.size());
+    // "b" was evicted, "c" inherited its count
+    assertEquals(2, counter.maxError());
+    Multiset<String> all = HashMultiset.create();
+    counter.values().forEach(all::addAll);
+    assertEquals(5, all.count("a"));
+    assertEquals(0, all.count("b"));
+    assertEquals(1, all.count("c"));
+  }
+
+  @Test
+  public void testHeavyHittersAreKept() {
+    SpaceSaving<Integer, AtomicInteger> counter = new SpaceSaving<>(10, k -> new AtomicInteger());
+    for (int i = 0; i < 10_000; i++) {
+      counter.offer(i % 3 == 0 ? -1 : i).incrementAndGet();
+    }
+    long heavy = counter.values().stream().mapToInt(AtomicInteger::get).max().getAsInt();
+    assertTrue(heavy >= 3334 - counter.maxError());
+    assertTrue(counter.maxError() <= counter.getTotal() / 10);
+  }
+}
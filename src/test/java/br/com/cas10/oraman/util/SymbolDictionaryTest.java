@@ -0,0 +1,59 @@
+package br.com.cas10.oraman.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class SymbolDictionaryTest {
+
+  @Test
+  public void testIntern() {
+    SymbolDictionary dictionary = new SymbolDictionary(10);
+    String value = dictionary.intern(new String("event"), 0);
+    assertSame(value, dictionary.intern(new String("event"), 1));
+    assertNull(dictionary.intern(null, 1));
+    assertEquals(1, dictionary.size());
+  }
+
+  @Test
+  public void testMaxSize() {
+    SymbolDictionary dictionary = new SymbolDictionary(2);
+    dictionary.intern("a", 0);
+    dictionary.intern("b", 0);
+    String c = new String("c");
+    assertSame(c, dictionary.intern(c, 0));
+    assertNotSame(c, dictionary.intern(new String("c"), 0));
+    assertEquals(2, dictionary.size());
+
+    SymbolDictionary.Stats stats = dictionary.getStats();
+    assertEquals(4, stats.misses);
+    assertEquals(2, stats.rejections);
+  }
+
+  @Test
+  public void testEviction() {
+    SymbolDictionary dictionary = new SymbolDictionary(10);
+    String a = dictionary.intern(new String("a"), 1000);
+    dictionary.intern("b", 1000);
+    dictionary.intern("a", 2000);
+
+    assertEquals(1, dictionary.evictUnusedBefore(1500));
+    assertEquals(1, dictionary.size());
+    assertSame(a, dictionary.intern(new String("a"), 2500));
+
+    assertEquals(1, dictionary.evictUnusedBefore(3000));
+    assertEquals(0, dictionary.size());
+    // a new instance once evicted
+    assertNotSame(a, dictionary.intern(new String("a"), 3000));
+
+    SymbolDictionary.Stats stats = dictionary.getStats();
+    assertEquals(1, stats.size);
+    assertEquals(2, stats.evictions);
+    assertEquals(2, stats.hits);
+    assertEquals(3, stats.misses);
+    assertEquals(0.4, stats.hitRate, 1e-9);
+  }
+}
@@ -0,0 +1,46 @@
+package br.com.cas10.oraman.web.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class EventStreamTest {
+
+  @Test
+  public void testPublish() {
+    List<Runnable> tasks = new ArrayList<>();
+    EventStream stream = new EventStream("snapshot", tasks::add, 2, 60_000);
+    assertFalse(stream.hasSubscribers());
+
+    stream.subscribe();
+    stream.subscribe();
+    assertEquals(2, stream.getSubscribersCount());
+
+    stream.publish("1");
+    stream.publish("2");
+    // one pending drain per subscriber
+    assertEquals(2, tasks.size());
+
+    tasks.forEach(Runnable::run);
+    stream.publish("3");
+    assertEquals(4, tasks.size());
+    assertEquals(2, stream.getSubscribersCount());
+  }
+
+  @Test
+  public void testSlowSubscriberEviction() {
+    List<Runnable> tasks = new ArrayList<>();
+    EventStream stream = new EventStream("snapshot", tasks::add, 2, 60_000);
+    stream.subscribe();
+
+    stream.publish("1");
+    stream.publish("2");
+    assertTrue(stream.hasSubscribers());
+    stream.publish("3");
+    assertFalse(stream.hasSubscribers());
+  }
+}
@@ -0,0 +1,54 @@
+package br.com.cas10.oraman.web.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+public class MemoizedResponsesTest {
+
+  @Test
+  public void testGet() {
+    AtomicInteger renders = new AtomicInteger();
+    MemoizedResponses responses = new MemoizedResponses(new ObjectMapper(), key -> {
+      renders.incrementAndGet();
+      return ImmutableMap.of("key", key);
+    });
+
+    RenderedResponse response = responses.get(1, -1);
+    assertEquals("{\"key\":-1}", response.getJson());
+    assertSame(response, responses.get(1, -1));
+    assertEquals(1, renders.get());
+
+    responses.get(1, 0);
+    assertEquals(2, renders.get());
+
+    RenderedResponse newResponse = responses.get(2, -1);
+    assertNotSame(response, newResponse);
+    assertEquals(3, renders.get());
+
+    // older generations are not cached
+    responses.get(1, -1);
+    responses.get(1, -1);
+    assertEquals(5, renders.get());
+    assertSame(newResponse, responses.get(2, -1));
+  }
+
+  @Test
+  public void testToResponseEntity() {
+    RenderedResponse response = new RenderedResponse("{}".getBytes());
+
+    ResponseEntity<byte[]> plain = response.toResponseEntity(null);
+    assertEquals(null, plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(2, plain.getBody().length);
+
+    ResponseEntity<byte[]> gzipped = response.toResponseEntity("gzip, deflate");
+    assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+}